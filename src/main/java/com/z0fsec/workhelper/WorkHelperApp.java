@@ -1,21 +1,33 @@
 package com.z0fsec.workhelper;
 
 import com.formdev.flatlaf.themes.FlatMacLightLaf;
+import com.z0fsec.workhelper.db.BackupService;
+import com.z0fsec.workhelper.db.CatalogCache;
+import com.z0fsec.workhelper.db.CatalogSnapshot;
+import com.z0fsec.workhelper.db.DatabaseManager;
 import com.z0fsec.workhelper.ui.MainPanel;
+import com.z0fsec.workhelper.util.JobScheduler;
 import com.z0fsec.workhelper.util.MenuUtil;
+import com.z0fsec.workhelper.util.ProcessManager;
+import com.z0fsec.workhelper.util.StartupTimer;
 import com.z0fsec.workhelper.util.Z0fSecConstants;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class WorkHelperApp {
 
     private JFrame frame;
     private MainPanel mainPanel;
+    // 启动时在后台读取目录快照，结果为快照是否被采用
+    private static CompletableFuture<Boolean> snapshotLoad = CompletableFuture.completedFuture(false);
+    private boolean snapshotUsed;
 
     public WorkHelperApp() {
-        initializeLookAndFeel();
-        createAndShowGUI();
+        StartupTimer.time("初始化界面主题", this::initializeLookAndFeel);
+        StartupTimer.time("创建主窗口", this::createAndShowGUI);
     }
 
     public static void main(String[] args) {
@@ -23,6 +35,24 @@ public class WorkHelperApp {
         System.setProperty("apple.laf.useScreenMenuBar", "true");
         System.setProperty("com.apple.mrj.application.apple.menu.about.name", Z0fSecConstants.NAME);
 
+        // 数据库初始化（驱动加载、结构迁移）与界面构建并行，使用目录快照时首屏不必等待
+        Thread dbInit = new Thread(() -> {
+            try {
+                StartupTimer.time("数据库初始化", DatabaseManager::getInstance);
+            } catch (Throwable e) {
+                System.err.println("数据库初始化失败: " + e.getMessage());
+            }
+        }, "db-init");
+        dbInit.setDaemon(true);
+        dbInit.start();
+        // 同时在后台读取上次退出时写入的目录快照
+        snapshotLoad = CompletableFuture.supplyAsync(() -> StartupTimer.time("读取目录快照", () ->
+                        CatalogCache.getInstance().seed(CatalogSnapshot.read(CatalogSnapshot.DEFAULT_FILE))))
+                .exceptionally(e -> {
+                    System.err.println("加载目录快照失败: " + e.getMessage());
+                    return false;
+                });
+
         // 在EDT中启动GUI
         SwingUtilities.invokeLater(() -> {
             try {
@@ -97,8 +127,16 @@ public class WorkHelperApp {
             public void windowClosing(java.awt.event.WindowEvent windowEvent) {
                 confirmExit();
             }
+
+            @Override
+            public void windowOpened(java.awt.event.WindowEvent windowEvent) {
+                onFirstPaint();
+            }
         });
 
+        // 快照填充缓存后面板直接按缓存显示，不必等待数据库查询
+        snapshotUsed = snapshotLoad.join();
+
         // 创建主面板 - 不再需要传递日志消费者，因为MainPanel现在使用自己的彩色日志系统
         mainPanel = new MainPanel(System.out::println);
 
@@ -112,6 +150,29 @@ public class WorkHelperApp {
         SwingUtilities.invokeLater(() -> mainPanel.onPanelReady());
     }
 
+    // 窗口首次显示：输出从 JVM 启动到首屏的耗时，构建标签页，并在后台核对快照数据
+    private void onFirstPaint() {
+        StartupTimer.mark("首屏显示");
+        String message = "首屏显示耗时 " + StartupTimer.sinceLaunch() + " ms（" + (snapshotUsed ? "使用目录快照" : "无目录快照，从数据库加载") + "）";
+        mainPanel.appendInfo(message);
+        mainPanel.preloadTabs();
+
+        if (snapshotUsed) {
+            long start = System.nanoTime();
+            // 数据库可能仍在初始化，等待放在后台线程
+            CompletableFuture.supplyAsync(DatabaseManager::getInstance).thenCompose(db -> db.readAsync(d -> {
+                CatalogCache.getInstance().reconcile();
+                return null;
+            })).whenComplete((result, error) -> {
+                if (error != null) {
+                    mainPanel.appendError("目录快照核对失败: " + error.getMessage());
+                } else {
+                    mainPanel.appendInfo("目录快照已与数据库核对 (" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms)");
+                }
+            });
+        }
+    }
+
     private void setWindowIcon() {
         try {
             // 尝试设置窗口图标（如果有的话）
@@ -146,6 +207,17 @@ public class WorkHelperApp {
         if (result == JOptionPane.YES_OPTION) {
             // 保存配置或执行清理操作（如果有的话）
             saveApplicationState();
+            // 先停止定时任务调度，避免退出过程中再启动新的运行
+            JobScheduler.getInstance().shutdown();
+            // 结束仍在运行的工具和脚本，运行历史和状态随后一起落库
+            ProcessManager.getInstance().shutdown(5, TimeUnit.SECONDS);
+            // 等待异步写队列中的状态更新落库
+            DatabaseManager dbManager = DatabaseManager.getInstance();
+            if (!dbManager.flushPendingWrites(5, TimeUnit.SECONDS)) {
+                System.err.println("部分状态更新未能在退出前写入数据库");
+            }
+            BackupService.getInstance().shutdown(5, TimeUnit.SECONDS);
+            dbManager.shutdown();
             frame.dispose();
             System.exit(0);
         }
@@ -166,6 +238,13 @@ public class WorkHelperApp {
         } catch (Exception e) {
             System.err.println("保存应用程序状态失败: " + e.getMessage());
         }
+
+        // 保存目录快照，下次启动时先按快照显示
+        try {
+            CatalogCache.getInstance().writeSnapshot(CatalogSnapshot.DEFAULT_FILE);
+        } catch (Exception e) {
+            System.err.println("写入目录快照失败: " + e.getMessage());
+        }
     }
 
     private void loadApplicationState() {
@@ -0,0 +1,260 @@
+package com.z0fsec.workhelper.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 数据库在线备份
+ * 在连接池的普通连接上执行 VACUUM INTO：WAL 模式下这只是一个读事务，复制的是开始时的一致快照，
+ * 期间的写入不会让复制重来，也不占用数据库写线程，界面的读写都不受影响；压缩和轮换在备份线程上完成。
+ * 按 auto_backup / backup_interval（分钟）/ backup_path 设置定时执行，备份文件 gzip 压缩并只保留最近几份
+ */
+public class BackupService {
+    private static final String DEFAULT_BACKUP_DIR = "backups";
+    private static final String FILE_PREFIX = "workhelper-";
+    private static final String FILE_SUFFIX = ".db.gz";
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int DEFAULT_INTERVAL_MINUTES = 60;
+    private static final int KEEP_BACKUPS = 10;
+
+
+    private final SettingsStore settings;
+    private final ScheduledExecutorService scheduler;
+    private final List<Consumer<BackupResult>> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> nextBackup;
+
+    /**
+     * 一次备份的结果，失败时 error 不为 null
+     */
+    public record BackupResult(Path file, long durationMillis, long bytesCopied, long compressedBytes,
+                               int pageCount, int removedBackups, Exception error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private BackupService() {
+        this.settings = SettingsStore.getInstance();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-backup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        settings.addListener(this::onSettingsChanged);
+    }
+
+    private static class Holder {
+        static final BackupService INSTANCE = new BackupService();
+    }
+
+    public static BackupService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 订阅备份结果，回调在备份线程上执行
+     */
+    public void addListener(Consumer<BackupResult> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<BackupResult> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 按当前设置安排下一次自动备份
+     * 下次时间从最近一份备份文件算起，重启程序不会立即重复备份
+     */
+    public synchronized void start() {
+        if (nextBackup != null) {
+            nextBackup.cancel(false);
+            nextBackup = null;
+        }
+        if (!settings.getBoolean(SettingsStore.AUTO_BACKUP, false) || scheduler.isShutdown()) {
+            return;
+        }
+
+        long intervalMillis = TimeUnit.MINUTES.toMillis(getIntervalMinutes());
+        long delayMillis = 0;
+        Path latest = latestBackup(getBackupDir());
+        if (latest != null) {
+            try {
+                long age = System.currentTimeMillis() - Files.getLastModifiedTime(latest).toMillis();
+                delayMillis = Math.max(0, intervalMillis - age);
+            } catch (IOException e) {
+                // 读取不到修改时间时按没有备份处理
+            }
+        }
+        nextBackup = scheduler.scheduleWithFixedDelay(this::runBackup, delayMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 立即执行一次备份，不影响自动备份的计划
+     */
+    public Future<?> backupNow() {
+        return scheduler.submit(this::runBackup);
+    }
+
+    /**
+     * 停止自动备份，等待正在进行的备份结束
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(timeout, unit)) {
+                System.err.println("等待数据库备份结束超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void onSettingsChanged(Map<String, String> changed) {
+        if (changed.containsKey(SettingsStore.AUTO_BACKUP)
+                || changed.containsKey(SettingsStore.BACKUP_INTERVAL)
+                || changed.containsKey(SettingsStore.BACKUP_PATH)) {
+            start();
+        }
+    }
+
+    private int getIntervalMinutes() {
+        int minutes = settings.getInt(SettingsStore.BACKUP_INTERVAL, DEFAULT_INTERVAL_MINUTES);
+        return minutes > 0 ? minutes : DEFAULT_INTERVAL_MINUTES;
+    }
+
+    private Path getBackupDir() {
+        String path = settings.getString(SettingsStore.BACKUP_PATH);
+        return Paths.get(path != null && !path.isBlank() ? path.trim() : DEFAULT_BACKUP_DIR);
+    }
+
+    // 只在备份线程中执行
+    private void runBackup() {
+        BackupResult result;
+        try {
+            result = backup(getBackupDir());
+        } catch (Exception e) {
+            result = new BackupResult(null, 0, 0, 0, 0, 0, e);
+        }
+        for (Consumer<BackupResult> listener : listeners) {
+            try {
+                listener.accept(result);
+            } catch (Exception e) {
+                System.err.println("备份监听器异常: " + e.getMessage());
+            }
+        }
+    }
+
+    private BackupResult backup(Path dir) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+
+        String name = FILE_PREFIX + LocalDateTime.now().format(FILE_TIME_FORMAT);
+        Path snapshot = dir.resolve(name + ".db.tmp");
+        Path compressed = dir.resolve(name + FILE_SUFFIX + ".tmp");
+        Path target = dir.resolve(name + FILE_SUFFIX);
+        long pageSize;
+
+        try {
+            // 先写成未压缩的快照，VACUUM INTO 要求目标文件不存在
+            Files.deleteIfExists(snapshot);
+            try (PooledConnection conn = DatabaseManager.getInstance().getPool().acquire("backup")) {
+                try (ResultSet rs = conn.prepare("PRAGMA page_size").executeQuery()) {
+                    pageSize = rs.next() ? rs.getLong(1) : 4096;
+                }
+                PreparedStatement vacuum = conn.prepare("VACUUM INTO ?");
+                vacuum.setString(1, snapshot.toAbsolutePath().toString());
+                vacuum.execute();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("备份被中断");
+            }
+
+            long bytesCopied = Files.size(snapshot);
+            try (InputStream in = Files.newInputStream(snapshot);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            Files.move(compressed, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            int removed = rotate(dir);
+
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return new BackupResult(target, duration, bytesCopied, Files.size(target),
+                    (int) (bytesCopied / pageSize), removed, null);
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(compressed);
+        }
+    }
+
+    /**
+     * 删除超出保留份数的旧备份
+     *
+     * @return 删除的文件数
+     */
+    private static int rotate(Path dir) throws IOException {
+        List<Path> backups = listBackups(dir);
+        int removed = 0;
+        for (int i = KEEP_BACKUPS; i < backups.size(); i++) {
+            if (Files.deleteIfExists(backups.get(i))) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static Path latestBackup(Path dir) {
+        try {
+            List<Path> backups = listBackups(dir);
+            return backups.isEmpty() ? null : backups.get(0);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 按修改时间从新到旧排列
+    private static List<Path> listBackups(Path dir) throws IOException {
+        List<Path> backups = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return backups;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            stream.forEach(backups::add);
+        }
+        backups.sort(Comparator.comparing(BackupService::lastModified).reversed());
+        return backups;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
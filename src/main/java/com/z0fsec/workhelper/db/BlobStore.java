@@ -0,0 +1,301 @@
+package com.z0fsec.workhelper.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按内容寻址的压缩存储
+ * 内容以 SHA-256 作为键，gzip 压缩后保存为 root/前两位/哈希.gz，相同内容只保存一份。
+ * 读写都是流式的，脚本内容和工具输出都可以存放在这里。
+ * 存储本身不记录引用，不再被引用的内容由使用方调用 sweep() 回收
+ */
+public class BlobStore {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String SUFFIX = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public BlobStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * 打开一个写入流，close() 时计算哈希并提交，之后通过 getRef() 获取引用
+     */
+    public BlobWriter openWriter() throws IOException {
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, "blob-", ".tmp");
+        return new BlobWriter(temp);
+    }
+
+    /**
+     * 写入输入流中的全部内容，输入流由调用方关闭
+     */
+    public BlobRef put(InputStream in) throws IOException {
+        BlobWriter writer = openWriter();
+        try {
+            in.transferTo(writer);
+        } catch (IOException e) {
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+        return writer.getRef();
+    }
+
+    public BlobRef put(String text) throws IOException {
+        BlobWriter writer = openWriter();
+        try {
+            writer.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+        return writer.getRef();
+    }
+
+    /**
+     * 打开解压后的读取流，调用方负责关闭
+     */
+    public InputStream openStream(String hash) throws IOException {
+        return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(pathOf(hash)), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    /**
+     * 把内容解压写入输出流，返回写入的字节数
+     */
+    public long copyTo(String hash, OutputStream out) throws IOException {
+        try (InputStream in = openStream(hash)) {
+            return in.transferTo(out);
+        }
+    }
+
+    public String readString(String hash) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        copyTo(hash, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(String hash) {
+        return Files.exists(pathOf(hash));
+    }
+
+    /**
+     * 压缩后占用的磁盘空间，不存在时返回 -1
+     */
+    public long storedSize(String hash) {
+        try {
+            return Files.size(pathOf(hash));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public boolean delete(String hash) throws IOException {
+        return Files.deleteIfExists(pathOf(hash));
+    }
+
+    /**
+     * 删除不再被引用的内容和写入中断留下的临时文件
+     * 写入内容和保存引用不是原子的，修改时间不早于 olderThan 的文件视为可能正在写入，保留不删
+     *
+     * @param referenced 判断哈希是否仍被引用
+     * @return 删除的文件数
+     */
+    public int sweep(Predicate<String> referenced, FileTime olderThan) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        int removed = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    removed += sweepDirectory(entry, referenced, olderThan);
+                } else if (entry.getFileName().toString().endsWith(".tmp") && isOlder(entry, olderThan)) {
+                    removed += Files.deleteIfExists(entry) ? 1 : 0;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private int sweepDirectory(Path dir, Predicate<String> referenced, FileTime olderThan) throws IOException {
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String hash = name.substring(0, name.length() - SUFFIX.length());
+                if (!referenced.test(hash) && isOlder(file, olderThan)) {
+                    removed += Files.deleteIfExists(file) ? 1 : 0;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static boolean isOlder(Path file, FileTime olderThan) throws IOException {
+        return Files.getLastModifiedTime(file).compareTo(olderThan) < 0;
+    }
+
+    private Path pathOf(String hash) {
+        if (hash == null || hash.length() < 3 || !hash.matches("[0-9a-f]+")) {
+            throw new IllegalArgumentException("无效的内容哈希: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash + SUFFIX);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " not available", e);
+        }
+    }
+
+    /**
+     * 内容引用：哈希、原始大小和压缩后大小
+     */
+    public static class BlobRef {
+        private final String hash;
+        private final long size;
+        private final long storedSize;
+
+        public BlobRef(String hash, long size, long storedSize) {
+            this.hash = hash;
+            this.size = size;
+            this.storedSize = storedSize;
+        }
+
+        public String getHash() { return hash; }
+
+        public long getSize() { return size; }
+
+        public long getStoredSize() { return storedSize; }
+
+        @Override
+        public String toString() {
+            return "BlobRef{" +
+                    "hash='" + hash + '\'' +
+                    ", size=" + size +
+                    ", storedSize=" + storedSize +
+                    '}';
+        }
+    }
+
+    /**
+     * 写入流：边写边计算原始内容的哈希并压缩到临时文件，关闭时按哈希落位
+     */
+    public class BlobWriter extends FilterOutputStream {
+        private final Path temp;
+        private final MessageDigest digest;
+        private long size = 0;
+        private boolean closed = false;
+        private BlobRef ref;
+
+        private BlobWriter(Path temp) throws IOException {
+            this(temp, newDigest());
+        }
+
+        private BlobWriter(Path temp, MessageDigest digest) throws IOException {
+            super(new DigestOutputStream(new GZIPOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE), BUFFER_SIZE), digest));
+            this.temp = temp;
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            size += len;
+        }
+
+        /**
+         * 放弃写入并删除临时文件
+         */
+        public void abort() {
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                // 忽略关闭异常
+            }
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                // 忽略删除异常
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            out.close();
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(hash);
+            long storedSize = Files.size(temp);
+            Files.createDirectories(target.getParent());
+            try {
+                if (Files.exists(target)) {
+                    Files.delete(temp); // 相同内容已存在
+                    // 更新修改时间，避免引用保存之前被 sweep() 当作未引用的旧内容删除
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                } else {
+                    moveIntoPlace(target);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            ref = new BlobRef(hash, size, storedSize);
+        }
+
+        private void moveIntoPlace(Path target) throws IOException {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                Files.delete(temp); // 并发写入了相同内容
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        /**
+         * 写入完成后的引用，close() 之前为 null
+         */
+        public BlobRef getRef() {
+            return ref;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package com.z0fsec.workhelper.db;
+
+import com.z0fsec.workhelper.model.NetworkTemplate;
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.SearchHit;
+import com.z0fsec.workhelper.model.Tool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 工具、脚本和网络模板的内存目录缓存
+ * 首次访问时从数据库读取整表，之后的写操作先落库再增量更新缓存并发布变更事件，
+ * 面板订阅事件只刷新受影响的部分，不再整表重读。
+ * 写操作有同步和 *Async 两种：同步版本等待写线程完成，只在后台线程使用；
+ * 界面线程使用 *Async 版本，落库和更新缓存都在写线程上完成，返回的 Future 在缓存更新后完成
+ */
+public class CatalogCache {
+    // 与数据库查询的 ORDER BY created_time DESC 一致，刚添加、还没有创建时间的排在最前
+    private final EntityIndex<Tool> tools = new EntityIndex<>(
+            Tool::getId, Tool::getType, Tool::getStatus, Tool::getCategory,
+            newestFirst(Tool::getCreatedTime, Tool::getId));
+    private final EntityIndex<Script> scripts = new EntityIndex<>(
+            Script::getId, Script::getType, Script::getStatus, Script::getCategory,
+            newestFirst(Script::getCreatedTime, Script::getId));
+    // 网络模板没有类型和状态，分类按网卡名称索引
+    private final EntityIndex<NetworkTemplate> templates = new EntityIndex<>(
+            NetworkTemplate::getId, t -> null, t -> null, NetworkTemplate::getInterfaceName,
+            Comparator.comparing(NetworkTemplate::getName));
+    private final List<Consumer<CatalogEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    private CatalogCache() {
+    }
+
+    private static class Holder {
+        static final CatalogCache INSTANCE = new CatalogCache();
+    }
+
+    public static CatalogCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 订阅变更事件，事件在执行写操作的线程上发布，界面监听器需自行切换到 EDT
+     */
+    public void addListener(Consumer<CatalogEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<CatalogEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 用启动快照填充尚未加载的工具和脚本缓存，界面可以立即显示
+     * 快照可能已过期，之后需要调用 reconcile() 与数据库核对
+     *
+     * @return 快照中的数据是否被采用
+     */
+    public boolean seed(CatalogSnapshot snapshot) {
+        if (snapshot == null || tools.isLoaded() || scripts.isLoaded()) {
+            return false;
+        }
+        tools.loadIfAbsent(snapshot.getTools()::forEach);
+        scripts.loadIfAbsent(snapshot.getScripts()::forEach);
+        return true;
+    }
+
+    /**
+     * 从数据库重新读取工具和脚本，替换快照数据并通知面板刷新
+     */
+    public void reconcile() {
+        reloadTools();
+        reloadScripts();
+    }
+
+    /**
+     * 把当前的工具和脚本目录写成快照，供下次启动使用
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        CatalogSnapshot.write(file, getTools(), getScripts());
+    }
+
+    public boolean isToolsLoaded() {
+        return tools.isLoaded();
+    }
+
+    public boolean isScriptsLoaded() {
+        return scripts.isLoaded();
+    }
+
+    // 工具
+    public List<Tool> getTools() {
+        return loaded(tools, this::forEachTool).all();
+    }
+
+    /**
+     * 工具总数，缓存尚未加载时直接查询数据库计数
+     */
+    public int getToolCount() {
+        return tools.isLoaded() ? tools.size() : db().countTools();
+    }
+
+    public Tool getTool(int id) {
+        return loaded(tools, this::forEachTool).get(id);
+    }
+
+    /**
+     * 按类型、状态、分类过滤工具，参数为 null 表示不限
+     */
+    public List<Tool> findTools(String type, String status, String category) {
+        return loaded(tools, this::forEachTool).find(type, status, category);
+    }
+
+    /**
+     * 关键字走全文索引，结果按相关度排序；无关键字时按索引过滤
+     */
+    public List<Tool> searchTools(String keyword, String type, String status) {
+        if (keyword == null || keyword.isBlank()) {
+            return findTools(type, status, null);
+        }
+        return loaded(tools, this::forEachTool).select(
+                db().searchCatalog(keyword, DatabaseManager.ENTITY_TOOL, 0), type, status);
+    }
+
+    public void addTool(Tool tool) {
+        addTools(List.of(tool));
+    }
+
+    public void addTools(List<Tool> newTools) {
+        db().addTools(newTools);
+        for (Tool tool : newTools) {
+            if (tools.putIfLoaded(tool)) {
+                publish(CatalogEvent.Type.ADDED, DatabaseManager.ENTITY_TOOL, tool.getId(), tool);
+            }
+        }
+    }
+
+    public CompletableFuture<Void> addToolAsync(Tool tool) {
+        return addToolsAsync(List.of(tool));
+    }
+
+    public CompletableFuture<Void> addToolsAsync(List<Tool> newTools) {
+        return db().runAsync(d -> addTools(newTools));
+    }
+
+    public void updateTool(Tool tool) {
+        db().updateTool(tool);
+        if (tools.putIfLoaded(tool)) {
+            publish(CatalogEvent.Type.UPDATED, DatabaseManager.ENTITY_TOOL, tool.getId(), tool);
+        }
+    }
+
+    public CompletableFuture<Void> updateToolAsync(Tool tool) {
+        return db().runAsync(d -> updateTool(tool));
+    }
+
+    public void deleteTool(int id) {
+        db().deleteTool(id);
+        Tool removed = tools.remove(id);
+        if (removed != null) {
+            publish(CatalogEvent.Type.REMOVED, DatabaseManager.ENTITY_TOOL, id, removed);
+        }
+    }
+
+    public CompletableFuture<Void> deleteToolAsync(int id) {
+        return db().runAsync(d -> deleteTool(id));
+    }
+
+    /**
+     * 更新工具状态，数据库写入由异步写队列合并完成
+     *
+     * @param markUsed 是否同时更新最近使用时间
+     */
+    public void updateToolStatus(int id, String status, boolean markUsed) {
+        db().getWriteBehindQueue().updateToolStatus(id, status, markUsed);
+        Tool tool = tools.update(id, t -> {
+            t.setStatus(status);
+            if (markUsed) {
+                t.setLastUsed(System.currentTimeMillis());
+            }
+        });
+        if (tool != null) {
+            publish(CatalogEvent.Type.STATUS_CHANGED, DatabaseManager.ENTITY_TOOL, id, tool);
+        }
+    }
+
+    public void reloadTools() {
+        tools.load(this::forEachTool);
+        publish(CatalogEvent.Type.RELOADED, DatabaseManager.ENTITY_TOOL, 0, null);
+    }
+
+    // 脚本
+    public List<Script> getScripts() {
+        return loaded(scripts, this::forEachScript).all();
+    }
+
+    public Script getScript(int id) {
+        return loaded(scripts, this::forEachScript).get(id);
+    }
+
+    public List<Script> findScripts(String type, String status, String category) {
+        return loaded(scripts, this::forEachScript).find(type, status, category);
+    }
+
+    public List<Script> searchScripts(String keyword, String type) {
+        if (keyword == null || keyword.isBlank()) {
+            return findScripts(type, null, null);
+        }
+        return loaded(scripts, this::forEachScript).select(
+                db().searchCatalog(keyword, DatabaseManager.ENTITY_SCRIPT, 0), type, null);
+    }
+
+    public void addScript(Script script) {
+        addScripts(List.of(script));
+    }
+
+    public void addScripts(List<Script> newScripts) {
+        db().addScripts(newScripts);
+        for (Script script : newScripts) {
+            if (scripts.putIfLoaded(script)) {
+                publish(CatalogEvent.Type.ADDED, DatabaseManager.ENTITY_SCRIPT, script.getId(), script);
+            }
+        }
+    }
+
+    public CompletableFuture<Void> addScriptAsync(Script script) {
+        return addScriptsAsync(List.of(script));
+    }
+
+    public CompletableFuture<Void> addScriptsAsync(List<Script> newScripts) {
+        return db().runAsync(d -> addScripts(newScripts));
+    }
+
+    public void updateScript(Script script) {
+        db().updateScript(script);
+        if (scripts.putIfLoaded(script)) {
+            publish(CatalogEvent.Type.UPDATED, DatabaseManager.ENTITY_SCRIPT, script.getId(), script);
+        }
+    }
+
+    public CompletableFuture<Void> updateScriptAsync(Script script) {
+        return db().runAsync(d -> updateScript(script));
+    }
+
+    public void deleteScript(int id) {
+        db().deleteScript(id);
+        Script removed = scripts.remove(id);
+        if (removed != null) {
+            publish(CatalogEvent.Type.REMOVED, DatabaseManager.ENTITY_SCRIPT, id, removed);
+        }
+    }
+
+    public CompletableFuture<Void> deleteScriptAsync(int id) {
+        return db().runAsync(d -> deleteScript(id));
+    }
+
+    /**
+     * 更新脚本状态，数据库写入由异步写队列合并完成
+     *
+     * @param markRun 是否同时更新最近运行时间
+     */
+    public void updateScriptStatus(int id, String status, boolean markRun) {
+        db().getWriteBehindQueue().updateScriptStatus(id, status, markRun);
+        Script script = scripts.update(id, s -> {
+            s.setStatus(status);
+            if (markRun) {
+                s.setLastRunTime(new Timestamp(System.currentTimeMillis()));
+            }
+        });
+        if (script != null) {
+            publish(CatalogEvent.Type.STATUS_CHANGED, DatabaseManager.ENTITY_SCRIPT, id, script);
+        }
+    }
+
+    public void reloadScripts() {
+        scripts.load(this::forEachScript);
+        publish(CatalogEvent.Type.RELOADED, DatabaseManager.ENTITY_SCRIPT, 0, null);
+    }
+
+    // 网络模板
+    public List<NetworkTemplate> getNetworkTemplates() {
+        return loaded(templates, this::forEachNetworkTemplate).all();
+    }
+
+    public NetworkTemplate getNetworkTemplateByName(String name) {
+        for (NetworkTemplate template : getNetworkTemplates()) {
+            if (template.getName().equals(name)) {
+                return template;
+            }
+        }
+        return null;
+    }
+
+    public void addNetworkTemplate(NetworkTemplate template) {
+        db().addNetworkTemplate(template);
+        if (templates.putIfLoaded(template)) {
+            publish(CatalogEvent.Type.ADDED, DatabaseManager.ENTITY_TEMPLATE, template.getId(), template);
+        }
+    }
+
+    public CompletableFuture<Void> addNetworkTemplateAsync(NetworkTemplate template) {
+        return db().runAsync(d -> addNetworkTemplate(template));
+    }
+
+    public void updateNetworkTemplate(NetworkTemplate template) {
+        db().updateNetworkTemplate(template);
+        if (templates.putIfLoaded(template)) {
+            publish(CatalogEvent.Type.UPDATED, DatabaseManager.ENTITY_TEMPLATE, template.getId(), template);
+        }
+    }
+
+    public CompletableFuture<Void> updateNetworkTemplateAsync(NetworkTemplate template) {
+        return db().runAsync(d -> updateNetworkTemplate(template));
+    }
+
+    public void deleteNetworkTemplate(int id) {
+        db().deleteNetworkTemplate(id);
+        NetworkTemplate removed = templates.remove(id);
+        if (removed != null) {
+            publish(CatalogEvent.Type.REMOVED, DatabaseManager.ENTITY_TEMPLATE, id, removed);
+        }
+    }
+
+    public CompletableFuture<Void> deleteNetworkTemplateAsync(int id) {
+        return db().runAsync(d -> deleteNetworkTemplate(id));
+    }
+
+    public void reloadNetworkTemplates() {
+        templates.load(this::forEachNetworkTemplate);
+        publish(CatalogEvent.Type.RELOADED, DatabaseManager.ENTITY_TEMPLATE, 0, null);
+    }
+
+    // 用快照启动时数据库在后台初始化，第一次真正访问数据库时才取实例
+    private static DatabaseManager db() {
+        return DatabaseManager.getInstance();
+    }
+
+    private void forEachTool(Consumer<Tool> action) {
+        db().forEachTool(action);
+    }
+
+    private void forEachScript(Consumer<Script> action) {
+        db().forEachScript(action);
+    }
+
+    private void forEachNetworkTemplate(Consumer<NetworkTemplate> action) {
+        db().getAllNetworkTemplates().forEach(action);
+    }
+
+    // 数据源逐行回调实体，加载时不需要先构造完整列表
+    private static <T> EntityIndex<T> loaded(EntityIndex<T> index, Consumer<Consumer<T>> source) {
+        if (!index.isLoaded()) {
+            index.loadIfAbsent(source);
+        }
+        return index;
+    }
+
+    private void publish(CatalogEvent.Type type, String entityType, int id, Object entity) {
+        CatalogEvent event = new CatalogEvent(type, entityType, id, entity);
+        for (Consumer<CatalogEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                System.err.println("目录变更监听器异常: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 单类实体的索引：按ID保存实体，并按类型、状态、分类维护ID集合
+     */
+    // 按创建时间从新到旧，时间相同时 ID 大的在前
+    private static <T> Comparator<T> newestFirst(Function<T, Timestamp> createdTimeOf, ToIntFunction<T> idOf) {
+        return Comparator.comparing(createdTimeOf, Comparator.nullsLast(Comparator.<Timestamp>naturalOrder()))
+                .thenComparingInt(idOf)
+                .reversed();
+    }
+
+    private static class EntityIndex<T> {
+        private final Function<T, Integer> idOf;
+        private final List<Function<T, String>> keyFunctions;
+        private final Comparator<T> order;
+
+        private final Map<Integer, T> byId = new HashMap<>();
+        // 每个维度：键 -> ID 集合
+        private final List<Map<String, Set<Integer>>> indexes = new ArrayList<>();
+        // 实体可能被原地修改，记录建立索引时的键以便准确移除
+        private final Map<Integer, String[]> indexedKeys = new HashMap<>();
+        private volatile boolean loaded = false;
+
+        EntityIndex(Function<T, Integer> idOf, Function<T, String> typeOf, Function<T, String> statusOf,
+                    Function<T, String> categoryOf, Comparator<T> order) {
+            this.idOf = idOf;
+            this.keyFunctions = List.of(typeOf, statusOf, categoryOf);
+            this.order = order;
+            for (int i = 0; i < keyFunctions.size(); i++) {
+                indexes.add(new HashMap<>());
+            }
+        }
+
+        boolean isLoaded() {
+            return loaded;
+        }
+
+        synchronized void loadIfAbsent(Consumer<Consumer<T>> source) {
+            if (!loaded) {
+                load(source);
+            }
+        }
+
+        synchronized void load(Consumer<Consumer<T>> source) {
+            byId.clear();
+            indexedKeys.clear();
+            indexes.forEach(Map::clear);
+            source.accept(this::put);
+            loaded = true;
+        }
+
+        // 未加载时不缓存单条数据，首次访问时会整表读取
+        synchronized boolean putIfLoaded(T entity) {
+            if (!loaded) {
+                return false;
+            }
+            put(entity);
+            return true;
+        }
+
+        synchronized T update(int id, Consumer<T> change) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                change.accept(entity);
+                put(entity);
+            }
+            return entity;
+        }
+
+        synchronized T remove(int id) {
+            unindex(id);
+            return byId.remove(id);
+        }
+
+        synchronized int size() {
+            return byId.size();
+        }
+
+        synchronized T get(int id) {
+            return byId.get(id);
+        }
+
+        synchronized List<T> all() {
+            List<T> result = new ArrayList<>(byId.values());
+            result.sort(order);
+            return result;
+        }
+
+        synchronized List<T> find(String... keys) {
+            // 从第一个有条件的维度取候选集，再用其他维度筛选
+            Set<Integer> candidates = null;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    candidates = indexes.get(i).getOrDefault(keys[i], Set.of());
+                    break;
+                }
+            }
+            if (candidates == null) {
+                return all();
+            }
+
+            List<T> result = new ArrayList<>();
+            for (Integer id : candidates) {
+                if (matches(id, keys)) {
+                    result.add(byId.get(id));
+                }
+            }
+            result.sort(order);
+            return result;
+        }
+
+        // 按检索结果的顺序取出实体，并按类型、状态筛选
+        synchronized List<T> select(List<SearchHit> hits, String type, String status) {
+            String[] keys = {type, status, null};
+            List<T> result = new ArrayList<>();
+            for (SearchHit hit : hits) {
+                T entity = byId.get(hit.getId());
+                if (entity != null && matches(hit.getId(), keys)) {
+                    result.add(entity);
+                }
+            }
+            return result;
+        }
+
+        private boolean matches(int id, String[] keys) {
+            String[] entityKeys = indexedKeys.get(id);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && !keys[i].equals(entityKeys[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void put(T entity) {
+            int id = idOf.apply(entity);
+            unindex(id);
+            byId.put(id, entity);
+
+            String[] keys = new String[keyFunctions.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = keyFunctions.get(i).apply(entity);
+                if (keys[i] != null) {
+                    indexes.get(i).computeIfAbsent(keys[i], k -> new HashSet<>()).add(id);
+                }
+            }
+            indexedKeys.put(id, keys);
+        }
+
+        private void unindex(int id) {
+            String[] keys = indexedKeys.remove(id);
+            if (keys == null) {
+                return;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == null) {
+                    continue;
+                }
+                Set<Integer> ids = indexes.get(i).get(keys[i]);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        indexes.get(i).remove(keys[i]);
+                    }
+                }
+            }
+        }
+    }
+}
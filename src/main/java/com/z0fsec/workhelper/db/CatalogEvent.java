@@ -0,0 +1,50 @@
+package com.z0fsec.workhelper.db;
+
+/**
+ * 目录缓存变更事件
+ */
+public class CatalogEvent {
+    public enum Type {
+        ADDED,          // 新增实体
+        UPDATED,        // 实体内容修改
+        STATUS_CHANGED, // 仅状态/最近使用时间变化
+        REMOVED,        // 删除实体
+        RELOADED        // 整表重新加载
+    }
+
+    private final Type type;
+    private final String entityType;
+    private final int id;
+    private final Object entity;
+
+    public CatalogEvent(Type type, String entityType, int id, Object entity) {
+        this.type = type;
+        this.entityType = entityType;
+        this.id = id;
+        this.entity = entity;
+    }
+
+    public Type getType() { return type; }
+
+    // DatabaseManager.ENTITY_TOOL / ENTITY_SCRIPT / ENTITY_TEMPLATE
+    public String getEntityType() { return entityType; }
+
+    // RELOADED 事件为 0
+    public int getId() { return id; }
+
+    // 变更后的实体，REMOVED 时为删除前的实体，RELOADED 时为 null
+    public Object getEntity() { return entity; }
+
+    public boolean isFor(String entityType) {
+        return this.entityType.equals(entityType);
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogEvent{" +
+                "type=" + type +
+                ", entityType='" + entityType + '\'' +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -0,0 +1,196 @@
+package com.z0fsec.workhelper.db;
+
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.Tool;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 工具和脚本目录的二进制快照
+ * 退出时写入，下次启动时内存映射读取，界面先按快照显示，再在后台与数据库核对。
+ * 快照只是加速用的副本，文件缺失、损坏或版本不符时直接忽略
+ */
+public class CatalogSnapshot {
+    public static final Path DEFAULT_FILE = Paths.get("catalog.snapshot");
+
+    private static final int MAGIC = 0x57484353; // "WHCS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+
+    private final long writtenAt;
+    private final List<Tool> tools;
+    private final List<Script> scripts;
+
+    private CatalogSnapshot(long writtenAt, List<Tool> tools, List<Script> scripts) {
+        this.writtenAt = writtenAt;
+        this.tools = tools;
+        this.scripts = scripts;
+    }
+
+    public long getWrittenAt() {
+        return writtenAt;
+    }
+
+    public List<Tool> getTools() {
+        return tools;
+    }
+
+    public List<Script> getScripts() {
+        return scripts;
+    }
+
+    /**
+     * 写入快照，先写临时文件再替换，中途退出不会留下半个快照
+     * 脚本内容不写入快照
+     */
+    public static void write(Path file, Collection<Tool> tools, Collection<Script> scripts) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+
+            out.writeInt(tools.size());
+            for (Tool tool : tools) {
+                out.writeInt(tool.getId());
+                writeString(out, tool.getName());
+                writeString(out, tool.getType());
+                writeString(out, tool.getPath());
+                writeString(out, tool.getVersion());
+                writeString(out, tool.getStatus());
+                writeString(out, tool.getDescription());
+                writeString(out, tool.getCategory());
+                out.writeLong(tool.getLastUsed());
+                writeTime(out, tool.getCreatedTime());
+                writeTime(out, tool.getUpdatedTime());
+            }
+
+            out.writeInt(scripts.size());
+            for (Script script : scripts) {
+                out.writeInt(script.getId());
+                writeString(out, script.getName());
+                writeString(out, script.getType());
+                writeString(out, script.getPath());
+                writeString(out, script.getDescription());
+                writeString(out, script.getCategory());
+                writeString(out, script.getInterpreter());
+                writeString(out, script.getParameters());
+                writeString(out, script.getStatus());
+                writeTime(out, script.getCreatedTime());
+                writeTime(out, script.getUpdatedTime());
+                writeTime(out, script.getLastRunTime());
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 内存映射读取快照
+     *
+     * @return 文件不存在或无法解析时返回 null
+     */
+    public static CatalogSnapshot read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long writtenAt = buffer.getLong();
+
+            int toolCount = buffer.getInt();
+            List<Tool> tools = new ArrayList<>(toolCount);
+            for (int i = 0; i < toolCount; i++) {
+                Tool tool = new Tool();
+                tool.setId(buffer.getInt());
+                tool.setName(readString(buffer));
+                tool.setType(readString(buffer));
+                tool.setPath(readString(buffer));
+                tool.setVersion(readString(buffer));
+                tool.setStatus(readString(buffer));
+                tool.setDescription(readString(buffer));
+                tool.setCategory(readString(buffer));
+                tool.setLastUsed(buffer.getLong());
+                tool.setCreatedTime(readTime(buffer));
+                tool.setUpdatedTime(readTime(buffer));
+                tools.add(tool);
+            }
+
+            int scriptCount = buffer.getInt();
+            List<Script> scripts = new ArrayList<>(scriptCount);
+            for (int i = 0; i < scriptCount; i++) {
+                Script script = new Script();
+                script.setId(buffer.getInt());
+                script.setName(readString(buffer));
+                script.setType(readString(buffer));
+                script.setPath(readString(buffer));
+                script.setDescription(readString(buffer));
+                script.setCategory(readString(buffer));
+                script.setInterpreter(readString(buffer));
+                script.setParameters(readString(buffer));
+                script.setStatus(readString(buffer));
+                script.setCreatedTime(readTime(buffer));
+                script.setUpdatedTime(readTime(buffer));
+                script.setLastRunTime(readTime(buffer));
+                scripts.add(script);
+            }
+            return new CatalogSnapshot(writtenAt, tools, scripts);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("读取目录快照失败，忽略快照: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("字符串长度无效: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, Timestamp time) throws IOException {
+        out.writeLong(time != null ? time.getTime() : 0);
+    }
+
+    private static Timestamp readTime(ByteBuffer buffer) {
+        long millis = buffer.getLong();
+        return millis != 0 ? new Timestamp(millis) : null;
+    }
+}
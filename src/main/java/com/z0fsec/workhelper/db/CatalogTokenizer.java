@@ -0,0 +1,137 @@
+package com.z0fsec.workhelper.db;
+
+import org.sqlite.Function;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 全文索引分词
+ * 英文/数字按单词切分；中日韩文字按重叠二元组切分并补一个末字单字，
+ * 这样任意长度的中文子串都能通过短语或前缀查询命中
+ */
+public class CatalogTokenizer {
+    // 注册到 SQLite 的函数名，全文索引触发器通过它生成索引文本
+    public static final String SQL_FUNCTION = "fts_tokens";
+
+    /**
+     * 在连接上注册分词函数，写入 tools/scripts/network_templates 的连接都必须注册
+     */
+    public static void register(Connection connection) throws SQLException {
+        Function.create(connection, SQL_FUNCTION, new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(toIndexText(value_text(0)));
+            }
+        }, 1, Function.FLAG_DETERMINISTIC);
+    }
+
+    /**
+     * 生成写入索引的文本，分词结果以空格分隔
+     */
+    public static String toIndexText(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String run : splitRuns(text.toLowerCase())) {
+            if (isCjk(run.codePointAt(0))) {
+                appendCjkTokens(sb, run);
+            } else {
+                append(sb, run);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将用户输入转换为 FTS5 MATCH 表达式，各词之间为 AND 关系
+     *
+     * @return 没有可检索的词时返回 null
+     */
+    public static String toMatchQuery(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return null;
+        }
+
+        List<String> terms = new ArrayList<>();
+        for (String run : splitRuns(keyword.toLowerCase())) {
+            int length = run.codePointCount(0, run.length());
+            if (isCjk(run.codePointAt(0)) && length > 1) {
+                // 连续二元组组成短语，等价于子串匹配
+                StringBuilder phrase = new StringBuilder();
+                appendBigrams(phrase, run);
+                terms.add("\"" + phrase + "\"");
+            } else {
+                // 英文单词或单个汉字按前缀匹配
+                terms.add("\"" + run + "\"*");
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" AND ", terms);
+    }
+
+    // 按字符类别切分为连续的中日韩文字段或字母数字段，其余字符视为分隔符
+    private static List<String> splitRuns(String text) {
+        List<String> runs = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean currentCjk = false;
+
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (!Character.isLetterOrDigit(cp)) {
+                flush(runs, current);
+                continue;
+            }
+
+            boolean cjk = isCjk(cp);
+            if (current.length() > 0 && cjk != currentCjk) {
+                flush(runs, current);
+            }
+            currentCjk = cjk;
+            current.appendCodePoint(cp);
+        }
+        flush(runs, current);
+        return runs;
+    }
+
+    private static void appendCjkTokens(StringBuilder sb, String run) {
+        appendBigrams(sb, run);
+        // 补充末字，保证每个字都是某个词的开头，单字前缀查询才能命中
+        int lastStart = run.offsetByCodePoints(run.length(), -1);
+        append(sb, run.substring(lastStart));
+    }
+
+    private static void appendBigrams(StringBuilder sb, String run) {
+        int[] cps = run.codePoints().toArray();
+        for (int i = 0; i + 1 < cps.length; i++) {
+            append(sb, new String(cps, i, 2));
+        }
+    }
+
+    private static void append(StringBuilder sb, String token) {
+        if (sb.length() > 0) {
+            sb.append(' ');
+        }
+        sb.append(token);
+    }
+
+    private static void flush(List<String> runs, StringBuilder current) {
+        if (current.length() > 0) {
+            runs.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,526 @@
+package com.z0fsec.workhelper.db;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.z0fsec.workhelper.model.NetworkTemplate;
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.Tool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 工具、脚本、网络模板和设置的 JSON 导出/导入
+ * 使用 JsonWriter/JsonReader 逐条读写，实体通过注册的 TypeAdapter 转换，不走反射；
+ * 导出时逐行遍历数据库，导入时按批次在事务中写入，内存占用与条目数无关。
+ * 导入保留条目的时间和状态，名称和路径相同的工具、脚本以及同名网络模板视为已存在并跳过
+ */
+public class CatalogTransfer {
+    public static final String FORMAT = "workhelper-catalog";
+    public static final int FORMAT_VERSION = 1;
+
+    // 导入时每批写入的条目数，每批一个事务
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    private static final String FIELD_FORMAT = "format";
+    private static final String FIELD_VERSION = "version";
+    private static final String FIELD_EXPORTED_AT = "exportedAt";
+    private static final String FIELD_SETTINGS = "settings";
+    private static final String FIELD_TOOLS = "tools";
+    private static final String FIELD_SCRIPTS = "scripts";
+    private static final String FIELD_TEMPLATES = "networkTemplates";
+
+    /**
+     * 可导出的内容
+     */
+    public enum Section {
+        TOOLS, SCRIPTS, SCRIPT_CONTENT, NETWORK_TEMPLATES, SETTINGS;
+
+        public static EnumSet<Section> all() {
+            return EnumSet.allOf(Section.class);
+        }
+    }
+
+    /**
+     * 各部分导出或导入的条目数
+     */
+    public record Summary(int tools, int scripts, int networkTemplates, int settings, int skipped) {
+        @Override
+        public String toString() {
+            return String.format("工具 %d 个，脚本 %d 个，网络模板 %d 个，设置 %d 项%s",
+                    tools, scripts, networkTemplates, settings, skipped > 0 ? "，跳过 " + skipped + " 项" : "");
+        }
+    }
+
+    // 一个数组导入了多少条、因已存在跳过了多少条
+    private record Imported(int count, int skipped) {
+    }
+
+    private final DatabaseManager dbManager;
+    private final Gson gson;
+
+    public CatalogTransfer() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.gson = new GsonBuilder()
+                .disableHtmlEscaping()
+                .registerTypeAdapter(Tool.class, new ToolAdapter())
+                .registerTypeAdapter(Script.class, new ScriptAdapter())
+                .registerTypeAdapter(NetworkTemplate.class, new NetworkTemplateAdapter())
+                .create();
+    }
+
+    /**
+     * 导出到文件，先写临时文件，完成后替换目标文件
+     */
+    public Summary exportTo(Path file, Set<Section> sections) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Summary summary;
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+             JsonWriter writer = gson.newJsonWriter(out)) {
+            writer.setIndent("  ");
+            summary = export(writer, sections);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        return summary;
+    }
+
+    /**
+     * 在数据库读线程上导出，界面线程使用；IO 错误包装为 UncheckedIOException，消息与原异常相同
+     */
+    public CompletableFuture<Summary> exportAsync(Path file, Set<Section> sections) {
+        return dbManager.readAsync(db -> {
+            try {
+                return exportTo(file, sections);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 在数据库写线程上导入，完成后刷新导入部分的目录缓存，各面板通过目录事件更新；界面线程使用
+     */
+    public CompletableFuture<Summary> importAsync(Path file, Set<Section> sections) {
+        return dbManager.writeAsync(db -> {
+            Summary summary;
+            try {
+                summary = importFrom(file, sections);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+            CatalogCache catalog = CatalogCache.getInstance();
+            if (sections.contains(Section.TOOLS)) {
+                catalog.reloadTools();
+            }
+            if (sections.contains(Section.SCRIPTS)) {
+                catalog.reloadScripts();
+            }
+            if (sections.contains(Section.NETWORK_TEMPLATES)) {
+                catalog.reloadNetworkTemplates();
+            }
+            return summary;
+        });
+    }
+
+    /**
+     * 从文件导入全部内容，已有的工具、脚本和网络模板保留不变
+     */
+    public Summary importFrom(Path file) throws IOException {
+        return importFrom(file, Section.all());
+    }
+
+    /**
+     * 只导入指定的部分，其余部分跳过
+     */
+    public Summary importFrom(Path file, Set<Section> sections) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader reader = gson.newJsonReader(in)) {
+            return importFrom(reader, sections);
+        }
+    }
+
+    private Summary export(JsonWriter writer, Set<Section> sections) throws IOException {
+        int[] counts = new int[4];
+
+        writer.beginObject();
+        writer.name(FIELD_FORMAT).value(FORMAT);
+        writer.name(FIELD_VERSION).value(FORMAT_VERSION);
+        writer.name(FIELD_EXPORTED_AT).value(System.currentTimeMillis());
+
+        if (sections.contains(Section.SETTINGS)) {
+            writer.name(FIELD_SETTINGS).beginObject();
+            for (Map.Entry<String, String> entry : dbManager.getAllSettings().entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+                counts[3]++;
+            }
+            writer.endObject();
+        }
+
+        if (sections.contains(Section.TOOLS)) {
+            TypeAdapter<Tool> adapter = gson.getAdapter(Tool.class);
+            writer.name(FIELD_TOOLS).beginArray();
+            dbManager.forEachTool(unchecked(tool -> {
+                adapter.write(writer, tool);
+                counts[0]++;
+            }));
+            writer.endArray();
+        }
+
+        if (sections.contains(Section.SCRIPTS)) {
+            TypeAdapter<Script> adapter = gson.getAdapter(Script.class);
+            boolean withContent = sections.contains(Section.SCRIPT_CONTENT);
+            writer.name(FIELD_SCRIPTS).beginArray();
+            dbManager.forEachScript(unchecked(script -> {
+                if (withContent) {
+                    script.setContent(readContent(script.getId()));
+                }
+                adapter.write(writer, script);
+                counts[1]++;
+            }));
+            writer.endArray();
+        }
+
+        if (sections.contains(Section.NETWORK_TEMPLATES)) {
+            TypeAdapter<NetworkTemplate> adapter = gson.getAdapter(NetworkTemplate.class);
+            writer.name(FIELD_TEMPLATES).beginArray();
+            dbManager.forEachNetworkTemplate(unchecked(template -> {
+                adapter.write(writer, template);
+                counts[2]++;
+            }));
+            writer.endArray();
+        }
+
+        writer.endObject();
+        return new Summary(counts[0], counts[1], counts[2], counts[3], 0);
+    }
+
+    private Summary importFrom(JsonReader reader, Set<Section> sections) throws IOException {
+        int tools = 0;
+        int scripts = 0;
+        int templates = 0;
+        int settings = 0;
+        int skipped = 0;
+        boolean formatChecked = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            // 导出时 format 写在最前面，在写入任何数据之前确认文件格式
+            if (!formatChecked && !FIELD_FORMAT.equals(name)) {
+                throw new IOException("导入文件缺少 " + FIELD_FORMAT + " 字段，不是 WorkHelper 导出的文件");
+            }
+            if (!isSelected(name, sections)) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case FIELD_FORMAT -> {
+                    String format = reader.nextString();
+                    if (!FORMAT.equals(format)) {
+                        throw new IOException("不支持的导入文件格式: " + format);
+                    }
+                    formatChecked = true;
+                }
+                case FIELD_VERSION -> {
+                    int version = reader.nextInt();
+                    if (version > FORMAT_VERSION) {
+                        throw new IOException("导入文件版本过高: " + version);
+                    }
+                }
+                case FIELD_SETTINGS -> settings = importSettings(reader);
+                case FIELD_TOOLS -> {
+                    Imported imported = importArray(reader, gson.getAdapter(Tool.class), dbManager::importTools);
+                    tools = imported.count();
+                    skipped += imported.skipped();
+                }
+                case FIELD_SCRIPTS -> {
+                    boolean withContent = sections.contains(Section.SCRIPT_CONTENT);
+                    Imported imported = importArray(reader, gson.getAdapter(Script.class), batch -> {
+                        if (!withContent) {
+                            batch.forEach(script -> script.setContent(null));
+                        }
+                        return dbManager.importScripts(batch);
+                    });
+                    scripts = imported.count();
+                    skipped += imported.skipped();
+                }
+                case FIELD_TEMPLATES -> {
+                    Imported imported = importArray(reader, gson.getAdapter(NetworkTemplate.class),
+                            dbManager::importNetworkTemplates);
+                    templates = imported.count();
+                    skipped += imported.skipped();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (!formatChecked) {
+            throw new IOException("导入文件缺少 " + FIELD_FORMAT + " 字段，不是 WorkHelper 导出的文件");
+        }
+        return new Summary(tools, scripts, templates, settings, skipped);
+    }
+
+    private static boolean isSelected(String field, Set<Section> sections) {
+        return switch (field) {
+            case FIELD_SETTINGS -> sections.contains(Section.SETTINGS);
+            case FIELD_TOOLS -> sections.contains(Section.TOOLS);
+            case FIELD_SCRIPTS -> sections.contains(Section.SCRIPTS);
+            case FIELD_TEMPLATES -> sections.contains(Section.NETWORK_TEMPLATES);
+            default -> true;
+        };
+    }
+
+    // 设置通过 SettingsStore 提交，已打开的界面会收到变更通知
+    private int importSettings(JsonReader reader) throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            values.put(reader.nextName(), nextStringOrNull(reader));
+        }
+        reader.endObject();
+
+        SettingsStore.Editor editor = SettingsStore.getInstance().edit();
+        values.forEach(editor::put);
+        editor.commit();
+        return values.size();
+    }
+
+    // sink 写入一批并返回实际写入的条数
+    private static <T> Imported importArray(JsonReader reader, TypeAdapter<T> adapter,
+                                            ToIntFunction<List<T>> sink) throws IOException {
+        int read = 0;
+        int count = 0;
+        List<T> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            batch.add(adapter.read(reader));
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                count += sink.applyAsInt(batch);
+                read += batch.size();
+                batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            }
+        }
+        reader.endArray();
+        if (!batch.isEmpty()) {
+            count += sink.applyAsInt(batch);
+            read += batch.size();
+        }
+        return new Imported(count, read - count);
+    }
+
+    // 直接从 BlobStore 读取，不占用脚本内容缓存
+    private String readContent(int scriptId) {
+        try (InputStream in = dbManager.openScriptContent(scriptId)) {
+            return in != null ? new String(in.readAllBytes(), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+
+    // 数据库遍历的回调不能抛出受检异常，写入错误包装后在外层还原
+    private static <T> Consumer<T> unchecked(IOConsumer<T> action) {
+        return value -> {
+            try {
+                action.accept(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static long nextLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextLong();
+    }
+
+    private static Timestamp nextTimestamp(JsonReader reader) throws IOException {
+        long millis = nextLong(reader);
+        return millis > 0 ? new Timestamp(millis) : null;
+    }
+
+    private static void writeTimestamp(JsonWriter writer, String name, Timestamp time) throws IOException {
+        if (time != null) {
+            writer.name(name).value(time.getTime());
+        }
+    }
+
+    /**
+     * 工具的 JSON 表示，时间为毫秒时间戳，导入时不读取 id
+     */
+    static class ToolAdapter extends TypeAdapter<Tool> {
+        @Override
+        public void write(JsonWriter out, Tool tool) throws IOException {
+            out.beginObject();
+            out.name("id").value(tool.getId());
+            out.name("name").value(tool.getName());
+            out.name("type").value(tool.getType());
+            out.name("path").value(tool.getPath());
+            out.name("version").value(tool.getVersion());
+            out.name("status").value(tool.getStatus());
+            out.name("description").value(tool.getDescription());
+            out.name("category").value(tool.getCategory());
+            out.name("lastUsed").value(tool.getLastUsed());
+            writeTimestamp(out, "createdTime", tool.getCreatedTime());
+            writeTimestamp(out, "updatedTime", tool.getUpdatedTime());
+            out.endObject();
+        }
+
+        @Override
+        public Tool read(JsonReader in) throws IOException {
+            Tool tool = new Tool();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> tool.setName(nextStringOrNull(in));
+                    case "type" -> tool.setType(nextStringOrNull(in));
+                    case "path" -> tool.setPath(nextStringOrNull(in));
+                    case "version" -> tool.setVersion(nextStringOrNull(in));
+                    case "status" -> tool.setStatus(nextStringOrNull(in));
+                    case "description" -> tool.setDescription(nextStringOrNull(in));
+                    case "category" -> tool.setCategory(nextStringOrNull(in));
+                    case "lastUsed" -> tool.setLastUsed(nextLong(in));
+                    case "createdTime" -> tool.setCreatedTime(nextTimestamp(in));
+                    case "updatedTime" -> tool.setUpdatedTime(nextTimestamp(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return tool;
+        }
+    }
+
+    /**
+     * 脚本的 JSON 表示，content 只在导出时选择了脚本内容才会写入
+     */
+    static class ScriptAdapter extends TypeAdapter<Script> {
+        @Override
+        public void write(JsonWriter out, Script script) throws IOException {
+            out.beginObject();
+            out.name("id").value(script.getId());
+            out.name("name").value(script.getName());
+            out.name("type").value(script.getType());
+            out.name("path").value(script.getPath());
+            out.name("description").value(script.getDescription());
+            out.name("category").value(script.getCategory());
+            out.name("interpreter").value(script.getInterpreter());
+            out.name("parameters").value(script.getParameters());
+            out.name("status").value(script.getStatus());
+            writeTimestamp(out, "createdTime", script.getCreatedTime());
+            writeTimestamp(out, "updatedTime", script.getUpdatedTime());
+            writeTimestamp(out, "lastRunTime", script.getLastRunTime());
+            if (script.getContent() != null) {
+                out.name("content").value(script.getContent());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Script read(JsonReader in) throws IOException {
+            Script script = new Script();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> script.setName(nextStringOrNull(in));
+                    case "type" -> script.setType(nextStringOrNull(in));
+                    case "path" -> script.setPath(nextStringOrNull(in));
+                    case "description" -> script.setDescription(nextStringOrNull(in));
+                    case "category" -> script.setCategory(nextStringOrNull(in));
+                    case "interpreter" -> script.setInterpreter(nextStringOrNull(in));
+                    case "parameters" -> script.setParameters(nextStringOrNull(in));
+                    case "status" -> script.setStatus(nextStringOrNull(in));
+                    case "content" -> script.setContent(nextStringOrNull(in));
+                    case "createdTime" -> script.setCreatedTime(nextTimestamp(in));
+                    case "updatedTime" -> script.setUpdatedTime(nextTimestamp(in));
+                    case "lastRunTime" -> script.setLastRunTime(nextTimestamp(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return script;
+        }
+    }
+
+    static class NetworkTemplateAdapter extends TypeAdapter<NetworkTemplate> {
+        @Override
+        public void write(JsonWriter out, NetworkTemplate template) throws IOException {
+            out.beginObject();
+            out.name("id").value(template.getId());
+            out.name("name").value(template.getName());
+            out.name("interfaceName").value(template.getInterfaceName());
+            out.name("ipAddress").value(template.getIpAddress());
+            out.name("subnetMask").value(template.getSubnetMask());
+            out.name("gateway").value(template.getGateway());
+            out.name("dns1").value(template.getDns1());
+            out.name("dns2").value(template.getDns2());
+            out.name("description").value(template.getDescription());
+            writeTimestamp(out, "createdTime", template.getCreatedTime());
+            writeTimestamp(out, "updatedTime", template.getUpdatedTime());
+            out.endObject();
+        }
+
+        @Override
+        public NetworkTemplate read(JsonReader in) throws IOException {
+            NetworkTemplate template = new NetworkTemplate();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name" -> template.setName(nextStringOrNull(in));
+                    case "interfaceName" -> template.setInterfaceName(nextStringOrNull(in));
+                    case "ipAddress" -> template.setIpAddress(nextStringOrNull(in));
+                    case "subnetMask" -> template.setSubnetMask(nextStringOrNull(in));
+                    case "gateway" -> template.setGateway(nextStringOrNull(in));
+                    case "dns1" -> template.setDns1(nextStringOrNull(in));
+                    case "dns2" -> template.setDns2(nextStringOrNull(in));
+                    case "description" -> template.setDescription(nextStringOrNull(in));
+                    case "createdTime" -> template.setCreatedTime(nextTimestamp(in));
+                    case "updatedTime" -> template.setUpdatedTime(nextTimestamp(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return template;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.z0fsec.workhelper.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SQLite 连接池
+ * 连接常开并统一设置 WAL 等 PRAGMA；同一线程内嵌套获取时复用同一连接，便于组合事务
+ */
+public class ConnectionPool {
+    private static final int ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    // 每个新连接执行的 PRAGMA
+    private static final String[] CONNECTION_PRAGMAS = {
+            "PRAGMA journal_mode = WAL",
+            "PRAGMA synchronous = NORMAL",
+            "PRAGMA temp_store = MEMORY",
+            "PRAGMA cache_size = -8000",
+            "PRAGMA mmap_size = 268435456",
+            "PRAGMA busy_timeout = 5000"
+    };
+
+    private final String url;
+    private final int maxSize;
+    private final DbMetrics metrics;
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final ThreadLocal<PooledConnection> current = new ThreadLocal<>();
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, int maxSize, DbMetrics metrics) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 获取连接，使用完毕后通过 close() 归还
+     *
+     * @param operation 操作名称，用于耗时统计
+     */
+    public PooledConnection acquire(String operation) throws SQLException {
+        if (closed) {
+            throw new SQLException("数据库连接池已关闭");
+        }
+
+        // 当前线程已持有连接时直接复用
+        PooledConnection conn = current.get();
+        if (conn == null) {
+            conn = idle.poll();
+            if (conn == null) {
+                conn = tryCreate();
+            }
+            if (conn == null) {
+                try {
+                    conn = idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("等待数据库连接被中断", e);
+                }
+                if (conn == null) {
+                    throw new SQLException("获取数据库连接超时: " + operation);
+                }
+            }
+            current.set(conn);
+        }
+
+        conn.begin(operation);
+        return conn;
+    }
+
+    void release(PooledConnection conn, String operation, long elapsedNanos) {
+        metrics.record(operation, elapsedNanos);
+
+        if (conn.depth() > 0) {
+            return; // 仍处于外层操作中
+        }
+        current.remove();
+
+        if (closed || conn.isBroken()) {
+            discard(conn);
+            return;
+        }
+
+        try {
+            // 归还前保证没有遗留事务
+            Connection raw = conn.getConnection();
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            conn.markBroken();
+            discard(conn);
+            return;
+        }
+        idle.offer(conn);
+    }
+
+    private PooledConnection tryCreate() throws SQLException {
+        while (true) {
+            int count = created.get();
+            if (count >= maxSize) {
+                return null;
+            }
+            if (created.compareAndSet(count, count + 1)) {
+                break;
+            }
+        }
+
+        try {
+            return new PooledConnection(this, openConnection());
+        } catch (SQLException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            for (String pragma : CONNECTION_PRAGMAS) {
+                stmt.execute(pragma);
+            }
+        }
+        // 全文索引触发器依赖的分词函数
+        CatalogTokenizer.register(connection);
+        return connection;
+    }
+
+    private void discard(PooledConnection conn) {
+        created.decrementAndGet();
+        conn.closePhysical();
+    }
+
+    public int getOpenConnectionCount() {
+        return created.get();
+    }
+
+    /**
+     * 关闭连接池，空闲连接立即关闭，使用中的连接归还时关闭
+     */
+    public void close() {
+        closed = true;
+        PooledConnection conn;
+        while ((conn = idle.poll()) != null) {
+            discard(conn);
+        }
+    }
+}
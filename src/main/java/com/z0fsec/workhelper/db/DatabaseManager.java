@@ -1,16 +1,82 @@
 package com.z0fsec.workhelper.db;
 
 import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.SearchHit;
 import com.z0fsec.workhelper.model.Tool;
+import com.z0fsec.workhelper.model.JobFire;
 import com.z0fsec.workhelper.model.NetworkTemplate;
-
+import com.z0fsec.workhelper.model.RunLimits;
+import com.z0fsec.workhelper.model.RunRecord;
+import com.z0fsec.workhelper.model.RunStats;
+import com.z0fsec.workhelper.model.ScheduledJob;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class DatabaseManager {
     private static final String DB_URL = "jdbc:sqlite:workhelper.db";
-    private static DatabaseManager instance;
+    // 读线程数，连接池额外为写线程和调用方线程上的同步读取预留连接
+    private static final int READER_THREADS = 3;
+    private static final int POOL_SIZE = READER_THREADS + 3;
+    private static final long SHUTDOWN_FLUSH_SECONDS = 5;
+    private static final int SCRIPT_CONTENT_CACHE_SIZE = 16;
+    private static final String BLOB_DIR = "blobs";
+    // 内容写入 BlobStore 之后才在事务中保存哈希，清理时跳过这段时间内写入的内容
+    private static final long BLOB_SWEEP_GRACE_MILLIS = 10 * 60 * 1000;
+    // 运行历史保留明细的天数，更早的记录汇总到 run_daily 后删除
+    private static final int RUN_RETENTION_DAYS = 30;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int JOB_FIRES_KEPT = 200;
+
+    // 时间列保存毫秒时间戳，写入时使用的当前时间表达式
+    static final String NOW_MILLIS = "CAST(unixepoch('subsec') * 1000 AS INTEGER)";
+
+    // 脚本列表查询的列，不包含 content，脚本内容通过 getScriptContent 按需读取
+    private static final String SCRIPT_LIST_COLUMNS = "id, name, type, path, description, category, interpreter, " +
+            "parameters, status, created_time, updated_time, last_run_time";
+
+    // 全文索引 rowid = 实体ID * FTS_ROWID_STRIDE + 实体类型编码
+    private static final int FTS_ROWID_STRIDE = 4;
+    private static final int FTS_TOOL = 1;
+    private static final int FTS_SCRIPT = 2;
+    private static final int FTS_TEMPLATE = 3;
+
+    public static final String ENTITY_TOOL = "tool";
+    public static final String ENTITY_SCRIPT = "script";
+    public static final String ENTITY_TEMPLATE = "template";
+
+    private final DbMetrics metrics;
+    private final ConnectionPool pool;
+    private final DbExecutor executor;
+    private final WriteBehindQueue writeBehind;
+    private final RunHistoryWriter runHistory;
+    private final BlobStore blobStore;
+    // 最近读取的脚本内容，按访问顺序淘汰
+    private final Map<Integer, String> scriptContentCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                    return size() > SCRIPT_CONTENT_CACHE_SIZE;
+                }
+            });
 
     static {
         try {
@@ -21,193 +87,359 @@ public class DatabaseManager {
     }
 
     private DatabaseManager() {
-        initializeDatabase();
+        metrics = new DbMetrics();
+        pool = new ConnectionPool(DB_URL, POOL_SIZE, metrics);
+        executor = new DbExecutor(READER_THREADS);
+        writeBehind = new WriteBehindQueue(pool, executor);
+        runHistory = new RunHistoryWriter(pool, executor);
+        blobStore = new BlobStore(Paths.get(BLOB_DIR));
+        executor.writeAndWait(this::initializeDatabase);
+        // 汇总过期的运行明细，不阻塞启动
+        executor.write(() -> rollupRuns(RUN_RETENTION_DAYS)).exceptionally(e -> {
+            System.err.println("汇总运行历史失败: " + e.getMessage());
+            return 0;
+        });
+        // 回收脚本修改、删除和导入跳过后不再引用的内容
+        executor.write(this::sweepBlobs).exceptionally(e -> {
+            System.err.println("清理脚本内容存储失败: " + e.getMessage());
+            return 0;
+        });
+    }
+
+    // 类加载时由 JVM 保证只初始化一次，任意线程首次调用 getInstance() 都是安全的
+    private static class Holder {
+        static final DatabaseManager INSTANCE = new DatabaseManager();
     }
 
     public static DatabaseManager getInstance() {
-        if (instance == null) {
-            instance = new DatabaseManager();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
-    private void initializeToolsTable() {
-        String createToolsTable = """
-            CREATE TABLE IF NOT EXISTS tools (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                name TEXT NOT NULL,
-                type TEXT NOT NULL,
-                path TEXT NOT NULL,
-                version TEXT DEFAULT '1.0',
-                status TEXT DEFAULT '就绪',
-                description TEXT,
-                category TEXT DEFAULT '其他',
-                last_used INTEGER DEFAULT 0,
-                created_time DATETIME DEFAULT CURRENT_TIMESTAMP,
-                updated_time DATETIME DEFAULT CURRENT_TIMESTAMP
-            )
-            """;
+    /**
+     * 在读线程池中执行查询，不阻塞调用线程
+     * 例如 dbManager.readAsync(db -> db.getToolsPage(null, null, null, 60))
+     */
+    public <T> CompletableFuture<T> readAsync(Function<DatabaseManager, T> query) {
+        return executor.read(() -> query.apply(this));
+    }
 
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createToolsTable);
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to initialize database", e);
-        }
+    /**
+     * 在写线程上执行修改，不阻塞调用线程
+     * 例如 dbManager.writeAsync(db -> db.addTools(tools))
+     */
+    public <T> CompletableFuture<T> writeAsync(Function<DatabaseManager, T> update) {
+        return executor.write(() -> update.apply(this));
+    }
+
+    /**
+     * 在写线程上执行没有返回值的修改，例如 dbManager.runAsync(db -> db.deleteTool(id))
+     */
+    public CompletableFuture<Void> runAsync(Consumer<DatabaseManager> update) {
+        return executor.write(() -> {
+            update.accept(this);
+            return null;
+        });
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+    private PooledConnection getConnection(String operation) throws SQLException {
+        return pool.acquire(operation);
+    }
+
+    // 供同包的备份服务使用独立连接
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    public DbMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 状态/最近使用时间的异步写队列，界面线程更新状态时使用
+     */
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehind;
+    }
+
+    /**
+     * 按内容寻址的压缩存储，保存脚本内容，也可用于工具输出
+     */
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    /**
+     * 等待异步写队列中的更新全部落库
+     *
+     * @return 超时前全部写入返回 true
+     */
+    public boolean flushPendingWrites(long timeout, TimeUnit unit) {
+        boolean historyFlushed = runHistory.flushAndAwait(timeout, unit);
+        return writeBehind.flushAndAwait(timeout, unit) && historyFlushed;
+    }
+
+    /**
+     * 写入剩余的异步更新，关闭连接池并输出耗时统计
+     */
+    public void shutdown() {
+        if (!writeBehind.shutdown(SHUTDOWN_FLUSH_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("退出时仍有 " + writeBehind.getPendingCount() + " 条状态更新未写入");
+        }
+        if (!runHistory.flushAndAwait(SHUTDOWN_FLUSH_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("退出时仍有 " + runHistory.getPendingCount() + " 条运行记录未写入");
+        }
+        executor.shutdown(SHUTDOWN_FLUSH_SECONDS, TimeUnit.SECONDS);
+        System.out.println(metrics.report());
+        pool.close();
     }
 
     // 工具相关的数据库操作
     public List<Tool> getAllTools() {
         List<Tool> tools = new ArrayList<>();
-        String sql = "SELECT * FROM tools ORDER BY created_time DESC";
+        forEachTool(tools::add);
+        return tools;
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+    /**
+     * 逐行读取全部工具，不在内存中保留整个结果集
+     * 回调期间占用数据库连接，不要在回调中执行耗时操作
+     */
+    public void forEachTool(Consumer<Tool> action) {
+        String sql = "SELECT * FROM tools ORDER BY created_time DESC, id DESC";
+
+        try (PooledConnection conn = getConnection("forEachTool");
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
 
             while (rs.next()) {
-                Tool tool = new Tool();
-                tool.setId(rs.getInt("id"));
-                tool.setName(rs.getString("name"));
-                tool.setType(rs.getString("type"));
-                tool.setPath(rs.getString("path"));
-                tool.setVersion(rs.getString("version"));
-                tool.setStatus(rs.getString("status"));
-                tool.setDescription(rs.getString("description"));
-                tool.setCategory(rs.getString("category"));
-                tool.setLastUsed(rs.getLong("last_used"));
-                tool.setCreatedTime(rs.getTimestamp("created_time"));
-                tool.setUpdatedTime(rs.getTimestamp("updated_time"));
-                tools.add(tool);
+                action.accept(extractToolFromResultSet(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to get tools", e);
         }
-        return tools;
+    }
+
+    public int countTools() {
+        String sql = "SELECT COUNT(*) FROM tools";
+
+        try (PooledConnection conn = getConnection("countTools");
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to count tools", e);
+        }
+    }
+
+    /**
+     * 按创建时间倒序分页读取工具
+     *
+     * @param type   类型过滤，null 表示不限
+     * @param status 状态过滤，null 表示不限
+     * @param cursor 上一页返回的游标，读取第一页时为 null
+     */
+    public Page<Tool> getToolsPage(String type, String status, KeysetCursor cursor, int limit) {
+        List<String> filters = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (type != null) {
+            filters.add("type = ?");
+            params.add(type);
+        }
+        if (status != null) {
+            filters.add("status = ?");
+            params.add(status);
+        }
+        return queryPage("getToolsPage", "SELECT * FROM tools", filters, params, cursor, limit,
+                this::extractToolFromResultSet);
     }
 
     public void addTool(Tool tool) {
+        addTools(List.of(tool));
+    }
+
+    /**
+     * 批量添加工具，在同一事务中执行，并回填生成的ID
+     *
+     * @return 按输入顺序排列的新ID
+     */
+    public List<Integer> addTools(List<Tool> tools) {
         String sql = """
             INSERT INTO tools (name, type, path, version, status, description, category, last_used)
             VALUES (?, ?, ?, ?, ?, ?, ?, ?)
             """;
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, tool.getName());
-            pstmt.setString(2, tool.getType());
-            pstmt.setString(3, tool.getPath());
-            pstmt.setString(4, tool.getVersion());
-            pstmt.setString(5, tool.getStatus());
-            pstmt.setString(6, tool.getDescription());
-            pstmt.setString(7, tool.getCategory());
-            pstmt.setLong(8, tool.getLastUsed());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to add tool", e);
+        if (tools.isEmpty()) {
+            return new ArrayList<>();
         }
+
+        return executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("addTools")) {
+                return inTransaction(conn, () -> {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    for (Tool tool : tools) {
+                        setToolParameters(pstmt, tool);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+
+                    List<Integer> ids = generatedIds(conn, tools.size());
+                    for (int i = 0; i < tools.size(); i++) {
+                        tools.get(i).setId(ids.get(i));
+                    }
+                    return ids;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to add tools", e);
+            }
+        });
+    }
+
+    /**
+     * 导入工具，保留导入文件中的创建、修改和最近使用时间（缺少时按当前时间）
+     * 名称和路径都与已有工具相同的跳过，同一批内重复的也只导入第一条；在同一事务中执行，
+     * 导入的工具回填ID，跳过的ID保持为 0
+     *
+     * @return 实际导入的数量
+     */
+    public int importTools(List<Tool> tools) {
+        String sql = """
+            INSERT INTO tools (name, type, path, version, status, description, category, last_used,
+                               created_time, updated_time)
+            SELECT ?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, %1$s), COALESCE(?, %1$s)
+            WHERE NOT EXISTS (SELECT 1 FROM tools WHERE name = ? AND path = ?)
+            """.formatted(NOW_MILLIS);
+
+        if (tools.isEmpty()) {
+            return 0;
+        }
+
+        return executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("importTools")) {
+                return inTransaction(conn, () -> {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    int imported = 0;
+                    for (Tool tool : tools) {
+                        setToolParameters(pstmt, tool);
+                        setMillis(pstmt, 9, tool.getCreatedTime());
+                        setMillis(pstmt, 10, tool.getUpdatedTime());
+                        pstmt.setString(11, tool.getName());
+                        pstmt.setString(12, tool.getPath());
+                        if (pstmt.executeUpdate() > 0) {
+                            tool.setId(generatedIds(conn, 1).get(0));
+                            imported++;
+                        }
+                    }
+                    return imported;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to import tools", e);
+            }
+        });
     }
 
     public void updateTool(Tool tool) {
         String sql = """
             UPDATE tools 
             SET name = ?, type = ?, path = ?, version = ?, status = ?, 
-                description = ?, category = ?, last_used = ?, updated_time = CURRENT_TIMESTAMP
+                description = ?, category = ?, last_used = ?, updated_time = %s
             WHERE id = ?
-            """;
+            """.formatted(NOW_MILLIS);
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, tool.getName());
-            pstmt.setString(2, tool.getType());
-            pstmt.setString(3, tool.getPath());
-            pstmt.setString(4, tool.getVersion());
-            pstmt.setString(5, tool.getStatus());
-            pstmt.setString(6, tool.getDescription());
-            pstmt.setString(7, tool.getCategory());
-            pstmt.setLong(8, tool.getLastUsed());
-            pstmt.setInt(9, tool.getId());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update tool", e);
-        }
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateTool")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                setToolParameters(pstmt, tool);
+                pstmt.setInt(9, tool.getId());
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update tool", e);
+            }
+        });
     }
 
     public void deleteTool(int id) {
         String sql = "DELETE FROM tools WHERE id = ?";
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to delete tool", e);
-        }
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("deleteTool")) {
+                // 运行限制和工具在同一个事务中删除
+                inTransaction(conn, () -> {
+                    PreparedStatement limits = conn.prepare("DELETE FROM run_limits WHERE entity_type = ? AND entity_id = ?");
+                    limits.setString(1, ENTITY_TOOL);
+                    limits.setInt(2, id);
+                    limits.executeUpdate();
+
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    pstmt.setInt(1, id);
+                    return pstmt.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to delete tool", e);
+            }
+        });
     }
 
     public void updateToolStatus(int id, String status) {
-        String sql = "UPDATE tools SET status = ?, updated_time = CURRENT_TIMESTAMP WHERE id = ?";
+        String sql = "UPDATE tools SET status = ?, updated_time = " + NOW_MILLIS + " WHERE id = ?";
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateToolStatus")) {
+                PreparedStatement pstmt = conn.prepare(sql);
 
-            pstmt.setString(1, status);
-            pstmt.setInt(2, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update tool status", e);
-        }
+                pstmt.setString(1, status);
+                pstmt.setInt(2, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update tool status", e);
+            }
+        });
     }
 
     public void updateLastUsed(int id) {
-        String sql = "UPDATE tools SET last_used = ?, updated_time = CURRENT_TIMESTAMP WHERE id = ?";
+        String sql = "UPDATE tools SET last_used = ?, updated_time = " + NOW_MILLIS + " WHERE id = ?";
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateLastUsed")) {
+                PreparedStatement pstmt = conn.prepare(sql);
 
-            pstmt.setLong(1, System.currentTimeMillis());
-            pstmt.setInt(2, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update last used time", e);
-        }
+                pstmt.setLong(1, System.currentTimeMillis());
+                pstmt.setInt(2, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update last used time", e);
+            }
+        });
     }
 
-    // 搜索工具
+    // 搜索工具，关键字通过全文索引匹配并按相关度排序
     public List<Tool> searchTools(String keyword, String type, String status) {
         List<Tool> tools = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT * FROM tools WHERE 1=1");
+        StringBuilder sql;
         List<Object> params = new ArrayList<>();
 
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            sql.append(" AND (name LIKE ? OR description LIKE ? OR category LIKE ?)");
-            String likeKeyword = "%" + keyword + "%";
-            params.add(likeKeyword);
-            params.add(likeKeyword);
-            params.add(likeKeyword);
+        String matchQuery = CatalogTokenizer.toMatchQuery(keyword);
+        if (matchQuery != null) {
+            sql = new StringBuilder("SELECT t.* FROM catalog_fts JOIN tools t ON t.id = catalog_fts.rowid / " +
+                    FTS_ROWID_STRIDE + " WHERE catalog_fts MATCH ? AND catalog_fts.rowid % " +
+                    FTS_ROWID_STRIDE + " = " + FTS_TOOL);
+            params.add(matchQuery);
+        } else {
+            sql = new StringBuilder("SELECT t.* FROM tools t WHERE 1=1");
         }
 
         if (type != null && !"全部类型".equals(type)) {
-            sql.append(" AND type = ?");
+            sql.append(" AND t.type = ?");
             params.add(type);
         }
 
         if (status != null && !"全部状态".equals(status)) {
-            sql.append(" AND status = ?");
+            sql.append(" AND t.status = ?");
             params.add(status);
         }
 
-        sql.append(" ORDER BY created_time DESC");
+        sql.append(matchQuery != null ? " ORDER BY catalog_fts.rank" : " ORDER BY t.created_time DESC");
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+        try (PooledConnection conn = getConnection("searchTools")) {
+            PreparedStatement pstmt = conn.prepare(sql.toString());
 
             for (int i = 0; i < params.size(); i++) {
                 pstmt.setObject(i + 1, params.get(i));
@@ -215,19 +447,7 @@ public class DatabaseManager {
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Tool tool = new Tool();
-                    tool.setId(rs.getInt("id"));
-                    tool.setName(rs.getString("name"));
-                    tool.setType(rs.getString("type"));
-                    tool.setPath(rs.getString("path"));
-                    tool.setVersion(rs.getString("version"));
-                    tool.setStatus(rs.getString("status"));
-                    tool.setDescription(rs.getString("description"));
-                    tool.setCategory(rs.getString("category"));
-                    tool.setLastUsed(rs.getLong("last_used"));
-                    tool.setCreatedTime(rs.getTimestamp("created_time"));
-                    tool.setUpdatedTime(rs.getTimestamp("updated_time"));
-                    tools.add(tool);
+                    tools.add(extractToolFromResultSet(rs));
                 }
             }
         } catch (SQLException e) {
@@ -236,182 +456,1253 @@ public class DatabaseManager {
         return tools;
     }
 
-    // 脚本表创建
-    private void initializeScriptsTable() {
-        String createScriptsTable = """
-        CREATE TABLE IF NOT EXISTS scripts (
-            id INTEGER PRIMARY KEY AUTOINCREMENT,
-            name TEXT NOT NULL,
-            type TEXT NOT NULL,
-            path TEXT NOT NULL,
-            description TEXT,
-            category TEXT DEFAULT '其他',
-            interpreter TEXT,
-            parameters TEXT,
-            status TEXT DEFAULT '就绪',
-            content TEXT,
-            created_time DATETIME DEFAULT CURRENT_TIMESTAMP,
-            updated_time DATETIME DEFAULT CURRENT_TIMESTAMP,
-            last_run_time DATETIME
-        )
-        """;
+    /**
+     * 跨工具、脚本和网络模板的全文搜索，结果按相关度排序
+     *
+     * @param entityType ENTITY_TOOL / ENTITY_SCRIPT / ENTITY_TEMPLATE，为 null 时搜索全部
+     * @param limit      最大结果数，小于等于 0 表示不限制
+     */
+    public List<SearchHit> searchCatalog(String keyword, String entityType, int limit) {
+        List<SearchHit> hits = new ArrayList<>();
+        String matchQuery = CatalogTokenizer.toMatchQuery(keyword);
+        if (matchQuery == null) {
+            return hits;
+        }
+
+        String sql = "SELECT rowid, rank FROM catalog_fts WHERE catalog_fts MATCH ?" +
+                (entityType != null ? " AND rowid % " + FTS_ROWID_STRIDE + " = ?" : "") +
+                " ORDER BY rank LIMIT ?";
+
+        try (PooledConnection conn = getConnection("searchCatalog")) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            int index = 1;
+            pstmt.setString(index++, matchQuery);
+            if (entityType != null) {
+                pstmt.setInt(index++, entityCode(entityType));
+            }
+            pstmt.setInt(index, limit > 0 ? limit : -1);
 
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createScriptsTable);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long rowid = rs.getLong("rowid");
+                    hits.add(new SearchHit(
+                            entityTypeOf((int) (rowid % FTS_ROWID_STRIDE)),
+                            (int) (rowid / FTS_ROWID_STRIDE),
+                            rs.getDouble("rank")));
+                }
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to initialize scripts table", e);
+            throw new RuntimeException("Failed to search catalog", e);
+        }
+        return hits;
+    }
+
+    // 按相关度排序的脚本ID
+    public List<Integer> searchScriptIds(String keyword) {
+        List<Integer> ids = new ArrayList<>();
+        for (SearchHit hit : searchCatalog(keyword, ENTITY_SCRIPT, 0)) {
+            ids.add(hit.getId());
         }
+        return ids;
+    }
+
+    private static int entityCode(String entityType) {
+        return switch (entityType) {
+            case ENTITY_TOOL -> FTS_TOOL;
+            case ENTITY_SCRIPT -> FTS_SCRIPT;
+            case ENTITY_TEMPLATE -> FTS_TEMPLATE;
+            default -> throw new IllegalArgumentException("未知的实体类型: " + entityType);
+        };
+    }
+
+    private static String entityTypeOf(int code) {
+        return switch (code) {
+            case FTS_TOOL -> ENTITY_TOOL;
+            case FTS_SCRIPT -> ENTITY_SCRIPT;
+            default -> ENTITY_TEMPLATE;
+        };
     }
 
+    // ---------------- 数据库结构 ----------------
+    // 建表语句中的 %s 为表名，重建表时替换为临时表名；时间列为毫秒时间戳
+
+    private static final String TOOLS_TABLE = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                name TEXT NOT NULL,
+                type TEXT NOT NULL,
+                path TEXT NOT NULL,
+                version TEXT DEFAULT '1.0',
+                status TEXT DEFAULT '就绪',
+                description TEXT,
+                category TEXT DEFAULT '其他',
+                last_used INTEGER DEFAULT 0,
+                created_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER)),
+                updated_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER))
+            )
+            """;
+
+    private static final String SCRIPTS_TABLE = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                name TEXT NOT NULL,
+                type TEXT NOT NULL,
+                path TEXT NOT NULL,
+                description TEXT,
+                category TEXT DEFAULT '其他',
+                interpreter TEXT,
+                parameters TEXT,
+                status TEXT DEFAULT '就绪',
+                content TEXT,
+                content_hash TEXT,
+                created_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER)),
+                updated_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER)),
+                last_run_time INTEGER
+            )
+            """;
+
     // 环境配置表
-    private void initializeSettingsTable() {
-        String createSettingsTable = """
-        CREATE TABLE IF NOT EXISTS settings (
-            id INTEGER PRIMARY KEY AUTOINCREMENT,
-            key TEXT UNIQUE NOT NULL,
-            value TEXT,
-            description TEXT,
-            updated_time DATETIME DEFAULT CURRENT_TIMESTAMP
-        )
-        """;
+    private static final String SETTINGS_TABLE = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                key TEXT UNIQUE NOT NULL,
+                value TEXT,
+                description TEXT,
+                updated_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER))
+            )
+            """;
+
+    private static final String NETWORK_TEMPLATES_TABLE = """
+            CREATE TABLE IF NOT EXISTS %s (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                name TEXT NOT NULL UNIQUE,
+                interface_name TEXT NOT NULL,
+                ip_address TEXT NOT NULL,
+                subnet_mask TEXT,
+                gateway TEXT,
+                dns1 TEXT,
+                dns2 TEXT,
+                description TEXT,
+                created_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER)),
+                updated_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER))
+            )
+            """;
+
+    private static final Map<String, String> TABLES = new LinkedHashMap<>();
 
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createSettingsTable);
+    static {
+        TABLES.put("tools", TOOLS_TABLE);
+        TABLES.put("scripts", SCRIPTS_TABLE);
+        TABLES.put("settings", SETTINGS_TABLE);
+        TABLES.put("network_templates", NETWORK_TEMPLATES_TABLE);
+    }
+
+    private static final Set<String> TIME_COLUMNS = Set.of("created_time", "updated_time", "last_run_time");
+
+    /**
+     * 按版本执行数据库迁移，已执行的版本不会重复执行
+     * 新的结构变更在末尾追加迁移，不要修改已发布的迁移
+     */
+    private void initializeDatabase() {
+        new SchemaMigrator(pool)
+                .add(1, "创建基础表", this::createBaseTables)
+                .add(2, "脚本内容哈希列", this::addScriptContentHashColumn)
+                .add(3, "时间列改为毫秒时间戳", this::convertTimeColumns)
+                .add(4, "排序和过滤索引", this::createIndexes)
+                .add(5, "全文索引", this::createFullTextIndex)
+                .add(6, "脚本内容迁移到 BlobStore", this::moveScriptContentToBlobStore)
+                .add(7, "运行历史表", this::createRunHistoryTables)
+                .add(8, "运行输出文件列", this::addRunOutputPathColumn)
+                .add(9, "定时任务表", this::createScheduledJobTables)
+                .add(10, "运行资源峰值列", this::addRunResourceColumns)
+                .add(11, "运行限制表", this::createRunLimitTables)
+                .add(12, "导入去重索引", this::createImportIndexes)
+                .migrate();
+    }
+
+    private void createBaseTables(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> table : TABLES.entrySet()) {
+                stmt.execute(table.getValue().formatted(table.getKey()));
+            }
 
             // 插入默认设置
-            initializeDefaultSettings();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to initialize settings table", e);
+            stmt.execute("INSERT OR IGNORE INTO settings (key, value, description) VALUES ('database_path', 'workhelper.db', '数据库文件路径')");
+            stmt.execute("INSERT OR IGNORE INTO settings (key, value, description) VALUES ('default_java_path', 'java', '默认Java路径')");
+            stmt.execute("INSERT OR IGNORE INTO settings (key, value, description) VALUES ('default_python_path', 'python', '默认Python路径')");
+            stmt.execute("INSERT OR IGNORE INTO settings (key, value, description) VALUES ('auto_save', 'true', '自动保存')");
+        }
+
+        // 插入一些示例数据
+        insertSampleTemplates(conn);
+    }
+
+    // 早期版本的 scripts 表没有 content_hash 列
+    private void addScriptContentHashColumn(PooledConnection conn) throws SQLException {
+        if (!SchemaMigrator.columnsOf(conn, "scripts").containsKey("content_hash")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE scripts ADD COLUMN content_hash TEXT");
+            }
         }
     }
 
-    private void initializeDefaultSettings() {
-        String[] defaultSettings = {
-                "INSERT OR IGNORE INTO settings (key, value, description) VALUES ('database_path', 'workhelper.db', '数据库文件路径')",
-                "INSERT OR IGNORE INTO settings (key, value, description) VALUES ('default_java_path', 'java', '默认Java路径')",
-                "INSERT OR IGNORE INTO settings (key, value, description) VALUES ('default_python_path', 'python', '默认Python路径')",
-                "INSERT OR IGNORE INTO settings (key, value, description) VALUES ('auto_save', 'true', '自动保存')"
+    // DATETIME 文本列改为整数毫秒时间戳，排序和范围过滤只需比较整数
+    private void convertTimeColumns(PooledConnection conn) throws SQLException {
+        String convert = "CASE WHEN $ IS NULL OR typeof($) = 'integer' THEN $ " +
+                "ELSE CAST(unixepoch($) * 1000 AS INTEGER) END";
+        for (Map.Entry<String, String> table : TABLES.entrySet()) {
+            if (SchemaMigrator.columnsOf(conn, table.getKey()).containsValue("DATETIME")) {
+                SchemaMigrator.rebuildTable(conn, table.getKey(), table.getValue(), TIME_COLUMNS, convert);
+            }
+        }
+    }
+
+    // 排序和过滤列上的索引，分页查询按 (created_time, id) 倒序走索引
+    // settings.key 已有 UNIQUE 约束自带的索引，不再重复创建
+    private void createIndexes(PooledConnection conn) throws SQLException {
+        String[] createIndexes = {
+                "CREATE INDEX IF NOT EXISTS idx_tools_created ON tools(created_time, id)",
+                "CREATE INDEX IF NOT EXISTS idx_tools_type_created ON tools(type, created_time, id)",
+                "CREATE INDEX IF NOT EXISTS idx_tools_status_created ON tools(status, created_time, id)",
+                "CREATE INDEX IF NOT EXISTS idx_tools_type_status_created ON tools(type, status, created_time, id)",
+                "CREATE INDEX IF NOT EXISTS idx_scripts_created ON scripts(created_time, id)",
+                "CREATE INDEX IF NOT EXISTS idx_scripts_type_created ON scripts(type, created_time, id)",
+                "CREATE INDEX IF NOT EXISTS idx_scripts_type_updated ON scripts(type, updated_time)"
         };
 
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            for (String sql : defaultSettings) {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : createIndexes) {
                 stmt.execute(sql);
             }
-        } catch (SQLException e) {
-            // 忽略重复插入的错误
         }
     }
 
-    // 在 initializeDatabase() 方法中调用
-    private void initializeDatabase() {
-        initializeToolsTable();
-        initializeScriptsTable();  // 新增
-        initializeSettingsTable(); // 新增
-        initializeNetworkTemplatesTable(); // 新增网络模板表
+    // 全文索引：镜像工具、脚本和网络模板的名称/描述/分类，由触发器保持同步
+    private void createFullTextIndex(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // 早期版本可能已建过索引，重建以保证和触发器一致
+            stmt.execute("DROP TABLE IF EXISTS catalog_fts");
+            stmt.execute("""
+                CREATE VIRTUAL TABLE catalog_fts USING fts5(
+                    name, description, category,
+                    tokenize = 'unicode61 remove_diacritics 2',
+                    prefix = '2 3'
+                )
+                """);
+            // 名称权重最高，其次分类、描述
+            stmt.execute("INSERT INTO catalog_fts(catalog_fts, rank) VALUES ('rank', 'bm25(10.0, 2.0, 5.0)')");
+
+            for (FtsSource source : FTS_SOURCES) {
+                createFtsTriggers(stmt, source);
+                stmt.execute("INSERT INTO catalog_fts(rowid, name, description, category) " +
+                        "SELECT " + source.indexedValues("") + " FROM " + source.table());
+            }
+        }
+    }
+
+    private void createFtsTriggers(Statement stmt, FtsSource source) throws SQLException {
+        String table = source.table();
+        String insertNew = "INSERT INTO catalog_fts(rowid, name, description, category) VALUES (" +
+                source.indexedValues("new.") + ");";
+        String deleteOld = "DELETE FROM catalog_fts WHERE rowid = old.id * " + FTS_ROWID_STRIDE +
+                " + " + source.code() + ";";
+
+        for (String suffix : List.of("_fts_insert", "_fts_update", "_fts_delete")) {
+            stmt.execute("DROP TRIGGER IF EXISTS " + table + suffix);
+        }
+        stmt.execute("CREATE TRIGGER " + table + "_fts_insert AFTER INSERT ON " + table +
+                " BEGIN " + insertNew + " END");
+        stmt.execute("CREATE TRIGGER " + table + "_fts_update AFTER UPDATE OF " +
+                source.watchedColumns() + " ON " + table + " BEGIN " + deleteOld + " " + insertNew + " END");
+        stmt.execute("CREATE TRIGGER " + table + "_fts_delete AFTER DELETE ON " + table +
+                " BEGIN " + deleteOld + " END");
+    }
+
+    /**
+     * 全文索引的数据来源，表达式中的 $ 会替换为行引用前缀（触发器中为 new.）
+     */
+    private record FtsSource(String table, int code, String nameExpr, String descriptionExpr,
+                             String categoryExpr, String watchedColumns) {
+        String indexedValues(String row) {
+            String values = "$id * " + FTS_ROWID_STRIDE + " + " + code + ", " +
+                    tokens(nameExpr) + ", " + tokens(descriptionExpr) + ", " + tokens(categoryExpr);
+            return values.replace("$", row);
+        }
+
+        private static String tokens(String expr) {
+            return CatalogTokenizer.SQL_FUNCTION + "(" + expr + ")";
+        }
+    }
+
+    private static final List<FtsSource> FTS_SOURCES = List.of(
+            new FtsSource("tools", FTS_TOOL, "$name", "$description", "$category",
+                    "name, description, category"),
+            new FtsSource("scripts", FTS_SCRIPT, "$name", "$description", "$category",
+                    "name, description, category"),
+            new FtsSource("network_templates", FTS_TEMPLATE, "$name", "$description",
+                    "$interface_name || ' ' || $ip_address", "name, description, interface_name, ip_address")
+    );
+
+    // 脚本内容改为保存在 BlobStore 中，scripts 表只保存内容哈希
+    private void moveScriptContentToBlobStore(PooledConnection conn) throws SQLException {
+        PreparedStatement update = conn.prepare("UPDATE scripts SET content_hash = ?, content = NULL WHERE id = ?");
+        try (ResultSet rs = conn.prepare("SELECT id, content FROM scripts WHERE content IS NOT NULL").executeQuery()) {
+            while (rs.next()) {
+                update.setString(1, storeContent(rs.getString("content")));
+                update.setInt(2, rs.getInt("id"));
+                update.addBatch();
+            }
+        }
+        update.executeBatch();
+    }
+
+    // 运行明细只追加；run_daily 按 UTC 日汇总过期明细
+    private void createRunHistoryTables(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS runs (
+                    id INTEGER PRIMARY KEY,
+                    entity_type TEXT NOT NULL,
+                    entity_id INTEGER NOT NULL,
+                    name TEXT,
+                    arguments TEXT,
+                    start_time INTEGER NOT NULL,
+                    end_time INTEGER NOT NULL,
+                    duration_ms INTEGER NOT NULL,
+                    exit_code INTEGER,
+                    output_bytes INTEGER DEFAULT 0,
+                    peak_memory_bytes INTEGER
+                )
+                """);
+            // 每个实体的耗时有序，分组统计和 p95 定位只扫描这个覆盖索引
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_runs_entity_duration " +
+                    "ON runs(entity_type, entity_id, duration_ms, exit_code)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_runs_entity_start ON runs(entity_type, entity_id, start_time)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_runs_start ON runs(start_time)");
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS run_daily (
+                    day INTEGER NOT NULL,
+                    entity_type TEXT NOT NULL,
+                    entity_id INTEGER NOT NULL,
+                    name TEXT,
+                    runs INTEGER NOT NULL,
+                    failures INTEGER NOT NULL,
+                    total_duration_ms INTEGER NOT NULL,
+                    max_duration_ms INTEGER NOT NULL,
+                    p95_duration_ms INTEGER,
+                    total_output_bytes INTEGER NOT NULL,
+                    max_peak_memory_bytes INTEGER,
+                    PRIMARY KEY (day, entity_type, entity_id)
+                ) WITHOUT ROWID
+                """);
+        }
+    }
+
+    private void addRunOutputPathColumn(PooledConnection conn) throws SQLException {
+        if (!SchemaMigrator.columnsOf(conn, "runs").containsKey("output_path")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE runs ADD COLUMN output_path TEXT");
+            }
+        }
+    }
+
+    // 进程树的峰值 CPU（单核百分比）、峰值线程数和累计 CPU 时间，peak_memory_bytes 同样改为进程树合计
+    private void addRunResourceColumns(PooledConnection conn) throws SQLException {
+        Map<String, String> columns = SchemaMigrator.columnsOf(conn, "runs");
+        try (Statement stmt = conn.createStatement()) {
+            if (!columns.containsKey("peak_cpu_percent")) {
+                stmt.execute("ALTER TABLE runs ADD COLUMN peak_cpu_percent REAL");
+            }
+            if (!columns.containsKey("peak_threads")) {
+                stmt.execute("ALTER TABLE runs ADD COLUMN peak_threads INTEGER");
+            }
+            if (!columns.containsKey("cpu_time_ms")) {
+                stmt.execute("ALTER TABLE runs ADD COLUMN cpu_time_ms INTEGER");
+            }
+        }
+    }
+
+    // 工具和脚本的运行限制单独成表，不影响目录快照和导入导出的格式；kill_reason 记录运行被结束的原因
+    private void createRunLimitTables(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS run_limits (
+                    entity_type TEXT NOT NULL,
+                    entity_id INTEGER NOT NULL,
+                    timeout_ms INTEGER DEFAULT 0,
+                    grace_ms INTEGER DEFAULT 0,
+                    max_output_bytes INTEGER DEFAULT 0,
+                    PRIMARY KEY (entity_type, entity_id)
+                ) WITHOUT ROWID
+                """);
+            if (!SchemaMigrator.columnsOf(conn, "runs").containsKey("kill_reason")) {
+                stmt.execute("ALTER TABLE runs ADD COLUMN kill_reason TEXT");
+            }
+        }
+    }
+
+    // 导入时按 (name, path) 判断工具和脚本是否已存在
+    private void createImportIndexes(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tools_name_path ON tools(name, path)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_scripts_name_path ON scripts(name, path)");
+        }
+    }
+
+    // 触发记录只保留每个任务最近的 JOB_FIRES_KEPT 条
+    private void createScheduledJobTables(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS scheduled_jobs (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    name TEXT NOT NULL,
+                    entity_type TEXT NOT NULL,
+                    entity_id INTEGER NOT NULL,
+                    arguments TEXT,
+                    schedule_type TEXT NOT NULL,
+                    cron_expression TEXT,
+                    interval_seconds INTEGER DEFAULT 0,
+                    max_concurrent INTEGER DEFAULT 1,
+                    misfire_policy TEXT NOT NULL,
+                    enabled INTEGER DEFAULT 1,
+                    next_fire_time INTEGER DEFAULT 0,
+                    last_fire_time INTEGER DEFAULT 0,
+                    created_time INTEGER DEFAULT (CAST(unixepoch('subsec') * 1000 AS INTEGER))
+                )
+                """);
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS job_fires (
+                    id INTEGER PRIMARY KEY,
+                    job_id INTEGER NOT NULL,
+                    scheduled_time INTEGER NOT NULL,
+                    fire_time INTEGER NOT NULL,
+                    end_time INTEGER NOT NULL,
+                    exit_code INTEGER,
+                    outcome TEXT NOT NULL,
+                    message TEXT
+                )
+                """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_job_fires_job ON job_fires(job_id, id)");
+        }
+    }
+
+    // 把内容写入 BlobStore，返回内容哈希；内容为 null 时返回 null
+    private String storeContent(String content) {
+        if (content == null) {
+            return null;
+        }
+        try {
+            return blobStore.put(content).getHash();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store script content", e);
+        }
     }
 
     // 脚本相关的数据库操作
     public List<Script> getAllScripts() {
         List<Script> scripts = new ArrayList<>();
-        String sql = "SELECT * FROM scripts ORDER BY created_time DESC";
+        forEachScript(scripts::add);
+        return scripts;
+    }
+
+    /**
+     * 按需读取脚本内容，最近读取的内容保存在 LRU 缓存中
+     *
+     * @return 脚本不存在或没有保存内容时返回 null
+     */
+    public String getScriptContent(int id) {
+        String cached = scriptContentCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        String hash = getScriptContentHash(id);
+        if (hash == null) {
+            return null;
+        }
+        try {
+            String content = blobStore.readString(hash);
+            scriptContentCache.put(id, content);
+            return content;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read script content", e);
+        }
+    }
+
+    /**
+     * 以流的方式读取脚本内容，适合大脚本，调用方负责关闭
+     *
+     * @return 脚本不存在或没有保存内容时返回 null
+     */
+    public InputStream openScriptContent(int id) {
+        String cached = scriptContentCache.get(id);
+        if (cached != null) {
+            return new ByteArrayInputStream(cached.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String hash = getScriptContentHash(id);
+        try {
+            return hash != null ? blobStore.openStream(hash) : null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read script content", e);
+        }
+    }
+
+    /**
+     * 从输入流写入脚本内容，内容不会整体读入内存
+     */
+    public void updateScriptContent(int id, InputStream content) {
+        String hash;
+        try {
+            hash = blobStore.put(content).getHash();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store script content", e);
+        }
+
+        String sql = "UPDATE scripts SET content_hash = ?, content = NULL, updated_time = " + NOW_MILLIS + " WHERE id = ?";
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateScriptContent")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+                pstmt.setString(1, hash);
+                pstmt.setInt(2, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update script content", e);
+            }
+        });
+        scriptContentCache.remove(id);
+    }
+
+    /**
+     * 删除 BlobStore 中没有脚本引用的内容，启动时在写线程上执行，清理期间不会有新的引用提交
+     *
+     * @return 删除的文件数
+     */
+    public int sweepBlobs() {
+        Set<String> referenced = new HashSet<>();
+        try (PooledConnection conn = getConnection("sweepBlobs")) {
+            PreparedStatement pstmt = conn.prepare("SELECT DISTINCT content_hash FROM scripts WHERE content_hash IS NOT NULL");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    referenced.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load script content references", e);
+        }
+        try {
+            return blobStore.sweep(referenced::contains,
+                    FileTime.fromMillis(System.currentTimeMillis() - BLOB_SWEEP_GRACE_MILLIS));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to sweep script content", e);
+        }
+    }
+
+    private String getScriptContentHash(int id) {
+        String sql = "SELECT content_hash FROM scripts WHERE id = ?";
+        try (PooledConnection conn = getConnection("getScriptContentHash")) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString("content_hash") : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to get script content", e);
+        }
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+    /**
+     * 逐行读取全部脚本，不在内存中保留整个结果集
+     * 回调期间占用数据库连接，不要在回调中执行耗时操作
+     */
+    public void forEachScript(Consumer<Script> action) {
+        String sql = "SELECT " + SCRIPT_LIST_COLUMNS + " FROM scripts ORDER BY created_time DESC, id DESC";
+
+        try (PooledConnection conn = getConnection("forEachScript");
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
 
             while (rs.next()) {
-                scripts.add(extractScriptFromResultSet(rs));
+                action.accept(extractScriptFromResultSet(rs));
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to get scripts", e);
         }
-        return scripts;
+    }
+
+    /**
+     * 按创建时间倒序分页读取脚本
+     *
+     * @param type   类型过滤，null 表示不限
+     * @param cursor 上一页返回的游标，读取第一页时为 null
+     */
+    public Page<Script> getScriptsPage(String type, KeysetCursor cursor, int limit) {
+        List<String> filters = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (type != null) {
+            filters.add("type = ?");
+            params.add(type);
+        }
+        return queryPage("getScriptsPage", "SELECT " + SCRIPT_LIST_COLUMNS + " FROM scripts", filters, params, cursor, limit,
+                this::extractScriptFromResultSet);
+    }
+
+    // 按 (created_time, id) 倒序做键集分页，多取一行判断是否还有下一页
+    private <T> Page<T> queryPage(String operation, String select, List<String> filters, List<Object> params,
+                                  KeysetCursor cursor, int limit, RowMapper<T> mapper) {
+        StringBuilder sql = new StringBuilder(select).append(" WHERE 1=1");
+        for (String filter : filters) {
+            sql.append(" AND ").append(filter);
+        }
+        if (cursor != null) {
+            sql.append(" AND (created_time, id) < (?, ?)");
+        }
+        sql.append(" ORDER BY created_time DESC, id DESC LIMIT ?");
+
+        List<T> items = new ArrayList<>();
+        KeysetCursor next = null;
+        try (PooledConnection conn = getConnection(operation)) {
+            PreparedStatement pstmt = conn.prepare(sql.toString());
+            int index = 1;
+            for (Object param : params) {
+                pstmt.setObject(index++, param);
+            }
+            if (cursor != null) {
+                pstmt.setObject(index++, cursor.getSortKey());
+                pstmt.setInt(index++, cursor.getId());
+            }
+            pstmt.setInt(index, limit + 1);
+
+            Object lastSortKey = null;
+            int lastId = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (items.size() == limit) {
+                        next = new KeysetCursor(lastSortKey, lastId);
+                        break;
+                    }
+                    items.add(mapper.map(rs));
+                    lastSortKey = rs.getObject("created_time");
+                    lastId = rs.getInt("id");
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to query page", e);
+        }
+        return new Page<>(items, next);
     }
 
     public void addScript(Script script) {
+        addScripts(List.of(script));
+    }
+
+    /**
+     * 批量添加脚本，在同一事务中执行，并回填生成的ID
+     */
+    public List<Integer> addScripts(List<Script> scripts) {
         String sql = """
-        INSERT INTO scripts (name, type, path, description, category, interpreter, parameters, content)
+        INSERT INTO scripts (name, type, path, description, category, interpreter, parameters, content_hash)
         VALUES (?, ?, ?, ?, ?, ?, ?, ?)
         """;
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        if (scripts.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-            setScriptParameters(pstmt, script);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to add script", e);
+        // 内容先写入 BlobStore，事务内只写哈希
+        List<String> hashes = new ArrayList<>();
+        for (Script script : scripts) {
+            hashes.add(storeContent(script.getContent()));
         }
+
+        return executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("addScripts")) {
+                return inTransaction(conn, () -> {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    for (int i = 0; i < scripts.size(); i++) {
+                        setScriptParameters(pstmt, scripts.get(i));
+                        pstmt.setString(8, hashes.get(i));
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+
+                    List<Integer> ids = generatedIds(conn, scripts.size());
+                    for (int i = 0; i < scripts.size(); i++) {
+                        scripts.get(i).setId(ids.get(i));
+                    }
+                    return ids;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to add scripts", e);
+            }
+        });
+    }
+
+    /**
+     * 导入脚本，保留导入文件中的状态、创建、修改和最近运行时间，去重规则同 importTools
+     *
+     * @return 实际导入的数量
+     */
+    public int importScripts(List<Script> scripts) {
+        String sql = """
+        INSERT INTO scripts (name, type, path, description, category, interpreter, parameters, content_hash,
+                             status, created_time, updated_time, last_run_time)
+        SELECT ?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, '就绪'), COALESCE(?, %1$s), COALESCE(?, %1$s), ?
+        WHERE NOT EXISTS (SELECT 1 FROM scripts WHERE name = ? AND path = ?)
+        """.formatted(NOW_MILLIS);
+
+        if (scripts.isEmpty()) {
+            return 0;
+        }
+
+        // 内容先写入 BlobStore，事务内只写哈希；跳过的脚本留下的内容由启动时的清理回收
+        List<String> hashes = new ArrayList<>();
+        for (Script script : scripts) {
+            hashes.add(storeContent(script.getContent()));
+        }
+
+        return executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("importScripts")) {
+                return inTransaction(conn, () -> {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    int imported = 0;
+                    for (int i = 0; i < scripts.size(); i++) {
+                        Script script = scripts.get(i);
+                        setScriptParameters(pstmt, script);
+                        pstmt.setString(8, hashes.get(i));
+                        pstmt.setString(9, script.getStatus());
+                        setMillis(pstmt, 10, script.getCreatedTime());
+                        setMillis(pstmt, 11, script.getUpdatedTime());
+                        setMillis(pstmt, 12, script.getLastRunTime());
+                        pstmt.setString(13, script.getName());
+                        pstmt.setString(14, script.getPath());
+                        if (pstmt.executeUpdate() > 0) {
+                            script.setId(generatedIds(conn, 1).get(0));
+                            imported++;
+                        }
+                    }
+                    return imported;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to import scripts", e);
+            }
+        });
     }
 
     public void updateScript(Script script) {
         String sql = """
         UPDATE scripts 
         SET name = ?, type = ?, path = ?, description = ?, category = ?, 
-            interpreter = ?, parameters = ?, content = ?, updated_time = CURRENT_TIMESTAMP
+            interpreter = ?, parameters = ?, content_hash = COALESCE(?, content_hash),
+            content = IIF(? IS NULL, content, NULL), updated_time = %s
         WHERE id = ?
-        """;
+        """.formatted(NOW_MILLIS);
+
+        String hash = storeContent(script.getContent());
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateScript")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                setScriptParameters(pstmt, script);
+                pstmt.setString(8, hash);
+                pstmt.setString(9, hash);
+                pstmt.setInt(10, script.getId());
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update script", e);
+            }
+        });
+        // 只读取元数据的脚本 content 为 null，此时保留原内容
+        if (script.getContent() != null) {
+            scriptContentCache.put(script.getId(), script.getContent());
+        }
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    public void deleteScript(int id) {
+        String sql = "DELETE FROM scripts WHERE id = ?";
 
-            setScriptParameters(pstmt, script);
-            pstmt.setInt(9, script.getId());
-            pstmt.executeUpdate();
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("deleteScript")) {
+                // 运行限制和脚本在同一个事务中删除
+                inTransaction(conn, () -> {
+                    PreparedStatement limits = conn.prepare("DELETE FROM run_limits WHERE entity_type = ? AND entity_id = ?");
+                    limits.setString(1, ENTITY_SCRIPT);
+                    limits.setInt(2, id);
+                    limits.executeUpdate();
+
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    pstmt.setInt(1, id);
+                    return pstmt.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to delete script", e);
+            }
+        });
+        scriptContentCache.remove(id);
+    }
+
+    public void updateScriptStatus(int id, String status) {
+        String sql = "UPDATE scripts SET status = ?, updated_time = " + NOW_MILLIS + " WHERE id = ?";
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateScriptStatus")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                pstmt.setString(1, status);
+                pstmt.setInt(2, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update script status", e);
+            }
+        });
+    }
+
+    public void updateLastRunTime(int id) {
+        String sql = "UPDATE scripts SET last_run_time = " + NOW_MILLIS + " WHERE id = ?";
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateLastRunTime")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                pstmt.setInt(1, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update last run time", e);
+            }
+        });
+    }
+
+    // 运行历史相关的数据库操作
+
+    /**
+     * 记录一次运行，写入由批量写入器异步完成
+     */
+    public void recordRun(RunRecord run) {
+        runHistory.append(run);
+    }
+
+    /**
+     * 把早于 retentionDays 天的运行明细按天汇总到 run_daily 并删除明细
+     *
+     * @return 汇总掉的明细条数
+     */
+    public int rollupRuns(int retentionDays) {
+        String rollupSql = """
+            INSERT INTO run_daily (day, entity_type, entity_id, name, runs, failures, total_duration_ms,
+                                   max_duration_ms, p95_duration_ms, total_output_bytes, max_peak_memory_bytes)
+            SELECT day, entity_type, entity_id, MAX(name), COUNT(*), SUM(exit_code IS NULL OR exit_code <> 0),
+                   SUM(duration_ms), MAX(duration_ms), MAX(IIF(rn = (cnt * 95 + 99) / 100, duration_ms, NULL)),
+                   SUM(output_bytes), MAX(peak_memory_bytes)
+            FROM (
+                SELECT start_time / %1$d AS day, entity_type, entity_id, name, exit_code, duration_ms,
+                       output_bytes, peak_memory_bytes,
+                       ROW_NUMBER() OVER (PARTITION BY start_time / %1$d, entity_type, entity_id
+                                          ORDER BY duration_ms) AS rn,
+                       COUNT(*) OVER (PARTITION BY start_time / %1$d, entity_type, entity_id) AS cnt
+                FROM runs WHERE start_time < ?
+            )
+            WHERE true
+            GROUP BY day, entity_type, entity_id
+            ON CONFLICT (day, entity_type, entity_id) DO UPDATE SET
+                runs = runs + excluded.runs,
+                failures = failures + excluded.failures,
+                total_duration_ms = total_duration_ms + excluded.total_duration_ms,
+                max_duration_ms = MAX(max_duration_ms, excluded.max_duration_ms),
+                p95_duration_ms = MAX(p95_duration_ms, excluded.p95_duration_ms),
+                total_output_bytes = total_output_bytes + excluded.total_output_bytes,
+                max_peak_memory_bytes = MAX(max_peak_memory_bytes, excluded.max_peak_memory_bytes)
+            """.formatted(DAY_MILLIS);
+
+        // 只汇总完整的自然日
+        long cutoff = (System.currentTimeMillis() / DAY_MILLIS - retentionDays) * DAY_MILLIS;
+        return executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("rollupRuns")) {
+                return inTransaction(conn, () -> {
+                    PreparedStatement rollup = conn.prepare(rollupSql);
+                    rollup.setLong(1, cutoff);
+                    rollup.executeUpdate();
+
+                    PreparedStatement delete = conn.prepare("DELETE FROM runs WHERE start_time < ?");
+                    delete.setLong(1, cutoff);
+                    return delete.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to roll up runs", e);
+            }
+        });
+    }
+
+    /**
+     * 按 p95 耗时从高到低统计工具或脚本的运行情况，统计范围为保留的运行明细
+     *
+     * @param entityType ENTITY_TOOL / ENTITY_SCRIPT
+     */
+    public List<RunStats> getRunStats(String entityType, int limit) {
+        String groupSql = """
+            SELECT entity_id, COUNT(*) AS runs, SUM(exit_code IS NULL OR exit_code <> 0) AS failures,
+                   AVG(duration_ms) AS avg_ms, MAX(duration_ms) AS max_ms
+            FROM runs WHERE entity_type = ?
+            GROUP BY entity_id
+            """;
+        // (entity_type, entity_id, duration_ms) 索引上按偏移量直接定位第 95 百分位，不需要排序
+        String p95Sql = "SELECT duration_ms FROM runs WHERE entity_type = ? AND entity_id = ? " +
+                "ORDER BY duration_ms LIMIT 1 OFFSET ?";
+        String nameSql = "SELECT name FROM runs WHERE entity_type = ? AND entity_id = ? " +
+                "ORDER BY start_time DESC LIMIT 1";
+
+        try (PooledConnection conn = getConnection("getRunStats")) {
+            List<RunGroup> groups = new ArrayList<>();
+            PreparedStatement group = conn.prepare(groupSql);
+            group.setString(1, entityType);
+            PreparedStatement p95 = conn.prepare(p95Sql);
+            p95.setString(1, entityType);
+            try (ResultSet rs = group.executeQuery()) {
+                while (rs.next()) {
+                    int entityId = rs.getInt("entity_id");
+                    long runs = rs.getLong("runs");
+                    p95.setInt(2, entityId);
+                    p95.setLong(3, (runs * 95 + 99) / 100 - 1);
+                    long p95Millis;
+                    try (ResultSet p = p95.executeQuery()) {
+                        p95Millis = p.next() ? p.getLong(1) : 0;
+                    }
+                    groups.add(new RunGroup(entityId, runs, rs.getLong("failures"), rs.getDouble("avg_ms"),
+                            rs.getLong("max_ms"), p95Millis));
+                }
+            }
+            groups.sort(Comparator.comparingLong(RunGroup::p95Millis).reversed());
+
+            // 名称只为返回的条目查询
+            List<RunStats> stats = new ArrayList<>();
+            PreparedStatement name = conn.prepare(nameSql);
+            name.setString(1, entityType);
+            for (RunGroup g : groups.subList(0, Math.min(limit, groups.size()))) {
+                name.setInt(2, g.entityId());
+                String latestName;
+                try (ResultSet rs = name.executeQuery()) {
+                    latestName = rs.next() ? rs.getString(1) : null;
+                }
+                stats.add(new RunStats(entityType, g.entityId(), latestName, g.runs(), g.failures(),
+                        g.avgMillis(), g.maxMillis(), g.p95Millis()));
+            }
+            return stats;
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to update script", e);
+            throw new RuntimeException("Failed to get run stats", e);
         }
     }
 
-    public void deleteScript(int id) {
-        String sql = "DELETE FROM scripts WHERE id = ?";
+    private record RunGroup(int entityId, long runs, long failures, double avgMillis, long maxMillis,
+                            long p95Millis) {
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * 耗时最长的工具（按 p95 排序）
+     */
+    public List<RunStats> getSlowestTools(int limit) {
+        return getRunStats(ENTITY_TOOL, limit);
+    }
 
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
+    /**
+     * 某个工具或脚本最近的运行记录，按开始时间倒序
+     */
+    public List<RunRecord> getRecentRuns(String entityType, int entityId, int limit) {
+        String sql = "SELECT * FROM runs WHERE entity_type = ? AND entity_id = ? ORDER BY start_time DESC LIMIT ?";
+
+        List<RunRecord> runs = new ArrayList<>();
+        try (PooledConnection conn = getConnection("getRecentRuns")) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setString(1, entityType);
+            pstmt.setInt(2, entityId);
+            pstmt.setInt(3, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    runs.add(extractRunFromResultSet(rs));
+                }
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to delete script", e);
+            throw new RuntimeException("Failed to get recent runs", e);
         }
+        return runs;
     }
 
-    public void updateScriptStatus(int id, String status) {
-        String sql = "UPDATE scripts SET status = ?, updated_time = CURRENT_TIMESTAMP WHERE id = ?";
+    private RunRecord extractRunFromResultSet(ResultSet rs) throws SQLException {
+        RunRecord run = new RunRecord(rs.getString("entity_type"), rs.getInt("entity_id"),
+                rs.getString("name"), rs.getString("arguments"), rs.getLong("start_time"));
+        run.setId(rs.getLong("id"));
+        run.setEndTime(rs.getLong("end_time"));
+        int exitCode = rs.getInt("exit_code");
+        run.setExitCode(rs.wasNull() ? null : exitCode);
+        run.setOutputBytes(rs.getLong("output_bytes"));
+        long peakMemory = rs.getLong("peak_memory_bytes");
+        run.setPeakMemoryBytes(rs.wasNull() ? -1 : peakMemory);
+        run.setOutputPath(rs.getString("output_path"));
+        float peakCpu = rs.getFloat("peak_cpu_percent");
+        run.setPeakCpuPercent(rs.wasNull() ? -1 : peakCpu);
+        int peakThreads = rs.getInt("peak_threads");
+        run.setPeakThreads(rs.wasNull() ? -1 : peakThreads);
+        long cpuTime = rs.getLong("cpu_time_ms");
+        run.setCpuTimeMillis(rs.wasNull() ? -1 : cpuTime);
+        run.setKillReason(rs.getString("kill_reason"));
+        return run;
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // 运行限制相关的数据库操作
 
-            pstmt.setString(1, status);
-            pstmt.setInt(2, id);
-            pstmt.executeUpdate();
+    /**
+     * 工具或脚本保存的运行限制，没有设置时返回 RunLimits.NONE
+     */
+    public RunLimits getRunLimits(String entityType, int entityId) {
+        String sql = "SELECT timeout_ms, grace_ms, max_output_bytes FROM run_limits WHERE entity_type = ? AND entity_id = ?";
+
+        try (PooledConnection conn = getConnection("getRunLimits")) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setString(1, entityType);
+            pstmt.setInt(2, entityId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new RunLimits(rs.getLong(1), rs.getLong(2), rs.getLong(3)) : RunLimits.NONE;
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to update script status", e);
+            throw new RuntimeException("Failed to get run limits", e);
         }
     }
 
-    public void updateLastRunTime(int id) {
-        String sql = "UPDATE scripts SET last_run_time = CURRENT_TIMESTAMP WHERE id = ?";
+    /**
+     * 保存工具或脚本的运行限制，传入 RunLimits.NONE 或 null 时删除
+     */
+    public void saveRunLimits(String entityType, int entityId, RunLimits limits) {
+        boolean delete = limits == null || limits.equals(RunLimits.NONE);
+        String sql = delete
+                ? "DELETE FROM run_limits WHERE entity_type = ? AND entity_id = ?"
+                : "INSERT OR REPLACE INTO run_limits (entity_type, entity_id, timeout_ms, grace_ms, max_output_bytes) " +
+                  "VALUES (?, ?, ?, ?, ?)";
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("saveRunLimits")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                pstmt.setString(1, entityType);
+                pstmt.setInt(2, entityId);
+                if (!delete) {
+                    pstmt.setLong(3, limits.timeoutMillis());
+                    pstmt.setLong(4, limits.graceMillis());
+                    pstmt.setLong(5, limits.maxOutputBytes());
+                }
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to save run limits", e);
+            }
+        });
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // 定时任务相关的数据库操作
+    public List<ScheduledJob> getAllJobs() {
+        List<ScheduledJob> jobs = new ArrayList<>();
+        String sql = "SELECT * FROM scheduled_jobs ORDER BY id";
 
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
+        try (PooledConnection conn = getConnection("getAllJobs");
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
+
+            while (rs.next()) {
+                jobs.add(extractJobFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to get scheduled jobs", e);
+        }
+        return jobs;
+    }
+
+    public void addJob(ScheduledJob job) {
+        String sql = """
+            INSERT INTO scheduled_jobs (name, entity_type, entity_id, arguments, schedule_type, cron_expression,
+                                        interval_seconds, max_concurrent, misfire_policy, enabled,
+                                        next_fire_time, last_fire_time)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("addJob")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                setJobParameters(pstmt, job);
+                pstmt.executeUpdate();
+                job.setId(generatedIds(conn, 1).get(0));
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to add scheduled job", e);
+            }
+        });
+    }
+
+    public void updateJob(ScheduledJob job) {
+        String sql = """
+            UPDATE scheduled_jobs
+            SET name = ?, entity_type = ?, entity_id = ?, arguments = ?, schedule_type = ?, cron_expression = ?,
+                interval_seconds = ?, max_concurrent = ?, misfire_policy = ?, enabled = ?,
+                next_fire_time = ?, last_fire_time = ?
+            WHERE id = ?
+            """;
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateJob")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                setJobParameters(pstmt, job);
+                pstmt.setInt(13, job.getId());
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update scheduled job", e);
+            }
+        });
+    }
+
+    /**
+     * 删除任务及其触发记录
+     */
+    public void deleteJob(int id) {
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("deleteJob")) {
+                inTransaction(conn, () -> {
+                    PreparedStatement fires = conn.prepare("DELETE FROM job_fires WHERE job_id = ?");
+                    fires.setInt(1, id);
+                    fires.executeUpdate();
+
+                    PreparedStatement job = conn.prepare("DELETE FROM scheduled_jobs WHERE id = ?");
+                    job.setInt(1, id);
+                    return job.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to delete scheduled job", e);
+            }
+        });
+    }
+
+    /**
+     * 只更新触发时间，调度器每次触发后调用
+     */
+    public void updateJobFireTimes(int id, long nextFireTime, long lastFireTime) {
+        String sql = "UPDATE scheduled_jobs SET next_fire_time = ?, last_fire_time = ? WHERE id = ?";
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateJobFireTimes")) {
+                PreparedStatement pstmt = conn.prepare(sql);
+
+                pstmt.setLong(1, nextFireTime);
+                pstmt.setLong(2, lastFireTime);
+                pstmt.setInt(3, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update job fire times", e);
+            }
+        });
+    }
+
+    /**
+     * 记录一次触发，并删除该任务 JOB_FIRES_KEPT 条以前的记录
+     */
+    public void recordJobFire(JobFire fire) {
+        String insertSql = """
+            INSERT INTO job_fires (job_id, scheduled_time, fire_time, end_time, exit_code, outcome, message)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+        String pruneSql = """
+            DELETE FROM job_fires WHERE job_id = ? AND id <= (
+                SELECT id FROM job_fires WHERE job_id = ? ORDER BY id DESC LIMIT 1 OFFSET ?)
+            """;
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("recordJobFire")) {
+                inTransaction(conn, () -> {
+                    PreparedStatement insert = conn.prepare(insertSql);
+                    insert.setInt(1, fire.getJobId());
+                    insert.setLong(2, fire.getScheduledTime());
+                    insert.setLong(3, fire.getFireTime());
+                    insert.setLong(4, fire.getEndTime());
+                    if (fire.getExitCode() != null) {
+                        insert.setInt(5, fire.getExitCode());
+                    } else {
+                        insert.setNull(5, Types.INTEGER);
+                    }
+                    insert.setString(6, fire.getOutcome());
+                    insert.setString(7, fire.getMessage());
+                    insert.executeUpdate();
+                    fire.setId(generatedIds(conn, 1).get(0));
+
+                    PreparedStatement prune = conn.prepare(pruneSql);
+                    prune.setInt(1, fire.getJobId());
+                    prune.setInt(2, fire.getJobId());
+                    prune.setInt(3, JOB_FIRES_KEPT);
+                    return prune.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to record job fire", e);
+            }
+        });
+    }
+
+    /**
+     * 某个任务最近的触发记录，新的在前
+     */
+    public List<JobFire> getRecentJobFires(int jobId, int limit) {
+        String sql = "SELECT * FROM job_fires WHERE job_id = ? ORDER BY id DESC LIMIT ?";
+
+        List<JobFire> fires = new ArrayList<>();
+        try (PooledConnection conn = getConnection("getRecentJobFires")) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setInt(1, jobId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    JobFire fire = new JobFire(rs.getInt("job_id"), rs.getLong("scheduled_time"),
+                            rs.getLong("fire_time"));
+                    fire.setId(rs.getLong("id"));
+                    fire.setEndTime(rs.getLong("end_time"));
+                    int exitCode = rs.getInt("exit_code");
+                    fire.setExitCode(rs.wasNull() ? null : exitCode);
+                    fire.setOutcome(rs.getString("outcome"));
+                    fire.setMessage(rs.getString("message"));
+                    fires.add(fire);
+                }
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to update last run time", e);
+            throw new RuntimeException("Failed to get job fires", e);
         }
+        return fires;
+    }
+
+    private void setJobParameters(PreparedStatement pstmt, ScheduledJob job) throws SQLException {
+        pstmt.setString(1, job.getName());
+        pstmt.setString(2, job.getEntityType());
+        pstmt.setInt(3, job.getEntityId());
+        pstmt.setString(4, job.getArguments());
+        pstmt.setString(5, job.getScheduleType());
+        pstmt.setString(6, job.getCronExpression());
+        pstmt.setLong(7, job.getIntervalSeconds());
+        pstmt.setInt(8, job.getMaxConcurrent());
+        pstmt.setString(9, job.getMisfirePolicy());
+        pstmt.setInt(10, job.isEnabled() ? 1 : 0);
+        pstmt.setLong(11, job.getNextFireTime());
+        pstmt.setLong(12, job.getLastFireTime());
+    }
+
+    private ScheduledJob extractJobFromResultSet(ResultSet rs) throws SQLException {
+        ScheduledJob job = new ScheduledJob(rs.getString("name"), rs.getString("entity_type"),
+                rs.getInt("entity_id"), rs.getString("arguments"));
+        job.setId(rs.getInt("id"));
+        job.setScheduleType(rs.getString("schedule_type"));
+        job.setCronExpression(rs.getString("cron_expression"));
+        job.setIntervalSeconds(rs.getLong("interval_seconds"));
+        job.setMaxConcurrent(rs.getInt("max_concurrent"));
+        job.setMisfirePolicy(rs.getString("misfire_policy"));
+        job.setEnabled(rs.getInt("enabled") != 0);
+        job.setNextFireTime(rs.getLong("next_fire_time"));
+        job.setLastFireTime(rs.getLong("last_fire_time"));
+        return job;
     }
 
     // 设置相关的数据库操作
     public String getSetting(String key) {
         String sql = "SELECT value FROM settings WHERE key = ?";
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = getConnection("getSetting")) {
+            PreparedStatement pstmt = conn.prepare(sql);
 
             pstmt.setString(1, key);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -426,20 +1717,138 @@ public class DatabaseManager {
     }
 
     public void setSetting(String key, String value) {
-        String sql = "INSERT OR REPLACE INTO settings (key, value, updated_time) VALUES (?, ?, CURRENT_TIMESTAMP)";
-
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        setSettings(Collections.singletonMap(key, value));
+    }
 
-            pstmt.setString(1, key);
-            pstmt.setString(2, value);
-            pstmt.executeUpdate();
+    /**
+     * 读取全部设置
+     */
+    public Map<String, String> getAllSettings() {
+        Map<String, String> settings = new HashMap<>();
+        try (PooledConnection conn = getConnection("getAllSettings");
+             ResultSet rs = conn.prepare("SELECT key, value FROM settings").executeQuery()) {
+            while (rs.next()) {
+                settings.put(rs.getString("key"), rs.getString("value"));
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to set setting: " + key, e);
+            throw new RuntimeException("Failed to get settings", e);
+        }
+        return settings;
+    }
+
+    /**
+     * 在一个事务中写入一组设置，要么全部生效要么全部不生效
+     * 已有设置只更新值，保留描述
+     */
+    public void setSettings(Map<String, String> settings) {
+        String sql = "INSERT INTO settings (key, value, updated_time) VALUES (?, ?, " + NOW_MILLIS + ") " +
+                "ON CONFLICT(key) DO UPDATE SET value = excluded.value, updated_time = excluded.updated_time";
+
+        if (settings.isEmpty()) {
+            return;
+        }
+
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("setSettings")) {
+                inTransaction(conn, () -> {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    for (Map.Entry<String, String> entry : settings.entrySet()) {
+                        pstmt.setString(1, entry.getKey());
+                        pstmt.setString(2, entry.getValue());
+                        pstmt.addBatch();
+                    }
+                    return pstmt.executeBatch();
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to set settings: " + settings.keySet(), e);
+            }
+        });
+    }
+
+    // 事务辅助方法
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private interface SqlWork<T> {
+        T execute() throws SQLException;
+    }
+
+    /**
+     * 在事务中执行，已处于事务中（嵌套调用）时直接执行由外层提交
+     */
+    private <T> T inTransaction(PooledConnection conn, SqlWork<T> work) throws SQLException {
+        Connection raw = conn.getConnection();
+        if (!raw.getAutoCommit()) {
+            return work.execute();
+        }
+
+        raw.setAutoCommit(false);
+        try {
+            T result = work.execute();
+            raw.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            raw.rollback();
+            throw e;
+        } finally {
+            raw.setAutoCommit(true);
         }
     }
 
+    /**
+     * 计算刚批量插入的行ID
+     * 同一写事务内 AUTOINCREMENT 分配的ID连续递增，因此由 last_insert_rowid() 倒推即可
+     */
+    private List<Integer> generatedIds(PooledConnection conn, int count) throws SQLException {
+        List<Integer> ids = new ArrayList<>(count);
+        try (ResultSet rs = conn.prepare("SELECT last_insert_rowid()").executeQuery()) {
+            int lastId = rs.next() ? rs.getInt(1) : 0;
+            for (int i = count - 1; i >= 0; i--) {
+                ids.add(lastId - i);
+            }
+        }
+        return ids;
+    }
+
     // 辅助方法
+    private void setToolParameters(PreparedStatement pstmt, Tool tool) throws SQLException {
+        pstmt.setString(1, tool.getName());
+        pstmt.setString(2, tool.getType());
+        pstmt.setString(3, tool.getPath());
+        pstmt.setString(4, tool.getVersion());
+        pstmt.setString(5, tool.getStatus());
+        pstmt.setString(6, tool.getDescription());
+        pstmt.setString(7, tool.getCategory());
+        pstmt.setLong(8, tool.getLastUsed());
+    }
+
+    // 时间列保存毫秒时间戳，null 原样写入
+    private static void setMillis(PreparedStatement pstmt, int index, Timestamp time) throws SQLException {
+        if (time != null) {
+            pstmt.setLong(index, time.getTime());
+        } else {
+            pstmt.setNull(index, Types.INTEGER);
+        }
+    }
+
+    private Tool extractToolFromResultSet(ResultSet rs) throws SQLException {
+        Tool tool = new Tool();
+        tool.setId(rs.getInt("id"));
+        tool.setName(rs.getString("name"));
+        tool.setType(rs.getString("type"));
+        tool.setPath(rs.getString("path"));
+        tool.setVersion(rs.getString("version"));
+        tool.setStatus(rs.getString("status"));
+        tool.setDescription(rs.getString("description"));
+        tool.setCategory(rs.getString("category"));
+        tool.setLastUsed(rs.getLong("last_used"));
+        tool.setCreatedTime(rs.getTimestamp("created_time"));
+        tool.setUpdatedTime(rs.getTimestamp("updated_time"));
+        writeBehind.applyPending(tool); // 尚未落库的状态更新
+        return tool;
+    }
+
     private Script extractScriptFromResultSet(ResultSet rs) throws SQLException {
         Script script = new Script();
         script.setId(rs.getInt("id"));
@@ -451,10 +1860,10 @@ public class DatabaseManager {
         script.setInterpreter(rs.getString("interpreter"));
         script.setParameters(rs.getString("parameters"));
         script.setStatus(rs.getString("status"));
-        script.setContent(rs.getString("content"));
         script.setCreatedTime(rs.getTimestamp("created_time"));
         script.setUpdatedTime(rs.getTimestamp("updated_time"));
         script.setLastRunTime(rs.getTimestamp("last_run_time"));
+        writeBehind.applyPending(script); // 尚未落库的状态更新
         return script;
     }
 
@@ -466,57 +1875,34 @@ public class DatabaseManager {
         pstmt.setString(5, script.getCategory());
         pstmt.setString(6, script.getInterpreter());
         pstmt.setString(7, script.getParameters());
-        pstmt.setString(8, script.getContent());
-    }
-
-    private void initializeNetworkTemplatesTable() {
-        String createNetworkTemplatesTable = """
-    CREATE TABLE IF NOT EXISTS network_templates (
-        id INTEGER PRIMARY KEY AUTOINCREMENT,
-        name TEXT NOT NULL UNIQUE,
-        interface_name TEXT NOT NULL,
-        ip_address TEXT NOT NULL,
-        subnet_mask TEXT,
-        gateway TEXT,
-        dns1 TEXT,
-        dns2 TEXT,
-        description TEXT,
-        created_time DATETIME DEFAULT CURRENT_TIMESTAMP,
-        updated_time DATETIME DEFAULT CURRENT_TIMESTAMP
-    )
+    }
+
+    private void insertSampleTemplates(PooledConnection conn) throws SQLException {
+        String sql = """
+    INSERT OR IGNORE INTO network_templates (name, interface_name, ip_address, subnet_mask, gateway, dns1, dns2, description)
+    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
     """;
 
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createNetworkTemplatesTable);
+        List<NetworkTemplate> sampleTemplates = List.of(
+                createSampleTemplate("办公网络", "以太网", "192.168.1.100", "255.255.255.0", "192.168.1.1", "8.8.8.8", "114.114.114.114", "公司内部办公网络配置"),
+                createSampleTemplate("测试环境", "WLAN", "10.0.0.50", "255.255.255.0", "10.0.0.1", "8.8.8.8", "8.8.4.4", "测试环境网络配置"),
+                createSampleTemplate("开发网络", "以太网2", "172.16.1.100", "255.255.0.0", "172.16.1.1", "223.5.5.5", "223.6.6.6", "开发环境网络配置")
+        );
 
-            // 插入一些示例数据
-            initializeSampleTemplates();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to initialize network templates table", e);
+        // 已存在的模板由 OR IGNORE 跳过
+        PreparedStatement pstmt = conn.prepare(sql);
+        for (NetworkTemplate template : sampleTemplates) {
+            setNetworkTemplateParameters(pstmt, template);
+            pstmt.addBatch();
         }
+        pstmt.executeBatch();
     }
 
-    private void initializeSampleTemplates() {
-        String[] sampleTemplates = {
-                "INSERT OR IGNORE INTO network_templates (name, interface_name, ip_address, subnet_mask, gateway, dns1, dns2, description) VALUES ('办公网络', '以太网', '192.168.1.100', '255.255.255.0', '192.168.1.1', '8.8.8.8', '114.114.114.114', '公司内部办公网络配置')",
-                "INSERT OR IGNORE INTO network_templates (name, interface_name, ip_address, subnet_mask, gateway, dns1, dns2, description) VALUES ('测试环境', 'WLAN', '10.0.0.50', '255.255.255.0', '10.0.0.1', '8.8.8.8', '8.8.4.4', '测试环境网络配置')",
-                "INSERT OR IGNORE INTO network_templates (name, interface_name, ip_address, subnet_mask, gateway, dns1, dns2, description) VALUES ('开发网络', '以太网2', '172.16.1.100', '255.255.0.0', '172.16.1.1', '223.5.5.5', '223.6.6.6', '开发环境网络配置')"
-        };
-
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            for (String sql : sampleTemplates) {
-                try {
-                    stmt.execute(sql);
-                } catch (SQLException e) {
-                    // 忽略重复插入的错误
-                    System.out.println("Sample template already exists: " + e.getMessage());
-                }
-            }
-        } catch (SQLException e) {
-            // 忽略错误，表格可能已经存在
-        }
+    private NetworkTemplate createSampleTemplate(String name, String interfaceName, String ipAddress, String subnetMask,
+                                                 String gateway, String dns1, String dns2, String description) {
+        NetworkTemplate template = new NetworkTemplate(name, interfaceName, ipAddress, subnetMask, gateway, dns1, dns2);
+        template.setDescription(description);
+        return template;
     }
 
     // 网络模板相关的数据库操作
@@ -524,9 +1910,8 @@ public class DatabaseManager {
         List<NetworkTemplate> templates = new ArrayList<>();
         String sql = "SELECT * FROM network_templates ORDER BY name";
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+        try (PooledConnection conn = getConnection("getAllNetworkTemplates");
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
 
             while (rs.next()) {
                 templates.add(extractNetworkTemplateFromResultSet(rs));
@@ -537,59 +1922,145 @@ public class DatabaseManager {
         return templates;
     }
 
+    /**
+     * 逐行读取全部网络模板，不在内存中保留整个结果集
+     * 回调期间占用数据库连接，不要在回调中执行耗时操作
+     */
+    public void forEachNetworkTemplate(Consumer<NetworkTemplate> action) {
+        String sql = "SELECT * FROM network_templates ORDER BY name";
+
+        try (PooledConnection conn = getConnection("forEachNetworkTemplate");
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
+
+            while (rs.next()) {
+                action.accept(extractNetworkTemplateFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to get network templates", e);
+        }
+    }
+
     public void addNetworkTemplate(NetworkTemplate template) {
+        addNetworkTemplates(List.of(template));
+    }
+
+    /**
+     * 批量添加网络模板，在同一事务中执行，并回填生成的ID
+     */
+    public List<Integer> addNetworkTemplates(List<NetworkTemplate> templates) {
         String sql = """
     INSERT INTO network_templates (name, interface_name, ip_address, subnet_mask, gateway, dns1, dns2, description)
     VALUES (?, ?, ?, ?, ?, ?, ?, ?)
     """;
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        if (templates.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-            setNetworkTemplateParameters(pstmt, template);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to add network template", e);
+        return executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("addNetworkTemplates")) {
+                return inTransaction(conn, () -> {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    for (NetworkTemplate template : templates) {
+                        setNetworkTemplateParameters(pstmt, template);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+
+                    List<Integer> ids = generatedIds(conn, templates.size());
+                    for (int i = 0; i < templates.size(); i++) {
+                        templates.get(i).setId(ids.get(i));
+                    }
+                    return ids;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to add network templates", e);
+            }
+        });
+    }
+
+    /**
+     * 导入网络模板，保留导入文件中的创建和修改时间（缺少时按当前时间）
+     * 同名模板已存在时跳过；在同一事务中执行，导入的模板回填ID
+     *
+     * @return 实际导入的数量
+     */
+    public int importNetworkTemplates(List<NetworkTemplate> templates) {
+        String sql = """
+    INSERT INTO network_templates (name, interface_name, ip_address, subnet_mask, gateway, dns1, dns2, description,
+                                   created_time, updated_time)
+    SELECT ?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, %1$s), COALESCE(?, %1$s)
+    WHERE NOT EXISTS (SELECT 1 FROM network_templates WHERE name = ?)
+    """.formatted(NOW_MILLIS);
+
+        if (templates.isEmpty()) {
+            return 0;
         }
+
+        return executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("importNetworkTemplates")) {
+                return inTransaction(conn, () -> {
+                    PreparedStatement pstmt = conn.prepare(sql);
+                    int imported = 0;
+                    for (NetworkTemplate template : templates) {
+                        setNetworkTemplateParameters(pstmt, template);
+                        setMillis(pstmt, 9, template.getCreatedTime());
+                        setMillis(pstmt, 10, template.getUpdatedTime());
+                        pstmt.setString(11, template.getName());
+                        if (pstmt.executeUpdate() > 0) {
+                            template.setId(generatedIds(conn, 1).get(0));
+                            imported++;
+                        }
+                    }
+                    return imported;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to import network templates", e);
+            }
+        });
     }
 
     public void updateNetworkTemplate(NetworkTemplate template) {
         String sql = """
     UPDATE network_templates 
     SET name = ?, interface_name = ?, ip_address = ?, subnet_mask = ?, gateway = ?, 
-        dns1 = ?, dns2 = ?, description = ?, updated_time = CURRENT_TIMESTAMP
+        dns1 = ?, dns2 = ?, description = ?, updated_time = %s
     WHERE id = ?
-    """;
+    """.formatted(NOW_MILLIS);
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("updateNetworkTemplate")) {
+                PreparedStatement pstmt = conn.prepare(sql);
 
-            setNetworkTemplateParameters(pstmt, template);
-            pstmt.setInt(9, template.getId());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to update network template", e);
-        }
+                setNetworkTemplateParameters(pstmt, template);
+                pstmt.setInt(9, template.getId());
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to update network template", e);
+            }
+        });
     }
 
     public void deleteNetworkTemplate(int id) {
         String sql = "DELETE FROM network_templates WHERE id = ?";
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        executor.writeAndWait(() -> {
+            try (PooledConnection conn = getConnection("deleteNetworkTemplate")) {
+                PreparedStatement pstmt = conn.prepare(sql);
 
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to delete network template", e);
-        }
+                pstmt.setInt(1, id);
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to delete network template", e);
+            }
+        });
     }
 
     public NetworkTemplate getNetworkTemplateByName(String name) {
         String sql = "SELECT * FROM network_templates WHERE name = ?";
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PooledConnection conn = getConnection("getNetworkTemplateByName")) {
+            PreparedStatement pstmt = conn.prepare(sql);
 
             pstmt.setString(1, name);
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -0,0 +1,138 @@
+package com.z0fsec.workhelper.db;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 数据库线程模型
+ * 所有写操作在唯一的写线程上串行执行，SQLite 不会出现写锁竞争；
+ * 读操作在读线程池中并行执行，WAL 模式下读不阻塞写
+ */
+public class DbExecutor {
+    private static final String WRITER_THREAD_NAME = "db-writer";
+
+    private final ScheduledExecutorService writer;
+    private final ExecutorService readers;
+    private volatile Thread writerThread;
+
+    public DbExecutor(int readerThreads) {
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, WRITER_THREAD_NAME);
+            thread.setDaemon(true);
+            writerThread = thread;
+            return thread;
+        });
+        this.readers = Executors.newFixedThreadPool(readerThreads, daemonFactory("db-reader-"));
+    }
+
+    /**
+     * 在读线程池中执行查询
+     */
+    public <T> CompletableFuture<T> read(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, readers);
+    }
+
+    /**
+     * 在写线程上执行修改，已在写线程上时直接执行
+     */
+    public <T> CompletableFuture<T> write(Supplier<T> update) {
+        if (isWriterThread()) {
+            try {
+                return CompletableFuture.completedFuture(update.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(update, writer);
+    }
+
+    /**
+     * 在写线程上执行修改并等待结果，异常原样抛出
+     * 供同步 API 使用，界面线程应改用 write() 返回的 Future
+     */
+    public <T> T writeAndWait(Supplier<T> update) {
+        if (isWriterThread()) {
+            return update.get();
+        }
+        try {
+            return write(update).join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    public void writeAndWait(Runnable update) {
+        writeAndWait(() -> {
+            update.run();
+            return null;
+        });
+    }
+
+    /**
+     * 延迟在写线程上执行，用于合并写入
+     */
+    public ScheduledFuture<?> scheduleWrite(Runnable update, long delay, TimeUnit unit) {
+        return writer.schedule(update, delay, unit);
+    }
+
+    /**
+     * 在写线程上执行并在超时前等待完成
+     */
+    public void writeAndWait(Runnable update, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (isWriterThread()) {
+            update.run();
+            return;
+        }
+        writer.submit(update).get(timeout, unit);
+    }
+
+    public boolean isWriterThread() {
+        return Thread.currentThread() == writerThread;
+    }
+
+    /**
+     * 停止接收新任务，等待已提交的写操作完成
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        readers.shutdown();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(timeout, unit)) {
+                System.err.println("等待数据库写线程结束超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return e;
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.z0fsec.workhelper.db;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库操作耗时统计
+ * 按操作名称记录调用次数、总耗时和最大耗时，用于衡量连接池等优化的效果
+ */
+public class DbMetrics {
+    // 超过该耗时的操作会输出慢操作日志
+    private static final long SLOW_OPERATION_MILLIS = 200;
+
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+
+    public void record(String operation, long elapsedNanos) {
+        stats.computeIfAbsent(operation, k -> new OperationStats()).add(elapsedNanos);
+
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        if (elapsedMillis >= SLOW_OPERATION_MILLIS) {
+            System.err.println("数据库慢操作: " + operation + " 耗时 " + elapsedMillis + " ms");
+        }
+    }
+
+    /**
+     * 获取当前统计快照（按操作名称排序）
+     */
+    public Map<String, OperationStats> snapshot() {
+        return new TreeMap<>(stats);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * 生成可读的统计报告
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("数据库操作耗时统计:\n");
+        sb.append(String.format("%-32s %8s %10s %10s %10s%n", "操作", "次数", "平均(ms)", "最大(ms)", "总计(ms)"));
+        for (Map.Entry<String, OperationStats> entry : snapshot().entrySet()) {
+            OperationStats s = entry.getValue();
+            sb.append(String.format("%-32s %8d %10.3f %10.3f %10.1f%n",
+                    entry.getKey(), s.getCount(), s.getAverageMillis(), s.getMaxMillis(), s.getTotalMillis()));
+        }
+        return sb.toString();
+    }
+
+    public static class OperationStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long elapsedNanos) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+
+        public long getCount() { return count.sum(); }
+
+        public double getTotalMillis() { return totalNanos.sum() / 1_000_000.0; }
+
+        public double getMaxMillis() { return maxNanos.get() / 1_000_000.0; }
+
+        public double getAverageMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : getTotalMillis() / n;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.z0fsec.workhelper.db;
+
+/**
+ * 键集分页游标，记录上一页最后一行的排序键和ID
+ * 下一页从该位置之后继续读取，不需要 OFFSET 扫描前面的行
+ */
+public final class KeysetCursor {
+    private final Object sortKey;
+    private final int id;
+
+    public KeysetCursor(Object sortKey, int id) {
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    // 排序列的原始值，按数据库中的存储类型回传
+    public Object getSortKey() { return sortKey; }
+
+    public int getId() { return id; }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{" +
+                "sortKey=" + sortKey +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package com.z0fsec.workhelper.db;
+
+import java.util.List;
+
+/**
+ * 分页查询结果
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final KeysetCursor nextCursor;
+
+    public Page(List<T> items, KeysetCursor nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+
+    // 读取下一页的游标，没有更多数据时为 null
+    public KeysetCursor getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+}
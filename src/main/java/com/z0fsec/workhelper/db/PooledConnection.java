@@ -0,0 +1,126 @@
+package com.z0fsec.workhelper.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接池中的长连接
+ * 每个连接缓存自己的 PreparedStatement，close() 时归还连接池而不是真正关闭
+ */
+public class PooledConnection implements AutoCloseable {
+    // 每个连接最多缓存的语句数
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statementCache;
+    // 同一线程嵌套获取连接时的操作栈，记录操作名和开始时间
+    private final Deque<String> operations = new ArrayDeque<>();
+    private final Deque<Long> startTimes = new ArrayDeque<>();
+    private boolean broken = false;
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > STATEMENT_CACHE_SIZE) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的预编译语句，不存在时编译并缓存
+     * 返回的语句由连接管理，调用方不要关闭它，只需关闭 ResultSet
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pstmt = statementCache.get(sql);
+        if (pstmt == null || pstmt.isClosed()) {
+            try {
+                pstmt = connection.prepareStatement(sql);
+            } catch (SQLException e) {
+                broken = isConnectionError(e);
+                throw e;
+            }
+            statementCache.put(sql, pstmt);
+        } else {
+            pstmt.clearParameters();
+            pstmt.clearBatch();
+        }
+        return pstmt;
+    }
+
+    /**
+     * 创建普通语句，用于 DDL 等一次性 SQL，调用方负责关闭
+     */
+    public Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    void begin(String operation) {
+        operations.push(operation);
+        startTimes.push(System.nanoTime());
+    }
+
+    int depth() {
+        return operations.size();
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    void markBroken() {
+        broken = true;
+    }
+
+    @Override
+    public void close() {
+        String operation = operations.pop();
+        long elapsed = System.nanoTime() - startTimes.pop();
+        pool.release(this, operation, elapsed);
+    }
+
+    /**
+     * 关闭缓存的语句和底层连接
+     */
+    void closePhysical() {
+        for (PreparedStatement pstmt : statementCache.values()) {
+            closeQuietly(pstmt);
+        }
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("关闭数据库连接失败: " + e.getMessage());
+        }
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        String message = e.getMessage();
+        return message != null && (message.contains("closed") || message.contains("SQLITE_CANTOPEN"));
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            // 忽略关闭异常
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.z0fsec.workhelper.db;
+
+import com.z0fsec.workhelper.model.RunRecord;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 运行历史的批量追加写入
+ * 记录先进入内存队列，在数据库写线程上按批次用一个事务插入 runs 表，
+ * 运行结束的线程不等待磁盘写入
+ */
+public class RunHistoryWriter {
+    // 攒批等待时间，队列达到 BATCH_SIZE 时立即写入
+    private static final long FLUSH_DELAY_MILLIS = 500;
+    private static final int BATCH_SIZE = 256;
+
+    private static final String INSERT_RUN_SQL = """
+            INSERT INTO runs (entity_type, entity_id, name, arguments, start_time, end_time,
+                              duration_ms, exit_code, output_bytes, peak_memory_bytes, output_path,
+                              peak_cpu_percent, peak_threads, cpu_time_ms, kill_reason)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final ConnectionPool pool;
+    private final DbExecutor executor;
+    private final ConcurrentLinkedQueue<RunRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    public RunHistoryWriter(ConnectionPool pool, DbExecutor executor) {
+        this.pool = pool;
+        this.executor = executor;
+    }
+
+    /**
+     * 追加一条运行记录
+     */
+    public void append(RunRecord record) {
+        queue.add(record);
+        if (queued.incrementAndGet() >= BATCH_SIZE) {
+            submitFlush(0);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            submitFlush(FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    public int getPendingCount() {
+        return queued.get();
+    }
+
+    /**
+     * 立即写入队列中的记录并等待完成
+     *
+     * @return 在超时前写完返回 true
+     */
+    public boolean flushAndAwait(long timeout, TimeUnit unit) {
+        try {
+            executor.writeAndWait(this::flush, timeout, unit);
+            return queued.get() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("写入运行历史失败: " + e.getMessage());
+            return false;
+        } catch (RejectedExecutionException e) {
+            return queued.get() == 0;
+        }
+    }
+
+    private void submitFlush(long delayMillis) {
+        try {
+            executor.scheduleWrite(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flushScheduled.set(false); // 已关闭，记录保留在内存中
+        }
+    }
+
+    // 只在写线程中执行
+    private void flush() {
+        flushScheduled.set(false);
+        List<RunRecord> batch = new ArrayList<>();
+        RunRecord record;
+        while ((record = queue.poll()) != null) {
+            batch.add(record);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try (PooledConnection conn = pool.acquire("appendRuns")) {
+            conn.getConnection().setAutoCommit(false);
+            try {
+                PreparedStatement pstmt = conn.prepare(INSERT_RUN_SQL);
+                for (RunRecord run : batch) {
+                    bind(pstmt, run);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.getConnection().commit();
+            } catch (SQLException e) {
+                conn.getConnection().rollback();
+                throw e;
+            } finally {
+                conn.getConnection().setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            // 放回队列，稍后重试
+            System.err.println("批量写入运行历史失败: " + e.getMessage());
+            queue.addAll(batch);
+            if (flushScheduled.compareAndSet(false, true)) {
+                submitFlush(FLUSH_DELAY_MILLIS);
+            }
+            return;
+        }
+        queued.addAndGet(-batch.size());
+    }
+
+    private static void bind(PreparedStatement pstmt, RunRecord run) throws SQLException {
+        pstmt.setString(1, run.getEntityType());
+        pstmt.setInt(2, run.getEntityId());
+        pstmt.setString(3, run.getName());
+        pstmt.setString(4, run.getArguments());
+        pstmt.setLong(5, run.getStartTime());
+        pstmt.setLong(6, run.getEndTime());
+        pstmt.setLong(7, run.getDurationMillis());
+        if (run.getExitCode() != null) {
+            pstmt.setInt(8, run.getExitCode());
+        } else {
+            pstmt.setNull(8, Types.INTEGER);
+        }
+        pstmt.setLong(9, run.getOutputBytes());
+        if (run.getPeakMemoryBytes() >= 0) {
+            pstmt.setLong(10, run.getPeakMemoryBytes());
+        } else {
+            pstmt.setNull(10, Types.INTEGER);
+        }
+        pstmt.setString(11, run.getOutputPath());
+        if (run.getPeakCpuPercent() >= 0) {
+            pstmt.setDouble(12, run.getPeakCpuPercent());
+        } else {
+            pstmt.setNull(12, Types.REAL);
+        }
+        if (run.getPeakThreads() >= 0) {
+            pstmt.setInt(13, run.getPeakThreads());
+        } else {
+            pstmt.setNull(13, Types.INTEGER);
+        }
+        if (run.getCpuTimeMillis() >= 0) {
+            pstmt.setLong(14, run.getCpuTimeMillis());
+        } else {
+            pstmt.setNull(14, Types.INTEGER);
+        }
+        pstmt.setString(15, run.getKillReason());
+    }
+}
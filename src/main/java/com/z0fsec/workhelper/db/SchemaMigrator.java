@@ -0,0 +1,153 @@
+package com.z0fsec.workhelper.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 数据库结构版本管理
+ * 已执行的版本记录在 schema_version 表中，启动时只执行尚未执行的迁移，每个迁移在独立事务中提交
+ */
+public class SchemaMigrator {
+    private final ConnectionPool pool;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    /**
+     * 迁移步骤，在传入的连接上执行，外层已开启事务
+     */
+    public interface Step {
+        void apply(PooledConnection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+
+    public SchemaMigrator(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 注册迁移，版本号必须递增
+     */
+    public SchemaMigrator add(int version, String description, Step step) {
+        if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version() >= version) {
+            throw new IllegalArgumentException("迁移版本必须递增: " + version);
+        }
+        migrations.add(new Migration(version, description, step));
+        return this;
+    }
+
+    /**
+     * 执行所有未执行的迁移
+     *
+     * @return 执行后的版本号
+     */
+    public int migrate() {
+        try (PooledConnection conn = pool.acquire("schemaMigrate")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INTEGER PRIMARY KEY,
+                        description TEXT,
+                        applied_time INTEGER NOT NULL
+                    )
+                    """);
+            }
+
+            int current = currentVersion(conn);
+            for (Migration migration : migrations) {
+                if (migration.version() <= current) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                apply(conn, migration);
+                current = migration.version();
+                System.out.printf("数据库迁移到版本 %d: %s (%.1f ms)%n",
+                        current, migration.description(), (System.nanoTime() - start) / 1_000_000.0);
+            }
+            return current;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to migrate database schema", e);
+        }
+    }
+
+    private void apply(PooledConnection conn, Migration migration) throws SQLException {
+        Connection raw = conn.getConnection();
+        raw.setAutoCommit(false);
+        try {
+            migration.step().apply(conn);
+            PreparedStatement pstmt = conn.prepare(
+                    "INSERT INTO schema_version (version, description, applied_time) VALUES (?, ?, ?)");
+            pstmt.setInt(1, migration.version());
+            pstmt.setString(2, migration.description());
+            pstmt.setLong(3, System.currentTimeMillis());
+            pstmt.executeUpdate();
+            raw.commit();
+        } catch (SQLException | RuntimeException e) {
+            raw.rollback();
+            throw e;
+        } finally {
+            raw.setAutoCommit(true);
+        }
+    }
+
+    private static int currentVersion(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT COALESCE(MAX(version), 0) FROM schema_version").executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 表的列名及声明类型，按定义顺序
+     */
+    public static Map<String, String> columnsOf(PooledConnection conn, String table) throws SQLException {
+        Map<String, String> columns = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.put(rs.getString("name"), rs.getString("type"));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 按新的建表语句重建表并复制数据，用于修改列类型
+     * 两边都有的列才会复制，convertedColumns 中的列经 convertExpr 转换（其中 $ 替换为列名）。
+     * 旧表上的索引和触发器会随旧表一起删除，需要在之后的迁移中重新创建
+     *
+     * @param createSql 建表语句，其中的 %s 替换为表名
+     */
+    public static void rebuildTable(PooledConnection conn, String table, String createSql,
+                                    Set<String> convertedColumns, String convertExpr) throws SQLException {
+        String temp = table + "_rebuild";
+        Map<String, String> oldColumns = columnsOf(conn, table);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + temp);
+            stmt.execute(createSql.formatted(temp));
+
+            StringJoiner targets = new StringJoiner(", ");
+            StringJoiner values = new StringJoiner(", ");
+            for (String column : columnsOf(conn, temp).keySet()) {
+                if (!oldColumns.containsKey(column)) {
+                    continue;
+                }
+                targets.add(column);
+                values.add(convertedColumns.contains(column) ? convertExpr.replace("$", column) : column);
+            }
+
+            stmt.execute("INSERT INTO " + temp + " (" + targets + ") SELECT " + values + " FROM " + table);
+            stmt.execute("DROP TABLE " + table);
+            stmt.execute("ALTER TABLE " + temp + " RENAME TO " + table);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.z0fsec.workhelper.db;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 带缓存的设置存储
+ * 首次访问时一次性读取 settings 表，之后的读取都走内存；
+ * 一组修改通过 edit()...commit() 在一个事务中写入，提交后通知监听器，组件不必再轮询数据库
+ */
+public class SettingsStore {
+    public static final String DATABASE_PATH = "database_path";
+    public static final String DEFAULT_JAVA_PATH = "default_java_path";
+    public static final String DEFAULT_PYTHON_PATH = "default_python_path";
+    public static final String AUTO_SAVE = "auto_save";
+    public static final String AUTO_BACKUP = "auto_backup";
+    public static final String BACKUP_INTERVAL = "backup_interval";
+    public static final String BACKUP_PATH = "backup_path";
+    public static final String LOG_MAX_LINES = "log_max_lines";
+
+    // ConcurrentHashMap 不允许 null 值，值为 null 的设置不放入缓存，读取时按不存在处理
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final List<Consumer<Map<String, String>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean loaded = false;
+
+    private SettingsStore() {
+    }
+
+    private static class Holder {
+        static final SettingsStore INSTANCE = new SettingsStore();
+    }
+
+    public static SettingsStore getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 订阅设置变更，参数为本次提交中值发生变化的设置（键 -> 新值）
+     * 回调在提交修改的线程上执行，界面监听器需自行切换到 EDT
+     */
+    public void addListener(Consumer<Map<String, String>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Map<String, String>> listener) {
+        listeners.remove(listener);
+    }
+
+    public String getString(String key) {
+        return getString(key, null);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = ensureLoaded().get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 修改单个设置并立即提交
+     */
+    public void set(String key, Object value) {
+        edit().put(key, value).commit();
+    }
+
+    /**
+     * 开始一组修改，commit() 时在一个事务中写入
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * 丢弃缓存并从数据库重新读取，用于外部修改了数据库之后
+     */
+    public synchronized void reload() {
+        Map<String, String> fresh = db().getAllSettings();
+        values.clear();
+        fresh.forEach((key, value) -> {
+            if (value != null) {
+                values.put(key, value);
+            }
+        });
+        loaded = true;
+    }
+
+    // 第一次读写设置时才取数据库实例，订阅监听器不会触发数据库初始化
+    private static DatabaseManager db() {
+        return DatabaseManager.getInstance();
+    }
+
+    private Map<String, String> ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+        return values;
+    }
+
+    // 提交都在数据库写线程上串行执行，保证缓存和数据库的写入顺序一致；
+    // 持有锁的线程不会再等待写线程，读取缓存时重新加载也不经过写线程
+    private synchronized Map<String, String> commit(Map<String, String> changes) {
+        Map<String, String> current = ensureLoaded();
+        Map<String, String> changed = new LinkedHashMap<>();
+        changes.forEach((key, value) -> {
+            if (!Objects.equals(current.get(key), value)) {
+                changed.put(key, value);
+            }
+        });
+        if (changed.isEmpty()) {
+            return changed;
+        }
+
+        db().setSettings(changed);
+        changed.forEach((key, value) -> {
+            if (value != null) {
+                values.put(key, value);
+            } else {
+                values.remove(key);
+            }
+        });
+        return changed;
+    }
+
+    private void publish(Map<String, String> changed) {
+        Map<String, String> event = Collections.unmodifiableMap(changed);
+        for (Consumer<Map<String, String>> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                System.err.println("设置变更监听器异常: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 一组待提交的设置修改
+     */
+    public class Editor {
+        private final Map<String, String> changes = new HashMap<>();
+
+        private Editor() {
+        }
+
+        /**
+         * 值按 String.valueOf 保存，null 表示清空
+         */
+        public Editor put(String key, Object value) {
+            changes.put(key, value != null ? String.valueOf(value) : null);
+            return this;
+        }
+
+        /**
+         * 在一个事务中写入所有修改，只有值发生变化的设置会写入并通知监听器
+         * 等待写线程完成，界面线程应使用 commitAsync()
+         *
+         * @return 实际发生变化的设置
+         */
+        public Map<String, String> commit() {
+            try {
+                return commitAsync().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        /**
+         * 在数据库写线程上提交，不阻塞调用线程，监听器在写线程上收到通知
+         *
+         * @return 完成时的结果为实际发生变化的设置
+         */
+        public CompletableFuture<Map<String, String>> commitAsync() {
+            return db().writeAsync(d -> {
+                Map<String, String> changed = SettingsStore.this.commit(changes);
+                if (!changed.isEmpty()) {
+                    publish(changed);
+                }
+                return changed;
+            });
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.z0fsec.workhelper.db;
+
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.Tool;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 状态和最近使用时间的异步写队列
+ * 同一行的多次更新在内存中合并，由数据库写线程按批次在一个事务中落库，调用方不再等待 SQLite 锁
+ */
+public class WriteBehindQueue {
+    // 合并窗口，窗口内同一行的更新只写一次
+    private static final long FLUSH_DELAY_MILLIS = 200;
+
+    private static final String UPDATE_TOOL_SQL =
+            "UPDATE tools SET status = COALESCE(?, status), last_used = COALESCE(?, last_used), " +
+                    "updated_time = " + DatabaseManager.NOW_MILLIS + " WHERE id = ?";
+    private static final String UPDATE_SCRIPT_SQL =
+            "UPDATE scripts SET status = COALESCE(?, status), last_run_time = COALESCE(?, last_run_time), " +
+                    "updated_time = " + DatabaseManager.NOW_MILLIS + " WHERE id = ?";
+
+    private final ConnectionPool pool;
+    // 待写入的更新，写入提交后才移除，读取时可据此覆盖数据库中的旧值
+    private final Map<Integer, RowUpdate> pendingTools = new ConcurrentHashMap<>();
+    private final Map<Integer, RowUpdate> pendingScripts = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final DbExecutor executor;
+
+    public WriteBehindQueue(ConnectionPool pool, DbExecutor executor) {
+        this.pool = pool;
+        this.executor = executor;
+    }
+
+    /**
+     * 记录工具状态更新
+     *
+     * @param markUsed 是否同时把最近使用时间更新为当前时间
+     */
+    public void updateToolStatus(int id, String status, boolean markUsed) {
+        Long usedAt = markUsed ? System.currentTimeMillis() : null;
+        pendingTools.merge(id, new RowUpdate(status, usedAt), RowUpdate::mergedWith);
+        scheduleFlush();
+    }
+
+    /**
+     * 记录脚本状态更新
+     *
+     * @param markRun 是否同时把最近运行时间更新为当前时间
+     */
+    public void updateScriptStatus(int id, String status, boolean markRun) {
+        Long runAt = markRun ? System.currentTimeMillis() : null;
+        pendingScripts.merge(id, new RowUpdate(status, runAt), RowUpdate::mergedWith);
+        scheduleFlush();
+    }
+
+    /**
+     * 用尚未落库的更新覆盖从数据库读取的工具
+     */
+    public void applyPending(Tool tool) {
+        RowUpdate update = pendingTools.get(tool.getId());
+        if (update != null) {
+            if (update.status != null) {
+                tool.setStatus(update.status);
+            }
+            if (update.timestamp != null) {
+                tool.setLastUsed(update.timestamp);
+            }
+        }
+    }
+
+    /**
+     * 用尚未落库的更新覆盖从数据库读取的脚本
+     */
+    public void applyPending(Script script) {
+        RowUpdate update = pendingScripts.get(script.getId());
+        if (update != null) {
+            if (update.status != null) {
+                script.setStatus(update.status);
+            }
+            if (update.timestamp != null) {
+                script.setLastRunTime(new Timestamp(update.timestamp));
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingTools.size() + pendingScripts.size();
+    }
+
+    /**
+     * 立即写入所有待写更新并等待完成，用于退出前
+     *
+     * @return 在超时前写完返回 true
+     */
+    public boolean flushAndAwait(long timeout, TimeUnit unit) {
+        try {
+            executor.writeAndWait(this::flush, timeout, unit);
+            return getPendingCount() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("写入待更新数据失败: " + e.getMessage());
+            return false;
+        } catch (RejectedExecutionException e) {
+            return getPendingCount() == 0;
+        }
+    }
+
+    /**
+     * 写入剩余更新，写线程由 DbExecutor 负责停止
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        return flushAndAwait(timeout, unit);
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.scheduleWrite(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false); // 已关闭，更新保留在内存中
+            }
+        }
+    }
+
+    // 只在写线程中执行
+    private void flush() {
+        flushScheduled.set(false);
+        if (pendingTools.isEmpty() && pendingScripts.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, RowUpdate> tools = new HashMap<>(pendingTools);
+        Map<Integer, RowUpdate> scripts = new HashMap<>(pendingScripts);
+
+        try (PooledConnection conn = pool.acquire("writeBehindFlush")) {
+            conn.getConnection().setAutoCommit(false);
+            try {
+                writeBatch(conn.prepare(UPDATE_TOOL_SQL), tools);
+                writeBatch(conn.prepare(UPDATE_SCRIPT_SQL), scripts);
+                conn.getConnection().commit();
+            } catch (SQLException e) {
+                conn.getConnection().rollback();
+                throw e;
+            } finally {
+                conn.getConnection().setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            // 保留待写更新，稍后重试
+            System.err.println("批量写入状态更新失败: " + e.getMessage());
+            scheduleFlush();
+            return;
+        }
+
+        // 只移除已写入的版本，写入期间产生的新更新留待下一批
+        tools.forEach(pendingTools::remove);
+        scripts.forEach(pendingScripts::remove);
+    }
+
+    private static void writeBatch(PreparedStatement pstmt, Map<Integer, RowUpdate> updates) throws SQLException {
+        if (updates.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Integer, RowUpdate> entry : updates.entrySet()) {
+            RowUpdate update = entry.getValue();
+            pstmt.setString(1, update.status);
+            if (update.timestamp != null) {
+                pstmt.setLong(2, update.timestamp);
+            } else {
+                pstmt.setNull(2, Types.INTEGER);
+            }
+            pstmt.setInt(3, entry.getKey());
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+    }
+
+    // 一行的合并后更新，字段为 null 表示不修改
+    private static final class RowUpdate {
+        final String status;
+        final Long timestamp;
+
+        RowUpdate(String status, Long timestamp) {
+            this.status = status;
+            this.timestamp = timestamp;
+        }
+
+        RowUpdate mergedWith(RowUpdate newer) {
+            return new RowUpdate(
+                    newer.status != null ? newer.status : status,
+                    newer.timestamp != null ? newer.timestamp : timestamp);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.z0fsec.workhelper.model;
+
+/**
+ * 定时任务的一次触发：计划时间、实际触发时间和运行结果
+ */
+public class JobFire {
+    public static final String OUTCOME_SUCCEEDED = "成功";
+    public static final String OUTCOME_FAILED = "失败";
+    public static final String OUTCOME_ERROR = "启动失败";
+    public static final String OUTCOME_SKIPPED = "跳过";
+    public static final String OUTCOME_CANCELLED = "已停止";
+
+    private long id;
+    private int jobId;
+    private long scheduledTime;
+    private long fireTime;
+    private long endTime;
+    private Integer exitCode;
+    private String outcome;
+    private String message;
+
+    public JobFire() {}
+
+    public JobFire(int jobId, long scheduledTime, long fireTime) {
+        this.jobId = jobId;
+        this.scheduledTime = scheduledTime;
+        this.fireTime = fireTime;
+    }
+
+    // Getter 和 Setter 方法
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public int getJobId() { return jobId; }
+    public void setJobId(int jobId) { this.jobId = jobId; }
+
+    // 毫秒时间戳
+    public long getScheduledTime() { return scheduledTime; }
+    public void setScheduledTime(long scheduledTime) { this.scheduledTime = scheduledTime; }
+
+    public long getFireTime() { return fireTime; }
+    public void setFireTime(long fireTime) { this.fireTime = fireTime; }
+
+    public long getEndTime() { return endTime; }
+    public void setEndTime(long endTime) { this.endTime = endTime; }
+
+    // 跳过、启动失败或被停止时为 null
+    public Integer getExitCode() { return exitCode; }
+    public void setExitCode(Integer exitCode) { this.exitCode = exitCode; }
+
+    public String getOutcome() { return outcome; }
+    public void setOutcome(String outcome) { this.outcome = outcome; }
+
+    // 跳过或失败的原因
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    // 触发延迟：实际触发时间晚于计划时间的毫秒数
+    public long getLatencyMillis() { return Math.max(0, fireTime - scheduledTime); }
+
+    public long getDurationMillis() { return Math.max(0, endTime - fireTime); }
+
+    @Override
+    public String toString() {
+        return "JobFire{" +
+                "jobId=" + jobId +
+                ", outcome='" + outcome + '\'' +
+                ", latency=" + getLatencyMillis() +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package com.z0fsec.workhelper.model;
+
+/**
+ * 一次运行的限制，各项为 0 表示不限制（宽限时间为 0 时使用默认值）
+ * 工具和脚本可以保存自己的限制；提交运行时也可以单独指定，单独指定的项优先
+ *
+ * @param timeoutMillis  从进程启动开始计算的最长运行时间，超时后结束整个进程树
+ * @param graceMillis    结束进程树时先请求正常退出，超过这个时间仍未退出的强制结束
+ * @param maxOutputBytes stdout 和 stderr 合计的最大输出字节数，超过后结束整个进程树，之后的输出丢弃
+ */
+public record RunLimits(long timeoutMillis, long graceMillis, long maxOutputBytes) {
+    public static final long DEFAULT_GRACE_MILLIS = 3000;
+    public static final RunLimits NONE = new RunLimits(0, 0, 0);
+
+    public RunLimits {
+        timeoutMillis = Math.max(0, timeoutMillis);
+        graceMillis = Math.max(0, graceMillis);
+        maxOutputBytes = Math.max(0, maxOutputBytes);
+    }
+
+    public boolean isUnlimited() {
+        return timeoutMillis == 0 && maxOutputBytes == 0;
+    }
+
+    public long effectiveGraceMillis() {
+        return graceMillis > 0 ? graceMillis : DEFAULT_GRACE_MILLIS;
+    }
+
+    /**
+     * 本对象未设置的项取 defaults 中的值
+     */
+    public RunLimits orElse(RunLimits defaults) {
+        if (defaults == null) {
+            return this;
+        }
+        return new RunLimits(timeoutMillis > 0 ? timeoutMillis : defaults.timeoutMillis,
+                graceMillis > 0 ? graceMillis : defaults.graceMillis,
+                maxOutputBytes > 0 ? maxOutputBytes : defaults.maxOutputBytes);
+    }
+
+    /**
+     * 限制的文字描述
+     */
+    public String describe() {
+        if (isUnlimited()) {
+            return "不限制";
+        }
+        StringBuilder text = new StringBuilder();
+        if (timeoutMillis > 0) {
+            text.append("超时 ").append(timeoutMillis / 1000).append(" 秒");
+        }
+        if (maxOutputBytes > 0) {
+            if (text.length() > 0) {
+                text.append("，");
+            }
+            text.append("输出上限 ").append(maxOutputBytes / (1024 * 1024)).append(" MB");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.z0fsec.workhelper.model;
+
+/**
+ * 一次工具或脚本运行的记录
+ */
+public class RunRecord {
+    private long id;
+    private String entityType;
+    private int entityId;
+    private String name;
+    private String arguments;
+    private long startTime;
+    private long endTime;
+    private Integer exitCode;
+    private long outputBytes;
+    private long peakMemoryBytes = -1;
+    private float peakCpuPercent = -1;
+    private int peakThreads = -1;
+    private long cpuTimeMillis = -1;
+    private String killReason;
+    private String outputPath;
+
+    public RunRecord() {}
+
+    public RunRecord(String entityType, int entityId, String name, String arguments, long startTime) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.name = name;
+        this.arguments = arguments;
+        this.startTime = startTime;
+    }
+
+    // Getter 和 Setter 方法
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    // 实体类型：tool / script
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+
+    public int getEntityId() { return entityId; }
+    public void setEntityId(int entityId) { this.entityId = entityId; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getArguments() { return arguments; }
+    public void setArguments(String arguments) { this.arguments = arguments; }
+
+    // 毫秒时间戳
+    public long getStartTime() { return startTime; }
+    public void setStartTime(long startTime) { this.startTime = startTime; }
+
+    public long getEndTime() { return endTime; }
+    public void setEndTime(long endTime) { this.endTime = endTime; }
+
+    // 启动失败或被中断时为 null
+    public Integer getExitCode() { return exitCode; }
+    public void setExitCode(Integer exitCode) { this.exitCode = exitCode; }
+
+    public long getOutputBytes() { return outputBytes; }
+    public void setOutputBytes(long outputBytes) { this.outputBytes = outputBytes; }
+
+    // 进程树的峰值常驻内存，无法获取时为 -1
+    public long getPeakMemoryBytes() { return peakMemoryBytes; }
+    public void setPeakMemoryBytes(long peakMemoryBytes) { this.peakMemoryBytes = peakMemoryBytes; }
+
+    // 进程树的峰值 CPU 使用率（单核百分比），无法获取时为 -1
+    public float getPeakCpuPercent() { return peakCpuPercent; }
+    public void setPeakCpuPercent(float peakCpuPercent) { this.peakCpuPercent = peakCpuPercent; }
+
+    // 进程树的峰值线程数，无法获取时为 -1
+    public int getPeakThreads() { return peakThreads; }
+    public void setPeakThreads(int peakThreads) { this.peakThreads = peakThreads; }
+
+    // 进程树最后一次采样时的累计 CPU 时间，无法获取时为 -1
+    public long getCpuTimeMillis() { return cpuTimeMillis; }
+    public void setCpuTimeMillis(long cpuTimeMillis) { this.cpuTimeMillis = cpuTimeMillis; }
+
+    // 合并输出文件的路径，没有保存输出时为 null
+    public String getOutputPath() { return outputPath; }
+    public void setOutputPath(String outputPath) { this.outputPath = outputPath; }
+
+    // 运行被结束的原因（手动停止、超时等），正常退出时为 null
+    public String getKillReason() { return killReason; }
+    public void setKillReason(String killReason) { this.killReason = killReason; }
+
+    public long getDurationMillis() { return Math.max(0, endTime - startTime); }
+
+    public boolean isSuccess() { return exitCode != null && exitCode == 0; }
+
+    @Override
+    public String toString() {
+        return "RunRecord{" +
+                "entityType='" + entityType + '\'' +
+                ", entityId=" + entityId +
+                ", name='" + name + '\'' +
+                ", exitCode=" + exitCode +
+                ", duration=" + getDurationMillis() +
+                '}';
+    }
+}
@@ -0,0 +1,56 @@
+package com.z0fsec.workhelper.model;
+
+/**
+ * 单个工具或脚本的运行耗时统计
+ */
+public class RunStats {
+    private final String entityType;
+    private final int entityId;
+    private final String name;
+    private final long runs;
+    private final long failures;
+    private final double avgDurationMillis;
+    private final long maxDurationMillis;
+    private final long p95DurationMillis;
+
+    public RunStats(String entityType, int entityId, String name, long runs, long failures,
+                    double avgDurationMillis, long maxDurationMillis, long p95DurationMillis) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.name = name;
+        this.runs = runs;
+        this.failures = failures;
+        this.avgDurationMillis = avgDurationMillis;
+        this.maxDurationMillis = maxDurationMillis;
+        this.p95DurationMillis = p95DurationMillis;
+    }
+
+    public String getEntityType() { return entityType; }
+
+    public int getEntityId() { return entityId; }
+
+    // 最近一次运行时的名称
+    public String getName() { return name; }
+
+    public long getRuns() { return runs; }
+
+    // 退出码非 0 或没有退出码的次数
+    public long getFailures() { return failures; }
+
+    public double getAvgDurationMillis() { return avgDurationMillis; }
+
+    public long getMaxDurationMillis() { return maxDurationMillis; }
+
+    public long getP95DurationMillis() { return p95DurationMillis; }
+
+    @Override
+    public String toString() {
+        return "RunStats{" +
+                "entityType='" + entityType + '\'' +
+                ", entityId=" + entityId +
+                ", name='" + name + '\'' +
+                ", runs=" + runs +
+                ", p95=" + p95DurationMillis +
+                '}';
+    }
+}
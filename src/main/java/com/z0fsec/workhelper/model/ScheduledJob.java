@@ -0,0 +1,123 @@
+package com.z0fsec.workhelper.model;
+
+/**
+ * 定时任务：按 cron 表达式或固定间隔运行一个工具或脚本
+ */
+public class ScheduledJob {
+    public static final String SCHEDULE_CRON = "cron";
+    public static final String SCHEDULE_INTERVAL = "interval";
+
+    // 错过触发时间（休眠、关机）后：补跑一次或直接跳到下一次
+    public static final String MISFIRE_FIRE_ONCE = "fire_once";
+    public static final String MISFIRE_SKIP = "skip";
+
+    private int id;
+    private String name;
+    private String entityType;
+    private int entityId;
+    private String arguments;
+    private String scheduleType = SCHEDULE_INTERVAL;
+    private String cronExpression;
+    private long intervalSeconds;
+    private int maxConcurrent = 1;
+    private String misfirePolicy = MISFIRE_FIRE_ONCE;
+    private boolean enabled = true;
+    private long nextFireTime;
+    private long lastFireTime;
+
+    public ScheduledJob() {}
+
+    public ScheduledJob(String name, String entityType, int entityId, String arguments) {
+        this.name = name;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.arguments = arguments;
+    }
+
+    // Getter 和 Setter 方法
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    // 实体类型：tool / script
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+
+    public int getEntityId() { return entityId; }
+    public void setEntityId(int entityId) { this.entityId = entityId; }
+
+    public String getArguments() { return arguments; }
+    public void setArguments(String arguments) { this.arguments = arguments; }
+
+    // SCHEDULE_CRON / SCHEDULE_INTERVAL
+    public String getScheduleType() { return scheduleType; }
+    public void setScheduleType(String scheduleType) { this.scheduleType = scheduleType; }
+
+    public String getCronExpression() { return cronExpression; }
+    public void setCronExpression(String cronExpression) { this.cronExpression = cronExpression; }
+
+    public long getIntervalSeconds() { return intervalSeconds; }
+    public void setIntervalSeconds(long intervalSeconds) { this.intervalSeconds = intervalSeconds; }
+
+    // 同一任务同时运行的上限，到达上限时本次触发跳过
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+
+    public String getMisfirePolicy() { return misfirePolicy; }
+    public void setMisfirePolicy(String misfirePolicy) { this.misfirePolicy = misfirePolicy; }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    // 毫秒时间戳，未计算或已停用时为 0
+    public long getNextFireTime() { return nextFireTime; }
+    public void setNextFireTime(long nextFireTime) { this.nextFireTime = nextFireTime; }
+
+    public long getLastFireTime() { return lastFireTime; }
+    public void setLastFireTime(long lastFireTime) { this.lastFireTime = lastFireTime; }
+
+    public boolean isCron() { return SCHEDULE_CRON.equals(scheduleType); }
+
+    /**
+     * 计划的文字描述
+     */
+    public String describeSchedule() {
+        if (isCron()) {
+            return "cron: " + cronExpression;
+        }
+        if (intervalSeconds % 3600 == 0) {
+            return "每 " + intervalSeconds / 3600 + " 小时";
+        }
+        if (intervalSeconds % 60 == 0) {
+            return "每 " + intervalSeconds / 60 + " 分钟";
+        }
+        return "每 " + intervalSeconds + " 秒";
+    }
+
+    public ScheduledJob copy() {
+        ScheduledJob copy = new ScheduledJob(name, entityType, entityId, arguments);
+        copy.id = id;
+        copy.scheduleType = scheduleType;
+        copy.cronExpression = cronExpression;
+        copy.intervalSeconds = intervalSeconds;
+        copy.maxConcurrent = maxConcurrent;
+        copy.misfirePolicy = misfirePolicy;
+        copy.enabled = enabled;
+        copy.nextFireTime = nextFireTime;
+        copy.lastFireTime = lastFireTime;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledJob{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", entityType='" + entityType + '\'' +
+                ", entityId=" + entityId +
+                ", schedule='" + describeSchedule() + '\'' +
+                '}';
+    }
+}
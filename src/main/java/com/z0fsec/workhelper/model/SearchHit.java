@@ -0,0 +1,33 @@
+package com.z0fsec.workhelper.model;
+
+/**
+ * 全文检索命中项
+ */
+public class SearchHit {
+    private final String entityType;
+    private final int id;
+    private final double score;
+
+    public SearchHit(String entityType, int id, double score) {
+        this.entityType = entityType;
+        this.id = id;
+        this.score = score;
+    }
+
+    // 实体类型：tool / script / template
+    public String getEntityType() { return entityType; }
+
+    public int getId() { return id; }
+
+    // bm25 相关度，数值越小越相关
+    public double getScore() { return score; }
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "entityType='" + entityType + '\'' +
+                ", id=" + id +
+                ", score=" + score +
+                '}';
+    }
+}
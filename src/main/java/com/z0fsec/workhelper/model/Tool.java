@@ -64,6 +64,15 @@ public class Tool {
     public Timestamp getUpdatedTime() { return updatedTime; }
     public void setUpdatedTime(Timestamp updatedTime) { this.updatedTime = updatedTime; }
 
+    public Tool copy() {
+        Tool copy = new Tool(name, type, path, version, status, description, category);
+        copy.id = id;
+        copy.lastUsed = lastUsed;
+        copy.createdTime = createdTime;
+        copy.updatedTime = updatedTime;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Tool{" +
@@ -1,21 +1,28 @@
 package com.z0fsec.workhelper.ui;
 
+import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.model.RunLimits;
+import com.z0fsec.workhelper.util.ProcessManager;
+import com.z0fsec.workhelper.util.RunHandle;
+import com.z0fsec.workhelper.util.StartupTimer;
 import com.z0fsec.workhelper.util.TimeUtils;
 
 import javax.swing.*;
-import javax.swing.text.*;
 import java.awt.*;
-import java.util.Date;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 
 public abstract class BasePanel extends JPanel {
     protected Consumer<String> logConsumer;
-    protected JTextPane logArea;
-    protected StyledDocument logDocument;
-    protected StyleContext logStyleContext;
-    protected Map<String, Style> logStyles;
+    protected Map<String, LogView.LineStyle> logStyles;
+    protected LogPipeline logPipeline;
 
     // 日志级别颜色定义
     private static final Color COLOR_INFO = new Color(0, 100, 0); // 深绿色
@@ -44,18 +51,137 @@ public abstract class BasePanel extends JPanel {
         this.logConsumer = logConsumer;
         setLayout(new BorderLayout());
         initializeLogStyles();
-        initializeLogComponents();
+        if (logConsumer instanceof LogPipeline shared) {
+            // 嵌在主面板中的功能面板共用主面板的日志区域
+            logPipeline = shared;
+        } else {
+            initializeLogComponents();
+        }
 
         SwingUtilities.invokeLater(() -> {
             ensureLogInitialized();
         });
     }
 
+    /**
+     * 在后台线程加载数据，完成后在 EDT 上应用结果，耗时计入启动阶段统计
+     *
+     * @param name     加载内容的名称，用于日志
+     * @param loader   在后台线程执行，不要访问界面组件
+     * @param onLoaded 在 EDT 上执行
+     */
+    protected <T> void loadInBackground(String name, Callable<T> loader, Consumer<T> onLoaded) {
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = loader.call();
+                StartupTimer.record("加载" + name, start);
+                SwingUtilities.invokeLater(() -> onLoaded.accept(result));
+            } catch (Exception e) {
+                appendError("加载" + name + "失败: " + e.getMessage());
+            }
+        }, "panel-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 后台操作（通常是数据库写入）完成后在 EDT 上应用结果，失败时记录错误日志，调用方不等待
+     *
+     * @param action    操作名称，用于错误日志
+     * @param onSuccess 在 EDT 上执行
+     */
+    protected <T> void applyOnEdt(CompletableFuture<T> future, String action, Consumer<T> onSuccess) {
+        future.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                onSuccess.accept(result);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            appendError(action + "失败: " + cause.getMessage());
+        }));
+    }
+
+    /**
+     * 打开工具或脚本最近一次运行的完整输出，正在运行的优先，否则从运行历史中查找
+     *
+     * @param entityType DatabaseManager.ENTITY_TOOL / ENTITY_SCRIPT
+     */
+    protected void showLatestRunOutput(String entityType, int entityId, String name) {
+        RunHandle latest = null;
+        for (RunHandle run : ProcessManager.getInstance().getRuns(entityType, entityId)) {
+            if (run.isStarted() && (latest == null || run.getRunId() > latest.getRunId())) {
+                latest = run;
+            }
+        }
+        if (latest != null) {
+            if (latest.getOutputFile() != null) {
+                openRunOutput(name, latest.getOutputFile(), latest);
+            } else {
+                // 输出文件创建失败，只能显示内存中保留的最后几行
+                appendWarning(latest + " 没有输出文件，最近的输出如下:");
+                latest.getOutputTail().forEach(this::appendInfo);
+            }
+            return;
+        }
+
+        loadInBackground("运行历史", () -> DatabaseManager.getInstance().getRecentRuns(entityType, entityId, 1), runs -> {
+            String outputPath = runs.isEmpty() ? null : runs.get(0).getOutputPath();
+            if (outputPath == null || !Files.exists(Paths.get(outputPath))) {
+                appendWarning(name + " 没有可查看的运行输出");
+                return;
+            }
+            openRunOutput(name, Paths.get(outputPath), null);
+        });
+    }
+
+    /**
+     * 编辑工具或脚本的运行限制，对之后启动的运行生效
+     *
+     * @param entityType DatabaseManager.ENTITY_TOOL / ENTITY_SCRIPT
+     */
+    protected void editRunLimits(String entityType, int entityId, String name) {
+        DatabaseManager db = DatabaseManager.getInstance();
+        loadInBackground("运行限制", () -> db.getRunLimits(entityType, entityId), limits -> {
+            RunLimitsDialog dialog = new RunLimitsDialog((JFrame) SwingUtilities.getWindowAncestor(this), name, limits);
+            dialog.setVisible(true);
+            if (!dialog.isConfirmed()) {
+                return;
+            }
+            RunLimits updated = dialog.getLimits();
+            db.runAsync(d -> d.saveRunLimits(entityType, entityId, updated)).whenComplete((v, error) -> {
+                if (error != null) {
+                    appendError("保存运行限制失败: " + error.getMessage());
+                } else {
+                    appendSuccess(name + " 的运行限制: " + updated.describe());
+                }
+            });
+        });
+    }
+
+    /**
+     * 指定单次运行的限制，未设置的项使用保存的设置
+     *
+     * @param current 已指定的限制，没有时传 RunLimits.NONE
+     * @return 取消时返回 null
+     */
+    protected RunLimits askRunLimits(String name, RunLimits current) {
+        RunLimitsDialog dialog = new RunLimitsDialog((JFrame) SwingUtilities.getWindowAncestor(this), name,
+                current, true);
+        dialog.setVisible(true);
+        return dialog.isConfirmed() ? dialog.getLimits() : null;
+    }
+
+    private void openRunOutput(String name, Path file, RunHandle run) {
+        JFrame frame = (JFrame) SwingUtilities.getWindowAncestor(this);
+        new RunOutputDialog(frame, "运行输出 - " + name, file, run).setVisible(true);
+    }
+
     /**
      * 初始化日志样式
      */
     private void initializeLogStyles() {
-        logStyleContext = new StyleContext();
         logStyles = new HashMap<>();
 
         // 创建各种日志级别的样式
@@ -71,25 +197,17 @@ public abstract class BasePanel extends JPanel {
      * 初始化日志组件
      */
     private void initializeLogComponents() {
-        // 创建日志区域
-        logArea = new JTextPane();
-        logDocument = logArea.getStyledDocument();
-        logArea.setEditable(false);
-        setOptimalFont(logArea);
+        // 创建日志区域，保留行数在设置读取后由主面板调整
+        LogView logView = new LogView(new LogBuffer(LogPipeline.DEFAULT_CAPACITY), logStyles, STYLE_DEFAULT);
+        setOptimalFont(logView);
+        logPipeline = new LogPipeline(logView, STYLE_WARNING);
     }
 
     /**
      * 创建日志样式
      */
     private void createLogStyle(String styleName, Color color, boolean italic) {
-        Style style = logStyleContext.addStyle(styleName, null);
-        StyleConstants.setForeground(style, color);
-        StyleConstants.setFontSize(style, 12);
-        StyleConstants.setFontFamily(style, "Microsoft YaHei UI");
-        if (italic) {
-            StyleConstants.setItalic(style, true);
-        }
-        logStyles.put(styleName, style);
+        logStyles.put(styleName, new LogView.LineStyle(color, italic));
     }
 
     /**
@@ -99,12 +217,10 @@ public abstract class BasePanel extends JPanel {
         JPanel panel = new JPanel(new BorderLayout());
 
         // 确保日志组件已初始化
-        if (logArea == null) {
-            initializeLogComponents();
-        }
+        ensureLogInitialized();
 
         // 创建带滚动条的面板
-        JScrollPane scrollPane = new JScrollPane(logArea);
+        JScrollPane scrollPane = new JScrollPane(logPipeline.getView());
         scrollPane.setPreferredSize(new Dimension(600, 150));
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
@@ -118,7 +234,7 @@ public abstract class BasePanel extends JPanel {
     /**
      * 设置最优字体以支持中文
      */
-    private void setOptimalFont(JTextPane textPane) {
+    private void setOptimalFont(JComponent component) {
         // 尝试使用支持中文的字体
         String[] preferredFonts = {
                 "Microsoft YaHei UI",     // Windows 中文UI字体
@@ -139,10 +255,10 @@ public abstract class BasePanel extends JPanel {
         }
 
         if (font != null) {
-            textPane.setFont(font);
+            component.setFont(font);
         } else {
             // 回退到默认字体
-            textPane.setFont(new Font("Monospaced", Font.PLAIN, 12));
+            component.setFont(new Font("Monospaced", Font.PLAIN, 12));
         }
     }
 
@@ -188,94 +304,27 @@ public abstract class BasePanel extends JPanel {
         appendLog(ASCII_DEBUG + " " + message, STYLE_DEBUG);
     }
 
-    public void appendLog(String message, String styleName) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                // 双重检查确保日志系统完全初始化
-                ensureLogInitialized();
-
-                if (logDocument == null || logArea == null) {
-                    System.err.println("日志系统未正确初始化，无法写入日志: " + message);
-                    return;
-                }
-
-                Date date = new Date();
-                String timestamp = TimeUtils.timestampToDate(date.getTime() / 1000);
-
-                // 时间戳使用默认样式
-                Style timestampStyle = logStyles.get(STYLE_DEFAULT);
-                logDocument.insertString(logDocument.getLength(), "[" + timestamp + "] ", timestampStyle);
-
-                // 消息使用指定样式
-                Style messageStyle = logStyles.getOrDefault(styleName, logStyles.get(STYLE_DEFAULT));
-                logDocument.insertString(logDocument.getLength(), message + "\n", messageStyle);
-
-                // 自动滚动到最后
-                logArea.setCaretPosition(logDocument.getLength());
-
-                // 如果日志行数过多，自动清理
-                autoCleanLog();
-
-            } catch (BadLocationException e) {
-                System.err.println("日志添加失败: " + e.getMessage() + ", 消息: " + message);
-            } catch (Exception e) {
-                System.err.println("日志系统异常: " + e.getMessage() + ", 消息: " + message);
-                e.printStackTrace();
-            }
-        });
-    }
-
     /**
-     * 自动清理日志，防止内存占用过多
+     * 可在任意线程调用，日志按帧批量写入日志区域
      */
-    private void autoCleanLog() {
-        try {
-            if (logDocument == null) return;
-
-            int maxLines = 500;
-            int lineCount = logDocument.getDefaultRootElement().getElementCount();
-
-            if (lineCount > maxLines) {
-                int removeCount = lineCount - maxLines;
-                Element root = logDocument.getDefaultRootElement();
-                int endOffset = root.getElement(removeCount - 1).getEndOffset();
-                logDocument.remove(0, endOffset);
-
-                // 添加清理提示
-                appendWarning("日志已自动清理，移除了 " + removeCount + " 行旧日志");
-            }
-        } catch (Exception e) {
-            // 忽略清理过程中的异常
-        }
+    public void appendLog(String message, String styleName) {
+        // 双重检查确保日志系统完全初始化
+        ensureLogInitialized();
+        logPipeline.publish(message, styleName);
     }
 
     /**
      * 清空日志
      */
     public void clearLog() {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                if (logDocument != null) {
-                    logDocument.remove(0, logDocument.getLength());
-                }
-            } catch (BadLocationException e) {
-                System.err.println("清空日志失败: " + e.getMessage());
-            }
-        });
+        SwingUtilities.invokeLater(logPipeline::clear);
     }
 
     /**
      * 获取日志内容
      */
     public String getLogContent() {
-        try {
-            if (logDocument != null) {
-                return logDocument.getText(0, logDocument.getLength());
-            }
-        } catch (BadLocationException e) {
-            // 忽略异常
-        }
-        return "";
+        return logPipeline != null ? logPipeline.getText() : "";
     }
 
     /**
@@ -302,7 +351,7 @@ public abstract class BasePanel extends JPanel {
      * 安全的日志初始化检查方法
      */
     protected void ensureLogInitialized() {
-        if (logDocument == null) {
+        if (logPipeline == null) {
             initializeLogComponents();
         }
     }
@@ -0,0 +1,228 @@
+package com.z0fsec.workhelper.ui;
+
+import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.model.Tool;
+import com.z0fsec.workhelper.util.FanOutRun;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 批量运行对话框：输入目标列表和参数模板，设置并发数和单个目标超时，显示总体进度
+ */
+class FanOutDialog extends JDialog {
+    private final Tool tool;
+    private final Consumer<FanOutRun> starter;
+
+    private JTextField templateField;
+    private JSpinner parallelismSpinner;
+    private JSpinner timeoutSpinner;
+    private JTextArea targetsArea;
+    private JProgressBar progressBar;
+    private JLabel progressLabel;
+    private JButton startBtn;
+    private JButton stopBtn;
+    private JButton outputBtn;
+
+    private FanOutRun fanOut;
+    private Path mergedOutput;
+
+    /**
+     * @param starter 由工具面板接管输出和状态并启动运行
+     */
+    public FanOutDialog(JFrame parent, Tool tool, Consumer<FanOutRun> starter) {
+        super(parent, "批量运行 - " + tool.getName(), false);
+        this.tool = tool;
+        this.starter = starter;
+        initUI();
+        setSize(640, 520);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private void initUI() {
+        setLayout(new BorderLayout());
+
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        // 参数模板
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        formPanel.add(new JLabel("参数模板:"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        gbc.gridwidth = 3;
+        templateField = new JTextField(FanOutRun.PLACEHOLDER, 30);
+        templateField.setToolTipText(FanOutRun.PLACEHOLDER + " 会替换为每个目标，例如: -sV -p 1-1000 {target}");
+        formPanel.add(templateField, gbc);
+
+        // 并发数和超时
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.weightx = 0;
+        gbc.gridwidth = 1;
+        formPanel.add(new JLabel("并发数:"), gbc);
+        gbc.gridx = 1;
+        parallelismSpinner = new JSpinner(new SpinnerNumberModel(8, 1, 128, 1));
+        formPanel.add(parallelismSpinner, gbc);
+        gbc.gridx = 2;
+        formPanel.add(new JLabel("单个目标超时(秒，0 为按工具设置):"), gbc);
+        gbc.gridx = 3;
+        timeoutSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 86400, 30));
+        formPanel.add(timeoutSpinner, gbc);
+
+        add(formPanel, BorderLayout.NORTH);
+
+        // 目标列表
+        JPanel targetsPanel = new JPanel(new BorderLayout(5, 5));
+        targetsPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(0, 10, 0, 10),
+                BorderFactory.createTitledBorder("目标列表（每行一个，# 开头为注释）")));
+        targetsArea = new JTextArea();
+        targetsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        targetsPanel.add(new JScrollPane(targetsArea), BorderLayout.CENTER);
+        JButton importBtn = new JButton("从文件导入");
+        importBtn.addActionListener(this::importTargets);
+        JPanel importPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        importPanel.add(importBtn);
+        targetsPanel.add(importPanel, BorderLayout.SOUTH);
+        add(targetsPanel, BorderLayout.CENTER);
+
+        // 进度和按钮
+        JPanel bottomPanel = new JPanel(new BorderLayout(5, 5));
+        bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 10, 10));
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setString("未开始");
+        progressLabel = new JLabel(" ");
+        bottomPanel.add(progressBar, BorderLayout.NORTH);
+        bottomPanel.add(progressLabel, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        startBtn = new JButton("开始");
+        startBtn.addActionListener(this::startFanOut);
+        stopBtn = new JButton("停止");
+        stopBtn.setEnabled(false);
+        stopBtn.addActionListener(e -> stopFanOut());
+        outputBtn = new JButton("查看合并输出");
+        outputBtn.setEnabled(false);
+        outputBtn.addActionListener(e -> new RunOutputDialog((JFrame) getOwner(),
+                "批量运行输出 - " + tool.getName(), mergedOutput, null).setVisible(true));
+        JButton closeBtn = new JButton("关闭");
+        closeBtn.addActionListener(e -> dispose());
+        buttonPanel.add(startBtn);
+        buttonPanel.add(stopBtn);
+        buttonPanel.add(outputBtn);
+        buttonPanel.add(closeBtn);
+        bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        add(bottomPanel, BorderLayout.SOUTH);
+    }
+
+    private void importTargets(ActionEvent e) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导入目标列表");
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        try {
+            String content = Files.readString(file.toPath());
+            if (!targetsArea.getText().isBlank() && !targetsArea.getText().endsWith("\n")) {
+                targetsArea.append("\n");
+            }
+            targetsArea.append(content);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "读取文件失败: " + ex.getMessage(),
+                    "错误", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void startFanOut(ActionEvent e) {
+        try {
+            fanOut = new FanOutRun(DatabaseManager.ENTITY_TOOL, tool.getId(), tool.getName(),
+                    Arrays.asList(targetsArea.getText().split("\\R")), templateField.getText().trim());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "无法开始", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        fanOut.setParallelism((Integer) parallelismSpinner.getValue());
+        fanOut.setTimeout((Integer) timeoutSpinner.getValue(), TimeUnit.SECONDS);
+        fanOut.addListener(new FanOutRun.Listener() {
+            @Override
+            public void onTargetFinished(FanOutRun run, FanOutRun.TargetResult result) {
+                SwingUtilities.invokeLater(() -> updateProgress());
+            }
+
+            @Override
+            public void onFinished(FanOutRun run) {
+                SwingUtilities.invokeLater(() -> onFanOutFinished());
+            }
+        });
+
+        templateField.setEnabled(false);
+        parallelismSpinner.setEnabled(false);
+        timeoutSpinner.setEnabled(false);
+        targetsArea.setEditable(false);
+        startBtn.setEnabled(false);
+        stopBtn.setEnabled(true);
+        progressBar.setMaximum(fanOut.getTotal());
+        updateProgress();
+
+        starter.accept(fanOut);
+    }
+
+    private void stopFanOut() {
+        if (fanOut != null) {
+            stopBtn.setEnabled(false);
+            fanOut.stop();
+        }
+    }
+
+    private void updateProgress() {
+        int finished = fanOut.getFinished();
+        progressBar.setValue(finished);
+        progressBar.setString(finished + " / " + fanOut.getTotal());
+
+        StringBuilder text = new StringBuilder("运行中 " + fanOut.getRunning());
+        for (FanOutRun.Outcome outcome : FanOutRun.Outcome.values()) {
+            int count = fanOut.getCount(outcome);
+            if (count > 0) {
+                text.append("，").append(outcome.getLabel()).append(" ").append(count);
+            }
+        }
+        // 按已完成目标的平均耗时估算剩余时间
+        long elapsed = System.currentTimeMillis() - fanOut.getStartTime();
+        if (finished > 0 && finished < fanOut.getTotal()) {
+            long remaining = elapsed * (fanOut.getTotal() - finished) / finished;
+            text.append("，预计剩余 ").append(formatSeconds(remaining));
+        }
+        text.append("，已用时 ").append(formatSeconds(elapsed));
+        progressLabel.setText(text.toString());
+    }
+
+    private void onFanOutFinished() {
+        updateProgress();
+        stopBtn.setEnabled(false);
+        mergedOutput = fanOut.getCompletion().getNow(null);
+        outputBtn.setEnabled(mergedOutput != null);
+    }
+
+    private static String formatSeconds(long millis) {
+        long seconds = millis / 1000;
+        return seconds >= 60 ? seconds / 60 + " 分 " + seconds % 60 + " 秒" : seconds + " 秒";
+    }
+}
@@ -0,0 +1,274 @@
+package com.z0fsec.workhelper.ui;
+
+import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.model.ScheduledJob;
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.Tool;
+import com.z0fsec.workhelper.util.CommandBuilder;
+import com.z0fsec.workhelper.util.JobScheduler;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * 新建和编辑定时任务的对话框
+ */
+class JobDialog extends JDialog {
+    private static final String TARGET_TOOL = "工具";
+    private static final String TARGET_SCRIPT = "脚本";
+    private static final String[] MISFIRE_LABELS = {"补跑一次", "跳过"};
+    private static final String[] MISFIRE_POLICIES = {ScheduledJob.MISFIRE_FIRE_ONCE, ScheduledJob.MISFIRE_SKIP};
+
+    private boolean confirmed = false;
+    private final ScheduledJob jobInfo;
+    private final List<Tool> tools;
+    private final List<Script> scripts;
+
+    private JTextField nameField;
+    private JComboBox<String> targetTypeComboBox;
+    private JComboBox<Target> targetComboBox;
+    private JTextField argumentsField;
+    private JRadioButton cronRadio;
+    private JRadioButton intervalRadio;
+    private JTextField cronField;
+    private JSpinner intervalSpinner;
+    private JSpinner maxConcurrentSpinner;
+    private JComboBox<String> misfireComboBox;
+    private JCheckBox enabledCheckBox;
+
+    // 下拉框中的工具或脚本
+    private record Target(String entityType, int id, String name) {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * @param tools 只列出支持直接带参数执行的工具
+     */
+    public JobDialog(JFrame parent, String title, ScheduledJob existingJob, List<Tool> tools, List<Script> scripts) {
+        super(parent, title, true);
+        this.jobInfo = existingJob;
+        this.tools = tools;
+        this.scripts = scripts;
+        initUI();
+        pack();
+        setLocationRelativeTo(parent);
+    }
+
+    private void initUI() {
+        setLayout(new BorderLayout());
+        setResizable(false);
+
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        // 任务名称
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        formPanel.add(new JLabel("任务名称:"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        gbc.gridwidth = 2;
+        nameField = new JTextField(24);
+        formPanel.add(nameField, gbc);
+
+        // 运行目标
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.weightx = 0;
+        gbc.gridwidth = 1;
+        formPanel.add(new JLabel("运行目标:"), gbc);
+        gbc.gridx = 1;
+        targetTypeComboBox = new JComboBox<>(new String[]{TARGET_TOOL, TARGET_SCRIPT});
+        targetTypeComboBox.addActionListener(e -> fillTargets());
+        formPanel.add(targetTypeComboBox, gbc);
+        gbc.gridx = 2;
+        gbc.weightx = 1.0;
+        targetComboBox = new JComboBox<>();
+        formPanel.add(targetComboBox, gbc);
+
+        // 参数
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.weightx = 0;
+        formPanel.add(new JLabel("参数:"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        gbc.gridwidth = 2;
+        argumentsField = new JTextField(24);
+        argumentsField.setToolTipText("以空格分隔；脚本留空时使用脚本自身的参数");
+        formPanel.add(argumentsField, gbc);
+
+        // 计划
+        ButtonGroup scheduleGroup = new ButtonGroup();
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        gbc.weightx = 0;
+        gbc.gridwidth = 1;
+        intervalRadio = new JRadioButton("固定间隔(秒):", true);
+        scheduleGroup.add(intervalRadio);
+        formPanel.add(intervalRadio, gbc);
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        intervalSpinner = new JSpinner(new SpinnerNumberModel(3600, JobScheduler.MIN_INTERVAL_SECONDS, 31 * 86400, 60));
+        formPanel.add(intervalSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        gbc.gridwidth = 1;
+        cronRadio = new JRadioButton("cron 表达式:");
+        scheduleGroup.add(cronRadio);
+        formPanel.add(cronRadio, gbc);
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        cronField = new JTextField("0 2 * * *", 24);
+        cronField.setToolTipText("分 时 日 月 周，例如 0 2 * * 1-5 表示工作日凌晨 2 点");
+        formPanel.add(cronField, gbc);
+        intervalRadio.addActionListener(e -> updateScheduleFields());
+        cronRadio.addActionListener(e -> updateScheduleFields());
+
+        // 并发上限
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        gbc.gridwidth = 1;
+        formPanel.add(new JLabel("并发上限:"), gbc);
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        maxConcurrentSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+        maxConcurrentSpinner.setToolTipText("同时运行的数量达到上限时，本次触发跳过");
+        formPanel.add(maxConcurrentSpinner, gbc);
+
+        // 错过触发
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        gbc.gridwidth = 1;
+        formPanel.add(new JLabel("错过触发:"), gbc);
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        misfireComboBox = new JComboBox<>(MISFIRE_LABELS);
+        misfireComboBox.setToolTipText("休眠或程序未运行期间错过的触发，多次也只补跑一次");
+        formPanel.add(misfireComboBox, gbc);
+
+        // 启用
+        gbc.gridx = 1;
+        gbc.gridy = 7;
+        enabledCheckBox = new JCheckBox("启用", true);
+        formPanel.add(enabledCheckBox, gbc);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton okBtn = new JButton("确定");
+        okBtn.addActionListener(e -> confirm());
+        JButton cancelBtn = new JButton("取消");
+        cancelBtn.addActionListener(e -> cancel());
+        buttonPanel.add(okBtn);
+        buttonPanel.add(cancelBtn);
+
+        add(formPanel, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        // 如果是编辑模式，填充现有数据
+        if (jobInfo != null) {
+            nameField.setText(jobInfo.getName());
+            targetTypeComboBox.setSelectedItem(DatabaseManager.ENTITY_SCRIPT.equals(jobInfo.getEntityType())
+                    ? TARGET_SCRIPT : TARGET_TOOL);
+            argumentsField.setText(jobInfo.getArguments());
+            if (jobInfo.isCron()) {
+                cronRadio.setSelected(true);
+                cronField.setText(jobInfo.getCronExpression());
+            } else {
+                intervalSpinner.setValue((int) jobInfo.getIntervalSeconds());
+            }
+            maxConcurrentSpinner.setValue(jobInfo.getMaxConcurrent());
+            misfireComboBox.setSelectedIndex(ScheduledJob.MISFIRE_SKIP.equals(jobInfo.getMisfirePolicy()) ? 1 : 0);
+            enabledCheckBox.setSelected(jobInfo.isEnabled());
+        }
+        fillTargets();
+        updateScheduleFields();
+    }
+
+    private void fillTargets() {
+        targetComboBox.removeAllItems();
+        if (TARGET_TOOL.equals(targetTypeComboBox.getSelectedItem())) {
+            for (Tool tool : tools) {
+                if (CommandBuilder.supportsParameters(tool)) {
+                    targetComboBox.addItem(new Target(DatabaseManager.ENTITY_TOOL, tool.getId(), tool.getName()));
+                }
+            }
+        } else {
+            for (Script script : scripts) {
+                targetComboBox.addItem(new Target(DatabaseManager.ENTITY_SCRIPT, script.getId(), script.getName()));
+            }
+        }
+        if (jobInfo != null) {
+            for (int i = 0; i < targetComboBox.getItemCount(); i++) {
+                Target target = targetComboBox.getItemAt(i);
+                if (target.entityType().equals(jobInfo.getEntityType()) && target.id() == jobInfo.getEntityId()) {
+                    targetComboBox.setSelectedIndex(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void updateScheduleFields() {
+        cronField.setEnabled(cronRadio.isSelected());
+        intervalSpinner.setEnabled(intervalRadio.isSelected());
+    }
+
+    private void confirm() {
+        if (targetComboBox.getSelectedItem() == null) {
+            JOptionPane.showMessageDialog(this, "请选择要运行的工具或脚本", "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
+            JobScheduler.validate(getJobInfo());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        confirmed = true;
+        dispose();
+    }
+
+    private void cancel() {
+        confirmed = false;
+        dispose();
+    }
+
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    /**
+     * 编辑模式下保留原任务的 ID 和触发时间
+     */
+    public ScheduledJob getJobInfo() {
+        ScheduledJob job = jobInfo != null ? jobInfo.copy() : new ScheduledJob();
+        Target target = (Target) targetComboBox.getSelectedItem();
+        job.setName(nameField.getText().trim());
+        if (target != null) {
+            job.setEntityType(target.entityType());
+            job.setEntityId(target.id());
+        }
+        job.setArguments(argumentsField.getText().trim());
+        if (cronRadio.isSelected()) {
+            job.setScheduleType(ScheduledJob.SCHEDULE_CRON);
+            job.setCronExpression(cronField.getText().trim());
+        } else {
+            job.setScheduleType(ScheduledJob.SCHEDULE_INTERVAL);
+            job.setIntervalSeconds((Integer) intervalSpinner.getValue());
+        }
+        job.setMaxConcurrent((Integer) maxConcurrentSpinner.getValue());
+        job.setMisfirePolicy(MISFIRE_POLICIES[misfireComboBox.getSelectedIndex()]);
+        job.setEnabled(enabledCheckBox.isSelected());
+        return job;
+    }
+}
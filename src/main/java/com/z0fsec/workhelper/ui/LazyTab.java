@@ -0,0 +1,49 @@
+package com.z0fsec.workhelper.ui;
+
+import com.z0fsec.workhelper.util.StartupTimer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.function.Supplier;
+
+/**
+ * 延迟构建的标签页
+ * 先显示占位内容，第一次选中或启动后空闲时才在 EDT 上构建真正的面板
+ */
+public class LazyTab extends JPanel {
+    private final String title;
+    private final Supplier<? extends JComponent> factory;
+    private JComponent content;
+
+    public LazyTab(String title, Supplier<? extends JComponent> factory) {
+        super(new BorderLayout());
+        this.title = title;
+        this.factory = factory;
+
+        JLabel placeholder = new JLabel("正在加载" + title + "...", SwingConstants.CENTER);
+        placeholder.setForeground(Color.GRAY);
+        add(placeholder, BorderLayout.CENTER);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean isLoaded() {
+        return content != null;
+    }
+
+    /**
+     * 构建面板并替换占位内容，只构建一次，必须在 EDT 上调用
+     */
+    public JComponent ensureLoaded() {
+        if (content == null) {
+            content = StartupTimer.time("构建" + title + "面板", factory);
+            removeAll();
+            add(content, BorderLayout.CENTER);
+            revalidate();
+            repaint();
+        }
+        return content;
+    }
+}
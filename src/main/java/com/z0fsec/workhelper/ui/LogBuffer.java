@@ -0,0 +1,89 @@
+package com.z0fsec.workhelper.ui;
+
+/**
+ * 固定容量的日志环形缓冲区
+ * 写满后新记录覆盖最旧的记录，追加和淘汰都是 O(1)；只在 EDT 上访问
+ */
+public class LogBuffer {
+    /**
+     * 一条日志：时间（毫秒）、样式名和内容
+     */
+    public record Entry(long time, String style, String message) {
+    }
+
+    private Entry[] entries;
+    // 最旧一条记录的位置
+    private int head;
+    private int size;
+
+    public LogBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("日志容量必须大于 0: " + capacity);
+        }
+        this.entries = new Entry[capacity];
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 被覆盖的最旧记录数（0 或 1）
+     */
+    public int add(Entry entry) {
+        if (size < entries.length) {
+            entries[(head + size) % entries.length] = entry;
+            size++;
+            return 0;
+        }
+        entries[head] = entry;
+        head = (head + 1) % entries.length;
+        return 1;
+    }
+
+    /**
+     * 按从旧到新的顺序取记录，0 是最旧的一条
+     */
+    public Entry get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return entries[(head + index) % entries.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    public void clear() {
+        entries = new Entry[entries.length];
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * 修改容量，保留最新的记录
+     *
+     * @return 因容量变小被移除的记录数
+     */
+    public int setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("日志容量必须大于 0: " + capacity);
+        }
+        if (capacity == entries.length) {
+            return 0;
+        }
+        int keep = Math.min(size, capacity);
+        int removed = size - keep;
+        Entry[] resized = new Entry[capacity];
+        for (int i = 0; i < keep; i++) {
+            resized[i] = get(removed + i);
+        }
+        entries = resized;
+        head = 0;
+        size = keep;
+        return removed;
+    }
+}
@@ -0,0 +1,150 @@
+package com.z0fsec.workhelper.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 日志输出管道
+ * 任意线程把日志放进无锁队列，EDT 按帧批量追加到 LogView 的环形缓冲区，每秒最多刷新 30 次；
+ * 积压超过上限时丢弃新日志，一帧内超过保留行数的旧日志直接跳过，未显示的行数在下一帧提示。
+ * 主面板把自己的管道作为 logConsumer 传给各功能面板，所有面板的日志写到同一个日志区域
+ */
+public class LogPipeline implements Consumer<String> {
+    public static final int DEFAULT_CAPACITY = 5000;
+    public static final int MIN_CAPACITY = 100;
+    public static final int MAX_CAPACITY = 1_000_000;
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(33);
+    // 等待写入的日志上限，超出后丢弃
+    private static final int MAX_PENDING = 20_000;
+
+    private final LogView view;
+    private final String warningStyle;
+
+    private final ConcurrentLinkedQueue<LogBuffer.Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private final Timer frameTimer;
+
+    // 只在 EDT 上访问
+    private long lastFrameNanos;
+
+    public LogPipeline(LogView view, String warningStyle) {
+        this.view = view;
+        this.warningStyle = warningStyle;
+        this.frameTimer = new Timer(0, e -> drain());
+        this.frameTimer.setRepeats(false);
+        this.lastFrameNanos = System.nanoTime() - FRAME_NANOS;
+        view.setComponentPopupMenu(createPopupMenu());
+    }
+
+    public LogView getView() {
+        return view;
+    }
+
+    /**
+     * 可在任意线程调用，不会阻塞
+     */
+    public void publish(String message, String styleName) {
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+        } else {
+            pending.offer(new LogBuffer.Entry(System.currentTimeMillis(), styleName, message));
+        }
+        if (frameScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::scheduleFrame);
+        }
+    }
+
+    @Override
+    public void accept(String message) {
+        publish(message, null);
+    }
+
+    /**
+     * 修改日志区域保留的行数，超出范围时取边界值，必须在 EDT 上调用
+     */
+    public void setCapacity(int capacity) {
+        view.setCapacity(Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, capacity)));
+    }
+
+    /**
+     * 清空日志区域和尚未写入的日志，必须在 EDT 上调用
+     */
+    public void clear() {
+        while (pending.poll() != null) {
+            pendingCount.decrementAndGet();
+        }
+        dropped.set(0);
+        view.clear();
+    }
+
+    /**
+     * 日志区域中的全部日志，必须在 EDT 上调用
+     */
+    public String getText() {
+        return view.getText();
+    }
+
+    private JPopupMenu createPopupMenu() {
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem copyItem = new JMenuItem("复制全部");
+        copyItem.addActionListener(e -> Toolkit.getDefaultToolkit().getSystemClipboard()
+                .setContents(new StringSelection(getText()), null));
+        JMenuItem clearItem = new JMenuItem("清空日志");
+        clearItem.addActionListener(e -> clear());
+        menu.add(copyItem);
+        menu.add(clearItem);
+        return menu;
+    }
+
+    // 距上一帧不足一帧时间时推迟到下一帧
+    private void scheduleFrame() {
+        long wait = lastFrameNanos + FRAME_NANOS - System.nanoTime();
+        if (wait <= 0) {
+            drain();
+        } else {
+            frameTimer.setInitialDelay((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+            frameTimer.restart();
+        }
+    }
+
+    private void drain() {
+        lastFrameNanos = System.nanoTime();
+        // 先清标记再取日志，取的过程中新到的日志会安排下一帧
+        frameScheduled.set(false);
+
+        // 只取本帧开始时已有的日志，只保留最后（缓冲区容量）行，更早的追加进去也会马上被覆盖
+        int capacity = view.getBuffer().capacity();
+        ArrayDeque<LogBuffer.Entry> batch = new ArrayDeque<>();
+        long skipped = 0;
+        int count = pendingCount.get();
+        LogBuffer.Entry entry;
+        for (int i = 0; i < count && (entry = pending.poll()) != null; i++) {
+            pendingCount.decrementAndGet();
+            batch.addLast(entry);
+            if (batch.size() > capacity) {
+                batch.removeFirst();
+                skipped++;
+            }
+        }
+        skipped += dropped.getAndSet(0);
+        if (skipped > 0) {
+            batch.addLast(new LogBuffer.Entry(System.currentTimeMillis(), warningStyle,
+                    "[!] 日志输出过快，" + skipped + " 行未显示"));
+        }
+        if (!batch.isEmpty()) {
+            view.append(batch);
+        }
+    }
+}
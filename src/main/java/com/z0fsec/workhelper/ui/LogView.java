@@ -0,0 +1,227 @@
+package com.z0fsec.workhelper.ui;
+
+import com.z0fsec.workhelper.util.TimeUtils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 日志显示组件
+ * 直接按行绘制 LogBuffer 中的记录，每次只绘制可见区域内的行，行数再多绘制成本也不变；
+ * 视图停在底部时跟随新日志滚动，翻看旧日志时旧记录被淘汰也保持当前看到的内容不动
+ */
+public class LogView extends JComponent implements Scrollable {
+    private static final int PADDING = 4;
+    private static final String STAMP_SAMPLE = "[0000-00-00 00:00:00] ";
+
+    /**
+     * 一种日志样式：颜色和是否斜体
+     */
+    public record LineStyle(Color color, boolean italic) {
+    }
+
+    private final LogBuffer buffer;
+    private final Map<String, LineStyle> styles;
+    private final LineStyle defaultStyle;
+
+    private Font italicFont;
+    private int rowHeight;
+    private int ascent;
+    private int stampWidth;
+    // 已追加日志的最大宽度，只增不减，清空或换字体时重新计算
+    private int contentWidth;
+
+    // 同一秒内的日志复用格式化好的时间
+    private long stampSecond = -1;
+    private String stamp;
+
+    public LogView(LogBuffer buffer, Map<String, LineStyle> styles, String defaultStyle) {
+        this.buffer = buffer;
+        this.styles = styles;
+        this.defaultStyle = styles.get(defaultStyle);
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    }
+
+    public LogBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        italicFont = font.deriveFont(Font.ITALIC);
+        FontMetrics metrics = getFontMetrics(font);
+        rowHeight = metrics.getHeight();
+        ascent = metrics.getAscent();
+        stampWidth = metrics.stringWidth(STAMP_SAMPLE);
+        contentWidth = 0;
+        for (int i = 0; i < buffer.size(); i++) {
+            measure(buffer.get(i));
+        }
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * 追加一批日志并刷新显示
+     */
+    public void append(Collection<LogBuffer.Entry> entries) {
+        boolean follow = isAtBottom();
+        int evicted = 0;
+        for (LogBuffer.Entry entry : entries) {
+            evicted += buffer.add(entry);
+            measure(entry);
+        }
+        contentChanged(follow, evicted);
+    }
+
+    /**
+     * 修改保留行数
+     */
+    public void setCapacity(int capacity) {
+        boolean follow = isAtBottom();
+        contentChanged(follow, buffer.setCapacity(capacity));
+    }
+
+    public void clear() {
+        buffer.clear();
+        contentWidth = 0;
+        contentChanged(true, 0);
+    }
+
+    /**
+     * 全部日志的纯文本，每行带时间戳
+     */
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < buffer.size(); i++) {
+            LogBuffer.Entry entry = buffer.get(i);
+            text.append('[').append(formatTime(entry.time())).append("] ").append(entry.message()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private void measure(LogBuffer.Entry entry) {
+        int width = stampWidth + getFontMetrics(getFont()).stringWidth(entry.message());
+        if (width > contentWidth) {
+            contentWidth = width;
+        }
+    }
+
+    private JViewport getViewport() {
+        return getParent() instanceof JViewport viewport ? viewport : null;
+    }
+
+    private boolean isAtBottom() {
+        JViewport viewport = getViewport();
+        if (viewport == null) {
+            return true;
+        }
+        Rectangle view = viewport.getViewRect();
+        return view.y + view.height >= getHeight() - rowHeight;
+    }
+
+    private void contentChanged(boolean follow, int evicted) {
+        JViewport viewport = getViewport();
+        if (viewport == null) {
+            revalidate();
+            repaint();
+            return;
+        }
+        // 立即按新的大小布局，才能马上定位滚动位置
+        viewport.getParent().validate();
+        Point position = viewport.getViewPosition();
+        int maxY = Math.max(0, getHeight() - viewport.getExtentSize().height);
+        if (follow) {
+            position.y = maxY;
+        } else if (evicted > 0) {
+            position.y = Math.max(0, position.y - evicted * rowHeight);
+        }
+        position.y = Math.min(position.y, maxY);
+        viewport.setViewPosition(position);
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (hints instanceof Map<?, ?> map) {
+                g2.addRenderingHints(map);
+            }
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            g2.setColor(getBackground());
+            g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+            int first = Math.max(0, (clip.y - PADDING) / rowHeight);
+            int last = Math.min(buffer.size() - 1, (clip.y + clip.height - PADDING) / rowHeight);
+            for (int i = first; i <= last; i++) {
+                LogBuffer.Entry entry = buffer.get(i);
+                int baseline = PADDING + i * rowHeight + ascent;
+
+                g2.setFont(getFont());
+                g2.setColor(defaultStyle.color());
+                g2.drawString("[" + formatTime(entry.time()) + "] ", PADDING, baseline);
+
+                LineStyle style = styles.getOrDefault(entry.style(), defaultStyle);
+                g2.setFont(style.italic() ? italicFont : getFont());
+                g2.setColor(style.color());
+                g2.drawString(entry.message(), PADDING + stampWidth, baseline);
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private String formatTime(long time) {
+        long second = time / 1000;
+        if (second != stampSecond) {
+            stampSecond = second;
+            stamp = TimeUtils.timestampToDate(second);
+        }
+        return stamp;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(contentWidth + PADDING * 2, buffer.size() * rowHeight + PADDING * 2);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? rowHeight : stampWidth / STAMP_SAMPLE.length();
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL
+                ? Math.max(rowHeight, visibleRect.height - rowHeight)
+                : visibleRect.width;
+    }
+
+    // 内容比视口小时撑满视口，背景不留空白
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        JViewport viewport = getViewport();
+        return viewport != null && viewport.getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        JViewport viewport = getViewport();
+        return viewport != null && viewport.getHeight() > getPreferredSize().height;
+    }
+}
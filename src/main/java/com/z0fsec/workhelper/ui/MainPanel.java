@@ -1,8 +1,14 @@
 package com.z0fsec.workhelper.ui;
 
+import com.z0fsec.workhelper.db.BackupService;
+import com.z0fsec.workhelper.db.SettingsStore;
+import com.z0fsec.workhelper.util.JobScheduler;
+import com.z0fsec.workhelper.util.StartupTimer;
+
 import javax.swing.*;
 import java.awt.*;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class MainPanel extends BasePanel {
     private JTabbedPane tabbedPane;
@@ -29,19 +35,13 @@ public class MainPanel extends BasePanel {
         // 创建TabbedPane
         tabbedPane = new JTabbedPane();
 
-        // 初始化各个功能面板
-        toolPanel = new ToolManagementPanel(this::appendLog);
-        scriptPanel = new ScriptManagementPanel(this::appendLog);
-//        taskPanel = new TaskManagementPanel(this::appendLog);
-        networkPanel = new NetworkManagementPanel(this::appendLog);
-        settingsPanel = new SettingsPanel(this::appendLog);
-
-        // 添加tab页
-        tabbedPane.addTab("工具管理", toolPanel);
-        tabbedPane.addTab("脚本管理", scriptPanel);
-//        tabbedPane.addTab("定时任务", taskPanel);
-        tabbedPane.addTab("网络管理", networkPanel);
-        tabbedPane.addTab("设置", settingsPanel);
+        // 各功能面板先以占位标签页加入，选中时或启动后空闲时再构建
+        addLazyTab("工具管理", () -> toolPanel = new ToolManagementPanel(logPipeline));
+        addLazyTab("脚本管理", () -> scriptPanel = new ScriptManagementPanel(logPipeline));
+        addLazyTab("定时任务", () -> taskPanel = new TaskManagementPanel(logPipeline));
+        addLazyTab("网络管理", () -> networkPanel = new NetworkManagementPanel(logPipeline));
+        addLazyTab("设置", () -> settingsPanel = new SettingsPanel(logPipeline));
+        tabbedPane.addChangeListener(e -> loadSelectedTab());
 
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
         add(mainPanel, BorderLayout.CENTER);
@@ -50,6 +50,40 @@ public class MainPanel extends BasePanel {
         add(createLogPanelWithScroll(), BorderLayout.SOUTH);
     }
 
+    private void addLazyTab(String title, Supplier<? extends JComponent> factory) {
+        tabbedPane.addTab(title, new LazyTab(title, factory));
+    }
+
+    private void loadSelectedTab() {
+        if (tabbedPane.getSelectedComponent() instanceof LazyTab tab) {
+            tab.ensureLoaded();
+        }
+    }
+
+    /**
+     * 当前标签页构建完成后，依次构建其余标签页
+     * 每个面板单独占用一次 EDT 事件，构建之间界面仍能响应输入和重绘
+     */
+    public void preloadTabs() {
+        loadSelectedTab();
+        preloadNextTab(0);
+    }
+
+    private void preloadNextTab(int index) {
+        if (index >= tabbedPane.getTabCount()) {
+            StartupTimer.mark("全部标签页构建完成");
+            appendDebug("启动阶段耗时:");
+            StartupTimer.getEntries().forEach(entry -> appendDebug("  " + entry));
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (tabbedPane.getComponentAt(index) instanceof LazyTab tab) {
+                tab.ensureLoaded();
+            }
+            preloadNextTab(index + 1);
+        });
+    }
+
     /**
      * 主界面初始化完成后的回调
      */
@@ -57,6 +91,38 @@ public class MainPanel extends BasePanel {
         appendSuccess("渗透测试管理平台已就绪");
         appendInfo("提示：请根据需要选择相应的功能面板进行操作");
         appendInfo("功能包括：工具管理、脚本管理、定时任务、网络管理和系统设置");
+
+        // 日志保留行数，首次读取设置会访问数据库，放到后台
+        SettingsStore settings = SettingsStore.getInstance();
+        loadInBackground("日志设置", () -> settings.getInt(SettingsStore.LOG_MAX_LINES, LogPipeline.DEFAULT_CAPACITY),
+                logPipeline::setCapacity);
+        settings.addListener(changed -> {
+            if (changed.containsKey(SettingsStore.LOG_MAX_LINES)) {
+                SwingUtilities.invokeLater(() -> logPipeline.setCapacity(
+                        settings.getInt(SettingsStore.LOG_MAX_LINES, LogPipeline.DEFAULT_CAPACITY)));
+            }
+        });
+
+        // 自动备份的结果输出到日志面板，读取设置放到后台线程
+        BackupService backupService = BackupService.getInstance();
+        backupService.addListener(this::reportBackup);
+        new Thread(backupService::start, "backup-scheduler-init").start();
+
+        // 定时任务从数据库加载后开始调度，不依赖定时任务面板是否打开
+        new Thread(JobScheduler.getInstance()::start, "job-scheduler-init").start();
+    }
+
+    private void reportBackup(BackupService.BackupResult result) {
+        if (!result.isSuccess()) {
+            appendError("数据库备份失败: " + result.error().getMessage());
+            return;
+        }
+        appendSuccess(String.format("数据库已备份到 %s，耗时 %d ms，复制 %.1f KB（%d 页），压缩后 %.1f KB",
+                result.file(), result.durationMillis(), result.bytesCopied() / 1024.0,
+                result.pageCount(), result.compressedBytes() / 1024.0));
+        if (result.removedBackups() > 0) {
+            appendInfo("已清理 " + result.removedBackups() + " 份旧备份");
+        }
     }
 
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.z0fsec.workhelper.ui;
 
+import com.z0fsec.workhelper.db.CatalogCache;
+import com.z0fsec.workhelper.db.CatalogEvent;
 import com.z0fsec.workhelper.db.DatabaseManager;
 import com.z0fsec.workhelper.model.NetworkTemplate;
 import com.z0fsec.workhelper.util.NetworkConfigurator;
@@ -20,7 +22,7 @@ public class NetworkManagementPanel extends BasePanel {
     private JPanel networkCardsPanel;
     private JTable ipTemplateTable;
     private DefaultTableModel templateTableModel;
-    private List<NetworkInterface> networkInterfaces;
+    private List<NetworkInterface> networkInterfaces = new ArrayList<>();
     private JComboBox<String> interfaceComboBox;
     private JTextField templateNameField;
     private JTextField ipAddressField;
@@ -34,15 +36,17 @@ public class NetworkManagementPanel extends BasePanel {
             "WAN", "Wi-Fi Direct", "Filter-0000", "Bluetooth", "VirtualBox", "VMware", "Teredo"
     };
 
-    private List<NetworkTemplate> networkTemplates;
-    private DatabaseManager dbManager;
+    private List<NetworkTemplate> networkTemplates = new ArrayList<>();
+    private CatalogCache catalog;
 
     public NetworkManagementPanel(Consumer<String> logConsumer) {
         super(logConsumer);
-        this.dbManager = DatabaseManager.getInstance();
+        this.catalog = CatalogCache.getInstance();
         initUI();
         loadNetworkInterfaces();
-        loadNetworkTemplates(); // 新增：从数据库加载模板
+        // 首次读取模板可能要访问数据库，放到后台
+        loadInBackground("网络模板", catalog::getNetworkTemplates, this::showNetworkTemplates);
+        catalog.addListener(this::onCatalogChanged);
     }
 
 
@@ -209,28 +213,28 @@ public class NetworkManagementPanel extends BasePanel {
         return panel;
     }
 
+    // 枚举网络接口较慢，在后台线程完成后再刷新界面
     private void loadNetworkInterfaces() {
-        networkInterfaces = new ArrayList<>();
-        try {
+        loadInBackground("网络接口", () -> {
             Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
             List<NetworkInterface> allInterfaces = Collections.list(interfaces);
 
             // 过滤接口
+            List<NetworkInterface> displayed = new ArrayList<>();
             for (NetworkInterface ni : allInterfaces) {
                 if (shouldDisplayInterface(ni)) {
-                    networkInterfaces.add(ni);
+                    displayed.add(ni);
                     System.out.println("显示接口: " + ni.getDisplayName());
                 } else {
                     System.out.println("过滤接口: " + ni.getDisplayName());
                 }
             }
-
+            return displayed;
+        }, displayed -> {
+            networkInterfaces = displayed;
             refreshNetworkCards();
             refreshInterfaceComboBox();
-
-        } catch (SocketException e) {
-            appendError("获取网络接口失败: " + e.getMessage());
-        }
+        });
     }
 
     /**
@@ -596,14 +600,11 @@ public class NetworkManagementPanel extends BasePanel {
                     dns2Field.getText().trim()
             );
 
-            // 保存到数据库
-            dbManager.addNetworkTemplate(template);
-
-            // 重新加载模板列表
-            loadNetworkTemplates();
-
-            appendSuccess("已保存IP模板: " + templateName);
-            clearTemplateForm();
+            // 保存到数据库，模板列表由缓存变更事件刷新
+            applyOnEdt(catalog.addNetworkTemplateAsync(template), "保存模板", v -> {
+                appendSuccess("已保存IP模板: " + templateName);
+                clearTemplateForm();
+            });
 
         } catch (Exception ex) {
             appendError("保存模板失败: " + ex.getMessage());
@@ -651,7 +652,7 @@ public class NetworkManagementPanel extends BasePanel {
         }
 
         // 从数据库获取模板详情
-        NetworkTemplate template = dbManager.getNetworkTemplateByName(templateName);
+        NetworkTemplate template = catalog.getNetworkTemplateByName(templateName);
         if (template == null) {
             appendError("找不到模板: " + templateName);
             return;
@@ -807,12 +808,23 @@ public class NetworkManagementPanel extends BasePanel {
     // 新增：从数据库加载模板
     private void loadNetworkTemplates() {
         try {
-            networkTemplates = dbManager.getAllNetworkTemplates();
-            refreshTemplateTable();
-            refreshInterfaceComboBox();
+            showNetworkTemplates(catalog.getNetworkTemplates());
         } catch (Exception e) {
             appendError("加载网络模板失败: " + e.getMessage());
-            networkTemplates = new ArrayList<>();
+            showNetworkTemplates(new ArrayList<>());
+        }
+    }
+
+    private void showNetworkTemplates(List<NetworkTemplate> templates) {
+        networkTemplates = templates;
+        refreshTemplateTable();
+        refreshInterfaceComboBox();
+    }
+
+    // 模板缓存变更时重新读取缓存中的模板列表
+    private void onCatalogChanged(CatalogEvent event) {
+        if (event.isFor(DatabaseManager.ENTITY_TEMPLATE)) {
+            SwingUtilities.invokeLater(this::loadNetworkTemplates);
         }
     }
 
@@ -847,13 +859,8 @@ public class NetworkManagementPanel extends BasePanel {
                 "确认删除", JOptionPane.YES_NO_OPTION);
 
         if (result == JOptionPane.YES_OPTION) {
-            try {
-                dbManager.deleteNetworkTemplate(template.getId());
-                loadNetworkTemplates(); // 重新加载模板列表
-                appendSuccess("已删除模板: " + templateName);
-            } catch (Exception e) {
-                appendError("删除模板失败: " + e.getMessage());
-            }
+            applyOnEdt(catalog.deleteNetworkTemplateAsync(template.getId()), "删除模板",
+                    v -> appendSuccess("已删除模板: " + templateName));
         }
     }
 
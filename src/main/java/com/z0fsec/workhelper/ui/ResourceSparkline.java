@@ -0,0 +1,135 @@
+package com.z0fsec.workhelper.ui;
+
+import com.z0fsec.workhelper.util.ResourceHistory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 工具卡片上的资源曲线：最近一分钟的 CPU（蓝）和常驻内存（绿），右侧显示当前值
+ * 同一工具的多次运行按采样时刻从最新一次往前对齐后相加
+ */
+class ResourceSparkline extends JComponent {
+    private static final Color CPU_COLOR = new Color(70, 130, 180);
+    private static final Color RSS_COLOR = new Color(60, 160, 90);
+    private static final Font TEXT_FONT = new Font("Microsoft YaHei", Font.PLAIN, 10);
+
+    private float[] cpu = new float[0];
+    private long[] rss = new long[0];
+    private String text = "";
+
+    ResourceSparkline() {
+        setPreferredSize(new Dimension(250, 26));
+        setVisible(false);
+    }
+
+    /**
+     * 在 EDT 上调用；没有运行中的进程时隐藏
+     */
+    void update(List<ResourceHistory> histories) {
+        int length = 0;
+        for (ResourceHistory history : histories) {
+            length = Math.max(length, history.size());
+        }
+        if (length == 0) {
+            setVisible(false);
+            return;
+        }
+
+        float[] cpuSum = new float[length];
+        long[] rssSum = new long[length];
+        int threads = 0;
+        int processes = 0;
+        float peakCpu = 0;
+        long peakRss = 0;
+        for (ResourceHistory history : histories) {
+            float[] cpuHistory = history.getCpuHistory();
+            long[] rssHistory = history.getRssHistory();
+            int offset = length - cpuHistory.length;
+            for (int i = 0; i < cpuHistory.length; i++) {
+                cpuSum[offset + i] += cpuHistory[i];
+                rssSum[offset + i] += Math.max(0, rssHistory[i]);
+            }
+            threads += Math.max(0, history.getLatestThreads());
+            processes += history.getProcessCount();
+            peakCpu = Math.max(peakCpu, history.getPeakCpuPercent());
+            peakRss = Math.max(peakRss, history.getPeakRssBytes());
+        }
+        cpu = cpuSum;
+        rss = rssSum;
+
+        long latestRss = rssSum[length - 1];
+        text = String.format("CPU %.0f%%", cpuSum[length - 1])
+                + (latestRss > 0 ? " · " + formatBytes(latestRss) : "")
+                + (threads > 0 ? " · " + threads + " 线程" : "");
+        setToolTipText(String.format("<html>%d 个运行，%d 个进程<br>峰值 CPU %.0f%%%s</html>",
+                histories.size(), processes, peakCpu, peakRss > 0 ? "，峰值内存 " + formatBytes(peakRss) : ""));
+        setVisible(true);
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setFont(TEXT_FONT);
+            FontMetrics metrics = g2.getFontMetrics();
+            int textWidth = metrics.stringWidth(text);
+            int chartWidth = Math.max(20, getWidth() - textWidth - 6);
+            int height = getHeight() - 2;
+
+            g2.setColor(new Color(235, 235, 235));
+            g2.drawRect(0, 0, chartWidth - 1, height);
+
+            // CPU 纵轴至少到 100%，多核满载时随峰值扩展；内存按自身最大值缩放
+            float cpuMax = 100;
+            long rssMax = 1;
+            for (int i = 0; i < cpu.length; i++) {
+                cpuMax = Math.max(cpuMax, cpu[i]);
+                rssMax = Math.max(rssMax, rss[i]);
+            }
+            double rssScale = rssMax;
+            double cpuScale = cpuMax;
+            drawLine(g2, RSS_COLOR, chartWidth, height, i -> rss[i] / rssScale);
+            drawLine(g2, CPU_COLOR, chartWidth, height, i -> cpu[i] / cpuScale);
+
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawString(text, chartWidth + 4, (getHeight() + metrics.getAscent() - metrics.getDescent()) / 2);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    // 曲线右端对齐最新采样，采样不满一分钟时左侧留空
+    private void drawLine(Graphics2D g2, Color color, int width, int height, IntToDoubleFunction scale) {
+        int count = cpu.length;
+        if (count < 2) {
+            return;
+        }
+        double step = (width - 2) / (double) (ResourceHistory.CAPACITY - 1);
+        double startX = width - 1 - step * (count - 1);
+        Path2D path = new Path2D.Double();
+        for (int i = 0; i < count; i++) {
+            double x = startX + step * i;
+            double y = height - 1 - scale.applyAsDouble(i) * (height - 2);
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+        g2.setColor(color);
+        g2.draw(path);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) {
+            return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+        }
+        return String.format("%.0f MB", bytes / (1024.0 * 1024));
+    }
+}
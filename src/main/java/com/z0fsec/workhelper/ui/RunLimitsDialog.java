@@ -0,0 +1,109 @@
+package com.z0fsec.workhelper.ui;
+
+import com.z0fsec.workhelper.model.RunLimits;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * 编辑工具或脚本的运行限制：超时、结束时的宽限时间和输出上限，0 表示不限制
+ * 指定单次运行的限制时 0 表示使用工具或脚本保存的设置
+ */
+class RunLimitsDialog extends JDialog {
+    private static final long MB = 1024 * 1024;
+
+    private final boolean perRun;
+    private boolean confirmed = false;
+
+    private JSpinner timeoutSpinner;
+    private JSpinner graceSpinner;
+    private JSpinner maxOutputSpinner;
+
+    public RunLimitsDialog(JFrame parent, String name, RunLimits limits) {
+        this(parent, name, limits, false);
+    }
+
+    /**
+     * @param perRun 为 true 时编辑的是本次运行的限制，未设置的项使用保存的设置
+     */
+    public RunLimitsDialog(JFrame parent, String name, RunLimits limits, boolean perRun) {
+        super(parent, (perRun ? "本次运行限制 - " : "运行限制 - ") + name, true);
+        this.perRun = perRun;
+        initUI(limits);
+        pack();
+        setLocationRelativeTo(parent);
+    }
+
+    private void initUI(RunLimits limits) {
+        setLayout(new BorderLayout());
+        setResizable(false);
+
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        // 超时
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        formPanel.add(new JLabel("最长运行时间(秒，0 为" + (perRun ? "使用保存的设置" : "不限") + "):"), gbc);
+        gbc.gridx = 1;
+        timeoutSpinner = new JSpinner(new SpinnerNumberModel(
+                (int) (limits.timeoutMillis() / 1000), 0, 7 * 86400, 60));
+        formPanel.add(timeoutSpinner, gbc);
+
+        // 宽限时间
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        formPanel.add(new JLabel("结束宽限时间(秒，0 为" + (perRun ? "使用保存的设置" : "默认") + "):"), gbc);
+        gbc.gridx = 1;
+        graceSpinner = new JSpinner(new SpinnerNumberModel((int) (limits.graceMillis() / 1000), 0, 600, 1));
+        graceSpinner.setToolTipText("结束进程树时先请求正常退出，超过这个时间仍未退出的强制结束，默认 "
+                + RunLimits.DEFAULT_GRACE_MILLIS / 1000 + " 秒");
+        formPanel.add(graceSpinner, gbc);
+
+        // 输出上限
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        formPanel.add(new JLabel("最大输出(MB，0 为" + (perRun ? "使用保存的设置" : "不限") + "):"), gbc);
+        gbc.gridx = 1;
+        maxOutputSpinner = new JSpinner(new SpinnerNumberModel(
+                (int) (limits.maxOutputBytes() / MB), 0, 100 * 1024, 10));
+        maxOutputSpinner.setToolTipText("stdout 和 stderr 合计，超过后结束进程树");
+        formPanel.add(maxOutputSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        gbc.gridwidth = 2;
+        JLabel hint = new JLabel(perRun ? "只对本次运行生效，不修改保存的运行限制"
+                : "超出限制时结束整个进程树（包括子进程），原因记入运行历史");
+        hint.setForeground(Color.GRAY);
+        formPanel.add(hint, gbc);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton okBtn = new JButton("确定");
+        okBtn.addActionListener(e -> {
+            confirmed = true;
+            dispose();
+        });
+        JButton cancelBtn = new JButton("取消");
+        cancelBtn.addActionListener(e -> dispose());
+        buttonPanel.add(okBtn);
+        buttonPanel.add(cancelBtn);
+
+        add(formPanel, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    public RunLimits getLimits() {
+        return new RunLimits((Integer) timeoutSpinner.getValue() * 1000L,
+                (Integer) graceSpinner.getValue() * 1000L,
+                (Integer) maxOutputSpinner.getValue() * MB);
+    }
+}
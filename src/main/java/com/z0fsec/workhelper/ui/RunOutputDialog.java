@@ -0,0 +1,215 @@
+package com.z0fsec.workhelper.ui;
+
+import com.z0fsec.workhelper.util.OutputFileIndex;
+import com.z0fsec.workhelper.util.ProcessManager;
+import com.z0fsec.workhelper.util.RunHandle;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查看一次运行的完整输出
+ * 输出文件通过 OutputFileIndex 内存映射，列表只读取可见的几页，几 GB 的输出也可以直接翻看；
+ * 运行尚未结束时在后台持续索引新写入的内容
+ */
+class RunOutputDialog extends JDialog {
+    private static final int PAGE_LINES = 256;
+    private static final int CACHED_PAGES = 64;
+    private static final long REFRESH_INTERVAL_MILLIS = 500;
+
+    private final Path file;
+    private final RunHandle run;
+    private final OutputListModel model = new OutputListModel();
+    private final JList<String> list = new JList<>(model);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JCheckBox followCheckBox = new JCheckBox("跟随末尾");
+    private final int charWidth;
+
+    private OutputFileIndex index;
+    private volatile boolean closed;
+    // 只在 EDT 上访问
+    private int widestLine;
+
+    /**
+     * @param run 运行尚未结束时传入，用于持续刷新；查看历史输出时传 null
+     */
+    public RunOutputDialog(JFrame parent, String title, Path file, RunHandle run) {
+        super(parent, title, false);
+        this.file = file;
+        this.run = run;
+
+        Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        list.setFont(font);
+        FontMetrics metrics = list.getFontMetrics(font);
+        charWidth = metrics.charWidth('m');
+        // 固定行高和行宽，列表不会为了计算尺寸读取所有行
+        list.setFixedCellHeight(metrics.getHeight());
+        list.setFixedCellWidth(charWidth * 120);
+
+        initUI();
+        setSize(900, 600);
+        setLocationRelativeTo(parent);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        startLoader();
+    }
+
+    private void initUI() {
+        setLayout(new BorderLayout());
+        add(new JScrollPane(list), BorderLayout.CENTER);
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 8, 5, 8));
+        bottomPanel.add(statusLabel, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        followCheckBox.setSelected(run != null);
+        followCheckBox.setVisible(run != null);
+        JButton closeBtn = new JButton("关闭");
+        closeBtn.addActionListener(e -> dispose());
+        buttonPanel.add(followCheckBox);
+        buttonPanel.add(closeBtn);
+        bottomPanel.add(buttonPanel, BorderLayout.EAST);
+
+        add(bottomPanel, BorderLayout.SOUTH);
+    }
+
+    // 后台线程负责打开和索引文件，运行结束且全部索引完后退出
+    private void startLoader() {
+        Thread loader = new Thread(() -> {
+            try {
+                OutputFileIndex opened = OutputFileIndex.open(file, ProcessManager.OUTPUT_CHARSET);
+                SwingUtilities.invokeLater(() -> {
+                    if (closed) {
+                        closeQuietly(opened);
+                    } else {
+                        index = opened;
+                    }
+                });
+                while (!closed) {
+                    boolean running = run != null && !run.getCompletion().isDone();
+                    if (run != null) {
+                        run.flushOutput();
+                    }
+                    boolean more = opened.refresh();
+                    publish(opened, running || more);
+                    if (!more) {
+                        if (!running) {
+                            break;
+                        }
+                        Thread.sleep(REFRESH_INTERVAL_MILLIS);
+                    }
+                }
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() -> statusLabel.setText("读取输出文件失败: " + e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "run-output-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void publish(OutputFileIndex opened, boolean loading) {
+        int lineCount = opened.getLineCount();
+        long bytes = opened.getIndexedSize();
+        SwingUtilities.invokeLater(() -> {
+            if (closed) {
+                return;
+            }
+            model.setLineCount(lineCount);
+            statusLabel.setText(String.format("%s  共 %d 行，%.1f MB%s", file.getFileName(), lineCount,
+                    bytes / 1024.0 / 1024.0, loading ? "，读取中…" : ""));
+            if (followCheckBox.isSelected() && lineCount > 0) {
+                list.ensureIndexIsVisible(lineCount - 1);
+            }
+        });
+    }
+
+    // 已读取的行中最宽的一行决定列表宽度
+    private void updateWidth(List<String> lines) {
+        int widest = widestLine;
+        for (String line : lines) {
+            widest = Math.max(widest, line.length());
+        }
+        if (widest > widestLine) {
+            widestLine = widest;
+            int width = charWidth * (widestLine + 2);
+            if (width > list.getFixedCellWidth()) {
+                // 正在绘制时不能修改尺寸
+                SwingUtilities.invokeLater(() -> list.setFixedCellWidth(width));
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        closed = true;
+        if (index != null) {
+            closeQuietly(index);
+            index = null;
+        }
+        super.dispose();
+    }
+
+    private static void closeQuietly(OutputFileIndex opened) {
+        try {
+            opened.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    /**
+     * 按页从输出文件读取行，只缓存最近访问的几页
+     */
+    private class OutputListModel extends AbstractListModel<String> {
+        private final Map<Integer, List<String>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+        private int lineCount;
+
+        void setLineCount(int newCount) {
+            int oldCount = lineCount;
+            if (newCount == oldCount) {
+                return;
+            }
+            // 原来的最后一行可能还没写完，所在页重新读取
+            if (oldCount > 0) {
+                pages.remove((oldCount - 1) / PAGE_LINES);
+            }
+            lineCount = newCount;
+            if (oldCount > 0) {
+                fireContentsChanged(this, oldCount - 1, oldCount - 1);
+            }
+            fireIntervalAdded(this, oldCount, newCount - 1);
+        }
+
+        @Override
+        public int getSize() {
+            return lineCount;
+        }
+
+        @Override
+        public String getElementAt(int i) {
+            if (index == null) {
+                return "";
+            }
+            List<String> page = pages.get(i / PAGE_LINES);
+            if (page == null || i % PAGE_LINES >= page.size()) {
+                page = index.readLines(i / PAGE_LINES * PAGE_LINES, PAGE_LINES);
+                pages.put(i / PAGE_LINES, page);
+                updateWidth(page);
+            }
+            int offset = i % PAGE_LINES;
+            return offset < page.size() ? page.get(offset) : "";
+        }
+    }
+}
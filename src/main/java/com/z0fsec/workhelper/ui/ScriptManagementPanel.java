@@ -1,23 +1,32 @@
 package com.z0fsec.workhelper.ui;
 
+import com.z0fsec.workhelper.db.CatalogCache;
+import com.z0fsec.workhelper.db.CatalogEvent;
 import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.db.Page;
+import com.z0fsec.workhelper.db.SettingsStore;
+import com.z0fsec.workhelper.model.RunLimits;
 import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.util.CommandBuilder;
+import com.z0fsec.workhelper.util.ProcessManager;
+import com.z0fsec.workhelper.util.RunHandle;
 
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
 public class ScriptManagementPanel extends BasePanel {
@@ -27,20 +36,35 @@ public class ScriptManagementPanel extends BasePanel {
     private JComboBox<String> pythonInterpreter;
     private JComboBox<String> scriptTypeFilter;
     private JTextField searchField;
-    private List<Script> scriptList;
     private List<Script> filteredScriptList;
-    private DatabaseManager dbManager;
+    private CatalogCache catalog;
+    private SettingsStore settings;
+    private final ProcessManager processManager = ProcessManager.getInstance();
+    private boolean refreshPending = false;
+    private static final int FIRST_PAGE_SIZE = 200; // 启动时先显示的脚本数量
     private Script currentScript;
     private boolean isModified = false;
+    // 编辑器中是否已是当前脚本的真实内容，加载完成前编辑器只读、不能保存
+    private boolean contentLoaded = false;
+    private JButton saveBtn;
+    private JButton saveAsBtn;
 
     public ScriptManagementPanel(Consumer<String> logConsumer) {
         super(logConsumer);
-        this.dbManager = DatabaseManager.getInstance();
-        this.scriptList = new ArrayList<>();
+        this.catalog = CatalogCache.getInstance();
+        this.settings = SettingsStore.getInstance();
         this.filteredScriptList = new ArrayList<>();
         initUI();
-        loadScriptsFromDatabase();
-        refreshScriptTable();
+        // 启动快照已填充缓存时直接按缓存显示，由主窗口在后台与数据库核对；否则在后台读取第一页
+        if (catalog.isScriptsLoaded()) {
+            filterScripts();
+        } else {
+            loadScriptsFromDatabase();
+        }
+        catalog.addListener(this::onCatalogChanged);
+        settings.addListener(this::onSettingsChanged);
+        loadInBackground("Python解释器设置", () -> settings.getString(SettingsStore.DEFAULT_PYTHON_PATH),
+                this::setDefaultPythonItem);
 
         ensureLogInitialized();
         appendLog("脚本管理面板初始化完成");
@@ -75,10 +99,10 @@ public class ScriptManagementPanel extends BasePanel {
         JButton openBtn = new JButton("打开脚本");
         openBtn.addActionListener(this::openScript);
 
-        JButton saveBtn = new JButton("保存脚本");
+        saveBtn = new JButton("保存脚本");
         saveBtn.addActionListener(this::saveScript);
 
-        JButton saveAsBtn = new JButton("另存为");
+        saveAsBtn = new JButton("另存为");
         saveAsBtn.addActionListener(this::saveAsScript);
 
         JButton runBtn = new JButton("运行脚本");
@@ -87,16 +111,21 @@ public class ScriptManagementPanel extends BasePanel {
         JButton stopBtn = new JButton("停止");
         stopBtn.addActionListener(this::stopScript);
 
+        JButton outputBtn = new JButton("查看输出");
+        outputBtn.addActionListener(this::showScriptOutput);
+
+        JButton limitsBtn = new JButton("运行限制");
+        limitsBtn.addActionListener(this::editScriptLimits);
+
         JButton importBtn = new JButton("导入脚本");
         importBtn.addActionListener(this::importScript);
 
         JButton refreshBtn = new JButton("刷新");
         refreshBtn.addActionListener(e -> refreshScripts());
 
-        // 获取Python解释器设置
-        String defaultPython = dbManager.getSetting("default_python_path");
+        // 第三项为设置中的默认Python路径，设置在后台读取后替换
         pythonInterpreter = new JComboBox<>(new String[]{
-                "python", "python3", defaultPython != null ? defaultPython : "python", "自定义路径"
+                "python", "python3", "python", "自定义路径"
         });
 
         toolbar.add(newBtn);
@@ -105,6 +134,8 @@ public class ScriptManagementPanel extends BasePanel {
         toolbar.add(saveAsBtn);
         toolbar.add(runBtn);
         toolbar.add(stopBtn);
+        toolbar.add(outputBtn);
+        toolbar.add(limitsBtn);
         toolbar.add(importBtn);
         toolbar.add(refreshBtn);
         toolbar.add(new JLabel("Python解释器:"));
@@ -191,22 +222,43 @@ public class ScriptManagementPanel extends BasePanel {
         // 可以在这里更新状态栏显示修改状态
     }
 
+    // 先按键集分页只读取第一页用于显示，完整目录在后台加载
     private void loadScriptsFromDatabase() {
-        try {
-            scriptList.clear();
-            scriptList.addAll(dbManager.getAllScripts());
-
-            if (scriptList.isEmpty()) {
+        loadInBackground("脚本列表", () -> {
+            Page<Script> firstPage = db().getScriptsPage(null, null, FIRST_PAGE_SIZE);
+            if (firstPage.getItems().isEmpty()) {
                 appendInfo("脚本列表为空，正在添加示例脚本...");
                 addSampleScripts();
+                firstPage = db().getScriptsPage(null, null, FIRST_PAGE_SIZE);
+            }
+            // 第一页读出后再在读线程上加载完整目录
+            warmUpCatalog();
+            return firstPage.getItems();
+        }, items -> {
+            if (catalog.isScriptsLoaded()) {
+                filterScripts(); // 完整目录已先加载完成
+                return;
             }
-
             filteredScriptList.clear();
-            filteredScriptList.addAll(scriptList);
+            filteredScriptList.addAll(items);
+            refreshScriptTable();
+        });
+    }
 
-        } catch (Exception e) {
-            appendError("从数据库加载脚本失败: " + e.getMessage());
-        }
+    // 按需获取数据库实例，使用启动快照时构造面板不触发数据库初始化
+    private DatabaseManager db() {
+        return DatabaseManager.getInstance();
+    }
+
+    // 在数据库读线程上加载完整目录缓存，完成后切换到缓存数据
+    private void warmUpCatalog() {
+        db().readAsync(db -> catalog.getScripts()).whenComplete((items, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                appendError("加载脚本目录失败: " + error.getMessage());
+            } else {
+                filterScripts();
+            }
+        }));
     }
 
     private void addSampleScripts() {
@@ -226,19 +278,24 @@ public class ScriptManagementPanel extends BasePanel {
                         "漏洞扫描", "安全扫描", "python", "")
         );
 
+        List<Script> created = new ArrayList<>();
         for (Script script : sampleScripts) {
             try {
                 // 创建示例脚本文件
                 createSampleScriptFile(script);
-                dbManager.addScript(script);
-                scriptList.add(script);
+                created.add(script);
             } catch (Exception e) {
                 appendError("添加示例脚本失败: " + script.getName() + " - " + e.getMessage());
             }
         }
 
-        if (!sampleScripts.isEmpty()) {
-            appendSuccess("已添加 " + sampleScripts.size() + " 个示例脚本");
+        try {
+            catalog.addScripts(created);
+            if (!created.isEmpty()) {
+                appendSuccess("已添加 " + created.size() + " 个示例脚本");
+            }
+        } catch (Exception e) {
+            appendError("添加示例脚本失败: " + e.getMessage());
         }
     }
 
@@ -293,10 +350,8 @@ public class ScriptManagementPanel extends BasePanel {
                 Script newScript = dialog.getScript();
                 // 创建脚本文件
                 createScriptFile(newScript);
-                dbManager.addScript(newScript);
-                scriptList.add(newScript);
-                filterScripts();
-                appendSuccess("已创建新脚本: " + newScript.getName());
+                applyOnEdt(catalog.addScriptAsync(newScript), "创建脚本",
+                        v -> appendSuccess("已创建新脚本: " + newScript.getName()));
             } catch (Exception ex) {
                 appendError("创建脚本失败: " + ex.getMessage());
             }
@@ -321,21 +376,23 @@ public class ScriptManagementPanel extends BasePanel {
             appendWarning("没有选中的脚本");
             return;
         }
+        if (!contentLoaded) {
+            appendWarning("脚本内容尚未加载完成，暂不能保存");
+            return;
+        }
 
+        Script script = currentScript;
         try {
-            // 更新脚本内容
-            currentScript.setContent(scriptEditor.getText());
-            dbManager.updateScript(currentScript);
-
-            // 保存到文件
-            saveScriptToFile(currentScript);
-
-            isModified = false;
-            appendSuccess("脚本已保存: " + currentScript.getName());
-            refreshScripts();
+            // 更新脚本内容并保存到文件
+            script.setContent(scriptEditor.getText());
+            saveScriptToFile(script);
         } catch (Exception ex) {
             appendError("保存脚本失败: " + ex.getMessage());
+            return;
         }
+        isModified = false;
+        applyOnEdt(catalog.updateScriptAsync(script), "保存脚本",
+                v -> appendSuccess("脚本已保存: " + script.getName()));
     }
 
     private void saveAsScript(ActionEvent e) {
@@ -343,6 +400,10 @@ public class ScriptManagementPanel extends BasePanel {
             appendWarning("没有选中的脚本");
             return;
         }
+        if (!contentLoaded) {
+            appendWarning("脚本内容尚未加载完成，暂不能另存为");
+            return;
+        }
 
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("另存为脚本文件");
@@ -366,11 +427,8 @@ public class ScriptManagementPanel extends BasePanel {
 
                 // 保存文件
                 saveScriptToFile(newScript);
-                dbManager.addScript(newScript);
-                scriptList.add(newScript);
-                filterScripts();
-
-                appendSuccess("脚本已另存为: " + newScript.getName());
+                applyOnEdt(catalog.addScriptAsync(newScript), "另存为",
+                        v -> appendSuccess("脚本已另存为: " + newScript.getName()));
             } catch (Exception ex) {
                 appendError("另存为失败: " + ex.getMessage());
             }
@@ -387,8 +445,8 @@ public class ScriptManagementPanel extends BasePanel {
 //
 //        try {
 //            // 更新状态
-//            dbManager.updateScriptStatus(currentScript.getId(), "运行中");
-//            dbManager.updateLastRunTime(currentScript.getId());
+//            db().updateScriptStatus(currentScript.getId(), "运行中");
+//            db().updateLastRunTime(currentScript.getId());
 //            currentScript.setStatus("运行中");
 //            refreshScriptTable();
 //
@@ -413,8 +471,32 @@ public class ScriptManagementPanel extends BasePanel {
 //    }
 
     private void stopScript(ActionEvent e) {
-        // 实现停止脚本的功能
-        appendInfo("停止脚本功能开发中...");
+        if (currentScript == null) {
+            appendWarning("请先选择一个脚本");
+            return;
+        }
+        int count = processManager.stopAll(DatabaseManager.ENTITY_SCRIPT, currentScript.getId());
+        if (count == 0) {
+            appendInfo("脚本 " + currentScript.getName() + " 没有正在运行的进程");
+        } else {
+            appendInfo("正在停止脚本 " + currentScript.getName() + " 的 " + count + " 个运行");
+        }
+    }
+
+    private void showScriptOutput(ActionEvent e) {
+        if (currentScript == null) {
+            appendWarning("请先选择一个脚本");
+            return;
+        }
+        showLatestRunOutput(DatabaseManager.ENTITY_SCRIPT, currentScript.getId(), currentScript.getName());
+    }
+
+    private void editScriptLimits(ActionEvent e) {
+        if (currentScript == null) {
+            appendWarning("请先选择一个脚本");
+            return;
+        }
+        editRunLimits(DatabaseManager.ENTITY_SCRIPT, currentScript.getId(), currentScript.getName());
     }
 
     private void importScript(ActionEvent e) {
@@ -426,81 +508,132 @@ public class ScriptManagementPanel extends BasePanel {
 
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
-            File[] selectedFiles = fileChooser.getSelectedFiles();
-            for (File file : selectedFiles) {
-                importScriptFile(file);
+            List<Script> scripts = new ArrayList<>();
+            for (File file : fileChooser.getSelectedFiles()) {
+                try {
+                    scripts.add(readScriptFile(file));
+                } catch (Exception ex) {
+                    appendError("导入脚本失败: " + file.getName() + " - " + ex.getMessage());
+                }
             }
+
+            // 整批在一个事务中写入
+            applyOnEdt(catalog.addScriptsAsync(scripts), "导入脚本",
+                    v -> appendSuccess("已导入 " + scripts.size() + " 个脚本"));
         }
     }
 
     private void importScriptFile(File file) {
         try {
-            // 读取文件内容
-            String content = new String(Files.readAllBytes(file.toPath()));
-
-            // 确定脚本类型
-            String type = getScriptType(file.getName());
-
-            // 创建脚本对象
-            Script script = new Script(
-                    file.getName(),
-                    type,
-                    file.getAbsolutePath(),
-                    "导入的脚本",
-                    "导入",
-                    getDefaultInterpreter(type),
-                    ""
-            );
-            script.setContent(content);
+            Script script = readScriptFile(file);
 
             // 保存到数据库
-            dbManager.addScript(script);
-            scriptList.add(script);
-
-            appendSuccess("已导入脚本: " + script.getName());
-            filterScripts();
-
+            applyOnEdt(catalog.addScriptAsync(script), "导入脚本",
+                    v -> appendSuccess("已导入脚本: " + script.getName()));
         } catch (Exception ex) {
             appendError("导入脚本失败: " + file.getName() + " - " + ex.getMessage());
         }
     }
 
+    private Script readScriptFile(File file) throws IOException {
+        // 读取文件内容
+        String content = new String(Files.readAllBytes(file.toPath()));
+
+        // 确定脚本类型
+        String type = getScriptType(file.getName());
+
+        // 创建脚本对象
+        Script script = new Script(
+                file.getName(),
+                type,
+                file.getAbsolutePath(),
+                "导入的脚本",
+                "导入",
+                CommandBuilder.getDefaultInterpreter(type),
+                ""
+        );
+        script.setContent(content);
+        return script;
+    }
+
     private void refreshScripts() {
         appendInfo("刷新脚本列表...");
-        loadScriptsFromDatabase();
-        filterScripts();
+        catalog.reloadScripts();
         appendSuccess("脚本列表已刷新");
     }
 
     private void filterScripts() {
-        String searchText = searchField.getText().toLowerCase();
+        String searchText = searchField.getText().trim();
         String selectedType = (String) scriptTypeFilter.getSelectedItem();
+        String type = "全部类型".equals(selectedType) ? null : selectedType;
 
         filteredScriptList.clear();
-
-        for (Script script : scriptList) {
-            boolean matches = true;
-
-            // 搜索过滤
-            if (!searchText.isEmpty()) {
-                matches = script.getName().toLowerCase().contains(searchText) ||
+        try {
+            // 关键字走全文索引并按相关度排序，类型由缓存索引过滤
+            filteredScriptList.addAll(catalog.searchScripts(searchText, type));
+        } catch (Exception e) {
+            appendWarning("全文搜索失败，使用普通匹配: " + e.getMessage());
+            String lowerText = searchText.toLowerCase();
+            for (Script script : catalog.findScripts(type, null, null)) {
+                if (script.getName().toLowerCase().contains(lowerText) ||
                         (script.getDescription() != null &&
-                                script.getDescription().toLowerCase().contains(searchText)) ||
+                                script.getDescription().toLowerCase().contains(lowerText)) ||
                         (script.getCategory() != null &&
-                                script.getCategory().toLowerCase().contains(searchText));
+                                script.getCategory().toLowerCase().contains(lowerText))) {
+                    filteredScriptList.add(script);
+                }
             }
+        }
 
-            // 类型过滤
-            if (matches && !"全部类型".equals(selectedType)) {
-                matches = script.getType().equals(selectedType);
-            }
+        refreshScriptTable();
+    }
 
-            if (matches) {
-                filteredScriptList.add(script);
-            }
+    // 目录缓存变更：状态变化只更新对应行，其余变化合并为一次重新过滤
+    private void onCatalogChanged(CatalogEvent event) {
+        if (!event.isFor(DatabaseManager.ENTITY_SCRIPT)) {
+            return;
+        }
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> onCatalogChanged(event));
+            return;
         }
 
-        refreshScriptTable();
+        if (event.getType() == CatalogEvent.Type.STATUS_CHANGED) {
+            updateScriptRow((Script) event.getEntity());
+        } else if (!refreshPending) {
+            refreshPending = true;
+            SwingUtilities.invokeLater(() -> {
+                refreshPending = false;
+                filterScripts();
+            });
+        }
+    }
+
+    // 默认Python路径修改后同步解释器下拉框中的默认项
+    private void onSettingsChanged(Map<String, String> changed) {
+        if (!changed.containsKey(SettingsStore.DEFAULT_PYTHON_PATH)) {
+            return;
+        }
+        String defaultPython = changed.get(SettingsStore.DEFAULT_PYTHON_PATH);
+        SwingUtilities.invokeLater(() -> setDefaultPythonItem(defaultPython));
+    }
+
+    private void setDefaultPythonItem(String defaultPython) {
+        boolean selected = pythonInterpreter.getSelectedIndex() == 2;
+        pythonInterpreter.removeItemAt(2);
+        pythonInterpreter.insertItemAt(defaultPython != null ? defaultPython : "python", 2);
+        if (selected) {
+            pythonInterpreter.setSelectedIndex(2);
+        }
+    }
+
+    private void updateScriptRow(Script script) {
+        for (int row = 0; row < filteredScriptList.size(); row++) {
+            if (filteredScriptList.get(row).getId() == script.getId()) {
+                tableModel.setValueAt(script.getStatus(), row, 4);
+                return;
+            }
+        }
     }
 
     private void clearFilters() {
@@ -513,26 +646,53 @@ public class ScriptManagementPanel extends BasePanel {
         int selectedRow = scriptTable.getSelectedRow();
         if (selectedRow != -1 && selectedRow < filteredScriptList.size()) {
             currentScript = filteredScriptList.get(selectedRow);
+            Script selected = currentScript;
 
-            try {
-                // 从文件读取内容或使用数据库中的内容
-                String content;
-                File scriptFile = new File(currentScript.getPath());
-                if (scriptFile.exists()) {
-                    content = new String(Files.readAllBytes(scriptFile.toPath()));
-                } else {
-                    content = currentScript.getContent() != null ?
-                            currentScript.getContent() : "# 脚本文件不存在\n";
+            // 脚本内容只在选中时在数据库读线程上读取；加载完成前显示占位文字，编辑器只读、不能保存
+            setContentLoaded(false);
+            scriptEditor.setText("# 正在加载脚本内容...\n");
+            isModified = false;
+            db().readAsync(db -> {
+                try {
+                    return readScriptContent(selected);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }).whenComplete((content, error) -> SwingUtilities.invokeLater(() -> {
+                // 加载期间切换了选中行时丢弃结果
+                if (currentScript != selected) {
+                    return;
+                }
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    appendError("加载脚本内容失败: " + cause.getMessage());
+                    // 失败时保持只读，避免把提示文字保存成脚本内容
+                    scriptEditor.setText("# 加载脚本失败\n# " + cause.getMessage());
+                    isModified = false;
+                    return;
                 }
-
                 scriptEditor.setText(content);
                 isModified = false;
+                setContentLoaded(true);
+            }));
+        }
+    }
 
-            } catch (Exception ex) {
-                appendError("加载脚本内容失败: " + ex.getMessage());
-                scriptEditor.setText("# 加载脚本失败\n# " + ex.getMessage());
-            }
+    private void setContentLoaded(boolean loaded) {
+        contentLoaded = loaded;
+        scriptEditor.setEditable(loaded);
+        saveBtn.setEnabled(loaded);
+        saveAsBtn.setEnabled(loaded);
+    }
+
+    // 从文件读取内容，文件不存在时使用数据库中保存的内容
+    private String readScriptContent(Script script) throws IOException {
+        File scriptFile = new File(script.getPath());
+        if (scriptFile.exists()) {
+            return new String(Files.readAllBytes(scriptFile.toPath()));
         }
+        String content = db().getScriptContent(script.getId());
+        return content != null ? content : "# 脚本文件不存在\n";
     }
 
     // 脚本执行相关方法 - 修改为打开命令行窗口执行
@@ -628,13 +788,12 @@ public class ScriptManagementPanel extends BasePanel {
         }
 
         // 使用设置中的默认Python解释器
-        String defaultPython = dbManager.getSetting("default_python_path");
-        return defaultPython != null ? defaultPython : "python";
+        return settings.getString(SettingsStore.DEFAULT_PYTHON_PATH, "python");
     }
 
     // 修改运行按钮的行为，提供执行选项
     private void runScriptWithOptions(Script script) {
-        String[] options = {"在命令行中执行", "在后台执行", "编辑脚本", "打开脚本目录"};
+        String[] options = {"在命令行中执行", "在后台执行", "指定限制后台执行", "编辑脚本", "打开脚本目录"};
 
         int choice = JOptionPane.showOptionDialog(
                 this,
@@ -654,12 +813,18 @@ public class ScriptManagementPanel extends BasePanel {
                 runScriptInTerminal(script);
                 break;
             case 1: // 在后台执行
-                runScriptInBackground(script);
+                runScriptInBackground(script, RunLimits.NONE);
+                break;
+            case 2: // 指定本次运行的限制后在后台执行
+                RunLimits limits = askRunLimits(script.getName(), RunLimits.NONE);
+                if (limits != null) {
+                    runScriptInBackground(script, limits);
+                }
                 break;
-            case 2: // 编辑脚本
+            case 3: // 编辑脚本
                 editScript(script);
                 break;
-            case 3: // 打开脚本目录
+            case 4: // 打开脚本目录
                 openScriptDirectory(script);
                 break;
             default:
@@ -674,33 +839,12 @@ public class ScriptManagementPanel extends BasePanel {
 
         try {
             // 更新状态
-            dbManager.updateScriptStatus(script.getId(), "运行中");
-            dbManager.updateLastRunTime(script.getId());
+            catalog.updateScriptStatus(script.getId(), "运行中", true);
             script.setStatus("运行中");
-            refreshScriptTable();
+            updateScriptRow(script); // 缓存尚未加载完成时不会收到事件
 
-            Process process = startScriptProcess(script);
-
-            // 监控进程状态
-            new Thread(() -> {
-                try {
-                    int exitCode = process.waitFor();
-                    SwingUtilities.invokeLater(() -> {
-                        if (exitCode == 0) {
-                            appendSuccess("脚本 " + script.getName() + " 命令行窗口已关闭 (退出码: " + exitCode + ")");
-                            updateScriptStatus(script, "就绪", "执行完成");
-                        } else {
-                            appendWarning("脚本 " + script.getName() + " 命令行窗口已关闭 (退出码: " + exitCode + ")");
-                            updateScriptStatus(script, "就绪", "执行完成，退出码: " + exitCode);
-                        }
-                    });
-                } catch (InterruptedException ex) {
-                    SwingUtilities.invokeLater(() -> {
-                        appendError("脚本执行监控被中断: " + ex.getMessage());
-                        updateScriptStatus(script, "错误", "监控中断");
-                    });
-                }
-            }).start();
+            // 进程在命令行窗口关闭时退出，输出显示在窗口中
+            submitScriptRun(script, () -> startScriptProcess(script), null, RunLimits.NONE, "命令行窗口已关闭");
 
         } catch (Exception ex) {
             appendError("打开命令行窗口失败: " + ex.getMessage());
@@ -708,22 +852,19 @@ public class ScriptManagementPanel extends BasePanel {
         }
     }
 
-    // 在后台执行脚本（原来的执行方式）
-    private void runScriptInBackground(Script script) {
-        appendInfo("正在后台执行脚本: " + script.getName());
+    // 在后台执行脚本（原来的执行方式），limits 中未设置的项使用脚本保存的限制
+    private void runScriptInBackground(Script script, RunLimits limits) {
+        appendInfo("正在后台执行脚本: " + script.getName()
+                + (limits.isUnlimited() ? "" : " 本次限制: " + limits.describe()));
 
         try {
             // 更新状态
-            dbManager.updateScriptStatus(script.getId(), "运行中");
-            dbManager.updateLastRunTime(script.getId());
+            catalog.updateScriptStatus(script.getId(), "运行中", true);
             script.setStatus("运行中");
-            refreshScriptTable();
+            updateScriptRow(script); // 缓存尚未加载完成时不会收到事件
 
-            // 使用原来的执行逻辑
-            Process process = startBackgroundScriptProcess(script);
-            if (process != null) {
-                monitorScriptProcess(script, process);
-            }
+            submitScriptRun(script, () -> startBackgroundScriptProcess(script),
+                    (run, source, line) -> onScriptOutput(script, source, line), limits, "执行完成");
 
         } catch (Exception ex) {
             appendError("执行脚本失败: " + ex.getMessage());
@@ -733,40 +874,11 @@ public class ScriptManagementPanel extends BasePanel {
 
     // 后台执行脚本的原始方法
     private Process startBackgroundScriptProcess(Script script) throws IOException {
-        ProcessBuilder processBuilder = new ProcessBuilder();
-        File scriptFile = new File(script.getPath());
-
-        if (!scriptFile.exists()) {
+        if (!new File(script.getPath()).exists()) {
             throw new IOException("脚本文件不存在: " + script.getPath());
         }
 
-        String interpreter = script.getInterpreter() != null ?
-                script.getInterpreter() : getDefaultInterpreter(script.getType());
-
-        switch (script.getType()) {
-            case "Python脚本":
-                processBuilder.command(interpreter, scriptFile.getAbsolutePath());
-                break;
-            case "Shell脚本":
-                processBuilder.command("sh", scriptFile.getAbsolutePath());
-                break;
-            case "批处理文件":
-                processBuilder.command("cmd", "/c", scriptFile.getAbsolutePath());
-                break;
-            case "PowerShell脚本":
-                processBuilder.command("powershell", "-File", scriptFile.getAbsolutePath());
-                break;
-            default:
-                processBuilder.command(interpreter, scriptFile.getAbsolutePath());
-        }
-
-        // 设置工作目录
-        File scriptDir = scriptFile.getParentFile();
-        if (scriptDir != null && scriptDir.exists()) {
-            processBuilder.directory(scriptDir);
-        }
-
-        processBuilder.redirectErrorStream(true);
+        ProcessBuilder processBuilder = CommandBuilder.forScript(script, null);
         appendInfo("后台执行命令: " + String.join(" ", processBuilder.command()));
 
         return processBuilder.start();
@@ -819,43 +931,53 @@ public class ScriptManagementPanel extends BasePanel {
         runScriptWithOptions(currentScript);
     }
 
-    private void monitorScriptProcess(Script script, Process process) {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream(), getSystemEncoding()))) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                final String outputLine = line;
-                SwingUtilities.invokeLater(() -> {
-                    appendInfo("[ " + script.getName() + " ] " + outputLine);
-                });
-            }
-
-            int exitCode = process.waitFor();
+    // 每次运行单独登记，停止按钮结束当前脚本的所有运行
+    private void submitScriptRun(Script script, ProcessManager.Launcher launcher,
+                                 ProcessManager.OutputListener listener, RunLimits limits, String finishedText) {
+        RunHandle run = processManager.submit(DatabaseManager.ENTITY_SCRIPT, script.getId(), script.getName(),
+                script.getParameters(), launcher, listener, limits);
+        run.getCompletion().whenComplete((exitCode, error) ->
+                SwingUtilities.invokeLater(() -> onScriptRunFinished(script, run, exitCode, error, finishedText)));
+    }
 
-            SwingUtilities.invokeLater(() -> {
-                if (exitCode == 0) {
-                    appendSuccess("脚本 " + script.getName() + " 执行完成 (退出码: " + exitCode + ")");
-                    updateScriptStatus(script, "就绪", "执行成功");
-                } else {
-                    appendWarning("脚本 " + script.getName() + " 执行完成 (退出码: " + exitCode + ")");
-                    updateScriptStatus(script, "就绪", "执行完成，退出码: " + exitCode);
-                }
-            });
+    // 在输出读取线程上调用，stderr 的行用警告样式区分
+    private void onScriptOutput(Script script, ProcessManager.OutputSource source, String line) {
+        if (source == ProcessManager.OutputSource.STDERR) {
+            appendWarning("[ " + script.getName() + " ] " + line);
+        } else {
+            appendInfo("[ " + script.getName() + " ] " + line);
+        }
+    }
 
-        } catch (IOException | InterruptedException ex) {
-            SwingUtilities.invokeLater(() -> {
-                appendError("脚本执行异常: " + ex.getMessage());
-                updateScriptStatus(script, "错误", "执行异常");
-            });
+    private void onScriptRunFinished(Script script, RunHandle run, Integer exitCode, Throwable error,
+                                     String finishedText) {
+        // 同一脚本还有其他运行时保持运行中状态
+        boolean othersRunning = processManager.isRunning(DatabaseManager.ENTITY_SCRIPT, script.getId());
+        String status = othersRunning ? "运行中" : "就绪";
+        if (error instanceof CancellationException) {
+            appendWarning("脚本 " + script.getName() + " 已取消");
+            updateScriptStatus(script, status, null);
+        } else if (error != null) {
+            appendError((run.isStarted() ? "脚本执行异常: " : "执行脚本失败: ") + error.getMessage());
+            updateScriptStatus(script, othersRunning ? status : "错误", null);
+        } else if (run.isCancelled()) {
+            appendWarning("脚本 " + script.getName() + " 已停止: " + run.getKillReason().getLabel()
+                    + " (退出码: " + exitCode + ")");
+            updateScriptStatus(script, status, null);
+        } else if (exitCode == 0) {
+            appendSuccess("脚本 " + script.getName() + " " + finishedText + " (退出码: " + exitCode + ")");
+            updateScriptStatus(script, status, "执行成功");
+        } else {
+            appendWarning("脚本 " + script.getName() + " " + finishedText + " (退出码: " + exitCode + ")");
+            updateScriptStatus(script, status, "执行完成，退出码: " + exitCode);
         }
     }
 
     private void updateScriptStatus(Script script, String status, String message) {
         try {
-            dbManager.updateScriptStatus(script.getId(), status);
+            catalog.updateScriptStatus(script.getId(), status, false);
             script.setStatus(status);
-            refreshScriptTable();
+            updateScriptRow(script); // 缓存尚未加载完成时不会收到事件
 
             if (message != null) {
                 switch (status) {
@@ -879,20 +1001,6 @@ public class ScriptManagementPanel extends BasePanel {
         return "其他";
     }
 
-    private String getDefaultInterpreter(String scriptType) {
-        switch (scriptType) {
-            case "Python脚本": return "python";
-            case "Shell脚本": return "sh";
-            case "批处理文件": return "cmd";
-            case "PowerShell脚本": return "powershell";
-            default: return "";
-        }
-    }
-
-    private String getSystemEncoding() {
-        return System.getProperty("os.name").toLowerCase().contains("windows") ? "GBK" : "UTF-8";
-    }
-
     private void createScriptFile(Script script) throws IOException {
         File scriptFile = new File(script.getPath());
         // 确保目录存在
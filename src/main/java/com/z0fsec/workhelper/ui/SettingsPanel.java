@@ -1,7 +1,8 @@
 package com.z0fsec.workhelper.ui;
 
+import com.z0fsec.workhelper.db.BackupService;
 import com.z0fsec.workhelper.model.JavaVersion;
-import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.db.SettingsStore;
 import com.z0fsec.workhelper.model.PythonVersion;
 
 import javax.swing.*;
@@ -14,7 +15,7 @@ import java.util.List;
 import java.util.function.Consumer;
 
 public class SettingsPanel extends BasePanel {
-    private DatabaseManager dbManager;
+    private SettingsStore settings;
 
     // 数据库设置
     private JTextField databasePathField;
@@ -40,13 +41,14 @@ public class SettingsPanel extends BasePanel {
     private JSpinner backupIntervalSpinner;
     private JTextField backupPathField;
     private JButton backupBrowseBtn;
+    private JSpinner logMaxLinesSpinner;
 
     private List<JavaVersion> javaVersions;
     private List<PythonVersion> pythonVersions;
 
     public SettingsPanel(Consumer<String> logConsumer) {
         super(logConsumer);
-        this.dbManager = DatabaseManager.getInstance();
+        this.settings = SettingsStore.getInstance();
         this.javaVersions = new ArrayList<>();
         this.pythonVersions = new ArrayList<>();
         initUI();
@@ -246,6 +248,16 @@ public class SettingsPanel extends BasePanel {
         backupBrowseBtn.addActionListener(this::browseBackupPath);
         panel.add(backupBrowseBtn, gbc);
 
+        row++;
+
+        // 日志保留行数
+        gbc.gridx = 0; gbc.gridy = row; gbc.gridwidth = 1;
+        panel.add(new JLabel("日志保留行数:"), gbc);
+        gbc.gridx = 1;
+        logMaxLinesSpinner = new JSpinner(new SpinnerNumberModel(LogPipeline.DEFAULT_CAPACITY,
+                LogPipeline.MIN_CAPACITY, LogPipeline.MAX_CAPACITY, 1000));
+        panel.add(logMaxLinesSpinner, gbc);
+
         return panel;
     }
 
@@ -255,12 +267,16 @@ public class SettingsPanel extends BasePanel {
         JButton saveBtn = new JButton("保存设置");
         saveBtn.addActionListener(this::saveSettings);
 
+        JButton backupBtn = new JButton("立即备份");
+        backupBtn.addActionListener(this::backupNow);
+
         JButton resetBtn = new JButton("恢复默认");
         resetBtn.addActionListener(this::resetSettings);
 
         JButton applyBtn = new JButton("应用");
         applyBtn.addActionListener(this::applySettings);
 
+        panel.add(backupBtn);
         panel.add(resetBtn);
         panel.add(applyBtn);
         panel.add(saveBtn);
@@ -268,68 +284,85 @@ public class SettingsPanel extends BasePanel {
         return panel;
     }
 
+    // 默认 Java/Python 的版本，探测需要启动进程，在后台完成
+    private record DefaultVersions(String java, String python) {
+    }
+
+    // 首次读取设置会访问数据库，和版本探测一起放到后台，完成后在 EDT 上填充界面
     private void loadSettings() {
+        loadInBackground("设置", () -> {
+            String defaultJava = settings.getString(SettingsStore.DEFAULT_JAVA_PATH);
+            String defaultPython = settings.getString(SettingsStore.DEFAULT_PYTHON_PATH);
+            return new DefaultVersions(
+                    defaultJava != null ? getJavaVersion(defaultJava) : null,
+                    defaultPython != null ? getPythonVersion(defaultPython) : null);
+        }, this::showSettings);
+    }
+
+    private void showSettings(DefaultVersions versions) {
         // 加载数据库设置
-        String dbPath = dbManager.getSetting("database_path");
+        String dbPath = settings.getString(SettingsStore.DATABASE_PATH);
         if (dbPath != null) {
             databasePathField.setText(dbPath);
         }
 
         // 加载Java版本
-        loadJavaVersions();
+        loadJavaVersions(versions.java());
 
         // 加载Python版本
-        loadPythonVersions();
+        loadPythonVersions(versions.python());
 
         // 加载其他设置
-        autoSaveCheckBox.setSelected("true".equals(dbManager.getSetting("auto_save")));
-        autoBackupCheckBox.setSelected("true".equals(dbManager.getSetting("auto_backup")));
-
-        String backupInterval = dbManager.getSetting("backup_interval");
-        if (backupInterval != null) {
-            try {
-                backupIntervalSpinner.setValue(Integer.parseInt(backupInterval));
-            } catch (NumberFormatException e) {
-                // 使用默认值
-            }
+        autoSaveCheckBox.setSelected(settings.getBoolean(SettingsStore.AUTO_SAVE, false));
+        autoBackupCheckBox.setSelected(settings.getBoolean(SettingsStore.AUTO_BACKUP, false));
+
+        // 未设置或格式错误时保留默认值
+        int backupInterval = settings.getInt(SettingsStore.BACKUP_INTERVAL, -1);
+        if (backupInterval > 0) {
+            backupIntervalSpinner.setValue(backupInterval);
         }
 
-        String backupPath = dbManager.getSetting("backup_path");
+        String backupPath = settings.getString(SettingsStore.BACKUP_PATH);
         if (backupPath != null) {
             backupPathField.setText(backupPath);
         }
 
+        int logMaxLines = settings.getInt(SettingsStore.LOG_MAX_LINES, -1);
+        if (logMaxLines >= LogPipeline.MIN_CAPACITY && logMaxLines <= LogPipeline.MAX_CAPACITY) {
+            logMaxLinesSpinner.setValue(logMaxLines);
+        }
+
         updateBackupSettings();
     }
 
-    private void loadJavaVersions() {
+    private void loadJavaVersions(String defaultJavaVersion) {
         // 从数据库加载Java版本信息
         // 这里简化实现，实际应该从数据库读取
         javaVersions.clear();
         javaTableModel.setRowCount(0);
 
         // 添加默认Java版本
-        String defaultJava = dbManager.getSetting("default_java_path");
+        String defaultJava = settings.getString(SettingsStore.DEFAULT_JAVA_PATH);
         if (defaultJava != null) {
-            JavaVersion java = new JavaVersion("默认Java", defaultJava, getJavaVersion(defaultJava), true);
+            JavaVersion java = new JavaVersion("默认Java", defaultJava, defaultJavaVersion, true);
             javaVersions.add(java);
             javaTableModel.addRow(new Object[]{java.name, java.path, java.version, java.isDefault});
         }
 
         // 可以从数据库加载更多Java版本
-        // String javaVersionsStr = dbManager.getSetting("java_versions");
+        // String javaVersionsStr = settings.getString("java_versions");
         // 解析并加载...
     }
 
-    private void loadPythonVersions() {
+    private void loadPythonVersions(String defaultPythonVersion) {
         // 从数据库加载Python版本信息
         pythonVersions.clear();
         pythonTableModel.setRowCount(0);
 
         // 添加默认Python版本
-        String defaultPython = dbManager.getSetting("default_python_path");
+        String defaultPython = settings.getString(SettingsStore.DEFAULT_PYTHON_PATH);
         if (defaultPython != null) {
-            PythonVersion python = new PythonVersion("默认Python", defaultPython, getPythonVersion(defaultPython), true);
+            PythonVersion python = new PythonVersion("默认Python", defaultPython, defaultPythonVersion, true);
             pythonVersions.add(python);
             pythonTableModel.addRow(new Object[]{python.name, python.path, python.version, python.isDefault});
         }
@@ -358,6 +391,12 @@ public class SettingsPanel extends BasePanel {
         }
     }
 
+    private void backupNow(ActionEvent e) {
+        // 结果由主面板的备份监听器输出
+        appendInfo("正在备份数据库...");
+        BackupService.getInstance().backupNow();
+    }
+
     private void addJavaVersion(ActionEvent e) {
         JavaVersionDialog dialog = new JavaVersionDialog((JFrame) SwingUtilities.getWindowAncestor(this), "添加Java版本", null);
         dialog.setVisible(true);
@@ -468,7 +507,7 @@ public class SettingsPanel extends BasePanel {
 
         if (result == JOptionPane.YES_OPTION) {
             // 重置数据库设置
-            dbManager.setSetting("database_path", "workhelper.db");
+            settings.set(SettingsStore.DATABASE_PATH, "workhelper.db");
 
             // 重新加载设置
             loadSettings();
@@ -477,34 +516,34 @@ public class SettingsPanel extends BasePanel {
     }
 
     private void applySettings(ActionEvent e) {
-        try {
-            // 保存数据库设置
-            dbManager.setSetting("database_path", databasePathField.getText());
+        // 在 EDT 上收集界面的值，整组设置在后台一个事务中提交
+        SettingsStore.Editor editor = settings.edit();
 
-            // 保存Java设置
-            saveJavaVersions();
+        // 保存数据库设置
+        editor.put(SettingsStore.DATABASE_PATH, databasePathField.getText());
 
-            // 保存Python设置
-            savePythonVersions();
+        // 保存Java设置
+        saveJavaVersions(editor);
 
-            // 保存其他设置
-            dbManager.setSetting("auto_save", String.valueOf(autoSaveCheckBox.isSelected()));
-            dbManager.setSetting("auto_backup", String.valueOf(autoBackupCheckBox.isSelected()));
-            dbManager.setSetting("backup_interval", backupIntervalSpinner.getValue().toString());
-            dbManager.setSetting("backup_path", backupPathField.getText());
+        // 保存Python设置
+        savePythonVersions(editor);
 
-            appendSuccess("设置已应用");
+        // 保存其他设置
+        editor.put(SettingsStore.AUTO_SAVE, autoSaveCheckBox.isSelected());
+        editor.put(SettingsStore.AUTO_BACKUP, autoBackupCheckBox.isSelected());
+        editor.put(SettingsStore.BACKUP_INTERVAL, backupIntervalSpinner.getValue());
+        editor.put(SettingsStore.BACKUP_PATH, backupPathField.getText());
+        editor.put(SettingsStore.LOG_MAX_LINES, logMaxLinesSpinner.getValue());
 
-        } catch (Exception ex) {
-            appendError("保存设置失败: " + ex.getMessage());
-        }
+        applyOnEdt(editor.commitAsync(), "保存设置", changed -> appendSuccess("设置已应用" +
+                (!changed.isEmpty() ? "，修改了 " + changed.size() + " 项" : "，没有变化")));
     }
 
-    private void saveJavaVersions() {
+    private void saveJavaVersions(SettingsStore.Editor editor) {
         // 找到默认Java版本
         for (JavaVersion java : javaVersions) {
             if (java.isDefault) {
-                dbManager.setSetting("default_java_path", java.path);
+                editor.put(SettingsStore.DEFAULT_JAVA_PATH, java.path);
                 break;
             }
         }
@@ -514,14 +553,14 @@ public class SettingsPanel extends BasePanel {
         // for (JavaVersion java : javaVersions) {
         //     sb.append(java.name).append("|").append(java.path).append("|").append(java.isDefault).append(";");
         // }
-        // dbManager.setSetting("java_versions", sb.toString());
+        // editor.put("java_versions", sb.toString());
     }
 
-    private void savePythonVersions() {
+    private void savePythonVersions(SettingsStore.Editor editor) {
         // 找到默认Python版本
         for (PythonVersion python : pythonVersions) {
             if (python.isDefault) {
-                dbManager.setSetting("default_python_path", python.path);
+                editor.put(SettingsStore.DEFAULT_PYTHON_PATH, python.path);
                 break;
             }
         }
@@ -1,18 +1,381 @@
 package com.z0fsec.workhelper.ui;
 
+import com.z0fsec.workhelper.db.CatalogCache;
+import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.model.JobFire;
+import com.z0fsec.workhelper.model.ScheduledJob;
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.Tool;
+import com.z0fsec.workhelper.util.JobScheduler;
+import com.z0fsec.workhelper.util.TimeUtils;
+
 import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
+/**
+ * 定时任务管理面板：任务列表显示下一次运行时间，选中任务后显示最近的触发记录和触发延迟
+ */
 public class TaskManagementPanel extends BasePanel {
+    private static final int RECENT_FIRES = 50;
+
+    private final JobScheduler scheduler = JobScheduler.getInstance();
+
+    private JTable jobTable;
+    private DefaultTableModel jobTableModel;
+    private DefaultTableModel fireTableModel;
+    private JLabel latencyLabel;
+    private JLabel statusLabel;
+
+    private List<ScheduledJob> jobList = new ArrayList<>();
+    private List<Tool> tools = new ArrayList<>();
+    private List<Script> scripts = new ArrayList<>();
+    private final Map<String, String> targetNames = new HashMap<>();
+
     public TaskManagementPanel(Consumer<String> logConsumer) {
         super(logConsumer);
         initUI();
+        scheduler.addListener(this::onSchedulerEvent);
+        loadInBackground("定时任务目标", () -> {
+            CatalogCache catalog = CatalogCache.getInstance();
+            return new Object[]{catalog.getTools(), catalog.getScripts()};
+        }, this::setTargets);
+        // 下次运行的倒计时每秒刷新
+        new Timer(1000, e -> refreshNextFireColumn()).start();
     }
 
     private void initUI() {
         setLayout(new BorderLayout());
-        // 实现定时任务管理功能
-        add(new JLabel("定时任务管理面板 - 开发中..."), BorderLayout.CENTER);
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
+        splitPane.setTopComponent(createJobListPanel());
+        splitPane.setBottomComponent(createFirePanel());
+        splitPane.setResizeWeight(0.6);
+
+        add(createToolBar(), BorderLayout.NORTH);
+        add(splitPane, BorderLayout.CENTER);
+        statusLabel = new JLabel("就绪");
+        add(statusLabel, BorderLayout.SOUTH);
+    }
+
+    private JPanel createToolBar() {
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+        JButton newBtn = new JButton("新建任务");
+        newBtn.addActionListener(e -> addJob());
+
+        JButton editBtn = new JButton("编辑");
+        editBtn.addActionListener(e -> editJob());
+
+        JButton deleteBtn = new JButton("删除");
+        deleteBtn.addActionListener(e -> deleteJob());
+
+        JButton toggleBtn = new JButton("启用/停用");
+        toggleBtn.addActionListener(e -> toggleJob());
+
+        JButton runNowBtn = new JButton("立即运行");
+        runNowBtn.addActionListener(e -> runJobNow());
+
+        JButton outputBtn = new JButton("查看输出");
+        outputBtn.addActionListener(e -> showJobOutput());
+
+        JButton refreshBtn = new JButton("刷新");
+        refreshBtn.addActionListener(e -> {
+            refreshJobs();
+            loadFires();
+        });
+
+        toolbar.add(newBtn);
+        toolbar.add(editBtn);
+        toolbar.add(deleteBtn);
+        toolbar.add(toggleBtn);
+        toolbar.add(runNowBtn);
+        toolbar.add(outputBtn);
+        toolbar.add(refreshBtn);
+        return toolbar;
+    }
+
+    private JPanel createJobListPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        String[] columns = {"任务名称", "目标", "计划", "下次运行", "上次运行", "并发", "状态"};
+        jobTableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        jobTable = new JTable(jobTableModel);
+        jobTable.setRowHeight(25);
+        jobTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        jobTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                loadFires();
+            }
+        });
+
+        panel.add(new JScrollPane(jobTable), BorderLayout.CENTER);
+        panel.setBorder(BorderFactory.createTitledBorder("任务列表"));
+        return panel;
+    }
+
+    private JPanel createFirePanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        String[] columns = {"计划时间", "实际触发", "延迟(ms)", "耗时", "结果", "说明"};
+        fireTableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable fireTable = new JTable(fireTableModel);
+        fireTable.setRowHeight(22);
+
+        latencyLabel = new JLabel(" ");
+        panel.add(latencyLabel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(fireTable), BorderLayout.CENTER);
+        panel.setBorder(BorderFactory.createTitledBorder("最近运行"));
+        return panel;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setTargets(Object[] loaded) {
+        tools = new ArrayList<>((List<Tool>) loaded[0]);
+        scripts = new ArrayList<>((List<Script>) loaded[1]);
+        targetNames.clear();
+        for (Tool tool : tools) {
+            targetNames.put(DatabaseManager.ENTITY_TOOL + ":" + tool.getId(), "工具: " + tool.getName());
+        }
+        for (Script script : scripts) {
+            targetNames.put(DatabaseManager.ENTITY_SCRIPT + ":" + script.getId(), "脚本: " + script.getName());
+        }
+        refreshJobs();
+    }
+
+    // 调度器在后台线程上发布事件；刷新列表时恢复选中行，会重新加载选中任务的触发记录
+    private void onSchedulerEvent(JobScheduler.JobEvent event) {
+        SwingUtilities.invokeLater(() -> {
+            refreshJobs();
+            ScheduledJob job = event.job();
+            JobFire fire = event.fire();
+            switch (event.type()) {
+                case FIRED -> appendInfo("定时任务 " + job.getName() + " 已触发，延迟 " + fire.getLatencyMillis() + " ms");
+                case SKIPPED -> appendWarning("定时任务 " + job.getName() + " 本次跳过: " + fire.getMessage());
+                case FINISHED -> {
+                    String text = "定时任务 " + job.getName() + " " + fire.getOutcome()
+                            + (fire.getExitCode() != null ? "，退出码 " + fire.getExitCode() : "")
+                            + (fire.getMessage() != null ? "，" + fire.getMessage() : "");
+                    if (JobFire.OUTCOME_SUCCEEDED.equals(fire.getOutcome())) {
+                        appendSuccess(text);
+                    } else {
+                        appendError(text);
+                    }
+                }
+                default -> {
+                }
+            }
+        });
+    }
+
+    private void refreshJobs() {
+        ScheduledJob selected = getSelectedJob();
+        jobList = scheduler.getJobs();
+        jobTableModel.setRowCount(0);
+        for (ScheduledJob job : jobList) {
+            jobTableModel.addRow(new Object[]{
+                    job.getName(),
+                    targetNames.getOrDefault(job.getEntityType() + ":" + job.getEntityId(),
+                            job.getEntityType() + " #" + job.getEntityId()),
+                    job.describeSchedule(),
+                    formatNextFire(job),
+                    job.getLastFireTime() > 0 ? TimeUtils.millisecondToDate(job.getLastFireTime()) : "-",
+                    scheduler.getRunningCount(job.getId()) + " / " + job.getMaxConcurrent(),
+                    job.isEnabled() ? "启用" : "已停用"
+            });
+        }
+        if (selected != null) {
+            for (int i = 0; i < jobList.size(); i++) {
+                if (jobList.get(i).getId() == selected.getId()) {
+                    jobTable.setRowSelectionInterval(i, i);
+                    break;
+                }
+            }
+        }
+        statusLabel.setText("共 " + jobList.size() + " 个任务，"
+                + jobList.stream().filter(ScheduledJob::isEnabled).count() + " 个启用");
+    }
+
+    private void refreshNextFireColumn() {
+        if (!isShowing()) {
+            return;
+        }
+        for (int i = 0; i < jobList.size() && i < jobTableModel.getRowCount(); i++) {
+            jobTableModel.setValueAt(formatNextFire(jobList.get(i)), i, 3);
+        }
+    }
+
+    private static String formatNextFire(ScheduledJob job) {
+        if (!job.isEnabled() || job.getNextFireTime() <= 0) {
+            return "-";
+        }
+        long remaining = Math.max(0, job.getNextFireTime() - System.currentTimeMillis()) / 1000;
+        String countdown;
+        if (remaining >= 86400) {
+            countdown = remaining / 86400 + " 天后";
+        } else if (remaining >= 3600) {
+            countdown = remaining / 3600 + " 小时 " + remaining % 3600 / 60 + " 分后";
+        } else if (remaining >= 60) {
+            countdown = remaining / 60 + " 分 " + remaining % 60 + " 秒后";
+        } else {
+            countdown = remaining + " 秒后";
+        }
+        return TimeUtils.millisecondToDate(job.getNextFireTime()) + "（" + countdown + "）";
+    }
+
+    private void loadFires() {
+        ScheduledJob job = getSelectedJob();
+        if (job == null) {
+            fireTableModel.setRowCount(0);
+            latencyLabel.setText(" ");
+            return;
+        }
+        DatabaseManager.getInstance().readAsync(db -> db.getRecentJobFires(job.getId(), RECENT_FIRES))
+                .whenComplete((fires, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        appendError("加载触发记录失败: " + error.getMessage());
+                        return;
+                    }
+                    ScheduledJob selected = getSelectedJob();
+                    if (selected != null && selected.getId() == job.getId()) {
+                        showFires(fires);
+                    }
+                }));
+    }
+
+    private void showFires(List<JobFire> fires) {
+        fireTableModel.setRowCount(0);
+        List<Long> latencies = new ArrayList<>();
+        for (JobFire fire : fires) {
+            fireTableModel.addRow(new Object[]{
+                    TimeUtils.millisecondToDate(fire.getScheduledTime()),
+                    TimeUtils.millisecondToDate(fire.getFireTime()),
+                    fire.getLatencyMillis(),
+                    fire.getEndTime() > 0 ? String.format("%.1f 秒", fire.getDurationMillis() / 1000.0) : "运行中",
+                    fire.getOutcome() != null ? fire.getOutcome() : "运行中",
+                    fire.getMessage() != null ? fire.getMessage() : ""
+            });
+            latencies.add(fire.getLatencyMillis());
+        }
+        if (latencies.isEmpty()) {
+            latencyLabel.setText("暂无触发记录");
+            return;
+        }
+        latencies.sort(null);
+        latencyLabel.setText(String.format("最近 %d 次触发延迟: p50 %d ms，p95 %d ms，最大 %d ms",
+                latencies.size(), percentile(latencies, 50), percentile(latencies, 95),
+                latencies.get(latencies.size() - 1)));
+    }
+
+    private static long percentile(List<Long> sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private ScheduledJob getSelectedJob() {
+        int row = jobTable.getSelectedRow();
+        return row >= 0 && row < jobList.size() ? jobList.get(row) : null;
+    }
+
+    private ScheduledJob requireSelectedJob() {
+        ScheduledJob job = getSelectedJob();
+        if (job == null) {
+            JOptionPane.showMessageDialog(this, "请先选择一个任务", "提示", JOptionPane.WARNING_MESSAGE);
+        }
+        return job;
+    }
+
+    private void addJob() {
+        JobDialog dialog = new JobDialog((JFrame) SwingUtilities.getWindowAncestor(this), "新建定时任务",
+                null, tools, scripts);
+        dialog.setVisible(true);
+        if (dialog.isConfirmed()) {
+            ScheduledJob job = dialog.getJobInfo();
+            runInBackground("添加定时任务", () -> {
+                scheduler.addJob(job);
+                appendSuccess("已添加定时任务: " + job.getName() + "，" + job.describeSchedule());
+            });
+        }
+    }
+
+    private void editJob() {
+        ScheduledJob job = requireSelectedJob();
+        if (job == null) {
+            return;
+        }
+        JobDialog dialog = new JobDialog((JFrame) SwingUtilities.getWindowAncestor(this), "编辑定时任务",
+                job, tools, scripts);
+        dialog.setVisible(true);
+        if (dialog.isConfirmed()) {
+            ScheduledJob updated = dialog.getJobInfo();
+            runInBackground("修改定时任务", () -> {
+                scheduler.updateJob(updated);
+                appendSuccess("已修改定时任务: " + updated.getName());
+            });
+        }
+    }
+
+    private void deleteJob() {
+        ScheduledJob job = requireSelectedJob();
+        if (job == null) {
+            return;
+        }
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "确定要删除定时任务 \"" + job.getName() + "\" 吗？触发记录也会一并删除",
+                "确认删除", JOptionPane.YES_NO_OPTION);
+        if (confirm == JOptionPane.YES_OPTION) {
+            runInBackground("删除定时任务", () -> {
+                scheduler.deleteJob(job.getId());
+                appendInfo("已删除定时任务: " + job.getName());
+            });
+        }
+    }
+
+    private void toggleJob() {
+        ScheduledJob job = requireSelectedJob();
+        if (job == null) {
+            return;
+        }
+        boolean enabled = !job.isEnabled();
+        runInBackground(enabled ? "启用定时任务" : "停用定时任务", () -> {
+            scheduler.setEnabled(job.getId(), enabled);
+            appendInfo((enabled ? "已启用" : "已停用") + "定时任务: " + job.getName());
+        });
+    }
+
+    private void runJobNow() {
+        ScheduledJob job = requireSelectedJob();
+        if (job != null) {
+            scheduler.runNow(job.getId());
+        }
+    }
+
+    private void showJobOutput() {
+        ScheduledJob job = requireSelectedJob();
+        if (job != null) {
+            showLatestRunOutput(job.getEntityType(), job.getEntityId(), job.getName());
+        }
+    }
+
+    // 调度器的修改会写数据库，放到数据库写线程上执行，不阻塞 EDT
+    private void runInBackground(String action, Runnable task) {
+        applyOnEdt(DatabaseManager.getInstance().runAsync(db -> task.run()), action, v -> {
+        });
     }
-}
\ No newline at end of file
+}
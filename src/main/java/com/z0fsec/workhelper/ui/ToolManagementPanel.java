@@ -1,7 +1,17 @@
 package com.z0fsec.workhelper.ui;
 
+import com.z0fsec.workhelper.db.CatalogCache;
+import com.z0fsec.workhelper.db.CatalogEvent;
+import com.z0fsec.workhelper.db.CatalogTransfer;
 import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.db.Page;
+import com.z0fsec.workhelper.model.RunLimits;
 import com.z0fsec.workhelper.model.Tool;
+import com.z0fsec.workhelper.util.CommandBuilder;
+import com.z0fsec.workhelper.util.FanOutRun;
+import com.z0fsec.workhelper.util.ProcessManager;
+import com.z0fsec.workhelper.util.ResourceHistory;
+import com.z0fsec.workhelper.util.RunHandle;
 
 
 import javax.swing.*;
@@ -11,12 +21,15 @@ import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 public class ToolManagementPanel extends BasePanel {
@@ -24,21 +37,37 @@ public class ToolManagementPanel extends BasePanel {
     private JTextField searchField;
     private JComboBox<String> typeFilter;
     private JComboBox<String> statusFilter;
-    private List<Tool> toolList;
     private List<Tool> filteredToolList;
-    private DatabaseManager dbManager;
+    private CatalogCache catalog;
+    private final ProcessManager processManager = ProcessManager.getInstance();
+    // 当前卡片上的状态标签，状态变化时只更新对应标签
+    private final Map<Integer, JLabel> statusLabels = new HashMap<>();
+    // 当前卡片上的资源曲线，每秒按运行中的进程刷新
+    private final Map<Integer, ResourceSparkline> sparklines = new HashMap<>();
+    // 进行中的批量运行，停止工具时先停止它们，否则会继续启动剩余目标
+    private final Map<FanOutRun, Tool> activeFanOuts = new ConcurrentHashMap<>();
+    private boolean refreshPending = false;
+    private JButton loadMoreBtn;
+    // 当前显示的卡片数量，超出部分通过“加载更多”逐页显示
+    private int visibleCount = PAGE_SIZE;
     private static final int CARDS_PER_ROW = 3; // 每行显示3个卡片
+    private static final int PAGE_SIZE = 60; // 每页卡片数量
 
     public ToolManagementPanel(Consumer<String> logConsumer) {
         super(logConsumer);
 
 
-        this.dbManager = DatabaseManager.getInstance();
-        this.toolList = new ArrayList<>();
+        this.catalog = CatalogCache.getInstance();
         this.filteredToolList = new ArrayList<>();
         initUI();
-        loadToolsFromDatabase();
-        refreshToolCards();
+        // 启动快照已填充缓存时直接按缓存显示，由主窗口在后台与数据库核对；否则在后台读取第一页
+        if (catalog.isToolsLoaded()) {
+            filterTools();
+        } else {
+            loadToolsFromDatabase();
+        }
+        catalog.addListener(this::onCatalogChanged);
+        new Timer(1000, e -> refreshSparklines()).start();
 
         // 确保日志系统已完全初始化
         ensureLogInitialized();
@@ -103,15 +132,15 @@ public class ToolManagementPanel extends BasePanel {
         searchField.setToolTipText("搜索工具名称或描述");
 
         JButton searchBtn = new JButton("搜索");
-        searchBtn.addActionListener(e -> filterTools());
+        searchBtn.addActionListener(e -> applyFilters());
 
         typeFilter = new JComboBox<>(new String[]{"全部类型", "JAR程序", "EXE程序", "Python脚本", "批处理文件", "Shell脚本", "PowerShell脚本", "其他"});
         typeFilter.setToolTipText("按工具类型过滤");
-        typeFilter.addActionListener(e -> filterTools());
+        typeFilter.addActionListener(e -> applyFilters());
 
         statusFilter = new JComboBox<>(new String[]{"全部状态", "就绪", "运行中", "已禁用", "错误"});
         statusFilter.setToolTipText("按工具状态过滤");
-        statusFilter.addActionListener(e -> filterTools());
+        statusFilter.addActionListener(e -> applyFilters());
 
         JButton clearFilterBtn = new JButton("清除过滤");
         clearFilterBtn.addActionListener(e -> clearFilters());
@@ -142,7 +171,17 @@ public class ToolManagementPanel extends BasePanel {
         scrollPane.setBorder(BorderFactory.createTitledBorder("工具列表"));
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
 
+        loadMoreBtn = new JButton("加载更多");
+        loadMoreBtn.setVisible(false);
+        loadMoreBtn.addActionListener(e -> {
+            visibleCount += PAGE_SIZE;
+            refreshToolCards();
+        });
+        JPanel loadMorePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        loadMorePanel.add(loadMoreBtn);
+
         panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(loadMorePanel, BorderLayout.SOUTH);
         return panel;
     }
 
@@ -167,23 +206,43 @@ public class ToolManagementPanel extends BasePanel {
         return statusBar;
     }
 
+    // 先按键集分页只读取第一页用于显示，完整目录在后台加载
     private void loadToolsFromDatabase() {
-        try {
-            toolList.clear();
-            toolList.addAll(dbManager.getAllTools());
-
-            if (toolList.isEmpty()) {
+        loadInBackground("工具列表", () -> {
+            Page<Tool> firstPage = db().getToolsPage(null, null, null, PAGE_SIZE);
+            if (firstPage.getItems().isEmpty()) {
                 appendInfo("工具列表为空，正在添加示例工具...");
                 addSampleTools();
+                firstPage = db().getToolsPage(null, null, null, PAGE_SIZE);
+            }
+            // 第一页读出后再在读线程上加载完整目录
+            warmUpCatalog();
+            return firstPage.getItems();
+        }, items -> {
+            if (catalog.isToolsLoaded()) {
+                filterTools(); // 完整目录已先加载完成
+                return;
             }
-
             filteredToolList.clear();
-            filteredToolList.addAll(toolList);
-            updateStatusBar();
+            filteredToolList.addAll(items);
+            refreshToolCards();
+        });
+    }
 
-        } catch (Exception e) {
-            appendError("从数据库加载工具失败: " + e.getMessage());
-        }
+    // 按需获取数据库实例，使用启动快照时构造面板不触发数据库初始化
+    private DatabaseManager db() {
+        return DatabaseManager.getInstance();
+    }
+
+    // 在数据库读线程上加载完整目录缓存，完成后切换到缓存数据
+    private void warmUpCatalog() {
+        db().readAsync(db -> catalog.getTools()).whenComplete((items, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                appendError("加载工具目录失败: " + error.getMessage());
+            } else {
+                filterTools();
+            }
+        }));
     }
 
     private void addSampleTools() {
@@ -199,25 +258,22 @@ public class ToolManagementPanel extends BasePanel {
                         "渗透测试框架，提供漏洞利用和Payload生成", "渗透测试")
         );
 
-        for (Tool tool : sampleTools) {
-            try {
-                dbManager.addTool(tool);
-                toolList.add(tool);
-            } catch (Exception e) {
-                appendError("添加示例工具失败: " + tool.getName() + " - " + e.getMessage());
-            }
-        }
-
-        if (!sampleTools.isEmpty()) {
+        try {
+            catalog.addTools(sampleTools);
             appendSuccess("已添加 " + sampleTools.size() + " 个示例工具");
+        } catch (Exception e) {
+            appendError("添加示例工具失败: " + e.getMessage());
         }
     }
 
     private void refreshToolCards() {
         toolsCardPanel.removeAll();
+        statusLabels.clear();
+        sparklines.clear();
 
+        // 只创建当前页范围内的卡片
         // 如果工具数量不是3的倍数，添加空面板来保持布局整齐
-        int totalCards = filteredToolList.size();
+        int totalCards = Math.min(visibleCount, filteredToolList.size());
         int cardsToAdd = totalCards;
 
         // 计算需要添加的空面板数量
@@ -238,6 +294,10 @@ public class ToolManagementPanel extends BasePanel {
             }
         }
 
+        int remaining = filteredToolList.size() - totalCards;
+        loadMoreBtn.setText("加载更多 (剩余 " + remaining + " 个)");
+        loadMoreBtn.setVisible(remaining > 0);
+
         toolsCardPanel.revalidate();
         toolsCardPanel.repaint();
         updateStatusBar();
@@ -318,6 +378,7 @@ public class ToolManagementPanel extends BasePanel {
         statusLabel.setFont(new Font("Microsoft YaHei", Font.PLAIN, 10));
         statusLabel.setForeground(getStatusColor(tool.getStatus()));
         statusLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+        statusLabels.put(tool.getId(), statusLabel);
 
         rightPanel.add(versionLabel);
         rightPanel.add(statusLabel);
@@ -364,9 +425,17 @@ public class ToolManagementPanel extends BasePanel {
         bottomPanel.add(deleteBtn);
         bottomPanel.add(moreBtn);
 
+        // 运行中显示资源曲线，占用描述下方的空间
+        ResourceSparkline sparkline = new ResourceSparkline();
+        sparklines.put(tool.getId(), sparkline);
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.setOpaque(false);
+        centerPanel.add(descArea, BorderLayout.CENTER);
+        centerPanel.add(sparkline, BorderLayout.SOUTH);
+
         // 组装卡片
         card.add(topPanel, BorderLayout.NORTH);
-        card.add(descArea, BorderLayout.CENTER);
+        card.add(centerPanel, BorderLayout.CENTER);
         card.add(bottomPanel, BorderLayout.SOUTH);
 
         return card;
@@ -454,15 +523,9 @@ public class ToolManagementPanel extends BasePanel {
         dialog.setVisible(true);
 
         if (dialog.isConfirmed()) {
-            try {
-                Tool newTool = dialog.getToolInfo();
-                dbManager.addTool(newTool);
-                toolList.add(newTool);
-                filterTools();
-                appendSuccess("已添加工具: " + newTool.getName());
-            } catch (Exception ex) {
-                appendError("添加工具失败: " + ex.getMessage());
-            }
+            Tool newTool = dialog.getToolInfo();
+            applyOnEdt(catalog.addToolAsync(newTool), "添加工具",
+                    v -> appendSuccess("已添加工具: " + newTool.getName()));
         }
     }
 
@@ -479,24 +542,32 @@ public class ToolManagementPanel extends BasePanel {
         dialog.setVisible(true);
 
         if (dialog.isConfirmed()) {
-            try {
-                Tool updatedTool = dialog.getToolInfo();
-                updatedTool.setId(tool.getId()); // 保持相同的ID
-                dbManager.updateTool(updatedTool);
-
-                // 更新本地列表
-                tool.setName(updatedTool.getName());
-                tool.setType(updatedTool.getType());
-                tool.setPath(updatedTool.getPath());
-                tool.setVersion(updatedTool.getVersion());
-                tool.setStatus(updatedTool.getStatus());
-                tool.setDescription(updatedTool.getDescription());
-                tool.setCategory(updatedTool.getCategory());
+            Tool edited = dialog.getToolInfo();
+
+            // 修改副本，写入成功后由缓存替换原对象，失败时界面仍显示保存前的内容
+            Tool updatedTool = tool.copy();
+            updatedTool.setName(edited.getName());
+            updatedTool.setType(edited.getType());
+            updatedTool.setPath(edited.getPath());
+            updatedTool.setVersion(edited.getVersion());
+            updatedTool.setStatus(edited.getStatus());
+            updatedTool.setDescription(edited.getDescription());
+            updatedTool.setCategory(edited.getCategory());
+            applyOnEdt(catalog.updateToolAsync(updatedTool), "更新工具", v -> {
+                if (!catalog.isToolsLoaded()) {
+                    replaceDisplayedTool(updatedTool); // 缓存尚未加载完成时不会收到事件
+                }
+                appendSuccess("已更新工具: " + updatedTool.getName());
+            });
+        }
+    }
 
-                filterTools();
-                appendSuccess("已更新工具: " + tool.getName());
-            } catch (Exception ex) {
-                appendError("更新工具失败: " + ex.getMessage());
+    private void replaceDisplayedTool(Tool updated) {
+        for (int i = 0; i < filteredToolList.size(); i++) {
+            if (filteredToolList.get(i).getId() == updated.getId()) {
+                filteredToolList.set(i, updated);
+                refreshToolCards();
+                return;
             }
         }
     }
@@ -517,14 +588,8 @@ public class ToolManagementPanel extends BasePanel {
                 JOptionPane.WARNING_MESSAGE);
 
         if (result == JOptionPane.YES_OPTION) {
-            try {
-                dbManager.deleteTool(tool.getId());
-                toolList.remove(tool);
-                filterTools();
-                appendSuccess("已删除工具: " + tool.getName());
-            } catch (Exception ex) {
-                appendError("删除工具失败: " + ex.getMessage());
-            }
+            applyOnEdt(catalog.deleteToolAsync(tool.getId()), "删除工具",
+                    v -> appendSuccess("已删除工具: " + tool.getName()));
         }
     }
 
@@ -545,29 +610,9 @@ public class ToolManagementPanel extends BasePanel {
             appendWarning("工具文件可能没有执行权限: " + tool.getPath());
         }
 
-        try {
-            // 更新状态到数据库
-            updateToolStatus(tool, "运行中", null);
-
-            // 根据工具类型执行不同的启动逻辑
-            new Thread(() -> {
-                try {
-                    Process process = startToolProcess(tool);
-                    if (process != null) {
-                        monitorToolProcess(tool, process);
-                    }
-                } catch (Exception ex) {
-                    SwingUtilities.invokeLater(() -> {
-                        appendError("启动工具失败: " + ex.getMessage());
-                        updateToolStatus(tool, "错误", "启动失败: " + ex.getMessage());
-                    });
-                }
-            }).start();
-
-        } catch (Exception ex) {
-            appendError("更新工具状态失败: " + ex.getMessage());
-            updateToolStatus(tool, "错误", "状态更新失败");
-        }
+        // 更新状态到数据库
+        updateToolStatus(tool, "运行中", null);
+        submitToolRun(tool, null, RunLimits.NONE, () -> startToolProcess(tool));
     }
 
     private Process startToolProcess(Tool tool) throws IOException {
@@ -731,7 +776,11 @@ public class ToolManagementPanel extends BasePanel {
                 "打开命令行(cmd)",
                 "打开PowerShell",
                 "打开文件管理器",
-                "直接执行工具"
+                "直接执行工具",
+                "停止运行",
+                "查看输出",
+                "批量运行",
+                "运行限制"
         };
 
         int choice = JOptionPane.showOptionDialog(
@@ -760,6 +809,18 @@ public class ToolManagementPanel extends BasePanel {
             case 3: // 直接执行工具
                 runTool(tool);
                 break;
+            case 4: // 停止该工具的所有运行
+                stopTool(tool);
+                break;
+            case 5: // 查看最近一次运行的完整输出
+                showLatestRunOutput(DatabaseManager.ENTITY_TOOL, tool.getId(), tool.getName());
+                break;
+            case 6: // 对目标列表批量运行
+                openFanOutDialog(tool);
+                break;
+            case 7: // 超时、宽限时间和输出上限
+                editRunLimits(DatabaseManager.ENTITY_TOOL, tool.getId(), tool.getName());
+                break;
             default:
                 // 取消操作
                 break;
@@ -806,59 +867,113 @@ public class ToolManagementPanel extends BasePanel {
         }
     }
 
-    private void monitorToolProcess(Tool tool, Process process) {
-        try {
-            // 读取工具输出
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream(), getSystemEncoding()));
-
-            String line;
-            StringBuilder output = new StringBuilder();
-            while ((line = reader.readLine()) != null) {
-                final String outputLine = line;
-                SwingUtilities.invokeLater(() -> {
-                    appendInfo("[ " + tool.getName() + " ] " + outputLine);
-                });
-                output.append(line).append("\n");
-            }
+    // 每次运行单独登记，同一个工具可以同时运行多次；limits 中未设置的项使用工具保存的限制
+    private void submitToolRun(Tool tool, String arguments, RunLimits limits, ProcessManager.Launcher launcher) {
+        RunHandle run = processManager.submit(DatabaseManager.ENTITY_TOOL, tool.getId(), tool.getName(),
+                arguments, launcher, (r, source, line) -> onToolOutput(tool.getName(), source, line), limits);
+        run.getCompletion().whenComplete((exitCode, error) ->
+                SwingUtilities.invokeLater(() -> onToolRunFinished(tool, run, exitCode, error)));
+    }
 
-            // 等待进程结束
-            int exitCode = process.waitFor();
+    // 在输出读取线程上调用，stderr 的行用警告样式区分
+    private void onToolOutput(String label, ProcessManager.OutputSource source, String line) {
+        if (source == ProcessManager.OutputSource.STDERR) {
+            appendWarning("[ " + label + " ] " + line);
+        } else {
+            appendInfo("[ " + label + " ] " + line);
+        }
+    }
 
-            SwingUtilities.invokeLater(() -> {
-                if (exitCode == 0) {
-                    appendSuccess("工具 " + tool.getName() + " 执行完成 (退出码: " + exitCode + ")");
-                    updateToolStatus(tool, "就绪", "执行成功");
-                } else {
-                    appendWarning("工具 " + tool.getName() + " 执行完成 (退出码: " + exitCode + ")");
-                    updateToolStatus(tool, "就绪", "执行完成，退出码: " + exitCode);
+    private void onToolRunFinished(Tool tool, RunHandle run, Integer exitCode, Throwable error) {
+        // 同一工具还有其他运行时保持运行中状态
+        String status = processManager.isRunning(DatabaseManager.ENTITY_TOOL, tool.getId()) ? "运行中" : "就绪";
+        if (error instanceof CancellationException) {
+            appendWarning("工具 " + tool.getName() + " 已取消");
+            updateToolStatus(tool, status, null);
+        } else if (error != null) {
+            String action = run.isStarted() ? "工具执行异常: " : "启动工具失败: ";
+            appendError(action + error.getMessage());
+            updateToolStatus(tool, "运行中".equals(status) ? status : "错误", null);
+        } else if (run.isCancelled()) {
+            appendWarning("工具 " + tool.getName() + " 已停止: " + run.getKillReason().getLabel()
+                    + " (退出码: " + exitCode + ")");
+            updateToolStatus(tool, status, null);
+        } else if (exitCode == 0) {
+            appendSuccess("工具 " + tool.getName() + " 执行完成 (退出码: " + exitCode + ")");
+            updateToolStatus(tool, status, "执行成功");
+        } else {
+            appendWarning("工具 " + tool.getName() + " 执行完成 (退出码: " + exitCode + ")");
+            updateToolStatus(tool, status, "执行完成，退出码: " + exitCode);
+        }
+    }
+
+    private void openFanOutDialog(Tool tool) {
+        if (!CommandBuilder.supportsParameters(tool)) {
+            appendWarning("该工具类型暂不支持参数，无法批量运行: " + tool.getType());
+            return;
+        }
+        if (!new File(tool.getPath()).exists()) {
+            appendError("工具文件不存在: " + tool.getPath());
+            return;
+        }
+        new FanOutDialog((JFrame) SwingUtilities.getWindowAncestor(this), tool,
+                fanOut -> startFanOut(tool, fanOut)).setVisible(true);
+    }
+
+    // 每个目标是一次独立运行，输出带上目标名写入日志，只报告未成功的目标和最终汇总
+    private void startFanOut(Tool tool, FanOutRun fanOut) {
+        appendInfo("开始批量运行 " + tool.getName() + ": " + fanOut.getTotal() + " 个目标");
+        updateToolStatus(tool, "运行中", null);
+        activeFanOuts.put(fanOut, tool);
+        fanOut.setOutputListener((target, source, line) ->
+                onToolOutput(tool.getName() + " | " + target, source, line));
+        fanOut.addListener(new FanOutRun.Listener() {
+            @Override
+            public void onTargetFinished(FanOutRun run, FanOutRun.TargetResult result) {
+                if (result.outcome() != FanOutRun.Outcome.SUCCEEDED) {
+                    appendWarning("[ " + tool.getName() + " | " + result.target() + " ] "
+                            + result.outcome().getLabel() + " (退出码: " + result.exitCode() + ")");
                 }
-            });
+            }
 
-        } catch (IOException | InterruptedException ex) {
-            SwingUtilities.invokeLater(() -> {
-                appendError("工具执行异常: " + ex.getMessage());
-                updateToolStatus(tool, "错误", "执行异常: " + ex.getMessage());
-            });
-        } finally {
-            // 确保进程被销毁
-            if (process.isAlive()) {
-                process.destroy();
+            @Override
+            public void onFinished(FanOutRun run) {
+                activeFanOuts.remove(run);
+                SwingUtilities.invokeLater(() -> {
+                    String status = processManager.isRunning(DatabaseManager.ENTITY_TOOL, tool.getId()) ? "运行中" : "就绪";
+                    updateToolStatus(tool, status, null);
+                    appendSuccess("批量运行 " + tool.getName() + " 结束: 成功 "
+                            + run.getCount(FanOutRun.Outcome.SUCCEEDED) + " / " + run.getTotal()
+                            + "，失败 " + run.getCount(FanOutRun.Outcome.FAILED)
+                            + "，超时 " + run.getCount(FanOutRun.Outcome.TIMED_OUT)
+                            + "，启动失败 " + run.getCount(FanOutRun.Outcome.ERROR)
+                            + "，取消 " + run.getCount(FanOutRun.Outcome.CANCELLED));
+                });
+            }
+        });
+        fanOut.start(arguments -> startToolProcessWithParameters(tool, arguments));
+    }
+
+    private void stopTool(Tool tool) {
+        activeFanOuts.forEach((fanOut, owner) -> {
+            if (owner.getId() == tool.getId()) {
+                fanOut.stop();
             }
+        });
+        int count = processManager.stopAll(DatabaseManager.ENTITY_TOOL, tool.getId());
+        if (count == 0) {
+            appendInfo("工具 " + tool.getName() + " 没有正在运行的进程");
+        } else {
+            appendInfo("正在停止工具 " + tool.getName() + " 的 " + count + " 个运行");
         }
     }
 
     private void updateToolStatus(Tool tool, String status, String message) {
         try {
-            dbManager.updateToolStatus(tool.getId(), status);
-            if (status.equals("运行中")) {
-                dbManager.updateLastUsed(tool.getId());
-            }
+            // 缓存立即更新并通知卡片，数据库写入交给异步写队列
+            catalog.updateToolStatus(tool.getId(), status, status.equals("运行中"));
             tool.setStatus(status);
-            if (status.equals("运行中")) {
-                tool.setLastUsed(System.currentTimeMillis());
-            }
-            refreshToolCards();
+            updateCardStatus(tool); // 缓存尚未加载完成时不会收到事件
 
             if (message != null) {
                 switch (status) {
@@ -880,18 +995,17 @@ public class ToolManagementPanel extends BasePanel {
         }
     }
 
-    private String getSystemEncoding() {
-        String os = System.getProperty("os.name").toLowerCase();
-        if (os.contains("windows")) {
-            return "GBK"; // Windows 系统使用 GBK 编码
-        } else {
-            return "UTF-8"; // Linux/Mac 使用 UTF-8 编码
-        }
-    }
-
     // 增强的工具执行方法，带参数支持
     public void runToolWithParameters(Tool tool, String parameters) {
-        appendInfo("正在启动工具: " + tool.getName() + " 参数: " + parameters);
+        runToolWithParameters(tool, parameters, RunLimits.NONE);
+    }
+
+    /**
+     * @param limits 本次运行的限制，未设置的项使用工具保存的限制
+     */
+    public void runToolWithParameters(Tool tool, String parameters, RunLimits limits) {
+        appendInfo("正在启动工具: " + tool.getName() + " 参数: " + parameters
+                + (limits.isUnlimited() ? "" : " 本次限制: " + limits.describe()));
 
         File toolFile = new File(tool.getPath());
         if (!toolFile.exists()) {
@@ -900,71 +1014,17 @@ public class ToolManagementPanel extends BasePanel {
             return;
         }
 
-        try {
-            updateToolStatus(tool, "运行中", null);
-
-            new Thread(() -> {
-                try {
-                    Process process = startToolProcessWithParameters(tool, parameters);
-                    if (process != null) {
-                        monitorToolProcess(tool, process);
-                    }
-                } catch (Exception ex) {
-                    SwingUtilities.invokeLater(() -> {
-                        appendError("启动工具失败: " + ex.getMessage());
-                        updateToolStatus(tool, "错误", "启动失败: " + ex.getMessage());
-                    });
-                }
-            }).start();
-
-        } catch (Exception ex) {
-            appendError("更新工具状态失败: " + ex.getMessage());
-            updateToolStatus(tool, "错误", "状态更新失败");
-        }
+        updateToolStatus(tool, "运行中", null);
+        submitToolRun(tool, parameters, limits, () -> startToolProcessWithParameters(tool, parameters));
     }
 
     private Process startToolProcessWithParameters(Tool tool, String parameters) throws IOException {
-        String toolPath = tool.getPath();
-        ProcessBuilder processBuilder = new ProcessBuilder();
-        String[] params = parameters.split("\\s+");
-
-        switch (tool.getType()) {
-            case "EXE程序":
-                String[] exeCommand = new String[params.length + 1];
-                exeCommand[0] = toolPath;
-                System.arraycopy(params, 0, exeCommand, 1, params.length);
-                processBuilder.command(exeCommand);
-                break;
-
-            case "JAR程序":
-                String[] jarCommand = new String[params.length + 2];
-                jarCommand[0] = "java";
-                jarCommand[1] = "-jar";
-                jarCommand[2] = toolPath;
-                System.arraycopy(params, 0, jarCommand, 3, params.length);
-                processBuilder.command(jarCommand);
-                break;
-
-            case "Python脚本":
-                String[] pyCommand = new String[params.length + 2];
-                pyCommand[0] = "python";
-                pyCommand[1] = toolPath;
-                System.arraycopy(params, 0, pyCommand, 2, params.length);
-                processBuilder.command(pyCommand);
-                break;
-
-            default:
-                // 其他类型暂不支持参数
-                appendWarning("该工具类型暂不支持参数: " + tool.getType());
-                return startToolProcess(tool);
-        }
-
-        File toolDir = new File(toolPath).getParentFile();
-        if (toolDir != null && toolDir.exists()) {
-            processBuilder.directory(toolDir);
+        if (!CommandBuilder.supportsParameters(tool)) {
+            // 其他类型暂不支持参数
+            appendWarning("该工具类型暂不支持参数: " + tool.getType());
+            return startToolProcess(tool);
         }
-
-        processBuilder.redirectErrorStream(true);
+        ProcessBuilder processBuilder = CommandBuilder.forTool(tool, parameters);
         appendInfo("执行命令: " + String.join(" ", processBuilder.command()));
         return processBuilder.start();
     }
@@ -973,15 +1033,28 @@ public class ToolManagementPanel extends BasePanel {
     private void runToolWithDialog(Tool tool) {
         // 检查是否需要参数
         if (toolRequiresParameters(tool)) {
-            String parameters = JOptionPane.showInputDialog(
-                    this,
-                    "请输入工具参数:",
-                    "工具参数输入 - " + tool.getName(),
-                    JOptionPane.QUESTION_MESSAGE
-            );
+            JTextField parametersField = new JTextField(30);
+            RunLimits[] limits = {RunLimits.NONE};
+            JLabel limitsLabel = new JLabel("运行限制: 使用保存的设置");
+            JButton limitsBtn = new JButton("本次运行限制...");
+            limitsBtn.addActionListener(ev -> {
+                RunLimits chosen = askRunLimits(tool.getName(), limits[0]);
+                if (chosen != null) {
+                    limits[0] = chosen;
+                    limitsLabel.setText("运行限制: " + (chosen.isUnlimited() ? "使用保存的设置" : chosen.describe()));
+                }
+            });
 
-            if (parameters != null) {
-                runToolWithParameters(tool, parameters.trim());
+            JPanel limitsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+            limitsPanel.add(limitsBtn);
+            limitsPanel.add(Box.createHorizontalStrut(8));
+            limitsPanel.add(limitsLabel);
+            Object[] message = {"请输入工具参数:", parametersField, limitsPanel};
+
+            int option = JOptionPane.showConfirmDialog(this, message, "工具参数输入 - " + tool.getName(),
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+            if (option == JOptionPane.OK_OPTION) {
+                runToolWithParameters(tool, parametersField.getText().trim(), limits[0]);
             }
         } else {
             runTool(tool);
@@ -1006,32 +1079,55 @@ public class ToolManagementPanel extends BasePanel {
 
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
-            File[] selectedFiles = fileChooser.getSelectedFiles();
-            int count = 0;
-
-            for (File file : selectedFiles) {
-                if (file.isFile() && isSupportedFileType(file.getName())) {
-                    String fileName = file.getName();
-                    String fileType = getFileType(fileName);
-                    String toolName = fileName.replaceFirst("[.][^.]+$", "");
-
-                    Tool newTool = new Tool(
-                            toolName, fileType, file.getAbsolutePath(),
-                            "1.0", "就绪", "导入的工具", "其他"
-                    );
-
-                    try {
-                        dbManager.addTool(newTool);
-                        toolList.add(newTool);
-                        count++;
-                    } catch (Exception ex) {
-                        appendError("导入工具失败: " + toolName + " - " + ex.getMessage());
-                    }
+            List<File> files = new ArrayList<>();
+            for (File file : fileChooser.getSelectedFiles()) {
+                // 导出的工具列表按 JSON 导入
+                if (file.isFile() && file.getName().toLowerCase().endsWith(".json")) {
+                    importToolList(file);
+                    continue;
                 }
+                collectToolFiles(file, files);
+            }
+            if (files.isEmpty()) {
+                return;
             }
 
-            filterTools();
-            appendSuccess("已导入 " + count + " 个工具");
+            List<Tool> newTools = new ArrayList<>();
+            for (File file : files) {
+                String fileName = file.getName();
+                String fileType = getFileType(fileName);
+                String toolName = fileName.replaceFirst("[.][^.]+$", "");
+
+                newTools.add(new Tool(
+                        toolName, fileType, file.getAbsolutePath(),
+                        "1.0", "就绪", "导入的工具", "其他"
+                ));
+            }
+
+            // 整批在一个事务中写入
+            applyOnEdt(catalog.addToolsAsync(newTools), "导入工具",
+                    v -> appendSuccess("已导入 " + newTools.size() + " 个工具"));
+        }
+    }
+
+    private void importToolList(File file) {
+        appendInfo("正在导入工具列表: " + file.getAbsolutePath());
+        applyOnEdt(new CatalogTransfer().importAsync(file.toPath(), EnumSet.of(CatalogTransfer.Section.TOOLS)),
+                "导入工具列表", summary -> appendSuccess("已导入 " + summary.tools() + " 个工具"
+                        + (summary.skipped() > 0 ? "，跳过已存在的 " + summary.skipped() + " 个" : "")));
+    }
+
+    // 收集可导入的工具文件，选中目录时递归查找
+    private void collectToolFiles(File file, List<File> result) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    collectToolFiles(child, result);
+                }
+            }
+        } else if (file.isFile() && isSupportedFileType(file.getName())) {
+            result.add(file);
         }
     }
 
@@ -1041,8 +1137,10 @@ public class ToolManagementPanel extends BasePanel {
         fileChooser.setSelectedFile(new File("tools_export.json"));
 
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            // 这里可以实现导出逻辑
-            appendInfo("导出功能开发中...");
+            File file = fileChooser.getSelectedFile();
+            appendInfo("正在导出工具列表到: " + file.getAbsolutePath());
+            applyOnEdt(new CatalogTransfer().exportAsync(file.toPath(), EnumSet.of(CatalogTransfer.Section.TOOLS)),
+                    "导出工具", summary -> appendSuccess("已导出 " + summary.tools() + " 个工具"));
         }
     }
 
@@ -1065,8 +1163,7 @@ public class ToolManagementPanel extends BasePanel {
 
     private void refreshTools() {
         appendInfo("刷新工具列表...");
-        loadToolsFromDatabase();
-        filterTools();
+        catalog.reloadTools();
         appendSuccess("工具列表已刷新");
     }
 
@@ -1076,9 +1173,9 @@ public class ToolManagementPanel extends BasePanel {
         String selectedStatus = (String) statusFilter.getSelectedItem();
 
         try {
-            // 使用数据库搜索
+            // 关键字走全文索引，类型和状态由缓存索引过滤
             filteredToolList.clear();
-            filteredToolList.addAll(dbManager.searchTools(
+            filteredToolList.addAll(catalog.searchTools(
                     searchText.isEmpty() ? null : searchText,
                     "全部类型".equals(selectedType) ? null : selectedType,
                     "全部状态".equals(selectedStatus) ? null : selectedStatus
@@ -1090,7 +1187,7 @@ public class ToolManagementPanel extends BasePanel {
             appendError("搜索工具失败: " + e.getMessage());
             // 回退到本地过滤
             filteredToolList.clear();
-            for (Tool tool : toolList) {
+            for (Tool tool : catalog.getTools()) {
                 boolean matches = true;
 
                 if (!searchText.isEmpty()) {
@@ -1115,11 +1212,73 @@ public class ToolManagementPanel extends BasePanel {
         }
     }
 
+    // 目录缓存变更：状态变化只更新对应卡片的状态标签，其余变化合并为一次重新过滤
+    private void onCatalogChanged(CatalogEvent event) {
+        if (!event.isFor(DatabaseManager.ENTITY_TOOL)) {
+            return;
+        }
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> onCatalogChanged(event));
+            return;
+        }
+
+        if (event.getType() == CatalogEvent.Type.STATUS_CHANGED
+                && "全部状态".equals(statusFilter.getSelectedItem())) {
+            updateCardStatus((Tool) event.getEntity());
+        } else {
+            scheduleFilter();
+        }
+    }
+
+    private void refreshSparklines() {
+        if (!isShowing()) {
+            return;
+        }
+        for (Map.Entry<Integer, ResourceSparkline> entry : sparklines.entrySet()) {
+            List<ResourceHistory> histories = new ArrayList<>();
+            for (RunHandle run : processManager.getRuns(DatabaseManager.ENTITY_TOOL, entry.getKey())) {
+                ResourceHistory history = run.getResources();
+                if (history != null && run.isAlive()) {
+                    histories.add(history);
+                }
+            }
+            ResourceSparkline sparkline = entry.getValue();
+            if (!histories.isEmpty() || sparkline.isVisible()) {
+                sparkline.update(histories);
+            }
+        }
+    }
+
+    private void updateCardStatus(Tool tool) {
+        JLabel statusLabel = statusLabels.get(tool.getId());
+        if (statusLabel != null) {
+            statusLabel.setText(tool.getStatus());
+            statusLabel.setForeground(getStatusColor(tool.getStatus()));
+        }
+    }
+
+    // 同一批事件只重新过滤一次
+    private void scheduleFilter() {
+        if (!refreshPending) {
+            refreshPending = true;
+            SwingUtilities.invokeLater(() -> {
+                refreshPending = false;
+                filterTools();
+            });
+        }
+    }
+
+    // 过滤条件变化时回到第一页
+    private void applyFilters() {
+        visibleCount = PAGE_SIZE;
+        filterTools();
+    }
+
     private void clearFilters() {
         searchField.setText("");
         typeFilter.setSelectedIndex(0);
         statusFilter.setSelectedIndex(0);
-        filterTools();
+        applyFilters();
     }
 
     private void updateStatusBar() {
@@ -1129,7 +1288,7 @@ public class ToolManagementPanel extends BasePanel {
             JLabel statusLabel = (JLabel) statusBar.getComponent(0);
             JLabel filterLabel = (JLabel) statusBar.getComponent(1);
 
-            statusLabel.setText("就绪 | 共 " + toolList.size() + " 个工具");
+            statusLabel.setText("就绪 | 共 " + catalog.getToolCount() + " 个工具");
             filterLabel.setText("显示 " + filteredToolList.size() + " 个工具");
         }
     }
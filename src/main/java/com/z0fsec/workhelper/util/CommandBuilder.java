@@ -0,0 +1,113 @@
+package com.z0fsec.workhelper.util;
+
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.Tool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 构建带参数直接执行工具或脚本的命令，工作目录为文件所在目录
+ * 工具面板、脚本面板、批量运行和定时任务共用，不打开新的命令行窗口
+ */
+public class CommandBuilder {
+    private CommandBuilder() {
+    }
+
+    /**
+     * 工具类型是否支持直接带参数执行
+     */
+    public static boolean supportsParameters(Tool tool) {
+        switch (tool.getType()) {
+            case "EXE程序":
+            case "JAR程序":
+            case "Python脚本":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param parameters 以空白分隔的参数，没有时传 null
+     * @throws IllegalArgumentException 工具类型不支持参数
+     */
+    public static ProcessBuilder forTool(Tool tool, String parameters) {
+        String toolPath = tool.getPath();
+        List<String> command = new ArrayList<>();
+        switch (tool.getType()) {
+            case "EXE程序":
+                command.add(toolPath);
+                break;
+            case "JAR程序":
+                command.add("java");
+                command.add("-jar");
+                command.add(toolPath);
+                break;
+            case "Python脚本":
+                command.add("python");
+                command.add(toolPath);
+                break;
+            default:
+                throw new IllegalArgumentException("该工具类型暂不支持参数: " + tool.getType());
+        }
+        addParameters(command, parameters);
+        return inDirectoryOf(new ProcessBuilder(command), toolPath);
+    }
+
+    /**
+     * @param parameters 以空白分隔的参数，没有时传 null
+     */
+    public static ProcessBuilder forScript(Script script, String parameters) {
+        String scriptPath = new File(script.getPath()).getAbsolutePath();
+        String interpreter = script.getInterpreter() != null ?
+                script.getInterpreter() : getDefaultInterpreter(script.getType());
+
+        List<String> command = new ArrayList<>();
+        switch (script.getType()) {
+            case "Shell脚本":
+                command.add("sh");
+                break;
+            case "批处理文件":
+                command.add("cmd");
+                command.add("/c");
+                break;
+            case "PowerShell脚本":
+                command.add("powershell");
+                command.add("-File");
+                break;
+            default:
+                command.add(interpreter);
+        }
+        command.add(scriptPath);
+        addParameters(command, parameters);
+        return inDirectoryOf(new ProcessBuilder(command), scriptPath);
+    }
+
+    public static String getDefaultInterpreter(String scriptType) {
+        switch (scriptType) {
+            case "Python脚本": return "python";
+            case "Shell脚本": return "sh";
+            case "批处理文件": return "cmd";
+            case "PowerShell脚本": return "powershell";
+            default: return "";
+        }
+    }
+
+    private static void addParameters(List<String> command, String parameters) {
+        if (parameters != null && !parameters.isBlank()) {
+            for (String param : parameters.trim().split("\\s+")) {
+                command.add(param);
+            }
+        }
+    }
+
+    private static ProcessBuilder inDirectoryOf(ProcessBuilder processBuilder, String path) {
+        File dir = new File(path).getParentFile();
+        if (dir != null && dir.exists()) {
+            processBuilder.directory(dir);
+        }
+        return processBuilder;
+    }
+}
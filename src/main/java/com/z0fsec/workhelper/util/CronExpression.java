@@ -0,0 +1,159 @@
+package com.z0fsec.workhelper.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * 五段式 cron 表达式：分 时 日 月 周
+ * 每段支持星号、数字、范围 a-b、带步长的 a-b/n（星号或单个数字后也可以加 /n）以及逗号分隔的列表；
+ * 周的 0 和 7 都表示周日。
+ * 日和周都有限制时满足其一即可，与标准 cron 相同
+ */
+public class CronExpression {
+    // 向后查找的上限，表达式永远不会触发（如 2 月 30 日）时停止
+    private static final int MAX_YEARS_AHEAD = 5;
+
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+
+    private CronExpression(String expression) {
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("cron 表达式需要 5 段（分 时 日 月 周）: " + expression);
+        }
+        this.expression = expression.trim();
+        this.minutes = parseField(fields[0], 0, 59, "分");
+        this.hours = parseField(fields[1], 0, 23, "时");
+        this.daysOfMonth = parseField(fields[2], 1, 31, "日");
+        this.months = parseField(fields[3], 1, 12, "月");
+        this.daysOfWeek = parseField(fields[4], 0, 7, "周");
+        // 7 和 0 都是周日
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+            daysOfWeek.clear(7);
+        }
+        this.dayOfMonthRestricted = !fields[2].equals("*");
+        this.dayOfWeekRestricted = !fields[4].equals("*");
+    }
+
+    /**
+     * @throws IllegalArgumentException 表达式无效
+     */
+    public static CronExpression parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("cron 表达式为空");
+        }
+        return new CronExpression(expression);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 严格晚于 afterMillis 的下一次触发时间
+     *
+     * @return 毫秒时间戳，表达式永远不会触发时返回 -1
+     */
+    public long next(long afterMillis, ZoneId zone) {
+        ZonedDateTime start = ZonedDateTime.ofInstant(Instant.ofEpochMilli(afterMillis), zone)
+                .truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        LocalDateTime time = start.toLocalDateTime();
+        LocalDate limit = time.toLocalDate().plusYears(MAX_YEARS_AHEAD);
+
+        while (time.toLocalDate().isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).withHour(0).withMinute(0).plusMonths(1);
+                continue;
+            }
+            if (!matchesDay(time.toLocalDate())) {
+                time = time.withHour(0).withMinute(0).plusDays(1);
+                continue;
+            }
+            if (!hours.get(time.getHour())) {
+                time = time.withMinute(0).plusHours(1);
+                continue;
+            }
+            int minute = minutes.nextSetBit(time.getMinute());
+            if (minute < 0) {
+                time = time.withMinute(0).plusHours(1);
+                continue;
+            }
+            // 夏令时跳过的时间按时区规则顺延；回拨时重复的时间只触发一次
+            long fireTime = time.withMinute(minute).atZone(zone).toInstant().toEpochMilli();
+            if (fireTime > afterMillis) {
+                return fireTime;
+            }
+            time = time.withMinute(minute).plusMinutes(1);
+        }
+        return -1;
+    }
+
+    private boolean matchesDay(LocalDate date) {
+        boolean dayOfMonth = daysOfMonth.get(date.getDayOfMonth());
+        boolean dayOfWeek = daysOfWeek.get(date.getDayOfWeek().getValue() % 7);
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            return dayOfMonth || dayOfWeek;
+        }
+        return dayOfMonth && dayOfWeek;
+    }
+
+    private static BitSet parseField(String field, int min, int max, String name) {
+        BitSet bits = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            try {
+                int step = 1;
+                String range = part;
+                int slash = part.indexOf('/');
+                if (slash >= 0) {
+                    step = Integer.parseInt(part.substring(slash + 1));
+                    range = part.substring(0, slash);
+                    if (step <= 0) {
+                        throw new IllegalArgumentException("步长必须大于 0");
+                    }
+                }
+
+                int from;
+                int to;
+                if (range.equals("*")) {
+                    from = min;
+                    to = max;
+                } else if (range.contains("-")) {
+                    String[] bounds = range.split("-", 2);
+                    from = Integer.parseInt(bounds[0]);
+                    to = Integer.parseInt(bounds[1]);
+                } else {
+                    from = Integer.parseInt(range);
+                    // n/step 表示从 n 开始到最大值
+                    to = slash >= 0 ? max : from;
+                }
+                if (from < min || to > max || from > to) {
+                    throw new IllegalArgumentException("超出范围 " + min + "-" + max);
+                }
+                for (int i = from; i <= to; i += step) {
+                    bits.set(i);
+                }
+            } catch (IllegalArgumentException e) {
+                String reason = e instanceof NumberFormatException ? "不是数字" : e.getMessage();
+                throw new IllegalArgumentException("cron 表达式的" + name + "字段无效 \"" + part + "\": " + reason);
+            }
+        }
+        return bits;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,362 @@
+package com.z0fsec.workhelper.util;
+
+import com.z0fsec.workhelper.model.RunLimits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对一组目标批量运行同一个工具
+ * 参数模板中的 {target} 依次替换为每个目标，最多同时运行 parallelism 个，每个目标结束后补上下一个；
+ * 每个目标是 ProcessManager 中的一次独立运行，各自记录运行历史和输出文件，全部结束后按目标顺序合并成一个输出文件
+ */
+public class FanOutRun {
+    public static final String PLACEHOLDER = "{target}";
+
+    // 目标结束后的结果登记、补位、回调和合并输出都在这里执行，不占用调用方线程（可能是 EDT），
+    // 提交被拒绝时运行立即完成，也不会在提交处递归
+    private static final Executor CALLBACK_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("fanout-", 1).factory());
+
+    public enum Outcome {
+        SUCCEEDED("成功"), FAILED("失败"), TIMED_OUT("超时"), ERROR("启动失败"), CANCELLED("已取消");
+
+        private final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * 一个目标的运行结果
+     *
+     * @param exitCode   未启动或启动失败时为 null
+     * @param outputFile 没有输出文件时为 null
+     */
+    public record TargetResult(String target, String arguments, Outcome outcome, Integer exitCode,
+                               Path outputFile, long durationMillis) {
+    }
+
+    /**
+     * 按目标启动进程，在运行线程上调用
+     */
+    @FunctionalInterface
+    public interface LauncherFactory {
+        Process start(String arguments) throws IOException;
+    }
+
+    /**
+     * 逐行接收各目标的输出，在输出读取线程上调用，不同目标的回调会同时发生
+     */
+    @FunctionalInterface
+    public interface TargetOutputListener {
+        void onLine(String target, ProcessManager.OutputSource source, String line);
+    }
+
+    /**
+     * 进度回调，在后台虚拟线程上调用，更新界面需要切回 EDT
+     */
+    public interface Listener {
+        void onTargetFinished(FanOutRun fanOut, TargetResult result);
+
+        void onFinished(FanOutRun fanOut);
+    }
+
+    private final String entityType;
+    private final int entityId;
+    private final String name;
+    private final List<String> targets;
+    private final String template;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<Long, RunHandle> activeRuns = new ConcurrentHashMap<>();
+    private final CompletableFuture<Path> completion = new CompletableFuture<>();
+
+    private int parallelism = 4;
+    private long timeoutMillis;
+    private TargetOutputListener outputListener;
+    private LauncherFactory launcherFactory;
+    private long startTime;
+
+    // 以下字段由 this 保护
+    private final TargetResult[] results;
+    private final Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+    private int nextTarget;
+    private int inFlight;
+    private int finished;
+    private boolean stopped;
+
+    /**
+     * @param entityType DatabaseManager.ENTITY_TOOL / ENTITY_SCRIPT
+     * @param targets    目标列表，去掉空行、# 开头的注释和重复项
+     * @param template   参数模板，必须包含 {target}
+     */
+    public FanOutRun(String entityType, int entityId, String name, List<String> targets, String template) {
+        if (template == null || !template.contains(PLACEHOLDER)) {
+            throw new IllegalArgumentException("参数模板中没有 " + PLACEHOLDER);
+        }
+        Set<String> unique = new LinkedHashSet<>();
+        for (String target : targets) {
+            String trimmed = target.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                unique.add(trimmed);
+            }
+        }
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("目标列表为空");
+        }
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.name = name;
+        this.targets = List.copyOf(unique);
+        this.template = template;
+        this.results = new TargetResult[this.targets.size()];
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 单个目标的最长运行时间，从进程启动开始计算，超时后结束该目标的进程树；
+     * 0 表示使用工具保存的运行限制
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(Math.max(0, timeout));
+    }
+
+    public void setOutputListener(TargetOutputListener outputListener) {
+        this.outputListener = outputListener;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getTargets() {
+        return targets;
+    }
+
+    /**
+     * 替换模板中的占位符
+     */
+    public String expand(String target) {
+        return template.replace(PLACEHOLDER, target);
+    }
+
+    /**
+     * 开始运行，立即返回
+     */
+    public void start(LauncherFactory launcherFactory) {
+        synchronized (this) {
+            if (this.launcherFactory != null) {
+                throw new IllegalStateException("批量运行已经开始");
+            }
+            this.launcherFactory = launcherFactory;
+            this.startTime = System.currentTimeMillis();
+        }
+        launchNext();
+    }
+
+    /**
+     * 全部目标结束并合并输出后完成，结果为合并后的输出文件（合并失败时为 null）
+     */
+    public CompletableFuture<Path> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * 停止批量运行：未开始的目标不再运行，正在运行的结束进程树
+     * 立即返回，可以在 EDT 上调用；取消的目标、回调和合并输出在后台线程上完成
+     */
+    public void stop() {
+        List<RunHandle> running;
+        int pendingFrom;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            running = new ArrayList<>(activeRuns.values());
+            pendingFrom = nextTarget;
+            nextTarget = targets.size();
+        }
+        running.forEach(RunHandle::stop);
+        // 未开始的目标直接记为取消
+        if (pendingFrom < targets.size()) {
+            CALLBACK_EXECUTOR.execute(() -> {
+                for (int index = pendingFrom; index < targets.size(); index++) {
+                    String target = targets.get(index);
+                    finish(index, new TargetResult(target, expand(target), Outcome.CANCELLED, null, null, 0));
+                }
+            });
+        }
+    }
+
+    public synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    public int getTotal() {
+        return targets.size();
+    }
+
+    public synchronized int getFinished() {
+        return finished;
+    }
+
+    public int getRunning() {
+        return activeRuns.size();
+    }
+
+    public synchronized int getCount(Outcome outcome) {
+        return counts.getOrDefault(outcome, 0);
+    }
+
+    /**
+     * 按目标顺序的结果，未结束的目标为 null
+     */
+    public synchronized List<TargetResult> getResults() {
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    // 补足并发数：在锁内占位并取出下一个目标，在锁外提交
+    private void launchNext() {
+        while (true) {
+            int index;
+            synchronized (this) {
+                if (stopped || inFlight >= parallelism || nextTarget >= targets.size()) {
+                    return;
+                }
+                index = nextTarget++;
+                inFlight++;
+            }
+            launch(index);
+        }
+    }
+
+    private void launch(int index) {
+        String target = targets.get(index);
+        String arguments = expand(target);
+        ProcessManager.OutputListener listener = outputListener == null ? null
+                : (run, source, line) -> outputListener.onLine(target, source, line);
+        RunHandle run = ProcessManager.getInstance().submit(entityType, entityId, name, arguments,
+                () -> launcherFactory.start(arguments), listener, new RunLimits(timeoutMillis, 0, 0));
+        activeRuns.put(run.getRunId(), run);
+        // 提交期间调用了 stop() 时这次运行不在它取到的列表里
+        if (isStopped()) {
+            run.stop();
+        }
+
+        run.getCompletion().whenCompleteAsync((exitCode, error) -> {
+            activeRuns.remove(run.getRunId());
+            synchronized (this) {
+                inFlight--;
+            }
+            RunHandle.KillReason killReason = run.getKillReason();
+            Outcome outcome;
+            if (killReason == RunHandle.KillReason.TIMEOUT) {
+                outcome = Outcome.TIMED_OUT;
+            } else if (killReason == RunHandle.KillReason.OUTPUT_LIMIT) {
+                outcome = Outcome.FAILED;
+            } else if (error instanceof CancellationException || run.isCancelled()) {
+                outcome = Outcome.CANCELLED;
+            } else if (error != null) {
+                outcome = Outcome.ERROR;
+            } else {
+                outcome = exitCode == 0 ? Outcome.SUCCEEDED : Outcome.FAILED;
+            }
+            long duration = System.currentTimeMillis() - run.getSubmitTime();
+            finish(index, new TargetResult(target, arguments, outcome, exitCode, run.getOutputFile(), duration));
+            launchNext();
+        }, CALLBACK_EXECUTOR);
+    }
+
+    private void finish(int index, TargetResult result) {
+        boolean last;
+        synchronized (this) {
+            results[index] = result;
+            counts.merge(result.outcome(), 1, Integer::sum);
+            finished++;
+            last = finished == targets.size();
+        }
+        for (Listener listener : listeners) {
+            listener.onTargetFinished(this, result);
+        }
+        if (last) {
+            Path merged = mergeOutputs();
+            completion.complete(merged);
+            for (Listener listener : listeners) {
+                listener.onFinished(this);
+            }
+        }
+    }
+
+    // 按目标顺序把各自的输出文件拼接起来，每段前加一行目标和结果
+    private Path mergeOutputs() {
+        Path merged = OutputSpool.DIRECTORY.resolve("fanout-" + entityType + "-" + entityId + "-"
+                + startTime + ".log").toAbsolutePath();
+        try {
+            Files.createDirectories(OutputSpool.DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("创建运行输出目录失败: " + e.getMessage());
+            return null;
+        }
+        try (FileChannel out = FileChannel.open(merged, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (TargetResult result : getResults()) {
+                String header = String.format("===== %s | %s | 退出码 %s | %.1f 秒 =====%n", result.target(),
+                        result.outcome().getLabel(), result.exitCode(), result.durationMillis() / 1000.0);
+                writeFully(out, ByteBuffer.wrap(header.getBytes(ProcessManager.OUTPUT_CHARSET)));
+                if (result.outputFile() != null && Files.exists(result.outputFile())) {
+                    try (FileChannel in = FileChannel.open(result.outputFile(), StandardOpenOption.READ)) {
+                        long size = in.size();
+                        for (long position = 0; position < size; ) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+            return merged;
+        } catch (IOException e) {
+            System.err.println("合并批量运行输出失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.z0fsec.workhelper.util;
+
+import com.z0fsec.workhelper.db.CatalogCache;
+import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.model.JobFire;
+import com.z0fsec.workhelper.model.ScheduledJob;
+import com.z0fsec.workhelper.model.Script;
+import com.z0fsec.workhelper.model.Tool;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 定时任务调度器
+ * 任务保存在数据库中，所有任务的下一次触发由同一个 TimerWheel 驱动，触发后通过 ProcessManager 运行工具或脚本。
+ * 计划时间已过去超过 MISFIRE_THRESHOLD_MILLIS（休眠唤醒、程序重启）时按任务的错过策略补跑一次或跳过，
+ * 错过的多次只算一次；同一任务正在运行的数量达到上限时本次触发跳过
+ */
+public class JobScheduler {
+    private static final long MISFIRE_THRESHOLD_MILLIS = 60_000;
+    public static final int MIN_INTERVAL_SECONDS = 1;
+
+    private final Map<Integer, JobState> jobs = new ConcurrentHashMap<>();
+    private final List<Consumer<JobEvent>> listeners = new CopyOnWriteArrayList<>();
+    // 触发处理会访问数据库和启动进程，放到虚拟线程上，不占用时间轮线程
+    private final ExecutorService fireExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("job-fire-", 1).factory());
+    private volatile TimerWheel wheel;
+
+    /**
+     * 调度事件，在调度线程上发布，界面监听器需自行切换到 EDT
+     *
+     * @param job  LOADED 事件为 null
+     * @param fire 触发或结束事件的触发记录，其他事件为 null
+     */
+    public record JobEvent(Type type, ScheduledJob job, JobFire fire) {
+        public enum Type {
+            LOADED, CHANGED, REMOVED, FIRED, FINISHED, SKIPPED
+        }
+    }
+
+    // 一个任务的调度状态，job 替换时保留运行计数
+    private static class JobState {
+        volatile ScheduledJob job;
+        volatile CronExpression cron;
+        final AtomicInteger running = new AtomicInteger();
+        TimerWheel.Timeout timeout;
+        long scheduledTime;
+
+        JobState(ScheduledJob job) {
+            setJob(job);
+        }
+
+        void setJob(ScheduledJob job) {
+            this.job = job;
+            this.cron = job.isCron() ? CronExpression.parse(job.getCronExpression()) : null;
+        }
+    }
+
+    private JobScheduler() {
+    }
+
+    private static class Holder {
+        static final JobScheduler INSTANCE = new JobScheduler();
+    }
+
+    public static JobScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public void addListener(Consumer<JobEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<JobEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 从数据库加载任务并开始调度，重复调用无效
+     * 上次退出前没有执行的触发按错过策略处理
+     */
+    public synchronized void start() {
+        if (wheel != null) {
+            return;
+        }
+        wheel = new TimerWheel("job-timer-wheel", fireExecutor);
+        int loaded = 0;
+        for (ScheduledJob job : DatabaseManager.getInstance().getAllJobs()) {
+            try {
+                JobState state = new JobState(job);
+                jobs.put(job.getId(), state);
+                if (job.isEnabled()) {
+                    if (job.getNextFireTime() <= 0) {
+                        job.setNextFireTime(computeNext(state, System.currentTimeMillis()));
+                    }
+                    schedule(state, job.getNextFireTime());
+                }
+                loaded++;
+            } catch (IllegalArgumentException e) {
+                System.err.println("定时任务 " + job.getName() + " 的计划无效: " + e.getMessage());
+            }
+        }
+        System.out.println("已加载 " + loaded + " 个定时任务");
+        publish(JobEvent.Type.LOADED, null, null);
+    }
+
+    /**
+     * 停止调度，不再触发新的运行；已启动的运行由 ProcessManager 在退出时停止
+     */
+    public synchronized void shutdown() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+        fireExecutor.shutdown();
+    }
+
+    /**
+     * 所有任务的快照，按 ID 排序
+     */
+    public List<ScheduledJob> getJobs() {
+        List<ScheduledJob> result = new ArrayList<>();
+        for (JobState state : jobs.values()) {
+            result.add(state.job.copy());
+        }
+        result.sort(Comparator.comparingInt(ScheduledJob::getId));
+        return result;
+    }
+
+    public int getRunningCount(int jobId) {
+        JobState state = jobs.get(jobId);
+        return state != null ? state.running.get() : 0;
+    }
+
+    /**
+     * 检查任务配置
+     *
+     * @throws IllegalArgumentException 配置无效，消息可直接显示给用户
+     */
+    public static void validate(ScheduledJob job) {
+        if (job.getName() == null || job.getName().isBlank()) {
+            throw new IllegalArgumentException("任务名称不能为空");
+        }
+        if (job.isCron()) {
+            CronExpression cron = CronExpression.parse(job.getCronExpression());
+            if (cron.next(System.currentTimeMillis(), ZoneId.systemDefault()) < 0) {
+                throw new IllegalArgumentException("cron 表达式永远不会触发: " + job.getCronExpression());
+            }
+        } else if (job.getIntervalSeconds() < MIN_INTERVAL_SECONDS) {
+            throw new IllegalArgumentException("间隔不能小于 " + MIN_INTERVAL_SECONDS + " 秒");
+        }
+        if (job.getMaxConcurrent() < 1) {
+            throw new IllegalArgumentException("并发上限至少为 1");
+        }
+    }
+
+    /**
+     * 添加任务并保存，ID 和下一次触发时间回填到 job
+     */
+    public void addJob(ScheduledJob job) {
+        validate(job);
+        JobState state = new JobState(job);
+        job.setNextFireTime(job.isEnabled() ? computeNext(state, System.currentTimeMillis()) : 0);
+        DatabaseManager.getInstance().addJob(job);
+        jobs.put(job.getId(), state);
+        if (job.isEnabled()) {
+            schedule(state, job.getNextFireTime());
+        }
+        publish(JobEvent.Type.CHANGED, job, null);
+    }
+
+    /**
+     * 修改任务并保存，按新的计划重新计算下一次触发时间
+     */
+    public void updateJob(ScheduledJob job) {
+        validate(job);
+        JobState state = jobs.get(job.getId());
+        if (state == null) {
+            throw new IllegalArgumentException("任务不存在: " + job.getId());
+        }
+        synchronized (state) {
+            cancelTimeout(state);
+            state.setJob(job);
+            job.setNextFireTime(job.isEnabled() ? computeNext(state, System.currentTimeMillis()) : 0);
+            DatabaseManager.getInstance().updateJob(job);
+            if (job.isEnabled()) {
+                schedule(state, job.getNextFireTime());
+            }
+        }
+        publish(JobEvent.Type.CHANGED, job, null);
+    }
+
+    public void setEnabled(int jobId, boolean enabled) {
+        JobState state = jobs.get(jobId);
+        if (state != null) {
+            ScheduledJob job = state.job.copy();
+            job.setEnabled(enabled);
+            updateJob(job);
+        }
+    }
+
+    /**
+     * 删除任务，正在进行的运行不受影响
+     */
+    public void deleteJob(int jobId) {
+        JobState state = jobs.remove(jobId);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            cancelTimeout(state);
+        }
+        DatabaseManager.getInstance().deleteJob(jobId);
+        publish(JobEvent.Type.REMOVED, state.job, null);
+    }
+
+    /**
+     * 立即运行一次，不影响计划；仍受并发上限约束
+     */
+    public void runNow(int jobId) {
+        JobState state = jobs.get(jobId);
+        if (state != null) {
+            long now = System.currentTimeMillis();
+            fireExecutor.execute(() -> fire(state, now, now));
+        }
+    }
+
+    // 调用方持有 state 锁或 state 尚未公开
+    private void schedule(JobState state, long fireTime) {
+        TimerWheel current = wheel;
+        if (current == null || fireTime <= 0) {
+            return;
+        }
+        state.scheduledTime = fireTime;
+        state.timeout = current.schedule(() -> onTimeout(state, fireTime), fireTime);
+    }
+
+    private void cancelTimeout(JobState state) {
+        if (state.timeout != null) {
+            state.timeout.cancel();
+            state.timeout = null;
+        }
+        state.scheduledTime = 0;
+    }
+
+    // 在触发线程上执行：先安排下一次，再处理本次
+    private void onTimeout(JobState state, long scheduledTime) {
+        long now = System.currentTimeMillis();
+        ScheduledJob job;
+        synchronized (state) {
+            // 任务已修改、停用或删除
+            if (state.scheduledTime != scheduledTime || !state.job.isEnabled() || !jobs.containsKey(state.job.getId())) {
+                return;
+            }
+            job = state.job;
+            long next = computeNext(state, Math.max(now, scheduledTime));
+            job.setNextFireTime(next);
+            job.setLastFireTime(now);
+            schedule(state, next);
+        }
+        saveFireTimes(job);
+
+        boolean misfired = now - scheduledTime > MISFIRE_THRESHOLD_MILLIS;
+        if (misfired && ScheduledJob.MISFIRE_SKIP.equals(job.getMisfirePolicy())) {
+            skip(job, scheduledTime, now, "错过计划时间 " + TimeUtils.millisecondToDate(scheduledTime) + "，按策略跳过");
+            return;
+        }
+        fire(state, scheduledTime, now);
+    }
+
+    private void fire(JobState state, long scheduledTime, long fireTime) {
+        ScheduledJob job = state.job;
+        if (!tryAcquire(state, job.getMaxConcurrent())) {
+            skip(job, scheduledTime, fireTime, "正在运行的数量已达上限 " + job.getMaxConcurrent());
+            return;
+        }
+
+        ProcessManager.Launcher launcher;
+        String name;
+        try {
+            if (DatabaseManager.ENTITY_TOOL.equals(job.getEntityType())) {
+                Tool tool = CatalogCache.getInstance().getTool(job.getEntityId());
+                if (tool == null) {
+                    throw new IllegalArgumentException("工具不存在: " + job.getEntityId());
+                }
+                ProcessBuilder processBuilder = CommandBuilder.forTool(tool, job.getArguments());
+                launcher = processBuilder::start;
+                name = tool.getName();
+            } else {
+                Script script = CatalogCache.getInstance().getScript(job.getEntityId());
+                if (script == null) {
+                    throw new IllegalArgumentException("脚本不存在: " + job.getEntityId());
+                }
+                String arguments = job.getArguments() != null && !job.getArguments().isBlank()
+                        ? job.getArguments() : script.getParameters();
+                ProcessBuilder processBuilder = CommandBuilder.forScript(script, arguments);
+                launcher = processBuilder::start;
+                name = script.getName();
+            }
+        } catch (RuntimeException e) {
+            state.running.decrementAndGet();
+            launchFailed(job, scheduledTime, fireTime, e);
+            return;
+        }
+
+        RunHandle run;
+        try {
+            run = ProcessManager.getInstance().submit(job.getEntityType(), job.getEntityId(), name,
+                    job.getArguments(), launcher, null);
+        } catch (RuntimeException e) {
+            state.running.decrementAndGet();
+            launchFailed(job, scheduledTime, fireTime, e);
+            return;
+        }
+        JobFire fire = new JobFire(job.getId(), scheduledTime, fireTime);
+        publish(JobEvent.Type.FIRED, job, fire);
+
+        run.getCompletion().whenComplete((exitCode, error) -> {
+            state.running.decrementAndGet();
+            fire.setEndTime(System.currentTimeMillis());
+            fire.setExitCode(exitCode);
+            if (error instanceof CancellationException || run.isCancelled()) {
+                fire.setOutcome(JobFire.OUTCOME_CANCELLED);
+                if (run.getKillReason() != null) {
+                    fire.setMessage(run.getKillReason().getLabel());
+                }
+            } else if (error != null) {
+                fire.setOutcome(JobFire.OUTCOME_ERROR);
+                fire.setMessage(error.getMessage());
+            } else {
+                fire.setOutcome(exitCode == 0 ? JobFire.OUTCOME_SUCCEEDED : JobFire.OUTCOME_FAILED);
+            }
+            finish(job, fire);
+        });
+    }
+
+    // 占用一个运行名额，检查和递增必须是一次原子操作，否则立即运行和定时触发可能同时通过检查
+    private static boolean tryAcquire(JobState state, int maxConcurrent) {
+        while (true) {
+            int running = state.running.get();
+            if (running >= maxConcurrent) {
+                return false;
+            }
+            if (state.running.compareAndSet(running, running + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void launchFailed(ScheduledJob job, long scheduledTime, long fireTime, RuntimeException e) {
+        JobFire fire = new JobFire(job.getId(), scheduledTime, fireTime);
+        fire.setEndTime(fireTime);
+        fire.setOutcome(JobFire.OUTCOME_ERROR);
+        fire.setMessage(e.getMessage());
+        finish(job, fire);
+    }
+
+    private void skip(ScheduledJob job, long scheduledTime, long fireTime, String reason) {
+        JobFire fire = new JobFire(job.getId(), scheduledTime, fireTime);
+        fire.setEndTime(fireTime);
+        fire.setOutcome(JobFire.OUTCOME_SKIPPED);
+        fire.setMessage(reason);
+        recordFire(fire);
+        publish(JobEvent.Type.SKIPPED, job, fire);
+    }
+
+    private void finish(ScheduledJob job, JobFire fire) {
+        recordFire(fire);
+        publish(JobEvent.Type.FINISHED, job, fire);
+    }
+
+    private void recordFire(JobFire fire) {
+        try {
+            DatabaseManager.getInstance().recordJobFire(fire);
+        } catch (RuntimeException e) {
+            System.err.println("记录定时任务触发失败: " + e.getMessage());
+        }
+    }
+
+    private void saveFireTimes(ScheduledJob job) {
+        long next = job.getNextFireTime();
+        long last = job.getLastFireTime();
+        DatabaseManager.getInstance().runAsync(db -> db.updateJobFireTimes(job.getId(), next, last))
+                .exceptionally(e -> {
+                    System.err.println("保存定时任务触发时间失败: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * 晚于 after 的下一次触发时间；固定间隔的任务保持原来的节奏，不因触发延迟而漂移
+     *
+     * @return 毫秒时间戳，不会再触发时返回 0
+     */
+    private static long computeNext(JobState state, long after) {
+        ScheduledJob job = state.job;
+        if (state.cron != null) {
+            return Math.max(0, state.cron.next(after, ZoneId.systemDefault()));
+        }
+        long interval = job.getIntervalSeconds() * 1000;
+        long base = job.getNextFireTime();
+        if (base <= 0 || base > after + interval) {
+            return after + interval;
+        }
+        long missed = (after - base) / interval + 1;
+        return base + Math.max(1, missed) * interval;
+    }
+
+    private void publish(JobEvent.Type type, ScheduledJob job, JobFire fire) {
+        JobEvent event = new JobEvent(type, job != null ? job.copy() : null, fire);
+        for (Consumer<JobEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("处理定时任务事件失败: " + e.getMessage());
+            }
+        }
+    }
+}
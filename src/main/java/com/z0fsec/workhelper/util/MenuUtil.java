@@ -6,6 +6,7 @@ import com.formdev.flatlaf.FlatIntelliJLaf;
 import com.formdev.flatlaf.FlatLightLaf;
 import com.formdev.flatlaf.themes.FlatMacDarkLaf;
 import com.formdev.flatlaf.themes.FlatMacLightLaf;
+import com.z0fsec.workhelper.db.CatalogTransfer;
 
 
 import javax.swing.*;
@@ -16,6 +17,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.net.URI;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class MenuUtil {
     public static JMenuBar createMenuBar(JFrame frame) {
@@ -255,6 +259,18 @@ public class MenuUtil {
                 if (!selectedFile.getName().toLowerCase().endsWith(".json")) {
                     selectedFile = new File(selectedFile.getAbsolutePath() + ".json");
                 }
+                exportConfig(frame, selectedFile);
+            }
+        });
+
+        // 导入配置
+        importConfigItem.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("选择配置文件");
+            fileChooser.setFileFilter(new FileNameExtensionFilter("JSON文件", "json"));
+
+            if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                importConfig(frame, fileChooser.getSelectedFile());
             }
         });
 
@@ -267,6 +283,43 @@ public class MenuUtil {
     }
 
 
+    private static void exportConfig(JFrame frame, File file) {
+        int choice = JOptionPane.showConfirmDialog(frame, "是否同时导出脚本内容？", "导出配置",
+                JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if (choice == JOptionPane.CANCEL_OPTION || choice == JOptionPane.CLOSED_OPTION) {
+            return;
+        }
+        EnumSet<CatalogTransfer.Section> sections = CatalogTransfer.Section.all();
+        if (choice == JOptionPane.NO_OPTION) {
+            sections.remove(CatalogTransfer.Section.SCRIPT_CONTENT);
+        }
+
+        showTransferResult(frame, new CatalogTransfer().exportAsync(file.toPath(), sections),
+                "导出配置", "已导出到 " + file.getAbsolutePath());
+    }
+
+    private static void importConfig(JFrame frame, File file) {
+        // 导入完成后目录缓存已刷新，各面板通过目录事件更新
+        showTransferResult(frame, new CatalogTransfer().importAsync(file.toPath(), CatalogTransfer.Section.all()),
+                "导入配置", "导入完成");
+    }
+
+    // 导入/导出在数据库线程上完成后，在 EDT 上弹出结果
+    private static void showTransferResult(JFrame frame, CompletableFuture<CatalogTransfer.Summary> future,
+                                           String title, String doneMessage) {
+        future.whenComplete((summary, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                JOptionPane.showMessageDialog(frame, doneMessage + "\n" + summary, title,
+                        JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            JOptionPane.showMessageDialog(frame, title + "失败: " + cause.getMessage(), title,
+                    JOptionPane.ERROR_MESSAGE);
+        }));
+    }
+
     // 辅助方法：设置字段面板中所有组件的启用状态
     private static void setFieldsEnabled(Container container, boolean enabled) {
         for (Component comp : container.getComponents()) {
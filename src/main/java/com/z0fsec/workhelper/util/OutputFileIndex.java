@@ -0,0 +1,172 @@
+package com.z0fsec.workhelper.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 运行输出文件的行索引
+ * 文件按 1GB 分段内存映射，扫描一遍记录每 CHECKPOINT_INTERVAL 行的起始偏移；
+ * 读取某一行时从最近的检查点向后找，几 GB 的输出也只需要很小的索引。
+ * 文件仍在增长时调用 refresh() 增量索引新写入的部分
+ */
+public class OutputFileIndex implements Closeable {
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final int CHECKPOINT_INTERVAL = 64;
+    // 每次 refresh 最多扫描的字节数，索引大文件时可以分段报告进度
+    private static final long SCAN_CHUNK = 64L * 1024 * 1024;
+    // 单行显示的最大字节数，超长的行截断
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long mappedSize;
+
+    // checkpoints[k] 是第 k * CHECKPOINT_INTERVAL 行的起始偏移
+    private long[] checkpoints = new long[1024];
+    // 以换行结尾的完整行数
+    private int completeLines;
+    private long lastLineStart;
+    private long scanned;
+    private long size;
+
+    private OutputFileIndex(FileChannel channel, Charset charset) {
+        this.channel = channel;
+        this.charset = charset;
+    }
+
+    public static OutputFileIndex open(Path file, Charset charset) throws IOException {
+        return new OutputFileIndex(FileChannel.open(file, StandardOpenOption.READ), charset);
+    }
+
+    /**
+     * 映射并索引新写入的内容
+     *
+     * @return 还有未索引的内容时返回 true，需要继续调用
+     */
+    public synchronized boolean refresh() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize > mappedSize) {
+            remap(fileSize);
+        }
+
+        long end = Math.min(mappedSize, scanned + SCAN_CHUNK);
+        for (long position = scanned; position < end; ) {
+            MappedByteBuffer segment = segments.get((int) (position / SEGMENT_SIZE));
+            int offset = (int) (position % SEGMENT_SIZE);
+            int limit = (int) Math.min(segment.capacity(), offset + (end - position));
+            for (int i = offset; i < limit; i++) {
+                if (segment.get(i) == '\n') {
+                    lineEnded(position + (i - offset) + 1);
+                }
+            }
+            position += limit - offset;
+        }
+        scanned = end;
+        size = end;
+        return scanned < mappedSize;
+    }
+
+    // 最后一段可能映射时还没写满，重新映射它和之后新增的部分
+    private void remap(long fileSize) throws IOException {
+        int first = (int) (mappedSize / SEGMENT_SIZE);
+        while (segments.size() > first) {
+            segments.remove(segments.size() - 1);
+        }
+        for (long start = (long) first * SEGMENT_SIZE; start < fileSize; start += SEGMENT_SIZE) {
+            long length = Math.min(SEGMENT_SIZE, fileSize - start);
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+        }
+        mappedSize = fileSize;
+    }
+
+    private void lineEnded(long nextLineStart) {
+        completeLines++;
+        lastLineStart = nextLineStart;
+        if (completeLines % CHECKPOINT_INTERVAL == 0) {
+            int k = completeLines / CHECKPOINT_INTERVAL;
+            if (k >= checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+            }
+            checkpoints[k] = nextLineStart;
+        }
+    }
+
+    /**
+     * 已索引的行数，末尾没有换行的半行也算一行
+     */
+    public synchronized int getLineCount() {
+        return completeLines + (size > lastLineStart ? 1 : 0);
+    }
+
+    /**
+     * 已索引的字节数
+     */
+    public synchronized long getIndexedSize() {
+        return size;
+    }
+
+    /**
+     * 读取从 first 开始的最多 count 行
+     */
+    public synchronized List<String> readLines(int first, int count) {
+        int lineCount = getLineCount();
+        List<String> lines = new ArrayList<>();
+        if (first < 0 || first >= lineCount) {
+            return lines;
+        }
+
+        long position = checkpoints[first / CHECKPOINT_INTERVAL];
+        for (int skip = first % CHECKPOINT_INTERVAL; skip > 0; skip--) {
+            position = lineEnd(position) + 1;
+        }
+        for (int line = first; line < lineCount && lines.size() < count; line++) {
+            long end = lineEnd(position);
+            lines.add(decode(position, end));
+            position = end + 1;
+        }
+        return lines;
+    }
+
+    // 从 position 开始的一行的结束位置（换行符的位置或已索引内容的末尾）
+    private long lineEnd(long position) {
+        while (position < size && byteAt(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private byte byteAt(long position) {
+        return segments.get((int) (position / SEGMENT_SIZE)).get((int) (position % SEGMENT_SIZE));
+    }
+
+    private String decode(long start, long end) {
+        int length = (int) Math.min(end - start, MAX_LINE_BYTES);
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = start + copied;
+            MappedByteBuffer segment = segments.get((int) (position / SEGMENT_SIZE));
+            int offset = (int) (position % SEGMENT_SIZE);
+            int n = Math.min(length - copied, segment.capacity() - offset);
+            segment.get(offset, bytes, copied, n);
+            copied += n;
+        }
+        String text = new String(bytes, charset);
+        return end - start > MAX_LINE_BYTES ? text + " …（共 " + (end - start) + " 字节，已截断）" : text;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments.clear();
+        channel.close();
+    }
+}
@@ -0,0 +1,170 @@
+package com.z0fsec.workhelper.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 子进程输出读取
+ * stdout 和 stderr 各由一个虚拟线程独立读取，任何一个管道写满都不会卡住子进程；每行连同来源交给监听器。
+ * 管道的阻塞读取会占住虚拟线程的载体线程，所以进程运行期间只读取 available() 的字节，
+ * 没有输出时虚拟线程休眠让出载体，几百个安静的进程也只占用很少的平台线程；进程退出后再阻塞读到结束。
+ * 每行同时写入本次运行的输出文件；累计输出超过运行限制时结束进程树，之后读到的输出直接丢弃。
+ * 一行超过 MAX_LINE_BYTES 时先按这个长度切出一段，二进制输出或不换行的超长输出不会无限占用内存
+ */
+class OutputPump {
+    private static final int BUFFER_SIZE = 8192;
+    // 没有输出时的轮询间隔，从最小值开始逐次加倍
+    private static final long MIN_POLL_MILLIS = 2;
+    private static final long MAX_POLL_MILLIS = 50;
+    // 未遇到行尾时缓存的最大字节数，与 OutputFileIndex 读取单行的上限一致
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final RunHandle run;
+    private final ProcessManager.OutputSource source;
+    private final Charset charset;
+    private final ProcessManager.OutputListener listener;
+    private final LineBuffer line = new LineBuffer();
+    private final long maxOutputBytes;
+    private boolean lastWasCarriageReturn;
+    private boolean discarding;
+
+    private OutputPump(RunHandle run, ProcessManager.OutputSource source, Charset charset,
+                       ProcessManager.OutputListener listener) {
+        this.run = run;
+        this.source = source;
+        this.charset = charset;
+        this.listener = listener;
+        this.maxOutputBytes = run.getLimits().maxOutputBytes();
+    }
+
+    static Thread start(RunHandle run, Process process, ProcessManager.OutputSource source, InputStream in,
+                        Charset charset, ProcessManager.OutputListener listener) {
+        OutputPump pump = new OutputPump(run, source, charset, listener);
+        InputStream counted = run.getRecorder().countOutput(in);
+        return Thread.ofVirtual()
+                .name("output-" + source.name().toLowerCase() + "-" + run.getRunId())
+                .start(() -> pump.pump(process, counted));
+    }
+
+    private void pump(Process process, InputStream in) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long pollMillis = MIN_POLL_MILLIS;
+        try (in) {
+            while (true) {
+                int available = in.available();
+                if (available > 0) {
+                    int n = in.read(buffer, 0, Math.min(available, buffer.length));
+                    accept(buffer, n);
+                    pollMillis = MIN_POLL_MILLIS;
+                } else if (process.isAlive()) {
+                    Thread.sleep(pollMillis);
+                    pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+                } else {
+                    // 进程已退出，读完剩余内容
+                    int n = in.read(buffer);
+                    if (n < 0) {
+                        break;
+                    }
+                    accept(buffer, n);
+                }
+            }
+            if (line.size() > 0 && !discarding) {
+                emit();
+            }
+        } catch (IOException e) {
+            // 进程结束后流被关闭
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("处理 " + run + " 的输出失败: " + e.getMessage());
+        }
+    }
+
+    // 按字节切分行，和 BufferedReader.readLine 一样把 \n、\r、\r\n 都当作行尾；
+    // UTF-8 和 GBK 的多字节字符中不会出现这两个字节，按字节切分不会切坏字符
+    private void accept(byte[] buffer, int length) {
+        if (discarding) {
+            return;
+        }
+        if (maxOutputBytes > 0 && run.getRecorder().getOutputBytes() > maxOutputBytes) {
+            // 超出部分不再写入输出文件，已缓存的半行先输出
+            discarding = true;
+            if (line.size() > 0) {
+                emit();
+            }
+            ProcessManager.getInstance().outputLimitExceeded(run);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = buffer[i];
+            if (b == '\n') {
+                if (!lastWasCarriageReturn) {
+                    emit();
+                }
+                lastWasCarriageReturn = false;
+            } else if (b == '\r') {
+                emit();
+                lastWasCarriageReturn = true;
+            } else {
+                line.write(b);
+                lastWasCarriageReturn = false;
+                if (line.size() >= MAX_LINE_BYTES) {
+                    emit(splitPoint());
+                }
+            }
+        }
+    }
+
+    private void emit() {
+        emit(line.size());
+    }
+
+    // 输出缓存中的前 length 个字节作为一行，剩余的字节留作下一行的开头
+    private void emit(int length) {
+        String text = new String(line.array(), 0, length, charset);
+        OutputSpool spool = run.getSpool();
+        if (spool != null) {
+            spool.writeLine(line.array(), length, text);
+        }
+        line.dropFirst(length);
+        if (listener != null) {
+            listener.onLine(run, source, text);
+        }
+    }
+
+    // 超长行的切分位置：UTF-8 时退到最后一个完整字符之后，其他编码直接在末尾切分
+    private int splitPoint() {
+        int size = line.size();
+        if (!StandardCharsets.UTF_8.equals(charset)) {
+            return size;
+        }
+        byte[] bytes = line.array();
+        int start = size - 1;
+        while (start > 0 && size - start < 4 && (bytes[start] & 0xC0) == 0x80) {
+            start--;
+        }
+        int lead = bytes[start] & 0xFF;
+        int charLength = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return start > 0 && size - start < charLength ? start : size;
+    }
+
+    // 直接取出内部数组写入输出文件，省去一次复制
+    private static class LineBuffer extends ByteArrayOutputStream {
+        LineBuffer() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        // 去掉前 length 个字节，超长行切分后留下的半个字符移到开头
+        void dropFirst(int length) {
+            System.arraycopy(buf, length, buf, 0, count - length);
+            count -= length;
+        }
+    }
+}
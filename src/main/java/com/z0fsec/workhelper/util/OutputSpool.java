@@ -0,0 +1,199 @@
+package com.z0fsec.workhelper.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 一次运行的输出落盘文件
+ * stdout 和 stderr 按行合并写入 run-output 目录下的文件，经过一块直接缓冲区批量写入文件通道；
+ * 完整输出只在磁盘上，内存中只保留最后 TAIL_LINES 行
+ */
+class OutputSpool {
+    static final Path DIRECTORY = Paths.get("run-output");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 缓冲区中的内容最多积压这么久，查看运行中的输出时不会落后太多
+    private static final long MAX_FLUSH_DELAY_NANOS = 200_000_000L;
+    private static final int TAIL_LINES = 200;
+    // 内存中保留的每行最多字符数，超长的行只在文件中完整保存
+    private static final int TAIL_LINE_CHARS = 1024;
+    // 超过数量或总大小时从最旧的文件开始删除
+    private static final int MAX_FILES = 500;
+    private static final long MAX_TOTAL_BYTES = 4L * 1024 * 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ArrayDeque<String> tail = new ArrayDeque<>(TAIL_LINES);
+    private long lastFlushNanos = System.nanoTime();
+    private boolean closed;
+
+    private OutputSpool(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * 为一次运行创建输出文件
+     */
+    static OutputSpool create(RunHandle run) throws IOException {
+        Files.createDirectories(DIRECTORY);
+        String fileName = run.getEntityType() + "-" + run.getEntityId() + "-"
+                + System.currentTimeMillis() + "-" + run.getRunId() + ".log";
+        Path file = DIRECTORY.resolve(fileName).toAbsolutePath();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new OutputSpool(file, channel);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * 写入一行，bytes 是不含行尾的原始字节，text 是解码后的内容
+     * 两个输出流的读取线程会同时调用，按行互斥，合并后的文件中行不会交错
+     */
+    synchronized void writeLine(byte[] bytes, int length, String text) {
+        if (tail.size() == TAIL_LINES) {
+            tail.removeFirst();
+        }
+        tail.addLast(truncateForTail(text));
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (length + 1 > buffer.remaining()) {
+                flushBuffer();
+            }
+            if (length + 1 > buffer.capacity()) {
+                // 超长的行直接写入
+                writeFully(ByteBuffer.wrap(bytes, 0, length));
+                writeFully(ByteBuffer.wrap(new byte[]{'\n'}));
+            } else {
+                buffer.put(bytes, 0, length).put((byte) '\n');
+            }
+            if (System.nanoTime() - lastFlushNanos > MAX_FLUSH_DELAY_NANOS) {
+                flushBuffer();
+            }
+        } catch (IOException e) {
+            // 磁盘写满等情况下不再落盘，输出照常读取，避免管道写满卡住进程
+            System.err.println("写入运行输出失败，停止保存 " + file.getFileName() + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    private static String truncateForTail(String text) {
+        if (text.length() <= TAIL_LINE_CHARS) {
+            return text;
+        }
+        int end = Character.isHighSurrogate(text.charAt(TAIL_LINE_CHARS - 1)) ? TAIL_LINE_CHARS - 1 : TAIL_LINE_CHARS;
+        return text.substring(0, end) + " …（共 " + text.length() + " 字符，已截断）";
+    }
+
+    /**
+     * 把缓冲区中的内容写入文件，查看运行中的输出前调用
+     */
+    synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            System.err.println("写入运行输出失败: " + e.getMessage());
+        }
+    }
+
+    synchronized List<String> getTail() {
+        return new ArrayList<>(tail);
+    }
+
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        try (channel) {
+            flushBuffer();
+        } catch (IOException e) {
+            System.err.println("关闭运行输出文件失败: " + e.getMessage());
+        } finally {
+            closed = true;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * 清理旧的输出文件，只保留最新的 MAX_FILES 个且总大小不超过 MAX_TOTAL_BYTES
+     * 正在写入的文件不参与清理；正在查看的文件在 Windows 上删除会失败，跳过即可
+     */
+    static void prune(Set<Path> active) {
+        if (!Files.isDirectory(DIRECTORY)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(DIRECTORY)) {
+            files = new ArrayList<>(list
+                    .filter(path -> path.toString().endsWith(".log"))
+                    .filter(path -> !active.contains(path.toAbsolutePath()))
+                    .toList());
+        } catch (IOException e) {
+            System.err.println("读取运行输出目录失败: " + e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparingLong(OutputSpool::lastModified).reversed());
+
+        long totalBytes = 0;
+        int kept = 0;
+        for (Path path : files) {
+            long size;
+            try {
+                size = Files.size(path);
+            } catch (IOException e) {
+                continue;
+            }
+            if (kept < MAX_FILES && totalBytes + size <= MAX_TOTAL_BYTES) {
+                kept++;
+                totalBytes += size;
+                continue;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // 文件被占用
+            }
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
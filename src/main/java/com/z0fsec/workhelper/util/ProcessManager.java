@@ -1,54 +1,428 @@
 package com.z0fsec.workhelper.util;
 
-import java.util.HashMap;
+import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.model.RunLimits;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 外部进程的统一执行入口
+ * 工具和脚本的每次运行分配一个运行 ID 登记在册，同一个工具可以同时运行多次；
+ * 启动和监控在有界线程池中执行，停止时结束整个进程树，退出程序时并行停止所有运行；
+ * 超过运行限制（超时、输出过多）的运行同样结束整个进程树，结束原因记入运行历史。
+ * 运行线程和输出读取都用虚拟线程，大量并发运行不会占用同样多的平台线程；
+ * 每次运行的完整输出写入 run-output 目录下的文件，内存中只保留最后几百行；
+ * 运行期间每秒采样一次进程树的 CPU、内存和线程数，峰值随运行历史保存
+ */
 public class ProcessManager {
-    private static ProcessManager instance;
-    private final Map<Integer, Process> runningProcesses;
-    private final ExecutorService executorService;
+    // 同时执行的运行数，超出的排队，队列满时拒绝
+    private static final int MAX_CONCURRENT_RUNS = 256;
+    private static final int MAX_QUEUED_RUNS = 1024;
+    // 进程退出后等待输出读完的时间，后台子进程继承了输出管道时读取不会自然结束
+    private static final long DRAIN_TIMEOUT_MILLIS = 2000;
+    // 旧输出文件的清理间隔
+    private static final long PRUNE_INTERVAL_MINUTES = 60;
+    // Windows 控制台程序输出 GBK，其他系统 UTF-8；输出文件保存原始字节，查看时按这个编码解码
+    public static final Charset OUTPUT_CHARSET = System.getProperty("os.name").toLowerCase().contains("windows")
+            ? Charset.forName("GBK") : StandardCharsets.UTF_8;
+
+    private final Map<Long, RunHandle> runs = new ConcurrentHashMap<>();
+    private final AtomicLong runIds = new AtomicLong();
+    private final ThreadPoolExecutor runExecutor;
+    private final ScheduledExecutorService reaper;
+    private final ResourceSampler sampler;
+
+    /**
+     * 启动进程，在运行线程上执行
+     */
+    @FunctionalInterface
+    public interface Launcher {
+        Process start() throws IOException;
+    }
+
+    public enum OutputSource {
+        STDOUT, STDERR
+    }
+
+    /**
+     * 逐行接收进程输出，在该输出流的读取线程上调用；stdout 和 stderr 的回调可能同时发生
+     */
+    @FunctionalInterface
+    public interface OutputListener {
+        void onLine(RunHandle run, OutputSource source, String line);
+    }
 
     private ProcessManager() {
-        runningProcesses = new HashMap<>();
-        executorService = Executors.newCachedThreadPool();
+        runExecutor = new ThreadPoolExecutor(MAX_CONCURRENT_RUNS, MAX_CONCURRENT_RUNS,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_RUNS),
+                Thread.ofVirtual().name("process-run-", 1).factory());
+        runExecutor.allowCoreThreadTimeOut(true);
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "process-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::pruneOutputFiles, 1, PRUNE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        sampler = new ResourceSampler(this::getRuns);
+    }
+
+    private static class Holder {
+        static final ProcessManager INSTANCE = new ProcessManager();
     }
 
     public static ProcessManager getInstance() {
-        if (instance == null) {
-            instance = new ProcessManager();
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 提交一次运行，立即返回句柄
+     * 启动失败、运行结束或被停止都会写入运行历史
+     *
+     * @param entityType DatabaseManager.ENTITY_TOOL / ENTITY_SCRIPT
+     * @param arguments  运行参数，没有时传 null
+     * @param listener   接收输出行，不关心输出时传 null（输出仍会读取，避免管道写满）
+     */
+    public RunHandle submit(String entityType, int entityId, String name, String arguments,
+                            Launcher launcher, OutputListener listener) {
+        return submit(entityType, entityId, name, arguments, launcher, listener, RunLimits.NONE);
+    }
+
+    /**
+     * 提交一次带运行限制的运行
+     *
+     * @param limits 本次运行的限制，未设置的项取工具或脚本保存的运行限制
+     */
+    public RunHandle submit(String entityType, int entityId, String name, String arguments,
+                            Launcher launcher, OutputListener listener, RunLimits limits) {
+        RunHandle run = new RunHandle(runIds.incrementAndGet(), entityType, entityId, name, arguments,
+                limits != null ? limits : RunLimits.NONE);
+        runs.put(run.getRunId(), run);
+        try {
+            run.setTask(runExecutor.submit(() -> execute(run, launcher, listener)));
+        } catch (RejectedExecutionException e) {
+            runs.remove(run.getRunId());
+            run.getCompletion().completeExceptionally(runExecutor.isShutdown()
+                    ? new RejectedExecutionException("程序正在退出，不再启动新的运行")
+                    : new RejectedExecutionException("等待运行的任务过多（" + MAX_QUEUED_RUNS + "），请稍后再试"));
+        }
+        return run;
+    }
+
+    // 在运行线程上执行：启动、读取输出、等待退出、记录历史
+    private void execute(RunHandle run, Launcher launcher, OutputListener listener) {
+        RunRecorder recorder = null;
+        Integer exitCode = null;
+        Throwable failure = null;
+        ScheduledFuture<?> timeout = null;
+        if (!run.claim()) {
+            // 排队中已被取消
+            return;
+        }
+        try {
+            run.setEffectiveLimits(run.getSubmittedLimits().orElse(loadLimits(run)));
+            Process process = launcher.start();
+            recorder = RunRecorder.start(run.getEntityType(), run.getEntityId(), run.getName(),
+                    run.getArguments());
+            OutputSpool spool = null;
+            try {
+                spool = OutputSpool.create(run);
+                recorder.setOutputFile(spool.getFile());
+            } catch (IOException e) {
+                System.err.println("创建 " + run + " 的输出文件失败，只保留最后几百行: " + e.getMessage());
+            }
+            run.started(process, recorder, spool);
+            sampler.sample(run);
+            // 启动期间被停止时进程还未登记，这里补上
+            if (run.isCancelled()) {
+                destroyTree(process, run.getLimits().effectiveGraceMillis());
+            }
+            timeout = scheduleTimeout(run);
+
+            Thread stdout = OutputPump.start(run, process, OutputSource.STDOUT, process.getInputStream(),
+                    OUTPUT_CHARSET, listener);
+            Thread stderr = OutputPump.start(run, process, OutputSource.STDERR, process.getErrorStream(),
+                    OUTPUT_CHARSET, listener);
+            // onExit 在虚拟线程上等待时不占用载体线程，waitFor 会
+            exitCode = process.onExit().get().exitValue();
+            awaitDrain(stdout, stderr);
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            Process process = run.getProcess();
+            if (process != null && process.isAlive()) {
+                destroyTree(process, run.getLimits().effectiveGraceMillis());
+            }
+            // 启动失败也记入运行历史，退出码为空
+            if (recorder == null) {
+                recorder = RunRecorder.start(run.getEntityType(), run.getEntityId(), run.getName(),
+                        run.getArguments());
+            }
+            OutputSpool spool = run.getSpool();
+            if (spool != null) {
+                spool.close();
+            }
+            RunHandle.KillReason killReason = run.getKillReason();
+            if (killReason != null) {
+                recorder.setKillReason(killReason.getLabel());
+            }
+            recorder.finish(exitCode);
+            runs.remove(run.getRunId());
+        }
+
+        if (failure != null) {
+            run.getCompletion().completeExceptionally(failure);
+        } else {
+            run.getCompletion().complete(exitCode);
+        }
+    }
+
+    // 工具或脚本保存的运行限制，读取失败时只使用提交时指定的限制
+    private RunLimits loadLimits(RunHandle run) {
+        try {
+            return DatabaseManager.getInstance().getRunLimits(run.getEntityType(), run.getEntityId());
+        } catch (RuntimeException e) {
+            System.err.println("读取 " + run + " 的运行限制失败: " + e.getMessage());
+            return RunLimits.NONE;
+        }
+    }
+
+    // 超时从进程启动开始计算，到时结束整个进程树
+    private ScheduledFuture<?> scheduleTimeout(RunHandle run) {
+        long timeoutMillis = run.getLimits().timeoutMillis();
+        if (timeoutMillis <= 0) {
+            return null;
+        }
+        try {
+            return reaper.schedule(() -> {
+                System.err.println(run + " 运行超过 " + timeoutMillis + " ms，结束进程树");
+                stop(run.getRunId(), RunHandle.KillReason.TIMEOUT);
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 程序正在退出
+            return null;
+        }
+    }
+
+    /**
+     * 输出读取线程在累计输出超过限制时调用，结束整个进程树
+     */
+    void outputLimitExceeded(RunHandle run) {
+        if (!run.isCancelled()) {
+            System.err.println(run + " 输出超过 " + run.getLimits().maxOutputBytes() + " 字节，结束进程树");
+            stop(run.getRunId(), RunHandle.KillReason.OUTPUT_LIMIT);
+        }
+    }
+
+    // 进程已退出，等两个读取线程读完剩余输出；
+    // 超时说明管道被仍在运行的后台子进程占着，不再等待，读取线程在管道关闭后自行结束
+    private void awaitDrain(Thread stdout, Thread stderr) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MILLIS);
+        for (Thread pump : new Thread[]{stdout, stderr}) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !pump.join(Duration.ofNanos(remaining))) {
+                System.err.println("等待进程输出读完超时，可能有后台子进程仍持有输出管道");
+                return;
+            }
+        }
+    }
+
+    /**
+     * 手动停止一次运行
+     *
+     * @return 进程树全部退出后完成；运行不存在时立即完成
+     */
+    public CompletableFuture<Void> stop(long runId) {
+        return stop(runId, RunHandle.KillReason.USER);
+    }
+
+    /**
+     * 停止一次运行：排队中的直接取消，已启动的结束整个进程树
+     *
+     * @param reason 结束原因，同一次运行只记录第一次的原因
+     * @return 进程树全部退出后完成；运行不存在时立即完成
+     */
+    public CompletableFuture<Void> stop(long runId, RunHandle.KillReason reason) {
+        RunHandle run = runs.get(runId);
+        if (run == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        run.markKilled(reason);
+
+        if (run.claim()) {
+            // 还在队列中，不会再执行
+            Future<?> task = run.getTask();
+            if (task != null) {
+                runExecutor.remove((Runnable) task);
+            }
+            runs.remove(runId);
+            run.getCompletion().completeExceptionally(new CancellationException("运行在启动前被取消"));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Process process = run.getProcess();
+        // 进程尚未启动时由运行线程在启动后结束它
+        return process != null ? destroyTree(process, run.getLimits().effectiveGraceMillis())
+                : run.getCompletion().handle((code, e) -> null);
+    }
+
+    /**
+     * 停止某个工具或脚本的所有运行
+     *
+     * @return 停止的运行数
+     */
+    public int stopAll(String entityType, int entityId) {
+        List<RunHandle> targets = getRuns(entityType, entityId);
+        targets.forEach(run -> stop(run.getRunId()));
+        return targets.size();
+    }
+
+    public RunHandle getRun(long runId) {
+        return runs.get(runId);
+    }
+
+    /**
+     * 当前登记的所有运行（包括排队中的）
+     */
+    public List<RunHandle> getRuns() {
+        return new ArrayList<>(runs.values());
+    }
+
+    public List<RunHandle> getRuns(String entityType, int entityId) {
+        List<RunHandle> result = new ArrayList<>();
+        for (RunHandle run : runs.values()) {
+            if (run.getEntityType().equals(entityType) && run.getEntityId() == entityId) {
+                result.add(run);
+            }
         }
-        return instance;
+        return result;
     }
 
-    public void registerProcess(int toolId, Process process) {
-        runningProcesses.put(toolId, process);
+    public boolean isRunning(String entityType, int entityId) {
+        return !getRuns(entityType, entityId).isEmpty();
     }
 
-    public void stopProcess(int toolId) {
-        Process process = runningProcesses.get(toolId);
-        if (process != null && process.isAlive()) {
-            process.destroy();
-            if (process.isAlive()) {
-                process.destroyForcibly();
+    private void pruneOutputFiles() {
+        Set<Path> active = new HashSet<>();
+        for (RunHandle run : runs.values()) {
+            Path file = run.getOutputFile();
+            if (file != null) {
+                active.add(file);
             }
-            runningProcesses.remove(toolId);
         }
+        OutputSpool.prune(active);
+    }
+
+    /**
+     * 以默认宽限时间结束进程及其所有子孙进程
+     *
+     * @return 进程树全部退出后完成
+     */
+    public CompletableFuture<Void> destroyTree(Process process) {
+        return destroyTree(process, RunLimits.DEFAULT_GRACE_MILLIS);
     }
 
-    public boolean isToolRunning(int toolId) {
-        Process process = runningProcesses.get(toolId);
-        return process != null && process.isAlive();
+    /**
+     * 结束进程及其所有子孙进程
+     * 先请求正常退出，宽限时间后仍存活的强制结束；子孙进程在父进程退出前取得，避免被过继后漏掉
+     *
+     * @return 进程树全部退出后完成
+     */
+    public CompletableFuture<Void> destroyTree(Process process, long graceMillis) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        process.descendants().forEach(tree::add);
+        tree.add(process.toHandle());
+
+        List<CompletableFuture<ProcessHandle>> exits = new ArrayList<>();
+        for (ProcessHandle handle : tree) {
+            handle.destroy();
+            exits.add(handle.onExit());
+        }
+        CompletableFuture<Void> allExited = CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]));
+
+        if (!allExited.isDone() && !reaper.isShutdown()) {
+            reaper.schedule(() -> {
+                for (ProcessHandle handle : tree) {
+                    if (handle.isAlive()) {
+                        handle.destroyForcibly();
+                    }
+                }
+            }, graceMillis, TimeUnit.MILLISECONDS);
+        }
+        return allExited;
     }
 
-    public void shutdown() {
-        // 停止所有运行中的进程
-        for (Process process : runningProcesses.values()) {
-            if (process.isAlive()) {
-                process.destroy();
+    /**
+     * 退出程序前停止所有运行
+     * 所有进程树同时结束，在超时内等待它们退出并写完运行历史，超时后强制结束剩余进程
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        runExecutor.shutdown();
+
+        List<RunHandle> active = getRuns();
+        List<CompletableFuture<Void>> exits = new ArrayList<>();
+        for (RunHandle run : active) {
+            exits.add(stop(run.getRunId(), RunHandle.KillReason.SHUTDOWN));
+        }
+        try {
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("部分进程未能在退出前正常结束，强制结束");
+            for (RunHandle run : active) {
+                Process process = run.getProcess();
+                if (process != null) {
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("停止进程失败: " + e.getMessage());
+        }
+
+        try {
+            // 等待运行线程写完运行历史，强制结束后至少再等一秒
+            long remaining = Math.max(TimeUnit.SECONDS.toNanos(1), deadline - System.nanoTime());
+            if (!runExecutor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                System.err.println("等待运行线程结束超时");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        executorService.shutdown();
+        reaper.shutdownNow();
+        sampler.shutdown();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+package com.z0fsec.workhelper.util;
+
+/**
+ * 一次运行的资源采样记录：最近 CAPACITY 次采样的 CPU、常驻内存和线程数，以及整次运行的峰值
+ * 采样值是整个进程树的合计，定长数组环形覆盖，运行时间再长也不增加内存
+ */
+public class ResourceHistory {
+    public static final int CAPACITY = 60;
+
+    private final float[] cpuPercent = new float[CAPACITY];
+    private final long[] rssBytes = new long[CAPACITY];
+    private final int[] threads = new int[CAPACITY];
+    private int head;
+    private int count;
+
+    private float peakCpuPercent = -1;
+    private long peakRssBytes = -1;
+    private int peakThreads = -1;
+    private long cpuTimeMillis = -1;
+    private int processCount;
+
+    /**
+     * 追加一次采样
+     *
+     * @param cpu         相对单个核心的百分比，多核满载时超过 100；还无法计算时为 -1，曲线上记为 0，不计入峰值
+     * @param rss         常驻内存字节数，无法获取时为 -1
+     * @param threadCount 线程数，无法获取时为 -1
+     * @param cpuTime     进程树累计 CPU 时间（毫秒）
+     * @param processes   进程树中的进程数
+     */
+    synchronized void add(float cpu, long rss, int threadCount, long cpuTime, int processes) {
+        cpuPercent[head] = Math.max(0, cpu);
+        rssBytes[head] = rss;
+        threads[head] = threadCount;
+        head = (head + 1) % CAPACITY;
+        count = Math.min(count + 1, CAPACITY);
+
+        if (cpu >= 0) {
+            peakCpuPercent = Math.max(peakCpuPercent, cpu);
+        }
+        peakRssBytes = Math.max(peakRssBytes, rss);
+        peakThreads = Math.max(peakThreads, threadCount);
+        cpuTimeMillis = Math.max(cpuTimeMillis, cpuTime);
+        processCount = processes;
+    }
+
+    /**
+     * 根进程自己统计的峰值内存（VmHWM），能补上两次采样之间的短暂峰值
+     */
+    synchronized void updatePeakRss(long rss) {
+        peakRssBytes = Math.max(peakRssBytes, rss);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * 按时间顺序的 CPU 采样，最早的在前
+     */
+    public synchronized float[] getCpuHistory() {
+        float[] result = new float[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = cpuPercent[index(i)];
+        }
+        return result;
+    }
+
+    /**
+     * 按时间顺序的常驻内存采样，最早的在前
+     */
+    public synchronized long[] getRssHistory() {
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = rssBytes[index(i)];
+        }
+        return result;
+    }
+
+    public synchronized float getLatestCpuPercent() {
+        return count > 0 ? cpuPercent[index(count - 1)] : 0;
+    }
+
+    public synchronized long getLatestRssBytes() {
+        return count > 0 ? rssBytes[index(count - 1)] : -1;
+    }
+
+    public synchronized int getLatestThreads() {
+        return count > 0 ? threads[index(count - 1)] : -1;
+    }
+
+    public synchronized int getProcessCount() {
+        return processCount;
+    }
+
+    // 以下峰值在没有采样时为 -1
+    public synchronized float getPeakCpuPercent() {
+        return peakCpuPercent;
+    }
+
+    public synchronized long getPeakRssBytes() {
+        return peakRssBytes;
+    }
+
+    public synchronized int getPeakThreads() {
+        return peakThreads;
+    }
+
+    public synchronized long getCpuTimeMillis() {
+        return cpuTimeMillis;
+    }
+
+    private int index(int i) {
+        return (head - count + i + CAPACITY) % CAPACITY;
+    }
+}
@@ -0,0 +1,182 @@
+package com.z0fsec.workhelper.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 定期采样所有运行中进程树的 CPU、常驻内存和线程数，写入各次运行的 ResourceHistory
+ * 每次采样遍历根进程及其全部子孙进程：Linux 下读取 /proc/<pid>/stat 的 CPU 时间和 /proc/<pid>/status 的
+ * VmRSS、Threads；其他系统只能通过 ProcessHandle 取得 CPU 时间。
+ * CPU 使用率按每个进程两次采样之间的 CPU 时间增量计算，子进程退出不会让使用率变成负数
+ */
+class ResourceSampler {
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    // /proc/<pid>/stat 中 CPU 时间的单位，Linux 的 USER_HZ 在常见架构上都是 100
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final boolean PROCFS = Files.isDirectory(Paths.get("/proc/self"));
+
+    private final Supplier<List<RunHandle>> runs;
+    private final Map<Long, TreeState> states = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    // 一次运行上次采样时各进程的累计 CPU 时间
+    private static class TreeState {
+        Map<Long, Long> cpuMillis = new HashMap<>();
+        long sampleNanos;
+    }
+
+    // 单个进程的一次读数，无法获取的值为 -1
+    private record ProcessSample(long cpuMillis, long rssBytes, int threads, long peakRssBytes) {
+    }
+
+    /**
+     * @param runs 当前登记的运行，每次采样时调用
+     */
+    ResourceSampler(Supplier<List<RunHandle>> runs) {
+        this.runs = runs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "run-resource-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::sampleAll, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void sampleAll() {
+        Set<Long> active = new HashSet<>();
+        for (RunHandle run : runs.get()) {
+            if (run.isAlive()) {
+                active.add(run.getRunId());
+                sample(run);
+            }
+        }
+        states.keySet().retainAll(active);
+    }
+
+    /**
+     * 立即采样一次运行，进程刚启动时调用，运行时间不足一个采样间隔也有记录
+     */
+    void sample(RunHandle run) {
+        Process process = run.getProcess();
+        ResourceHistory history = run.getResources();
+        if (process == null || history == null) {
+            return;
+        }
+        TreeState state = states.computeIfAbsent(run.getRunId(), id -> new TreeState());
+        synchronized (state) {
+            try {
+                sampleTree(process, history, state);
+            } catch (RuntimeException e) {
+                // 进程在遍历过程中退出
+            }
+        }
+    }
+
+    private void sampleTree(Process process, ResourceHistory history, TreeState state) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        tree.add(process.toHandle());
+        process.descendants().forEach(tree::add);
+
+        long now = System.nanoTime();
+        Map<Long, Long> cpuMillis = new HashMap<>();
+        long cpuDelta = 0;
+        long totalCpu = 0;
+        long rss = -1;
+        int threads = -1;
+        for (ProcessHandle handle : tree) {
+            ProcessSample sample = read(handle);
+            if (sample == null) {
+                continue;
+            }
+            if (sample.cpuMillis() >= 0) {
+                cpuMillis.put(handle.pid(), sample.cpuMillis());
+                totalCpu += sample.cpuMillis();
+                Long previous = state.cpuMillis.get(handle.pid());
+                // 新出现的进程从启动算起
+                cpuDelta += sample.cpuMillis() - (previous != null ? Math.min(previous, sample.cpuMillis()) : 0);
+            }
+            if (sample.rssBytes() >= 0) {
+                rss = Math.max(rss, 0) + sample.rssBytes();
+            }
+            if (sample.threads() >= 0) {
+                threads = Math.max(threads, 0) + sample.threads();
+            }
+            if (handle.pid() == process.pid() && sample.peakRssBytes() >= 0) {
+                history.updatePeakRss(sample.peakRssBytes());
+            }
+        }
+        if (cpuMillis.isEmpty()) {
+            return;
+        }
+
+        // 第一次采样没有上次的读数；进程刚启动时按启动以来计算，几毫秒的区间除以按时钟滴答计的 CPU 时间
+        // 会得到成百上千的百分比，所以第一次不给出 CPU 使用率，等两次采样之间有了真实的间隔再算
+        float cpuPercent = -1;
+        if (state.sampleNanos != 0) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - state.sampleNanos);
+            if (elapsedMillis > 0) {
+                cpuPercent = cpuDelta * 100f / elapsedMillis;
+            }
+        }
+
+        state.cpuMillis = cpuMillis;
+        state.sampleNanos = now;
+        history.add(cpuPercent, rss, threads, totalCpu, tree.size());
+    }
+
+    private static ProcessSample read(ProcessHandle handle) {
+        if (!PROCFS) {
+            long cpu = handle.info().totalCpuDuration().map(Duration::toMillis).orElse(-1L);
+            return handle.isAlive() ? new ProcessSample(cpu, -1, -1, -1) : null;
+        }
+        Path dir = Paths.get("/proc", String.valueOf(handle.pid()));
+        try {
+            // 第 2 个字段是括号中的进程名，可能包含空格，从最后一个 ')' 之后开始分割；
+            // 之后第 12、13 项是用户态和内核态 CPU 时间（stat 的第 14、15 个字段）
+            String stat = Files.readString(dir.resolve("stat"));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+            long cpuMillis = ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+
+            long rss = -1;
+            long peakRss = -1;
+            int threads = -1;
+            for (String line : Files.readAllLines(dir.resolve("status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    rss = parseKilobytes(line.substring(6));
+                } else if (line.startsWith("VmHWM:")) {
+                    peakRss = parseKilobytes(line.substring(6));
+                } else if (line.startsWith("Threads:")) {
+                    threads = Integer.parseInt(line.substring(8).trim());
+                }
+            }
+            return new ProcessSample(cpuMillis, rss, threads, peakRss);
+        } catch (IOException | RuntimeException e) {
+            // 进程已退出或没有权限
+            return null;
+        }
+    }
+
+    private static long parseKilobytes(String value) {
+        return Long.parseLong(value.trim().split("\\s+")[0]) * 1024;
+    }
+}
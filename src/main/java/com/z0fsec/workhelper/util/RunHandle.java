@@ -0,0 +1,229 @@
+package com.z0fsec.workhelper.util;
+
+import com.z0fsec.workhelper.model.RunLimits;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一次工具或脚本运行的句柄，由 ProcessManager.submit 返回
+ * 通过 getCompletion() 等待结束（结果为退出码），通过 stop() 结束整个进程树
+ */
+public class RunHandle {
+    private final long runId;
+    private final String entityType;
+    private final int entityId;
+    private final String name;
+    private final String arguments;
+    private final long submitTime;
+    private final RunLimits limits;
+    private final CompletableFuture<Integer> completion = new CompletableFuture<>();
+    // 运行线程开始执行或排队中被取消，二者只有一个能成功
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+    private volatile Process process;
+    private volatile RunRecorder recorder;
+    private volatile OutputSpool spool;
+    private volatile Future<?> task;
+    private volatile RunLimits effectiveLimits;
+    // 第一次结束运行的原因，之后的停止请求不覆盖
+    private final AtomicReference<KillReason> killReason = new AtomicReference<>();
+
+    /**
+     * 运行被结束的原因
+     */
+    public enum KillReason {
+        USER("手动停止"),
+        TIMEOUT("运行超时"),
+        OUTPUT_LIMIT("输出超过上限"),
+        SHUTDOWN("程序退出");
+
+        private final String label;
+
+        KillReason(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    RunHandle(long runId, String entityType, int entityId, String name, String arguments, RunLimits limits) {
+        this.runId = runId;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.name = name;
+        this.arguments = arguments;
+        this.limits = limits;
+        this.effectiveLimits = limits;
+        this.submitTime = System.currentTimeMillis();
+    }
+
+    public long getRunId() {
+        return runId;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getArguments() {
+        return arguments;
+    }
+
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * 进程对象，排队中或启动失败时为 null
+     */
+    public Process getProcess() {
+        return process;
+    }
+
+    public boolean isStarted() {
+        return process != null;
+    }
+
+    public boolean isAlive() {
+        Process current = process;
+        return current != null && current.isAlive();
+    }
+
+    /**
+     * 是否被结束：手动停止、超出运行限制或因退出程序而停止，原因见 getKillReason()
+     */
+    public boolean isCancelled() {
+        return killReason.get() != null;
+    }
+
+    /**
+     * 运行被结束的原因，正常退出或启动失败时为 null
+     */
+    public KillReason getKillReason() {
+        return killReason.get();
+    }
+
+    /**
+     * 启动后生效的运行限制：提交时指定的限制，未指定的项取工具或脚本保存的设置
+     */
+    public RunLimits getLimits() {
+        return effectiveLimits;
+    }
+
+    /**
+     * 运行结束时完成，结果为退出码；启动失败、监控异常或排队中被取消时异常完成
+     * 回调在运行线程上执行，更新界面需要切回 EDT
+     */
+    public CompletableFuture<Integer> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * 合并了 stdout 和 stderr 的输出文件，未启动或无法创建文件时为 null
+     */
+    public Path getOutputFile() {
+        OutputSpool current = spool;
+        return current != null ? current.getFile() : null;
+    }
+
+    /**
+     * 最后几百行输出，完整输出见 getOutputFile()
+     */
+    public List<String> getOutputTail() {
+        OutputSpool current = spool;
+        return current != null ? current.getTail() : List.of();
+    }
+
+    /**
+     * 进程树的资源采样，未启动时为 null
+     */
+    public ResourceHistory getResources() {
+        RunRecorder current = recorder;
+        return current != null ? current.getResources() : null;
+    }
+
+    /**
+     * 把已读取的输出写入输出文件，查看运行中的输出前调用
+     */
+    public void flushOutput() {
+        OutputSpool current = spool;
+        if (current != null) {
+            current.flush();
+        }
+    }
+
+    /**
+     * 停止本次运行，进程树全部退出后完成
+     */
+    public CompletableFuture<Void> stop() {
+        return ProcessManager.getInstance().stop(runId);
+    }
+
+    /**
+     * 以指定原因结束本次运行
+     */
+    public CompletableFuture<Void> stop(KillReason reason) {
+        return ProcessManager.getInstance().stop(runId, reason);
+    }
+
+    void started(Process process, RunRecorder recorder, OutputSpool spool) {
+        this.recorder = recorder;
+        this.spool = spool;
+        this.process = process;
+    }
+
+    RunRecorder getRecorder() {
+        return recorder;
+    }
+
+    OutputSpool getSpool() {
+        return spool;
+    }
+
+    void setTask(Future<?> task) {
+        this.task = task;
+    }
+
+    Future<?> getTask() {
+        return task;
+    }
+
+    boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * @return 是否是第一次结束请求
+     */
+    boolean markKilled(KillReason reason) {
+        return killReason.compareAndSet(null, reason);
+    }
+
+    RunLimits getSubmittedLimits() {
+        return limits;
+    }
+
+    void setEffectiveLimits(RunLimits effectiveLimits) {
+        this.effectiveLimits = effectiveLimits;
+    }
+
+    @Override
+    public String toString() {
+        return name + " #" + runId;
+    }
+}
@@ -0,0 +1,114 @@
+package com.z0fsec.workhelper.util;
+
+import com.z0fsec.workhelper.db.DatabaseManager;
+import com.z0fsec.workhelper.model.RunRecord;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录一次工具或脚本运行：开始/结束时间、退出码、输出字节数，以及 ResourceSampler 采样到的资源峰值
+ * 运行结束时调用 finish()，记录交给 DatabaseManager 批量写入运行历史
+ */
+public class RunRecorder {
+    private final RunRecord record;
+    private final AtomicLong outputBytes = new AtomicLong();
+    private final ResourceHistory resources = new ResourceHistory();
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    private RunRecorder(RunRecord record) {
+        this.record = record;
+    }
+
+    /**
+     * 进程启动后开始记录
+     *
+     * @param entityType DatabaseManager.ENTITY_TOOL / ENTITY_SCRIPT
+     * @param arguments  运行参数，没有时传 null
+     */
+    public static RunRecorder start(String entityType, int entityId, String name, String arguments) {
+        RunRecord record = new RunRecord(entityType, entityId, name, arguments, System.currentTimeMillis());
+        return new RunRecorder(record);
+    }
+
+    /**
+     * 本次运行的资源采样，由 ResourceSampler 写入
+     */
+    public ResourceHistory getResources() {
+        return resources;
+    }
+
+    /**
+     * 本次运行的输出文件，随运行历史一起保存
+     */
+    public void setOutputFile(Path file) {
+        record.setOutputPath(file != null ? file.toString() : null);
+    }
+
+    /**
+     * 运行被结束的原因，随运行历史一起保存
+     */
+    public void setKillReason(String killReason) {
+        record.setKillReason(killReason);
+    }
+
+    /**
+     * 目前读取到的输出字节数
+     */
+    public long getOutputBytes() {
+        return outputBytes.get();
+    }
+
+    /**
+     * 包装进程输出流，统计读取的字节数
+     */
+    public InputStream countOutput(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    outputBytes.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    outputBytes.addAndGet(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * 运行结束，写入运行历史；重复调用只记录第一次
+     *
+     * @param exitCode 启动失败或被中断时传 null
+     */
+    public void finish(Integer exitCode) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+
+        record.setEndTime(System.currentTimeMillis());
+        record.setExitCode(exitCode);
+        record.setOutputBytes(outputBytes.get());
+        record.setPeakMemoryBytes(resources.getPeakRssBytes());
+        record.setPeakCpuPercent(resources.getPeakCpuPercent());
+        record.setPeakThreads(resources.getPeakThreads());
+        record.setCpuTimeMillis(resources.getCpuTimeMillis());
+        try {
+            DatabaseManager.getInstance().recordRun(record);
+        } catch (Exception e) {
+            System.err.println("记录运行历史失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.z0fsec.workhelper.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 启动阶段计时
+ * 各阶段的耗时和相对 JVM 启动的时间点输出到控制台并保留下来，界面就绪后可以汇总显示
+ */
+public class StartupTimer {
+    private static final long JVM_START_MILLIS = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private static final List<String> entries = new ArrayList<>();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * 从 JVM 启动到现在的毫秒数
+     */
+    public static long sinceLaunch() {
+        return System.currentTimeMillis() - JVM_START_MILLIS;
+    }
+
+    /**
+     * 记录一个时间点，例如首屏显示
+     */
+    public static void mark(String event) {
+        add(String.format("%s（启动后 %d ms）", event, sinceLaunch()));
+    }
+
+    /**
+     * 记录从 startNanos（System.nanoTime）开始的阶段耗时
+     */
+    public static void record(String phase, long startNanos) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        add(String.format("%s: %d ms（启动后 %d ms）", phase, elapsed, sinceLaunch()));
+    }
+
+    public static <T> T time(String phase, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(phase, start);
+        }
+    }
+
+    public static void time(String phase, Runnable action) {
+        time(phase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 已记录的阶段，按记录顺序
+     */
+    public static synchronized List<String> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    private static synchronized void add(String entry) {
+        entries.add(entry);
+        System.out.println("[启动] " + entry);
+    }
+}
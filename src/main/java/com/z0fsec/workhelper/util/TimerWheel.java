@@ -0,0 +1,149 @@
+package com.z0fsec.workhelper.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * 哈希时间轮
+ * 所有定时任务由一个线程驱动：按到期时刻落到 WHEEL_SIZE 个槽中的一个，线程每个刻度只检查当前槽，
+ * 添加和取消都是 O(1)，任务数再多也只有一个线程。
+ * 刻度按系统时间计算，电脑休眠唤醒或调整时间后，期间到期的任务在下一个刻度一起到期
+ */
+public class TimerWheel {
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 512;
+
+    private final List<List<Timeout>> buckets = new ArrayList<>(WHEEL_SIZE);
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Executor taskExecutor;
+    private final Thread worker;
+    private volatile boolean stopped;
+    // 只在工作线程上访问
+    private long lastTick;
+
+    /**
+     * 定时任务的句柄
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private final long deadlineTick;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.deadlineTick = Math.floorDiv(deadline, TICK_MILLIS);
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * 取消尚未到期的任务，已到期的任务不受影响
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * @param name         工作线程名
+     * @param taskExecutor 执行到期的任务，工作线程本身不执行任务，任务耗时不影响其他任务准时到期
+     */
+    public TimerWheel(String name, Executor taskExecutor) {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.taskExecutor = taskExecutor;
+        this.lastTick = Math.floorDiv(System.currentTimeMillis(), TICK_MILLIS);
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 在 deadline（毫秒时间戳）时执行任务，已过期的在下一个刻度执行
+     */
+    public Timeout schedule(Runnable task, long deadline) {
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 停止工作线程，尚未到期的任务不再执行
+     */
+    public void stop() {
+        stopped = true;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!stopped) {
+            long now = System.currentTimeMillis();
+            long currentTick = Math.floorDiv(now, TICK_MILLIS);
+            transferPending();
+
+            if (currentTick - lastTick >= WHEEL_SIZE) {
+                // 休眠或时间前跳超过一整圈，所有槽都检查一遍
+                for (List<Timeout> bucket : buckets) {
+                    expire(bucket, currentTick);
+                }
+            } else {
+                // 时间回拨时 currentTick 小于 lastTick，不检查任何槽，等时间追上来
+                for (long tick = lastTick + 1; tick <= currentTick; tick++) {
+                    expire(buckets.get(Math.floorMod(tick, WHEEL_SIZE)), currentTick);
+                }
+            }
+            if (currentTick > lastTick || currentTick < lastTick - WHEEL_SIZE) {
+                lastTick = currentTick;
+            }
+
+            try {
+                Thread.sleep(TICK_MILLIS - Math.floorMod(System.currentTimeMillis(), TICK_MILLIS));
+            } catch (InterruptedException e) {
+                if (stopped) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // 新任务放进对应的槽；已经过期的直接放进下一个要检查的槽
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long tick = Math.max(timeout.deadlineTick, lastTick + 1);
+            buckets.get(Math.floorMod(tick, WHEEL_SIZE)).add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket, long currentTick) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.deadlineTick <= currentTick) {
+                iterator.remove();
+                try {
+                    taskExecutor.execute(timeout.task);
+                } catch (RuntimeException e) {
+                    System.err.println("执行定时任务失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+}